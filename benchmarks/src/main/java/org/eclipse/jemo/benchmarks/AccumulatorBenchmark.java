@@ -0,0 +1,58 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.sys.Accumulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures recording an execution time in a module accumulator when many threads execute the same module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+    private final Accumulator accumulator = new Accumulator();
+
+    @Benchmark
+    @Threads(1)
+    public Accumulator addUncontended() {
+        return accumulator.add(ThreadLocalRandom.current().nextInt(1000));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Accumulator addContended() {
+        return accumulator.add(ThreadLocalRandom.current().nextInt(1000));
+    }
+}
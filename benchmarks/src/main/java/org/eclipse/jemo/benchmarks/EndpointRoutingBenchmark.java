@@ -0,0 +1,89 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.sys.JemoEndpointRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the resolution of a request path to the endpoint of the module which will process it. the legacy benchmark
+ * reproduces the case insensitive scan over all of the endpoints so the two approaches can be compared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndpointRoutingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int endpoints;
+
+    private List<String> endpointList;
+    private JemoEndpointRouter router;
+    private String hitPath;
+    private String missPath;
+
+    @Setup
+    public void setup() {
+        endpointList = new ArrayList<>();
+        endpointList.add("/jemo");
+        for (int i = 1; i < endpoints; i++) {
+            endpointList.add("/" + i + "/v1.0/module" + i);
+        }
+        router = JemoEndpointRouter.build(endpointList);
+        hitPath = "/" + (endpoints / 2) + "/v1.0/Module" + (endpoints / 2) + "/resource/12345";
+        missPath = "/unknown/v1.0/resource/12345";
+    }
+
+    @Benchmark
+    public String routerHit() {
+        return router.resolve(hitPath);
+    }
+
+    @Benchmark
+    public String routerMiss() {
+        return router.resolve(missPath);
+    }
+
+    @Benchmark
+    public String legacyScanHit() {
+        final String path = hitPath;
+        return endpointList.parallelStream().filter(k -> path.toUpperCase().startsWith(k.toUpperCase())).findAny().orElse(null);
+    }
+
+    @Benchmark
+    public String legacyScanMiss() {
+        final String path = missPath;
+        return endpointList.parallelStream().filter(k -> path.toUpperCase().startsWith(k.toUpperCase())).findAny().orElse(null);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.sys.JemoClassLoader;
+import org.eclipse.jemo.sys.internal.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures class lookups through a module class loader, both for classes packaged in the module jar and for
+ * classes which have to be delegated to the parent class loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JemoClassLoaderBenchmark {
+
+    private JemoClassLoader classLoader;
+
+    @Setup
+    public void setup() throws Throwable {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        Util.createJar(byteOut, EndpointRoutingBenchmark.class, JemoMessageSerializationBenchmark.class, AccumulatorBenchmark.class);
+        classLoader = new JemoClassLoader(UUID.randomUUID().toString(), byteOut.toByteArray(), JemoClassLoaderBenchmark.class.getClassLoader());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Class<?> loadModuleClass() throws ClassNotFoundException {
+        return classLoader.loadClass(EndpointRoutingBenchmark.class.getName());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Class<?> loadParentClass() throws ClassNotFoundException {
+        return classLoader.loadClass(String.class.getName());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean missingClass() {
+        try {
+            classLoader.loadClass("org.eclipse.jemo.benchmarks.DoesNotExist");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+}
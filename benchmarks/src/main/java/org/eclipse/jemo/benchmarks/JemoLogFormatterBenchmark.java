@@ -0,0 +1,71 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.internal.model.JemoLogFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * measures the formatting of a log line, this runs synchronously on the thread which logs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JemoLogFormatterBenchmark {
+
+    private JemoLogFormatter formatter;
+    private LogRecord systemRecord;
+    private LogRecord moduleRecord;
+
+    @Setup
+    public void setup() {
+        formatter = new JemoLogFormatter("BENCHMARK", "localhost", UUID.randomUUID().toString());
+        systemRecord = new LogRecord(Level.INFO, "[%s] processed %d messages in %d (ms)");
+        systemRecord.setLoggerName("Jemo");
+        systemRecord.setParameters(new Object[]{"JemoQueueListener", 10, 25L});
+        moduleRecord = new LogRecord(Level.INFO, "[%s] module message\nover two lines");
+        moduleRecord.setLoggerName("10:1.0:SampleModule");
+        moduleRecord.setParameters(new Object[]{"SampleModule"});
+    }
+
+    @Benchmark
+    public String formatSystemRecord() {
+        return formatter.format(systemRecord);
+    }
+
+    @Benchmark
+    public String formatModuleRecord() {
+        return formatter.format(moduleRecord);
+    }
+}
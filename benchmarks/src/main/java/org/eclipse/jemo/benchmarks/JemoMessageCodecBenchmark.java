@@ -0,0 +1,113 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.internal.model.JemoMessage;
+import org.eclipse.jemo.internal.model.JemoMessageCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * compares the throughput of the message codecs which can be used on the queues. the size of the payload each codec produces
+ * for the message shape being measured is printed when the trial starts.
+ *
+ * the shapes are an event with no attributes, an event with string attributes and an event whose attributes are a list of
+ * records with numeric fields, which is the case the binary codec is designed for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JemoMessageCodecBenchmark {
+
+    @Param({"json", "binary"})
+    private String codecName;
+
+    @Param({"empty", "strings", "records"})
+    private String shape;
+
+    private JemoMessageCodec codec;
+    private JemoMessage message;
+    private String payload;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = JemoMessageCodec.forName(codecName);
+        message = new JemoMessage();
+        message.setPluginId(10);
+        message.setPluginVersion(1.0);
+        message.setSourcePluginId(20);
+        message.setSourcePluginVersion(1.0);
+        message.setModuleClass("org.eclipse.jemo.benchmarks.SampleModule");
+        message.setSourceModuleClass("org.eclipse.jemo.benchmarks.SampleModule");
+        message.setSourceInstance("https://sqs.eu-west-1.amazonaws.com/123456789012/JEMO-AWS-" + UUID.randomUUID().toString());
+        switch (shape) {
+            case "strings":
+                for (int i = 0; i < 10; i++) {
+                    message.getAttributes().put("attribute" + i, "value of attribute " + i + " " + UUID.randomUUID().toString());
+                }
+                break;
+            case "records":
+                List<Map<String, Object>> records = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    Map<String, Object> record = new HashMap<>();
+                    record.put("sequence", i);
+                    record.put("timestamp", System.currentTimeMillis());
+                    record.put("value", i * 1.5);
+                    record.put("valid", i % 2 == 0);
+                    records.add(record);
+                }
+                message.getAttributes().put("records", records);
+                break;
+            default:
+                break;
+        }
+        payload = codec.encode(message);
+        System.out.println(String.format("%n[%s][%s] payload size %d bytes, json payload size %d bytes", codecName, shape,
+                payload.getBytes(StandardCharsets.UTF_8).length, JemoMessageCodec.JSON.encode(message).getBytes(StandardCharsets.UTF_8).length));
+    }
+
+    @Benchmark
+    public String encode() throws IOException {
+        return codec.encode(message);
+    }
+
+    @Benchmark
+    public JemoMessage decode() throws IOException {
+        return JemoMessageCodec.read(payload);
+    }
+}
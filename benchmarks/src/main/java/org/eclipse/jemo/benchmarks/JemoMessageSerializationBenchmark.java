@@ -0,0 +1,73 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.internal.model.JemoMessage;
+import org.eclipse.jemo.sys.internal.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the cost of converting a typical event message to and from the json form which is sent over the queues.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JemoMessageSerializationBenchmark {
+
+    private JemoMessage message;
+    private String messageJson;
+
+    @Setup
+    public void setup() throws IOException {
+        message = new JemoMessage();
+        message.setPluginId(10);
+        message.setPluginVersion(1.0);
+        message.setSourcePluginId(20);
+        message.setModuleClass("org.eclipse.jemo.benchmarks.SampleModule");
+        message.setSourceInstance(UUID.randomUUID().toString());
+        for (int i = 0; i < 10; i++) {
+            message.getAttributes().put("attribute" + i, "value of attribute " + i + " " + UUID.randomUUID().toString());
+        }
+        messageJson = Util.toJSONString(message);
+    }
+
+    @Benchmark
+    public String toJSON() throws IOException {
+        return Util.toJSONString(message);
+    }
+
+    @Benchmark
+    public JemoMessage fromJSON() throws IOException {
+        return Util.fromJSONString(JemoMessage.class, messageJson);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.internal.model.JemoMessage;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import org.eclipse.jemo.sys.auth.JemoUser;
+import org.eclipse.jemo.sys.internal.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * measures the queue and nosql operations of the memory runtime which back every local deployment and most of the tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryRuntimeBenchmark {
+
+    private static final String TABLE_NAME = "JEMO-BENCHMARK-USERS";
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private MemoryRuntime runtime;
+    private String queueId;
+    private String messageJson;
+    private JemoUser[] users;
+
+    @Setup
+    public void setup() throws IOException {
+        runtime = new MemoryRuntime();
+        runtime.reset();
+        queueId = runtime.defineQueue("JEMO-BENCHMARK-QUEUE");
+        JemoMessage message = new JemoMessage();
+        message.setPluginId(10);
+        message.setModuleClass("org.eclipse.jemo.benchmarks.SampleModule");
+        message.getAttributes().put("payload", "benchmark");
+        messageJson = Util.toJSONString(message);
+
+        runtime.createNoSQLTable(TABLE_NAME);
+        users = new JemoUser[rows];
+        for (int i = 0; i < rows; i++) {
+            JemoUser user = new JemoUser();
+            user.setUsername("user" + i);
+            user.setPassword("password" + i);
+            user.setGroupIds(Arrays.asList("1", "2"));
+            users[i] = user;
+        }
+        runtime.saveNoSQL(TABLE_NAME, users);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int queueSendAndPoll(Blackhole blackhole) throws Throwable {
+        runtime.sendMessage(queueId, messageJson);
+        return runtime.pollQueue(queueId, msg -> blackhole.consume(msg));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JemoUser noSQLGet() throws IOException {
+        return runtime.getNoSQL(TABLE_NAME, users[ThreadLocalRandom.current().nextInt(rows)].getId(), JemoUser.class);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void noSQLSave() {
+        runtime.saveNoSQL(TABLE_NAME, users[ThreadLocalRandom.current().nextInt(rows)]);
+    }
+}
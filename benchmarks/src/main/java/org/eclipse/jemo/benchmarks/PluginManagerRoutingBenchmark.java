@@ -0,0 +1,127 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.benchmarks;
+
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.JemoModule;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import org.eclipse.jemo.sys.JemoPluginManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * measures how the plugin manager finds the module which handles a http request. unlike the endpoint routing benchmark this goes
+ * through resolveModule, so it includes the virtual host fallback and the pick of the module out of the loaded modules of the jar.
+ * the requests are routed to the plugin manager module of a server backed by the memory runtime which is never started.
+ *
+ * requests and responses are dynamic proxies which only answer the calls routing makes, their cost is the same for every benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PluginManagerRoutingBenchmark {
+
+    @Param({"10", "1000"})
+    private int virtualHosts;
+
+    private JemoPluginManager pluginManager;
+    private HttpServletRequest endpointRequest;
+    private HttpServletRequest virtualHostRequest;
+    private HttpServletRequest missRequest;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        CloudProvider.defineCustomeRuntime(new MemoryRuntime());
+        final Map<String, String> virtualHostMap = new HashMap<>();
+        for (int i = 0; i < virtualHosts; i++) {
+            virtualHostMap.put("//host" + i + ".example.com/", "/jemo");
+        }
+        CloudProvider.getInstance().getRuntime().store(JemoPluginManager.VHOST_KEY, virtualHostMap);
+
+        final AbstractJemo jemoServer = new AbstractJemo("BENCHMARK", 8080, 8081, "", "", 50, true, false, null, Level.SEVERE, "UUID_" + UUID.randomUUID()) {};
+        pluginManager = new JemoPluginManager(jemoServer);
+        pluginManager.loadVirtualHostDefinitions();
+        endpointRequest = request("/jemo/stats", "http://localhost:8080/jemo/stats");
+        virtualHostRequest = request("/index.html", "http://host" + (virtualHosts / 2) + ".example.com:8080/index.html");
+        missRequest = request("/index.html", "http://unknown.example.com:8080/index.html");
+        response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletResponse.class}, (proxy, method, args) -> null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        CloudProvider.defineCustomeRuntime(null);
+    }
+
+    private HttpServletRequest request(final String servletPath, final String url) {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getServletPath":
+                    return servletPath;
+                case "getRequestURL":
+                    return new StringBuffer(url);
+                case "getMethod":
+                    return "GET";
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JemoModule endpoint() throws IOException {
+        return pluginManager.resolveModule(endpointRequest, response);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JemoModule virtualHost() throws IOException {
+        return pluginManager.resolveModule(virtualHostRequest, response);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public JemoModule miss() throws IOException {
+        return pluginManager.resolveModule(missRequest, response);
+    }
+}
@@ -35,8 +35,11 @@ import java.net.SocketException;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -44,6 +47,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.*;
 import java.util.logging.Formatter;
+import java.util.stream.Collectors;
 
 /**
  * @author Christopher Stura "christopher.stura@cloudreach.com"
@@ -79,10 +83,12 @@ public abstract class AbstractJemo {
     private String INSTANCE_QUEUE_URL = null;
     private String GLOBAL_QUEUE_URL = null;
     private String LOCATION_QUEUE_URL = null;
+    private String DEAD_LETTER_QUEUE_URL = null;
 
     private String LOCATION;
 
     private String LOCATION_QUEUE_NAME;
+    private String DEAD_LETTER_QUEUE_NAME;
     private int JEMO_HTTPS_PORT;
     private int JEMO_HTTP_PORT;
     private JemoHTTPConnector.MODE JEMO_HTTP_MODE;
@@ -109,8 +115,25 @@ public abstract class AbstractJemo {
      */
     private final Logger SYS_LOGGER;
     private JemoPluginManager pluginManager = null;
+    private final JemoClusterMembership CLUSTER_MEMBERSHIP = new JemoClusterMembership(this);
+    private final JemoEventCounters EVENT_COUNTERS = new JemoEventCounters(this);
+    private final JemoEventAdmission EVENT_ADMISSION = new JemoEventAdmission(this);
+    private final JemoRoutingTable ROUTING_TABLE = new JemoRoutingTable(this);
+    private final JemoDeadLetterQueue DEAD_LETTER_QUEUE = new JemoDeadLetterQueue(this);
+    private final JemoMessageCodec MESSAGE_CODEC = JemoMessageCodec.forName(Util.readParameterFromJvmOrEnv(JemoParameter.MESSAGE_CODEC.label(), JemoMessageCodec.JSON.getName()));
+    private final MessageCompression MESSAGE_COMPRESSION = MessageCompression.forName(Util.readParameterFromJvmOrEnv(JemoParameter.MESSAGE_COMPRESSION.label(), MessageCompression.DEFLATE.getName()));
+    private final int MESSAGE_COMPRESSION_THRESHOLD = Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.MESSAGE_COMPRESSION_THRESHOLD.label(), "16384"));
+    private final boolean LOCAL_FIRST_DELIVERY = Boolean.parseBoolean(Util.readParameterFromJvmOrEnv(JemoParameter.LOCAL_FIRST_DELIVERY.label(), "true"));
     private JemoHTTPConnector httpServer = null;
     private final ExecutorService WORK_EXECUTOR = Executors.newFixedThreadPool(50);
+    //http requests, events, batches and fixed processes each get their own threads so that one kind of work can never starve the others.
+    private final ExecutorService HTTP_EXECUTOR = Executors.newFixedThreadPool(Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.HTTP_THREADS.label(), "50")));
+    private final JemoFairExecutor EVENT_EXECUTOR = new JemoFairExecutor(Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.EVENT_THREADS.label(), "50")));
+    private final ExecutorService BATCH_EXECUTOR = Executors.newFixedThreadPool(Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.BATCH_THREADS.label(), "10")));
+    private final ExecutorService BROADCAST_EXECUTOR = Executors.newFixedThreadPool(Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.BROADCAST_THREADS.label(), "16"))); //a slow queue only ever holds up one of these threads.
+    private final long BROADCAST_TIMEOUT = TimeUnit.SECONDS.toMillis(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.BROADCAST_TIMEOUT.label(), "10")));
+    private final ExecutorService VIRTUAL_THREAD_EXECUTOR = Boolean.parseBoolean(Util.readParameterFromJvmOrEnv(JemoParameter.VIRTUAL_THREADS.label(), "false")) ? Util.newVirtualThreadExecutor() : null;
+    private final ExecutorService FIXED_EXECUTOR = VIRTUAL_THREAD_EXECUTOR != null ? VIRTUAL_THREAD_EXECUTOR : Executors.newCachedThreadPool(); //fixed processes never end so they are bounded by their module limits and not by the pool.
     private final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(5); //we will increase this from 2 to 5 to accomodate for the fixed process monitoring tasks.
     private volatile long lastSchedulerRun = System.currentTimeMillis();
     private String HOSTNAME = null;
@@ -150,6 +173,7 @@ public abstract class AbstractJemo {
         SYS_LOGGER = Logger.getLogger("JEMO-{" + INSTANCE_ID + "}");
         this.LOCATION = location;
         this.LOCATION_QUEUE_NAME = "JEMO-" + LOCATION + "-WORK-QUEUE";
+        this.DEAD_LETTER_QUEUE_NAME = "JEMO-" + LOCATION + CloudRuntime.DEAD_LETTER_QUEUE_SUFFIX;
         this.JEMO_HTTPS_PORT = httpsPort;
         this.JEMO_HTTP_PORT = httpPort;
         this.JEMO_HTTP_MODE = JemoHTTPConnector.MODE.HTTPS;
@@ -273,6 +297,7 @@ public abstract class AbstractJemo {
         }
         this.LOCATION = newLocation;
         this.LOCATION_QUEUE_NAME = "JEMO-" + LOCATION + "-WORK-QUEUE";
+        this.DEAD_LETTER_QUEUE_NAME = "JEMO-" + LOCATION + CloudRuntime.DEAD_LETTER_QUEUE_SUFFIX;
         this.PLUGIN_WHITELIST = Util.parseIntegerRangeDefinition(parameterSet.get(JemoParameter.MODULE_WHITELIST.label()));
         this.PLUGIN_BLACKLIST = Util.parseIntegerRangeDefinition(parameterSet.get(JemoParameter.MODULE_BLACKLIST.label()));
         this.QUEUE_POLL_WAIT_TIME = Long.parseLong(parameterSet.get(JemoParameter.QUEUE_POLL_TIME.label()));
@@ -449,12 +474,16 @@ public abstract class AbstractJemo {
         //to improve the startup time lets make sure these queues exist before requesting they be created.
         GLOBAL_QUEUE_URL = runtime.defineQueue(GLOBAL_QUEUE_NAME);
         LOCATION_QUEUE_URL = runtime.defineQueue(LOCATION_QUEUE_NAME);
+        DEAD_LETTER_QUEUE_URL = runtime.defineQueue(DEAD_LETTER_QUEUE_NAME);
 
         final String newInstanceQueue = runtime.createInstanceQueue(LOCATION, INSTANCE_ID);
 
         boolean isQueUrlChanged = !Objects.equals(newInstanceQueue, INSTANCE_QUEUE_URL);
         INSTANCE_QUEUE_URL = newInstanceQueue;
         LOG(String.format("Jemo - QUEUE SYSTEM INITIALIZED in %d (ms)", System.currentTimeMillis() - start), Level.INFO);
+        if (Boolean.parseBoolean(Util.readParameterFromJvmOrEnv(JemoParameter.VIRTUAL_THREADS.label(), "false"))) {
+            LOG(VIRTUAL_THREAD_EXECUTOR != null ? "Jemo - fixed processes will run on virtual threads" : "Jemo - virtual threads are not supported by this JVM, fixed processes will run on platform threads", Level.INFO);
+        }
 
         if (instanceQueueListener == null) {
             //we need a set of queue listeners that will poll for messages on any of the queues, these messages will be taken off the queue
@@ -496,12 +525,22 @@ public abstract class AbstractJemo {
 
         //we need to initialize our plugins/modules first and once they are there we will receive messages which they can process as a result
         pluginManager = new JemoPluginManager(this);
+
+        //now that our queue is being polled we can build our view of the cluster and let the other instances know we are here.
+        CLUSTER_MEMBERSHIP.start();
+        EVENT_COUNTERS.start();
+        EVENT_ADMISSION.start();
+        ROUTING_TABLE.start();
     }
 
     public synchronized void stop() throws Exception {
         if (started) {
             LOG("Starting shutdown sequence", Level.INFO);
             this.instanceScheduler.interrupt();
+            ROUTING_TABLE.stop();
+            EVENT_ADMISSION.stop();
+            EVENT_COUNTERS.stop();
+            CLUSTER_MEMBERSHIP.stop();
             SCHEDULER.shutdownNow();
             if (DEFAULT_INSTANCE != null && DEFAULT_INSTANCE.getINSTANCE_ID().equals(getINSTANCE_ID())) {
                 DEFAULT_INSTANCE = null;
@@ -524,6 +563,8 @@ public abstract class AbstractJemo {
             if (queueListenerGroup.activeCount() == 0 && !queueListenerGroup.isDestroyed()) {
                 queueListenerGroup.destroy();
             }
+            //nothing can dispatch work anymore so the threads of the executors can be released.
+            Arrays.asList(HTTP_EXECUTOR, EVENT_EXECUTOR, BATCH_EXECUTOR, BROADCAST_EXECUTOR, FIXED_EXECUTOR).forEach(ExecutorService::shutdownNow);
             LOG("The instance queue: " + INSTANCE_QUEUE_URL + " will be deleted", Level.INFO);
             final CloudProvider cloudProvider = CloudProvider.getInstance();
             if (cloudProvider != null) {
@@ -535,8 +576,37 @@ public abstract class AbstractJemo {
         }
     }
 
-    public ExecutorService getEVENT_EXECUTOR() {
-        return WORK_EXECUTOR;
+    /**
+     * @return the executor events are dispatched on, the threads are shared fairly between the modules with events waiting.
+     */
+    public JemoFairExecutor getEVENT_EXECUTOR() {
+        return EVENT_EXECUTOR;
+    }
+
+    public ExecutorService getHTTP_EXECUTOR() {
+        return HTTP_EXECUTOR;
+    }
+
+    public ExecutorService getBATCH_EXECUTOR() {
+        return BATCH_EXECUTOR;
+    }
+
+    /**
+     * @return the executor broadcast messages are sent to the queues of the other instances on.
+     */
+    public ExecutorService getBROADCAST_EXECUTOR() {
+        return BROADCAST_EXECUTOR;
+    }
+
+    /**
+     * @return the time in milliseconds a broadcast waits for the message to be sent to all of the instances.
+     */
+    public long getBroadcastTimeout() {
+        return BROADCAST_TIMEOUT;
+    }
+
+    public ExecutorService getFIXED_EXECUTOR() {
+        return FIXED_EXECUTOR;
     }
 
     public static final boolean LOCATION_RESERVED(String location) {
@@ -592,30 +662,58 @@ public abstract class AbstractJemo {
 
     public final List<String> runBatch(int moduleId, double moduleVersion, String moduleImplementation) {
         CopyOnWriteArrayList<String> moduleBatchList = new CopyOnWriteArrayList<>();
-        pluginManager.getLiveModuleList(LOCATION).stream()
+        List<ModuleInfo> batchModules = pluginManager.getLiveModuleList(LOCATION).stream()
                 .filter(m -> m.isBatch() && !MODULE_BATCH_BLACKLIST.contains(m.getId() + ":" + m.getVersion() + ":" + m.getImplementation()))
                 .filter(m -> moduleImplementation == null || (m.getId() == moduleId && m.getVersion() == moduleVersion && m.getImplementation().equals(moduleImplementation)))
-                .parallel()
-                .forEach(m -> {
-                    Util.B(null, y -> {
+                .collect(Collectors.toList());
+        if (!batchModules.isEmpty()) {
+            //all of the schedule messages go to the location queue so they are sent together in as few batches as possible.
+            List<JemoMessage> scheduleMsgList = batchModules.stream()
+                    .map(m -> buildRunBatchMessage(m.getId(), m.getImplementation(), moduleVersion))
+                    .collect(Collectors.toList());
+            try {
+                pluginManager.runWithModuleContext(Void.class, x -> {
+                    ServerMessage.send(JemoMessage.LOCATION_LOCALLY, scheduleMsgList);
+                    return null;
+                });
+                batchModules.forEach(m -> moduleBatchList.add(describeBatchModule(m)));
+            } catch (Throwable ex) {
+                //if the batch could not be sent we schedule each module on its own so one failure does not stop the others from running.
+                LOG(Level.WARNING, "[%s] the batch modules could not be scheduled together, they will be scheduled one by one: %s", getClass().getSimpleName(), JemoError.toString(ex));
+                for (int i = 0; i < batchModules.size(); i++) {
+                    final ModuleInfo m = batchModules.get(i);
+                    final JemoMessage scheduleMsg = scheduleMsgList.get(i);
+                    try {
                         pluginManager.runWithModuleContext(Void.class, x -> {
-                            JemoMessage scheduleMsg = new JemoMessage();
-                            scheduleMsg.setModuleClass(Jemo.class.getName());
-                            scheduleMsg.setPluginId(m.getId());
-                            scheduleMsg.getAttributes().put("module_class", m.getImplementation());
-                            scheduleMsg.setPluginVersion(moduleVersion);
                             scheduleMsg.send(JemoMessage.LOCATION_LOCALLY);
                             return null;
                         });
-                        moduleBatchList.add(String.format("MODULE:[id: %d, version: %s, name: %s, implementation: %s]", m.getId(), m.getVersion(), m.getName(), m.getImplementation()));
-                    });
-                });
+                        moduleBatchList.add(describeBatchModule(m));
+                    } catch (Throwable moduleEx) {
+                        LOG(Level.WARNING, "[%s] the batch module %s could not be scheduled: %s", getClass().getSimpleName(), describeBatchModule(m), JemoError.toString(moduleEx));
+                    }
+                }
+            }
+        }
 
         CloudProvider.getInstance().getRuntime().store("SYS-SCHEDULER-LASTRUN-" + LOCATION, System.currentTimeMillis());
 
         return moduleBatchList;
     }
 
+    private static JemoMessage buildRunBatchMessage(int moduleId, String moduleImplementation, double version) {
+        JemoMessage scheduleMsg = new JemoMessage();
+        scheduleMsg.setModuleClass(Jemo.class.getName());
+        scheduleMsg.setPluginId(moduleId);
+        scheduleMsg.getAttributes().put("module_class", moduleImplementation);
+        scheduleMsg.setPluginVersion(version);
+        return scheduleMsg;
+    }
+
+    private static String describeBatchModule(ModuleInfo m) {
+        return String.format("MODULE:[id: %d, version: %s, name: %s, implementation: %s]", m.getId(), m.getVersion(), m.getName(), m.getImplementation());
+    }
+
     public void sendRunBatchMessage(int moduleId, String moduleImplementation, double version, String targetInstanceQueueUrl) {
         Util.B(null, y -> {
             pluginManager.runWithModuleContext(Void.class, x -> {
@@ -631,6 +729,22 @@ public abstract class AbstractJemo {
     }
 
     public final void sys_processMessage(JemoMessage msg) throws Throwable {
+        try {
+            sys_processMessageAsync(msg).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * this method will process a message addressed to this instance, modules run on the calling thread and system messages are
+     * handled before the method returns.
+     *
+     * @param msg the message to process.
+     * @return a future which completes once the message has been processed or exceptionally with the error the module raised.
+     * @throws Throwable if a system message could not be handled.
+     */
+    public final CompletableFuture<Void> sys_processMessageAsync(JemoMessage msg) throws Throwable {
         //implement the scheduler
         msg.setCurrentInstance(INSTANCE_ID);
         msg.setCurrentLocation(LOCATION);
@@ -641,13 +755,16 @@ public abstract class AbstractJemo {
             } else if (msg.getAttributes().containsKey("module_class")) {
                 //this means we should actually run the batch processor on this module (one may not even be defined).
                 msg.setModuleClass((String) msg.getAttributes().get("module_class"));
-                try {
-                    pluginManager.process(msg);
-                } catch (Throwable ex) {
-                    if (!(ex instanceof TooMuchWorkException)) {
-                        LOG(Level.WARNING, "[%d][%s] Failed Batch Job: %s", new Object[]{msg.getPluginId(), msg.getModuleClass(), JemoError.toString(ex)});
+                return pluginManager.processAsync(msg).handle((retval, ex) -> {
+                    final Throwable error = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (error != null && !(error instanceof TooMuchWorkException)) {
+                        LOG(Level.WARNING, "[%d][%s] Failed Batch Job: %s", new Object[]{msg.getPluginId(), msg.getModuleClass(), JemoError.toString(error)});
                     }
-                }
+                    return null;
+                });
+            } else if (msg.getAttributes().containsKey(JemoClusterMembership.EVENT_HEARTBEAT)) {
+                CLUSTER_MEMBERSHIP.processHeartbeat(msg);
+                ROUTING_TABLE.invalidate((String) msg.getAttributes().get(JemoClusterMembership.ATTR_INSTANCE));
             } else if (msg.getAttributes().containsKey(JemoVirtualHostManager.EVENT_RELOAD)) {
                 pluginManager.loadVirtualHostDefinitions();
                 LOG(Level.INFO, "Virtual Host Definitions Reloaded");
@@ -681,18 +798,20 @@ public abstract class AbstractJemo {
                 }
             }
         } else {
-            JemoMessage result = pluginManager.process(msg);
-            if (result != null) {
-                //we should send the return message
-                int sourceId = msg.getSourcePluginId();
-                String sourceInstance = msg.getSourceInstance();
-                int targetId = msg.getPluginId();
-                msg.setSourceInstance(INSTANCE_QUEUE_URL);
-                msg.setPluginId(sourceId);
-                msg.setSourcePluginId(targetId);
-                CloudProvider.getInstance().getRuntime().sendMessage(sourceInstance, toJSONString(msg));
-            }
+            return pluginManager.processAsync(msg).thenAccept(result -> {
+                if (result != null) {
+                    //we should send the return message
+                    int sourceId = msg.getSourcePluginId();
+                    String sourceInstance = msg.getSourceInstance();
+                    int targetId = msg.getPluginId();
+                    msg.setSourceInstance(INSTANCE_QUEUE_URL);
+                    msg.setPluginId(sourceId);
+                    msg.setSourcePluginId(targetId);
+                    Util.B(null, x -> CloudProvider.getInstance().getRuntime().sendMessage(sourceInstance, toJSONString(msg)));
+                }
+            });
         }
+        return CompletableFuture.completedFuture(null);
     }
 
     public String getLOCATION() {
@@ -751,6 +870,14 @@ public abstract class AbstractJemo {
         return LOCATION_QUEUE_URL;
     }
 
+    public String getDEAD_LETTER_QUEUE_NAME() {
+        return DEAD_LETTER_QUEUE_NAME;
+    }
+
+    public String getDEAD_LETTER_QUEUE_URL() {
+        return DEAD_LETTER_QUEUE_URL;
+    }
+
     public JemoPluginManager getPluginManager() {
         if (pluginManager == null) {
             synchronized (this) {
@@ -760,6 +887,53 @@ public abstract class AbstractJemo {
         return pluginManager;
     }
 
+    public JemoClusterMembership getClusterMembership() {
+        return CLUSTER_MEMBERSHIP;
+    }
+
+    public JemoEventCounters getEventCounters() {
+        return EVENT_COUNTERS;
+    }
+
+    public JemoEventAdmission getEventAdmission() {
+        return EVENT_ADMISSION;
+    }
+
+    public JemoRoutingTable getRoutingTable() {
+        return ROUTING_TABLE;
+    }
+
+    public JemoDeadLetterQueue getDeadLetterQueue() {
+        return DEAD_LETTER_QUEUE;
+    }
+
+    /**
+     * @return the codec this instance would like to send messages with, messages are only sent with it to queues whose
+     * instances have all advertised that they can read it.
+     */
+    public JemoMessageCodec getMessageCodec() {
+        return MESSAGE_CODEC;
+    }
+
+    /**
+     * @return the algorithm messages larger than the compression threshold are compressed with or null if compression is disabled.
+     */
+    public MessageCompression getMessageCompression() {
+        return MESSAGE_COMPRESSION;
+    }
+
+    public int getMessageCompressionThreshold() {
+        return MESSAGE_COMPRESSION_THRESHOLD;
+    }
+
+    /**
+     * @return true if events for modules which are loaded on this instance and have room to run here are scheduled locally instead
+     * of being routed through the cluster.
+     */
+    public boolean isLocalFirstDelivery() {
+        return LOCAL_FIRST_DELIVERY;
+    }
+
     public JemoHTTPConnector getHttpServer() {
         return httpServer;
     }
@@ -0,0 +1,96 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * this class describes how the engine may cache the response to a request made to a web service module.
+ *
+ * cached responses are shared by every client of the instance, the url of the request and the values of the vary headers make up
+ * the key of the cache so any header which changes the response (for example Authorization or Accept-Language) must be listed.
+ *
+ * a policy can also coalesce concurrent requests, identical requests which arrive while the first one is still being processed wait
+ * for its response instead of running the module again. a policy with a ttl of 0 coalesces requests without caching the response.
+ */
+public class CachePolicy {
+
+	private final long ttl;
+	private final String[] varyHeaders;
+	private final boolean coalesce;
+
+	private CachePolicy(long ttl,String[] varyHeaders,boolean coalesce) {
+		this.ttl = ttl;
+		this.varyHeaders = varyHeaders;
+		this.coalesce = coalesce;
+	}
+
+	/**
+	 * @return the time in milliseconds a response is served from the cache for.
+	 */
+	public long getTtl() {
+		return ttl;
+	}
+
+	/**
+	 * @return the names of the request headers which are part of the key of the cache.
+	 */
+	public String[] getVaryHeaders() {
+		return varyHeaders.clone();
+	}
+
+	/**
+	 * @return true if identical requests which arrive while a response is being produced share that response.
+	 */
+	public boolean isCoalesce() {
+		return coalesce;
+	}
+
+	public static Builder newInstance() {
+		return new Builder();
+	}
+
+	public static class Builder {
+		private long ttl = TimeUnit.MINUTES.toMillis(1);
+		private String[] varyHeaders = new String[0];
+		private boolean coalesce = false;
+
+		public Builder setTtl(TimeUnit unit,long value) {
+			this.ttl = unit.toMillis(value);
+			return this;
+		}
+
+		public Builder setVaryHeaders(String... varyHeaders) {
+			this.varyHeaders = varyHeaders == null ? new String[0] : varyHeaders.clone();
+			return this;
+		}
+
+		/**
+		 * @param coalesce true if concurrent identical requests should wait for the response of the first one, responses which set a
+		 * cookie or are sent as an error or redirect are never shared.
+		 * @return a reference to the builder.
+		 */
+		public Builder setCoalesce(boolean coalesce) {
+			this.coalesce = coalesce;
+			return this;
+		}
+
+		public CachePolicy build() {
+			return new CachePolicy(Math.max(0, ttl), varyHeaders, coalesce);
+		}
+	}
+}
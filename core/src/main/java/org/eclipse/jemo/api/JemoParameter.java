@@ -27,7 +27,28 @@ public enum JemoParameter {
     LOCATION_TYPE("ECLIPSE_JEMO_LOCATION_TYPE"),
     LOG_LOCAL("ECLIPSE_JEMO_LOG_LOCAL"),
     LOG_OUTPUT("ECLIPSE_JEMO_LOG_OUTPUT"),
-    LOG_LEVEL("ECLIPSE_JEMO_LOG_LEVEL");
+    LOG_LEVEL("ECLIPSE_JEMO_LOG_LEVEL"),
+    MEMBERSHIP_REFRESH("ECLIPSE_JEMO_MEMBERSHIP_REFRESH"),
+    EVENT_COUNTER_PUBLISH("ECLIPSE_JEMO_EVENT_COUNTER_PUBLISH"),
+    QUEUE_POLL_MAX_WAIT("ECLIPSE_JEMO_QUEUE_POLL_MAXWAIT"),
+    QUEUE_POLL_MAX_BATCH("ECLIPSE_JEMO_QUEUE_POLL_MAXBATCH"),
+    HEARTBEAT_INTERVAL("ECLIPSE_JEMO_HEARTBEAT_INTERVAL"),
+    MESSAGE_CODEC("ECLIPSE_JEMO_MESSAGE_CODEC"),
+    MESSAGE_COMPRESSION("ECLIPSE_JEMO_MESSAGE_COMPRESSION"),
+    MESSAGE_COMPRESSION_THRESHOLD("ECLIPSE_JEMO_MESSAGE_COMPRESSION_THRESHOLD"),
+    HTTP_THREADS("ECLIPSE_JEMO_HTTP_THREADS"),
+    EVENT_THREADS("ECLIPSE_JEMO_EVENT_THREADS"),
+    BATCH_THREADS("ECLIPSE_JEMO_BATCH_THREADS"),
+    VIRTUAL_THREADS("ECLIPSE_JEMO_VIRTUAL_THREADS"),
+    HTTP2("ECLIPSE_JEMO_HTTP2"),
+    H2C("ECLIPSE_JEMO_H2C"),
+    HTTP2_MAX_STREAMS("ECLIPSE_JEMO_HTTP2_MAX_STREAMS"),
+    RESPONSE_CACHE_SIZE("ECLIPSE_JEMO_RESPONSE_CACHE_SIZE"),
+    LOCAL_FIRST_DELIVERY("ECLIPSE_JEMO_LOCAL_FIRST_DELIVERY"),
+    ROUTING_TABLE_REFRESH("ECLIPSE_JEMO_ROUTING_TABLE_REFRESH"),
+    ROUTING_TABLE_MAX_STALENESS("ECLIPSE_JEMO_ROUTING_TABLE_MAX_STALENESS"),
+    BROADCAST_THREADS("ECLIPSE_JEMO_BROADCAST_THREADS"),
+    BROADCAST_TIMEOUT("ECLIPSE_JEMO_BROADCAST_TIMEOUT");
 
     private final String label;
 
@@ -19,8 +19,6 @@ package org.eclipse.jemo.api;
 import org.eclipse.jemo.internal.model.JemoMessage;
 import org.eclipse.jemo.internal.model.CloudRuntime;
 
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -34,7 +32,22 @@ import javax.servlet.http.HttpServletResponse;
  * @author christopher stura
  */
 public interface Module {
+    /**
+     * the metadata the engine assigns to a module when it is loaded. the metadata is bound to the class of the module rather than kept in
+     * a shared map, every version of a plugin is loaded by its own class loader so a module class only ever has one id and version.
+     */
     class ModuleInfo {
+        private static final ClassValue<Binding> BINDINGS = new ClassValue<Binding>() {
+            @Override
+            protected Binding computeValue(Class<?> type) {
+                return new Binding();
+            }
+        };
+
+        private static final class Binding {
+            private volatile ModuleInfo info;
+        }
+
         final Logger logger;
         final String name;
         final int id;
@@ -46,12 +59,28 @@ public interface Module {
             this.id = id;
             this.version = version;
         }
-    }
 
-    Map<Module, ModuleInfo> MODULE_INFO_MAP = new HashMap<>();
+        /**
+         * this method will bind the metadata to a module class, the engine calls it before the module is constructed.
+         *
+         * @param moduleClass the class of the module.
+         * @param info the metadata for the module.
+         */
+        public static void bind(Class<? extends Module> moduleClass, ModuleInfo info) {
+            BINDINGS.get(moduleClass).info = info;
+        }
+
+        /**
+         * @param module the module.
+         * @return the metadata bound to the class of the module or null if the module was not loaded by the engine.
+         */
+        public static ModuleInfo of(Module module) {
+            return BINDINGS.get(module.getClass()).info;
+        }
+    }
 
     default void construct(Logger logger, String name, int id, double version) {
-        MODULE_INFO_MAP.put(this, new ModuleInfo(logger, name, id, version));
+        ModuleInfo.bind(getClass(), new ModuleInfo(logger, name, id, version));
     } //lifecycle (called when the module is created for the first time by the kernel)
 
     default void installed() {
@@ -64,7 +93,6 @@ public interface Module {
     } //called whenever the module is started.
 
     default void stop() {
-        MODULE_INFO_MAP.remove(this);
     } //called whenever the module is stopped.
 
     default void process(HttpServletRequest request, HttpServletResponse response) throws Throwable {
@@ -94,11 +122,13 @@ public interface Module {
     } //if the module will respond to http requests the base path for forwarded requests must be returned by this method.
 
     default double getVersion() {
-        return MODULE_INFO_MAP.get(this) == null ? 1.0 : MODULE_INFO_MAP.get(this).version;
+        final ModuleInfo info = ModuleInfo.of(this);
+        return info == null ? 1.0 : info.version;
     }
 
     default int getId() {
-        return MODULE_INFO_MAP.get(this) == null ? 0 : MODULE_INFO_MAP.get(this).id;
+        final ModuleInfo info = ModuleInfo.of(this);
+        return info == null ? 0 : info.id;
     }
 
     //is called when the configuration parameters stored for this module are passed on into the module. Please not configuration is stored on a plugin by plugin basis so if a plugin has more than one module the
@@ -113,16 +143,13 @@ public interface Module {
      * This default method is already a concrete implementation and therefore you should not override it in your module code.
      *
      * @return a reference to the current cloud runtime for the platform you are running on.
-     * @throws ClassNotFoundException    if there was a problem getting access to the runtime component.
-     * @throws NoSuchMethodException     if there was a problem with the underlying runtime components.
-     * @throws IllegalAccessException    if there was an access exception imposed by the configured security manager.
-     * @throws InvocationTargetException if there was a problem accessing the runtime dynamically.
+     * @throws IllegalStateException if the module is not running inside the engine.
      */
     default CloudRuntime getRuntime() {
         try {
-            Class cloudProviderCls = Class.forName("org.eclipse.jemo.internal.model.CloudProvider");
-            Object cloudProvider = cloudProviderCls.getMethod("getInstance").invoke(cloudProviderCls);
-            return CloudRuntime.class.cast(cloudProviderCls.getMethod("getRuntime").invoke(cloudProvider));
+            return (CloudRuntime) ModuleBinding.require(ModuleBinding.GET_RUNTIME, "getRuntime").invokeExact();
+        } catch (RuntimeException ex) {
+            throw ex;
         } catch (Throwable ex) {
             throw new RuntimeException(ex);
         }
@@ -161,7 +188,8 @@ public interface Module {
      * @param msg   the message to log
      */
     default void log(Level level, String msg) {
-        MODULE_INFO_MAP.get(this).logger.log(level, msg);
+        final ModuleInfo info = ModuleInfo.of(this);
+        (info == null ? Logger.getLogger(getClass().getName()) : info.logger).log(level, msg);
     }
 
 }
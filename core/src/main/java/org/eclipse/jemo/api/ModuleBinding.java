@@ -0,0 +1,76 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import org.eclipse.jemo.internal.model.CloudRuntime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * this class holds the entry points into the engine which the default methods of the module interfaces call. the engine classes are
+ * not part of the api so the entry points are looked up by name, but only once when this class is first used rather than by reflection
+ * on every call. each entry point is resolved on its own so a missing one only affects the methods which use it.
+ */
+final class ModuleBinding {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+	/**
+	 * () -> CloudRuntime, the cloud provider is asked for every time as the runtime can be replaced while the engine is running.
+	 */
+	static final MethodHandle GET_RUNTIME = resolveGetRuntime();
+
+	/**
+	 * (Module) -> WebSocketSessions
+	 */
+	static final MethodHandle GET_SESSIONS = resolveGetSessions();
+
+	private ModuleBinding() {}
+
+	private static MethodHandle resolveGetRuntime() {
+		try {
+			final Class cloudProviderCls = Class.forName("org.eclipse.jemo.internal.model.CloudProvider");
+			return MethodHandles.filterReturnValue(LOOKUP.findStatic(cloudProviderCls, "getInstance", MethodType.methodType(cloudProviderCls)),
+				LOOKUP.findVirtual(cloudProviderCls, "getRuntime", MethodType.methodType(CloudRuntime.class)));
+		} catch (ReflectiveOperationException ex) {
+			return null;
+		}
+	}
+
+	private static MethodHandle resolveGetSessions() {
+		try {
+			return LOOKUP.findStatic(Class.forName("org.eclipse.jemo.sys.JemoWebSocketManager"), "getSessions", MethodType.methodType(WebSocketSessions.class, Module.class));
+		} catch (ReflectiveOperationException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param handle the entry point to check.
+	 * @param name the name of the entry point.
+	 * @return the entry point.
+	 * @throws IllegalStateException if the entry point is not available, which is the case when the api is used outside of the engine.
+	 */
+	static MethodHandle require(MethodHandle handle, String name) {
+		if (handle == null) {
+			throw new IllegalStateException(name + " is not available outside of the Jemo engine");
+		}
+		return handle;
+	}
+}
@@ -39,11 +39,17 @@ public class ModuleLimit {
 	protected String[] batchLocations;
 	protected String[] eventLocations;
 	protected String[] fixedLocations;
+	protected RetryPolicy eventRetryPolicy;
+	protected int eventPriority;
+	protected int eventWeight;
+	protected int maxWebSocketConnectionsPerInstance;
+	protected int webSocketSendBuffer;
 	
 	private ModuleLimit(int maxActiveBatchesPerInstance,int maxActiveBatchesPerLocation,int maxActiveBatchesPerGSM,
 		int maxActiveEventsPerInstance,int maxActiveEventsPerLocation,int maxActiveEventsPerGSM,
 		int maxActiveFixedPerInstance,int maxActiveFixedPerLocation,int maxActiveFixedPerGSM,
-		Frequency batchFrequency,Frequency eventFrequency,String[] batchLocations,String[] eventLocations, String[] fixedLocations) {
+		Frequency batchFrequency,Frequency eventFrequency,String[] batchLocations,String[] eventLocations, String[] fixedLocations,
+		RetryPolicy eventRetryPolicy,int eventPriority,int eventWeight,int maxWebSocketConnectionsPerInstance,int webSocketSendBuffer) {
 		this.maxActiveBatchesPerGSM = maxActiveBatchesPerGSM;
 		this.maxActiveBatchesPerInstance = maxActiveBatchesPerInstance;
 		this.maxActiveBatchesPerLocation = maxActiveBatchesPerLocation;
@@ -58,6 +64,11 @@ public class ModuleLimit {
 		this.batchLocations = batchLocations;
 		this.eventLocations = eventLocations;
 		this.fixedLocations = fixedLocations;
+		this.eventRetryPolicy = eventRetryPolicy;
+		this.eventPriority = eventPriority;
+		this.eventWeight = eventWeight;
+		this.maxWebSocketConnectionsPerInstance = maxWebSocketConnectionsPerInstance;
+		this.webSocketSendBuffer = webSocketSendBuffer;
 	}
 	
 	/**
@@ -68,7 +79,9 @@ public class ModuleLimit {
 				 DEFAULT_INSTANCE.getMaxActiveEventsPerInstance(), DEFAULT_INSTANCE.getMaxActiveEventsPerLocation(), DEFAULT_INSTANCE.getMaxActiveEventsPerGSM(),
 				 DEFAULT_INSTANCE.getMaxActiveFixedPerInstance(), DEFAULT_INSTANCE.getMaxActiveFixedPerLocation(), DEFAULT_INSTANCE.getMaxActiveFixedPerGSM(),
 				 DEFAULT_INSTANCE.getBatchFrequency(), DEFAULT_INSTANCE.getEventFrequency(), DEFAULT_INSTANCE.getBatchLocations(), DEFAULT_INSTANCE.getEventLocations(),
-				 DEFAULT_INSTANCE.getFixedLocations());
+				 DEFAULT_INSTANCE.getFixedLocations(), DEFAULT_INSTANCE.getEventRetryPolicy(),
+				 DEFAULT_INSTANCE.getEventPriority(), DEFAULT_INSTANCE.getEventWeight(),
+				 DEFAULT_INSTANCE.getMaxWebSocketConnectionsPerInstance(), DEFAULT_INSTANCE.getWebSocketSendBuffer());
 	}
 
 	public int getMaxActiveBatchesPerInstance() {
@@ -126,6 +139,32 @@ public class ModuleLimit {
 	public String[] getFixedLocations() {
 		return fixedLocations;
 	}
+
+	/**
+	 * @return the policy used to retry events which fail or null if the default policy for the system should be used.
+	 */
+	public RetryPolicy getEventRetryPolicy() {
+		return eventRetryPolicy;
+	}
+
+	public int getEventPriority() {
+		return eventPriority;
+	}
+
+	public int getEventWeight() {
+		return eventWeight;
+	}
+
+	public int getMaxWebSocketConnectionsPerInstance() {
+		return maxWebSocketConnectionsPerInstance;
+	}
+
+	/**
+	 * @return the maximum number of bytes which can be queued on a websocket connection before sends to it are refused.
+	 */
+	public int getWebSocketSendBuffer() {
+		return webSocketSendBuffer;
+	}
 	
 	public static Builder newInstance() {
 		return new Builder();
@@ -150,6 +189,11 @@ public class ModuleLimit {
 		private String[] batchLocations = null;
 		private String[] eventLocations = null;
 		private String[] fixedLocations = null;
+		private RetryPolicy eventRetryPolicy = null;
+		private int eventPriority = 0;
+		private int eventWeight = 1;
+		private int maxWebSocketConnectionsPerInstance = -1;
+		private int webSocketSendBuffer = 1024 * 1024;
 
 		public Builder setMaxActiveBatchesPerInstance(int maxActiveBatchesPerInstance) {
 			this.maxActiveBatchesPerInstance = maxActiveBatchesPerInstance;
@@ -250,10 +294,70 @@ public class ModuleLimit {
 			this.fixedLocations = fixedLocations;
 			return this;
 		}
+
+		/**
+		 * this will tell the engine how events which fail should be retried, events which still fail after the last attempt
+		 * are moved to the dead letter queue of the location they ran in where they can be replayed from.
+		 * 
+		 * @param eventRetryPolicy the retry policy for the events processed by this module.
+		 * @return a reference to the builder.
+		 */
+		public Builder setEventRetryPolicy(RetryPolicy eventRetryPolicy) {
+			this.eventRetryPolicy = eventRetryPolicy;
+			return this;
+		}
+
+		/**
+		 * the events of all the modules running on an instance share the same threads, when there are more events waiting than
+		 * there are threads the events of modules with a higher priority are always started first.
+		 * 
+		 * Please note that a module with a higher priority which is flooded with events will delay the events of all modules below it.
+		 * 
+		 * @param eventPriority the priority of the events of this module, the default is 0.
+		 * @return a reference to the builder.
+		 */
+		public Builder setEventPriority(int eventPriority) {
+			this.eventPriority = eventPriority;
+			return this;
+		}
+
+		/**
+		 * this will tell the engine what share of the event threads this module should receive when other modules with the same
+		 * priority also have events waiting, a module with a weight of 2 will start twice as many events as a module with a weight of 1.
+		 * 
+		 * @param eventWeight the weight of this module between 1 and 1000, the default is 1.
+		 * @return a reference to the builder.
+		 */
+		public Builder setEventWeight(int eventWeight) {
+			this.eventWeight = Math.min(1000, Math.max(1, eventWeight));
+			return this;
+		}
+
+		/**
+		 * this will tell the engine how many websocket connections can be open to this module on each instance, connections
+		 * over the limit are refused with a 503 before they are upgraded.
+		 * 
+		 * @param maxWebSocketConnectionsPerInstance the maximum number of connections on each instance, -1 means there is no limit.
+		 * @return a reference to the builder.
+		 */
+		public Builder setMaxWebSocketConnectionsPerInstance(int maxWebSocketConnectionsPerInstance) {
+			this.maxWebSocketConnectionsPerInstance = maxWebSocketConnectionsPerInstance;
+			return this;
+		}
+
+		/**
+		 * @param webSocketSendBuffer the maximum number of bytes which can be queued on each websocket connection, the default is 1MB.
+		 * @return a reference to the builder.
+		 */
+		public Builder setWebSocketSendBuffer(int webSocketSendBuffer) {
+			this.webSocketSendBuffer = Math.max(1, webSocketSendBuffer);
+			return this;
+		}
 		
 		public ModuleLimit build() {
 			return new ModuleLimit(maxActiveBatchesPerInstance, maxActiveBatchesPerLocation, maxActiveBatchesPerGSM, maxActiveEventsPerInstance, maxActiveEventsPerLocation, maxActiveEventsPerGSM,
-				maxActiveFixedPerInstance, maxActiveFixedPerLocation, maxActiveFixedPerGSM, batchFrequency, eventFrequency, batchLocations, eventLocations, fixedLocations);
+				maxActiveFixedPerInstance, maxActiveFixedPerLocation, maxActiveFixedPerGSM, batchFrequency, eventFrequency, batchLocations, eventLocations, fixedLocations,
+				eventRetryPolicy, eventPriority, eventWeight, maxWebSocketConnectionsPerInstance, webSocketSendBuffer);
 		}
 	}
 }
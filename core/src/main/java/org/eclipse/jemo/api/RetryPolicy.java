@@ -0,0 +1,160 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * this class describes how the engine will retry an event which failed to be processed by a module.
+ *
+ * the delay between attempts grows exponentially from the initial delay up to the maximum delay and a random part of each
+ * delay is removed (jitter) so that events which failed together are not all retried at the same time. once an event has been
+ * executed the maximum number of times it is moved to the dead letter queue of the location where it last ran.
+ */
+public class RetryPolicy {
+	private static final RetryPolicy DEFAULT_INSTANCE = RetryPolicy.newInstance().build();
+
+	protected int maxAttempts;
+	protected long initialDelay;
+	protected long maxDelay;
+	protected double multiplier;
+	protected double jitter;
+
+	private RetryPolicy(int maxAttempts,long initialDelay,long maxDelay,double multiplier,double jitter) {
+		this.maxAttempts = maxAttempts;
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.multiplier = multiplier;
+		this.jitter = jitter;
+	}
+
+	/**
+	 * this constructor will create a new object from the default instance.
+	 */
+	protected RetryPolicy() {
+		this(DEFAULT_INSTANCE.getMaxAttempts(), DEFAULT_INSTANCE.getInitialDelay(), DEFAULT_INSTANCE.getMaxDelay(),
+			DEFAULT_INSTANCE.getMultiplier(), DEFAULT_INSTANCE.getJitter());
+	}
+
+	/**
+	 * @return the maximum number of times an event will be executed including the first execution.
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * @return the delay in milliseconds before the first retry.
+	 */
+	public long getInitialDelay() {
+		return initialDelay;
+	}
+
+	/**
+	 * @return the maximum delay in milliseconds between two attempts.
+	 */
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public double getMultiplier() {
+		return multiplier;
+	}
+
+	/**
+	 * @return the fraction of each delay which is randomised, 0 means no jitter and 1 means the delay can be anything from 0 to the full delay.
+	 */
+	public double getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * @param executionCount the number of times the event has already been executed.
+	 * @return true if the event should be retried.
+	 */
+	public boolean canRetry(int executionCount) {
+		return executionCount < maxAttempts;
+	}
+
+	/**
+	 * @param attempt the number of the retry starting from 1.
+	 * @return the delay in milliseconds before the event is retried.
+	 */
+	public long getDelay(int attempt) {
+		return getDelay(attempt, ThreadLocalRandom.current().nextDouble());
+	}
+
+	/**
+	 * @param attempt the number of the retry starting from 1.
+	 * @param random a random number between 0 and 1.
+	 * @return the delay in milliseconds before the event is retried.
+	 */
+	public long getDelay(int attempt,double random) {
+		double delay = Math.min((double)maxDelay, initialDelay * Math.pow(multiplier, Math.max(0, attempt-1)));
+		return (long)(delay * (1 - jitter * random));
+	}
+
+	public static Builder newInstance() {
+		return new Builder();
+	}
+
+	public static RetryPolicy defaultInstance() {
+		return DEFAULT_INSTANCE;
+	}
+
+	public static class Builder {
+		private int maxAttempts = 10;
+		private long initialDelay = TimeUnit.SECONDS.toMillis(10);
+		private long maxDelay = TimeUnit.MINUTES.toMillis(15);
+		private double multiplier = 2;
+		private double jitter = 0.5;
+
+		public Builder setMaxAttempts(int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		public Builder setInitialDelay(TimeUnit unit,long value) {
+			this.initialDelay = unit.toMillis(value);
+			return this;
+		}
+
+		public Builder setMaxDelay(TimeUnit unit,long value) {
+			this.maxDelay = unit.toMillis(value);
+			return this;
+		}
+
+		/**
+		 * @param multiplier the factor by which the delay grows with each attempt, 1 will retry with a constant delay.
+		 * @return a reference to the builder.
+		 */
+		public Builder setMultiplier(double multiplier) {
+			this.multiplier = Math.max(1, multiplier);
+			return this;
+		}
+
+		public Builder setJitter(double jitter) {
+			this.jitter = Math.min(1, Math.max(0, jitter));
+			return this;
+		}
+
+		public RetryPolicy build() {
+			return new RetryPolicy(maxAttempts, initialDelay, Math.max(initialDelay, maxDelay), multiplier, jitter);
+		}
+	}
+}
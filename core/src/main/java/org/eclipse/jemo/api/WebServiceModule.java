@@ -16,6 +16,8 @@
  ********************************************************************************/
 package org.eclipse.jemo.api;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -29,7 +31,57 @@ public interface WebServiceModule extends Module {
     @Override
     String getBasePath();
 
+    /**
+     * a module must implement either this method or processAsync, the default implementation waits for processAsync to complete.
+     *
+     * @throws UnsupportedOperationException if the module implements neither of the two methods.
+     */
     @Override
-    void process(HttpServletRequest request, HttpServletResponse response) throws Throwable;
+    default void process(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+        //each default calls the other one so a module which implements neither would otherwise recurse until the stack overflows.
+        if (getClass().getMethod("processAsync", HttpServletRequest.class, HttpServletResponse.class).getDeclaringClass() == WebServiceModule.class) {
+            throw new UnsupportedOperationException(getClass().getName() + " must implement either process or processAsync");
+        }
+        try {
+            processAsync(request, response).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * this is the asynchronous variant of process, the engine always calls this method and only considers the request complete when
+     * the future returned completes. a module which waits on slow backend calls should return a future which completes when the response
+     * has been written rather than blocking, the engine thread which called this method is then free to process other requests.
+     *
+     * the module context is only available on the thread which called this method, work done on other threads should be wrapped with
+     * JemoPluginManager.withCurrentContext if it needs it. the request times out if the future does not complete within the http timeout.
+     *
+     * @param request the request to process.
+     * @param response the response to write to.
+     * @return a future which completes when the response has been written or exceptionally if the request failed.
+     * @throws Throwable if the request failed before any asynchronous work was started.
+     */
+    default CompletableFuture<Void> processAsync(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+        process(request, response);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * this method will allow a module to have the responses to its idempotent requests cached by the engine, it is called for every
+     * GET and HEAD request before the request is processed.
+     * <p>
+     * only 200 responses to GET requests which do not set a cookie are cached and they are served with an ETag so clients can revalidate
+     * them with If-None-Match. the cached responses of a module are discarded when it is upgraded or unloaded.
+     * <p>
+     * a policy which coalesces requests lets identical requests which arrive while the response is being produced share it, this is
+     * useful for expensive endpoints even when the response can only be cached for a very short time or not at all (a ttl of 0).
+     *
+     * @param request the request about to be processed.
+     * @return how the response to this request can be cached or null if it must not be cached, which is the default.
+     */
+    default CachePolicy getCachePolicy(HttpServletRequest request) {
+        return null;
+    }
 
 }
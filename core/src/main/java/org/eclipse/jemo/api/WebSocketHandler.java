@@ -0,0 +1,41 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+/**
+ * receives the messages of a single websocket connection.
+ *
+ * a handler is created for each connection by WebSocketModule.onConnect, the callbacks for a connection are never called
+ * concurrently and the next message is not read from the connection until the previous callback has returned.
+ */
+public interface WebSocketHandler {
+
+    default void onText(WebSocketSession session, String message) throws Throwable {
+    }
+
+    default void onBinary(WebSocketSession session, byte[] data) throws Throwable {
+    }
+
+    /**
+     * called when the connection has been closed by either side, it is called exactly once for every handler.
+     */
+    default void onClose(WebSocketSession session, int statusCode, String reason) throws Throwable {
+    }
+
+    default void onError(WebSocketSession session, Throwable error) throws Throwable {
+    }
+}
@@ -0,0 +1,69 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Models the WebSocket development pattern.
+ *
+ * websocket connections are routed with the same endpoints and virtual hosts as http requests, a connection made to the base path
+ * of this module is handed to onConnect which returns the handler for the messages of that connection. the number of connections
+ * open to the module on each instance is limited by ModuleLimit.getMaxWebSocketConnectionsPerInstance.
+ */
+public interface WebSocketModule extends Module {
+
+    @Override
+    String getBasePath();
+
+    /**
+     * this method is called when a new connection has been opened to this module.
+     *
+     * @param session the new connection.
+     * @return the handler for the messages of this connection or null to refuse the connection.
+     * @throws Throwable if the connection could not be set up, the connection is then closed.
+     */
+    WebSocketHandler onConnect(WebSocketSession session) throws Throwable;
+
+    /**
+     * plain http requests to the base path of a websocket module are answered with 426 Upgrade Required.
+     */
+    @Override
+    default void process(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+        response.setHeader("Upgrade", "websocket");
+        response.sendError(426, "this endpoint only accepts websocket connections");
+    }
+
+    /**
+     * this method will give a module access to the websocket connections open to it on this instance, it can be used to push
+     * messages to clients from any of the module's lifecycle methods.
+     * <p>
+     * This default method is already a concrete implementation and therefore you should not override it in your module code.
+     *
+     * @return the connections open to this module on this instance.
+     */
+    default WebSocketSessions getSessions() {
+        try {
+            return (WebSocketSessions) ModuleBinding.require(ModuleBinding.GET_SESSIONS, "getSessions").invokeExact((Module) this);
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
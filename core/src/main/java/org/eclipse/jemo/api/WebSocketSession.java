@@ -0,0 +1,87 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * a websocket connection to a module running on this instance.
+ *
+ * sends never block, the messages are queued on the connection and written in the background. each session has a send buffer
+ * (see ModuleLimit.getWebSocketSendBuffer) and a send made while the buffer is full fails straight away with a
+ * RejectedExecutionException, a module pushing updates should check isWritable and skip or coalesce updates for slow clients
+ * rather than queueing without bound.
+ */
+public interface WebSocketSession {
+
+    /**
+     * @return a unique identifier for this connection.
+     */
+    String getId();
+
+    /**
+     * @return the path of the request which opened this connection.
+     */
+    String getRequestURI();
+
+    /**
+     * @return the query string of the request which opened this connection or null if there was none.
+     */
+    String getQueryString();
+
+    /**
+     * @param name the name of the header.
+     * @return the value of a header of the request which opened this connection or null if the header was not present.
+     */
+    String getHeader(String name);
+
+    String getRemoteAddress();
+
+    boolean isOpen();
+
+    /**
+     * @return true if the send buffer of this session has room for more messages.
+     */
+    boolean isWritable();
+
+    /**
+     * @return the number of bytes queued on this session which have not been written yet.
+     */
+    long getBufferedAmount();
+
+    /**
+     * @param message the text message to send.
+     * @return a future which completes when the message has been written or exceptionally if it could not be sent.
+     */
+    CompletableFuture<Void> sendText(String message);
+
+    /**
+     * @param data the binary message to send.
+     * @return a future which completes when the message has been written or exceptionally if it could not be sent.
+     */
+    CompletableFuture<Void> sendBinary(byte[] data);
+
+    /**
+     * @param statusCode the websocket close code.
+     * @param reason a short description of why the connection is being closed.
+     */
+    void close(int statusCode, String reason);
+
+    default void close() {
+        close(1000, null);
+    }
+}
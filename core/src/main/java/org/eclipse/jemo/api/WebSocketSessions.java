@@ -0,0 +1,49 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.Collection;
+
+/**
+ * the websocket connections open to a module on this instance.
+ */
+public interface WebSocketSessions {
+
+    /**
+     * @return a snapshot of the open connections.
+     */
+    Collection<WebSocketSession> getSessions();
+
+    int size();
+
+    /**
+     * this method will send a text message to every open connection, connections whose send buffer is full are skipped so that
+     * a slow client never holds up the others.
+     *
+     * @param message the message to send.
+     * @return the number of connections the message was queued on.
+     */
+    int broadcastText(String message);
+
+    /**
+     * this method will send a binary message to every open connection, connections whose send buffer is full are skipped.
+     *
+     * @param data the message to send.
+     * @return the number of connections the message was queued on.
+     */
+    int broadcastBinary(byte[] data);
+}
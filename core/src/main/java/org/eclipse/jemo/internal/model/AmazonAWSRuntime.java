@@ -78,10 +78,16 @@ import com.amazonaws.services.sqs.AmazonSQSAsyncClientBuilder;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.amazonaws.services.sqs.model.CreateQueueRequest;
 import com.amazonaws.services.sqs.model.CreateQueueResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
 import com.amazonaws.services.sqs.model.GetQueueUrlRequest;
 import com.amazonaws.services.sqs.model.QueueAttributeName;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.amazonaws.services.sqs.model.SetQueueAttributesRequest;
 import com.amazonaws.util.EC2MetadataUtils;
 import org.eclipse.jemo.AbstractJemo;
@@ -119,6 +125,7 @@ import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -401,6 +408,8 @@ public class AmazonAWSRuntime implements CloudRuntime {
     private AmazonEC2 ec2_client;
     private String AWS_ACCOUNT_ID;
     private String SQS_DATA_BUCKET;
+    private static final int SQS_MAX_BATCH_SIZE = 10;
+    private static final int SQS_MAX_BATCH_BYTES = 262144;
     private ScheduledExecutorService LOG_SCHEDULER = Executors.newScheduledThreadPool(1); //make sure that only one scheduled action is run at once.
     private boolean pluginBucketInitialized = false;
     private String logSequenceToken = null;
@@ -412,6 +421,18 @@ public class AmazonAWSRuntime implements CloudRuntime {
         AWSREGION = Util.readParameterFromJvmOrEnv(AWS_REGION_PROP);
     }
 
+    /**
+     * this constructor will create a runtime which uses the sqs clients passed to it rather than building clients for the aws account.
+     *
+     * @param sqs the client used for synchronous queue operations.
+     * @param sqsAsync the client used to poll queues.
+     */
+    AmazonAWSRuntime(AmazonSQS sqs, AmazonSQSAsync sqsAsync) {
+        this();
+        this.sqs_client = sqs;
+        this.sqs_async_client = sqsAsync;
+    }
+
     @Override
     public void start(AbstractJemo jemoServer) {
         if (isInitialized) {
@@ -568,9 +589,9 @@ public class AmazonAWSRuntime implements CloudRuntime {
         return buildClient(AmazonS3.class, AmazonS3ClientBuilder.standard(), region);
     }
 
-    private ReceiveMessageRequest createReceiveRequest(String queueUrl) {
+    private ReceiveMessageRequest createReceiveRequest(String queueUrl, int maxMessages) {
         ReceiveMessageRequest req = new ReceiveMessageRequest(queueUrl);
-        req.setMaxNumberOfMessages(10); //process 10 messages at the same time.
+        req.setMaxNumberOfMessages(Math.max(1, Math.min(SQS_MAX_BATCH_SIZE, maxMessages)));
         req.setWaitTimeSeconds(20); //wait 20 seconds for messages
         req.setVisibilityTimeout(5); //any message we retrieve will not be visible to other workers for 5 seconds, we will however delete it immediately
         return req;
@@ -722,6 +743,64 @@ public class AmazonAWSRuntime implements CloudRuntime {
         }
     }
 
+    /**
+     * sqs will accept at most 10 messages and 256KB in a single batch so messages are grouped to fit those limits, large messages are
+     * stored on S3 in the same way as they are when sent on their own. any message the batch could not deliver is retried on its own.
+     */
+    @Override
+    public List<String> sendMessages(String queueId, List<String> jsonMessages) {
+        final String[] messageIds = new String[jsonMessages.size()];
+        final List<SendMessageBatchRequestEntry> batch = new ArrayList<>();
+        int batchBytes = 0;
+        for (int i = 0; i < jsonMessages.size(); i++) {
+            String body = jsonMessages.get(i);
+            int bodyBytes = body.getBytes(StandardCharsets.UTF_8).length;
+            if (bodyBytes > 250000) {
+                String msgId = UUID.randomUUID().toString();
+                store(SQS_DATA_BUCKET, msgId, body);
+                body = msgId;
+                bodyBytes = msgId.length();
+            }
+            if (batch.size() == SQS_MAX_BATCH_SIZE || batchBytes + bodyBytes > SQS_MAX_BATCH_BYTES) {
+                sendMessageBatch(queueId, batch, jsonMessages, messageIds);
+                batch.clear();
+                batchBytes = 0;
+            }
+            batch.add(new SendMessageBatchRequestEntry(String.valueOf(i), body));
+            batchBytes += bodyBytes;
+        }
+        if (!batch.isEmpty()) {
+            sendMessageBatch(queueId, batch, jsonMessages, messageIds);
+        }
+
+        return asList(messageIds);
+    }
+
+    private void sendMessageBatch(String queueId, List<SendMessageBatchRequestEntry> batch, List<String> jsonMessages, String[] messageIds) {
+        SendMessageBatchResult result = getSQS().sendMessageBatch(new SendMessageBatchRequest(queueId, new ArrayList<>(batch)));
+        result.getSuccessful().forEach(entry -> messageIds[Integer.parseInt(entry.getId())] = entry.getMessageId());
+        result.getFailed().forEach(entry -> {
+            LOG(Level.FINE, "[%s][%s] a message could not be sent in a batch %s it will be sent on its own.", getClass().getSimpleName(), queueId, entry.getMessage());
+            int idx = Integer.parseInt(entry.getId());
+            messageIds[idx] = sendMessage(queueId, jsonMessages.get(idx));
+        });
+    }
+
+    /**
+     * deletes all of the messages received by a single poll with one call, any message which the batch could not delete is deleted on its own.
+     */
+    private void deleteMessageBatch(String queueId, List<com.amazonaws.services.sqs.model.Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        final List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(new DeleteMessageBatchRequestEntry(String.valueOf(i), messages.get(i).getReceiptHandle()));
+        }
+        DeleteMessageBatchResult result = getSQS().deleteMessageBatch(new DeleteMessageBatchRequest(queueId, entries));
+        result.getFailed().forEach(entry -> getSQS().deleteMessage(queueId, messages.get(Integer.parseInt(entry.getId())).getReceiptHandle()));
+    }
+
     @Override
     public String getQueueId(String queueName) {
         try {
@@ -735,13 +814,23 @@ public class AmazonAWSRuntime implements CloudRuntime {
     @Override
     public List<String> listQueueIds(String location, boolean includeWorkQueues) {
         return getSQS().listQueues("JEMO-" + (location == null ? "" : location)).getQueueUrls().parallelStream().filter((q) -> {
-            return !q.endsWith("-WORK-QUEUE") || includeWorkQueues;
+            return (!q.endsWith("-WORK-QUEUE") || includeWorkQueues) && !q.endsWith(DEAD_LETTER_QUEUE_SUFFIX);
         }).collect(toList());
     }
 
     @Override
     public int pollQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException {
-        ReceiveMessageRequest req = createReceiveRequest(queueId);
+        return pollQueue(queueId, processor, 10); //process 10 messages at the same time.
+    }
+
+    @Override
+    public int getMaxPollSize() {
+        return SQS_MAX_BATCH_SIZE; //sqs will return at most 10 messages for each request.
+    }
+
+    @Override
+    public int pollQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
+        ReceiveMessageRequest req = createReceiveRequest(queueId, maxMessages);
         final Holder<Integer> messagesProcessed = new Holder<>(0);
         try {
             getSQSAsync().receiveMessageAsync(req, new AsyncHandler<ReceiveMessageRequest, ReceiveMessageResult>() {
@@ -754,23 +843,23 @@ public class AmazonAWSRuntime implements CloudRuntime {
 
                 @Override
                 public void onSuccess(ReceiveMessageRequest request, ReceiveMessageResult result) {
+                    messagesProcessed.value = result.getMessages().size();
+                    deleteMessageBatch(queueId, result.getMessages()); //first we delete so nobody else will get this message.
                     result.getMessages().parallelStream().forEach((msg) -> {
-                        messagesProcessed.value++;
-                        getSQS().deleteMessage(queueId, msg.getReceiptHandle()); //first we delete so nobody else will get this message.
                         JemoMessage ccMsg = null;
                         int executionCount = 0;
                         try {
-                            //the body will actually be a JSON specified message which will contain some standard data
+                            //the body will actually be an encoded message or the key of a large message stored on S3
                             String msgId = msg.getBody();
-                            if (!msgId.startsWith("{")) {
+                            if (!JemoMessageCodec.isMessage(msgId)) {
                                 try {
-                                    ccMsg = Jemo.fromJSONString(JemoMessage.class, retrieve(SQS_DATA_BUCKET, msgId, String.class));
+                                    ccMsg = JemoMessageCodec.read(retrieve(SQS_DATA_BUCKET, msgId, String.class));
                                 } finally {
                                     delete(SQS_DATA_BUCKET, msgId);
                                 }
                             } else {
                                 //legacy message processing.
-                                ccMsg = Jemo.fromJSONString(JemoMessage.class, msg.getBody());
+                                ccMsg = JemoMessageCodec.read(msg.getBody());
                             }
                         } catch (IOException jsonEx) {
                         }
@@ -0,0 +1,424 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.eclipse.jemo.sys.internal.Util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * a compact binary encoding of a message.
+ *
+ * the fixed fields of the message are written in a fixed order without any names, integers are written as variable length
+ * zig-zag numbers and message ids which are uuids are written as 16 bytes. attributes are written as a tree of tagged values and
+ * every string is only written once per message, later occurrences (like the keys of a list of maps) refer back to the first one.
+ *
+ * attributes are decoded to exactly the same types the json codec would produce (integers which fit in an int become
+ * Integer, decimals become Double, maps become LinkedHashMap and collections become ArrayList) so a module will see the same
+ * message whichever codec it was sent with. values of any other type are converted through jackson in the same way as
+ * they would be when written as json.
+ *
+ * the bytes are base64 encoded as the queues of all the cloud runtimes only accept text.
+ */
+public class BinaryMessageCodec implements JemoMessageCodec {
+
+	public static final String PREFIX = "~jmb1:"; //json can never start with a ~ and the number is the version of the format.
+
+	private static final int TAG_NULL = 0;
+	private static final int TAG_TRUE = 1;
+	private static final int TAG_FALSE = 2;
+	private static final int TAG_INT = 3;
+	private static final int TAG_LONG = 4;
+	private static final int TAG_DOUBLE = 5;
+	private static final int TAG_STRING = 6;
+	private static final int TAG_LIST = 7;
+	private static final int TAG_MAP = 8;
+	private static final int TAG_BIG_INTEGER = 9;
+
+	private static final int STRING_NULL = 0;
+	private static final int STRING_NEW = 1; //anything above this is a reference to a string which has already been written.
+
+	@Override
+	public String getName() {
+		return "binary";
+	}
+
+	@Override
+	public boolean canDecode(String payload) {
+		return payload.startsWith(PREFIX);
+	}
+
+	@Override
+	public String toPayload(byte[] data) {
+		return PREFIX + Base64.getEncoder().encodeToString(data);
+	}
+
+	@Override
+	public JemoMessage decode(String payload) throws IOException {
+		try {
+			return fromBytes(Base64.getDecoder().decode(payload.substring(PREFIX.length())));
+		} catch(IllegalArgumentException | IndexOutOfBoundsException ex) {
+			throw new IOException("the payload is not a valid binary message", ex);
+		}
+	}
+
+	@Override
+	public byte[] toBytes(JemoMessage message) throws IOException {
+		Writer out = new Writer();
+		UUID uuid = asUUID(message.getId());
+		if(uuid != null) {
+			out.writeByte(1);
+			out.writeLong(uuid.getMostSignificantBits());
+			out.writeLong(uuid.getLeastSignificantBits());
+		} else {
+			out.writeByte(0);
+			out.writeString(message.getId());
+		}
+		out.writeVarLong(message.getPluginId());
+		out.writeDouble(message.getPluginVersion());
+		out.writeString(message.getModuleClass());
+		out.writeString(message.getLastError() == null ? null : Util.toJSONString(message.getLastError()));
+		out.writeVarLong(message.getExecutionCount());
+		out.writeVarLong(message.getLastRunTime());
+		out.writeString(message.getLastRunInstance());
+		out.writeVarLong(message.getSourcePluginId());
+		out.writeDouble(message.getSourcePluginVersion());
+		out.writeString(message.getSourceInstance());
+		out.writeString(message.getSourceModuleClass());
+		out.writeValue(message.getAttributes());
+		return out.toByteArray();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public JemoMessage fromBytes(byte[] data) throws IOException {
+		Reader in = new Reader(data);
+		JemoMessage message = new JemoMessage();
+		if(in.readByte() == 1) {
+			message.setId(new UUID(in.readLong(), in.readLong()).toString());
+		} else {
+			message.setId(in.readString());
+		}
+		message.setPluginId((int) in.readVarLong());
+		message.setPluginVersion(in.readDouble());
+		message.setModuleClass(in.readString());
+		String lastError = in.readString();
+		message.json_setLastError(lastError == null ? null : Util.fromJSONString(JemoError.class, lastError));
+		message.setExecutionCount((int) in.readVarLong());
+		message.setLastRunTime(in.readVarLong());
+		message.setLastRunInstance(in.readString());
+		message.setSourcePluginId((int) in.readVarLong());
+		message.setSourcePluginVersion(in.readDouble());
+		message.setSourceInstance(in.readString());
+		message.setSourceModuleClass(in.readString());
+		Object attributes = in.readValue();
+		if(attributes instanceof Map) {
+			message.setAttributes((Map<String,Object>) attributes);
+		}
+		return message;
+	}
+
+	private static UUID asUUID(String id) {
+		if(id != null && id.length() == 36) {
+			try {
+				UUID uuid = UUID.fromString(id);
+				if(uuid.toString().equals(id)) {
+					return uuid;
+				}
+			} catch(IllegalArgumentException ex) {}
+		}
+		return null;
+	}
+
+	private static final class Writer {
+		private byte[] buf = new byte[256];
+		private int pos = 0;
+		private final Map<String,Integer> strings = new HashMap<>();
+
+		private void ensure(int length) {
+			if(pos + length > buf.length) {
+				byte[] newBuf = new byte[Math.max(buf.length * 2, pos + length)];
+				System.arraycopy(buf, 0, newBuf, 0, pos);
+				buf = newBuf;
+			}
+		}
+
+		private void writeByte(int b) {
+			ensure(1);
+			buf[pos++] = (byte) b;
+		}
+
+		private void writeLong(long v) {
+			ensure(8);
+			for(int shift = 56; shift >= 0; shift -= 8) {
+				buf[pos++] = (byte) (v >>> shift);
+			}
+		}
+
+		private void writeDouble(double v) {
+			writeLong(Double.doubleToLongBits(v));
+		}
+
+		private void writeVarLong(long v) {
+			long zigzag = (v << 1) ^ (v >> 63);
+			ensure(10);
+			while((zigzag & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+				zigzag >>>= 7;
+			}
+			buf[pos++] = (byte) zigzag;
+		}
+
+		private void writeString(String str) {
+			if(str == null) {
+				writeVarLong(STRING_NULL);
+				return;
+			}
+			Integer ref = strings.get(str);
+			if(ref != null) {
+				writeVarLong(ref);
+				return;
+			}
+			strings.put(str, STRING_NEW + 1 + strings.size());
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(STRING_NEW);
+			writeVarLong(bytes.length);
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		private void writeInteger(BigInteger value) {
+			if(value.bitLength() < 32) {
+				writeByte(TAG_INT);
+				writeVarLong(value.intValue());
+			} else if(value.bitLength() < 64) {
+				writeByte(TAG_LONG);
+				writeVarLong(value.longValue());
+			} else {
+				writeByte(TAG_BIG_INTEGER);
+				writeString(value.toString());
+			}
+		}
+
+		private void writeValue(Object value) {
+			if(value == null) {
+				writeByte(TAG_NULL);
+			} else if(value instanceof String || value instanceof Character) {
+				writeByte(TAG_STRING);
+				writeString(value.toString());
+			} else if(value instanceof Boolean) {
+				writeByte(((Boolean) value) ? TAG_TRUE : TAG_FALSE);
+			} else if(value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				writeByte(TAG_INT);
+				writeVarLong(((Number) value).intValue());
+			} else if(value instanceof Long) {
+				long v = (Long) value;
+				writeByte(v == (int) v ? TAG_INT : TAG_LONG); //json would read a long which fits in an int back as an int.
+				writeVarLong(v);
+			} else if(value instanceof BigInteger) {
+				writeInteger((BigInteger) value);
+			} else if(value instanceof Float) {
+				writeByte(TAG_DOUBLE);
+				writeDouble(Double.parseDouble(value.toString())); //this is how json would write and read a float.
+			} else if(value instanceof Double || value instanceof BigDecimal) {
+				writeByte(TAG_DOUBLE);
+				writeDouble(((Number) value).doubleValue());
+			} else if(value instanceof Map) {
+				Map<?,?> map = (Map<?,?>) value;
+				writeByte(TAG_MAP);
+				writeVarLong(map.size());
+				for(Map.Entry<?,?> entry : map.entrySet()) {
+					writeString(String.valueOf(entry.getKey()));
+					writeValue(entry.getValue());
+				}
+			} else if(value instanceof Collection) {
+				Collection<?> list = (Collection<?>) value;
+				writeByte(TAG_LIST);
+				writeVarLong(list.size());
+				for(Object item : list) {
+					writeValue(item);
+				}
+			} else if(value instanceof Object[]) {
+				Object[] list = (Object[]) value;
+				writeByte(TAG_LIST);
+				writeVarLong(list.length);
+				for(Object item : list) {
+					writeValue(item);
+				}
+			} else if(value instanceof JsonNode) {
+				writeNode((JsonNode) value);
+			} else {
+				//anything else is written as the tree jackson would have written as json.
+				writeNode(Util.mapper.valueToTree(value));
+			}
+		}
+
+		private void writeNode(JsonNode node) {
+			if(node == null || node.isNull() || node.isMissingNode()) {
+				writeByte(TAG_NULL);
+			} else if(node.isBoolean()) {
+				writeByte(node.booleanValue() ? TAG_TRUE : TAG_FALSE);
+			} else if(node.isIntegralNumber()) {
+				writeInteger(node.bigIntegerValue());
+			} else if(node.isNumber()) {
+				writeByte(TAG_DOUBLE);
+				writeDouble(node.isFloat() ? Double.parseDouble(Float.toString(node.floatValue())) : node.doubleValue());
+			} else if(node.isObject()) {
+				writeByte(TAG_MAP);
+				writeVarLong(node.size());
+				Iterator<Map.Entry<String,JsonNode>> fields = node.fields();
+				while(fields.hasNext()) {
+					Map.Entry<String,JsonNode> field = fields.next();
+					writeString(field.getKey());
+					writeNode(field.getValue());
+				}
+			} else if(node.isArray()) {
+				writeByte(TAG_LIST);
+				writeVarLong(node.size());
+				for(JsonNode item : node) {
+					writeNode(item);
+				}
+			} else {
+				writeByte(TAG_STRING);
+				writeString(node.asText());
+			}
+		}
+
+		private byte[] toByteArray() {
+			byte[] result = new byte[pos];
+			System.arraycopy(buf, 0, result, 0, pos);
+			return result;
+		}
+	}
+
+	private static final class Reader {
+		private final byte[] buf;
+		private int pos = 0;
+		private final List<String> strings = new ArrayList<>();
+
+		private Reader(byte[] buf) {
+			this.buf = buf;
+		}
+
+		private int readByte() {
+			return buf[pos++] & 0xFF;
+		}
+
+		private long readLong() {
+			long v = 0;
+			for(int i = 0; i < 8; i++) {
+				v = (v << 8) | (buf[pos++] & 0xFF);
+			}
+			return v;
+		}
+
+		private double readDouble() {
+			return Double.longBitsToDouble(readLong());
+		}
+
+		private long readVarLong() throws IOException {
+			long zigzag = 0;
+			for(int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				zigzag |= (long) (b & 0x7F) << shift;
+				if((b & 0x80) == 0) {
+					return (zigzag >>> 1) ^ -(zigzag & 1);
+				}
+			}
+			throw new IOException("malformed variable length number at position " + pos);
+		}
+
+		private int readSize() throws IOException {
+			long size = readVarLong();
+			if(size < 0 || size > buf.length - pos) {
+				throw new IOException("invalid length " + size + " at position " + pos);
+			}
+			return (int) size;
+		}
+
+		private String readString() throws IOException {
+			long ref = readVarLong();
+			if(ref == STRING_NULL) {
+				return null;
+			} else if(ref == STRING_NEW) {
+				int length = readSize();
+				String str = new String(buf, pos, length, StandardCharsets.UTF_8);
+				pos += length;
+				strings.add(str);
+				return str;
+			} else if(ref > STRING_NEW && ref - STRING_NEW - 1 < strings.size()) {
+				return strings.get((int) (ref - STRING_NEW - 1));
+			}
+			throw new IOException("invalid string reference " + ref + " at position " + pos);
+		}
+
+		private Object readValue() throws IOException {
+			int tag = readByte();
+			switch(tag) {
+				case TAG_NULL:
+					return null;
+				case TAG_TRUE:
+					return Boolean.TRUE;
+				case TAG_FALSE:
+					return Boolean.FALSE;
+				case TAG_INT:
+					return (int) readVarLong();
+				case TAG_LONG:
+					return readVarLong();
+				case TAG_DOUBLE:
+					return readDouble();
+				case TAG_STRING:
+					return readString();
+				case TAG_BIG_INTEGER:
+					return new BigInteger(readString());
+				case TAG_LIST: {
+					int size = readSize();
+					List<Object> list = new ArrayList<>(size);
+					for(int i = 0; i < size; i++) {
+						list.add(readValue());
+					}
+					return list;
+				}
+				case TAG_MAP: {
+					int size = readSize();
+					Map<String,Object> map = new LinkedHashMap<>();
+					for(int i = 0; i < size; i++) {
+						String key = readString();
+						map.put(key, readValue());
+					}
+					return map;
+				}
+				default:
+					throw new IOException("unknown value type " + tag + " at position " + (pos - 1));
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * this class describes what happened to a broadcast message at each of the instances it was sent to.
+ */
+public class BroadcastResult {
+
+	public enum Status {
+		DELIVERED, //the message was put on the queue of the instance or scheduled if the instance is this one.
+		SKIPPED, //the module the message is for does not run on the instance.
+		FAILED,
+		TIMED_OUT
+	}
+
+	public static class Target {
+		private final String instanceId;
+		private final String location;
+		private final String queueId;
+		private Status status = Status.FAILED;
+		private String error = null;
+
+		private Target(String instanceId, String location, String queueId) {
+			this.instanceId = instanceId;
+			this.location = location;
+			this.queueId = queueId;
+		}
+
+		public String getInstanceId() {
+			return instanceId;
+		}
+
+		public String getLocation() {
+			return location;
+		}
+
+		public String getQueueId() {
+			return queueId;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		/**
+		 * @return the reason the message could not be delivered or null if it was delivered.
+		 */
+		public String getError() {
+			return error;
+		}
+
+		void setStatus(Status status, String error) {
+			this.status = status;
+			this.error = error;
+		}
+	}
+
+	private final String location;
+	private final List<Target> targets = new ArrayList<>();
+
+	BroadcastResult(String location) {
+		this.location = location;
+	}
+
+	Target addTarget(String instanceId, String location, String queueId) {
+		Target target = new Target(instanceId, location, queueId);
+		targets.add(target);
+		return target;
+	}
+
+	/**
+	 * @return the location the message was broadcast to.
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	public List<Target> getTargets() {
+		return Collections.unmodifiableList(targets);
+	}
+
+	public List<Target> getTargets(Status status) {
+		return targets.stream().filter(t -> t.status == status).collect(Collectors.toList());
+	}
+
+	/**
+	 * @return true if every instance which runs the module the message is for received it.
+	 */
+	public boolean isSuccessful() {
+		return targets.stream().allMatch(t -> t.status == Status.DELIVERED || t.status == Status.SKIPPED);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s delivered %d skipped %d failed %d timed out %d", location, getTargets(Status.DELIVERED).size(), getTargets(Status.SKIPPED).size(),
+			getTargets(Status.FAILED).size(), getTargets(Status.TIMED_OUT).size());
+	}
+}
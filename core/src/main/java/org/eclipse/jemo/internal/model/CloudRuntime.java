@@ -77,6 +77,18 @@ public interface CloudRuntime {
 
     String sendMessage(String queueId, String jsonMessage);
 
+    /**
+     * this method will send several messages to the same queue, runtimes which support sending messages in batches should
+     * override this so that a single call is made to the cloud provider for each batch.
+     *
+     * @param queueId the id of the queue to send the messages to
+     * @param jsonMessages the string bodies of the messages to send
+     * @return the ids of the messages that were deposited in the same order as the messages were given.
+     */
+    default List<String> sendMessages(String queueId, List<String> jsonMessages) {
+        return jsonMessages.stream().map(msg -> sendMessage(queueId, msg)).collect(Collectors.toList());
+    }
+
     /**
      * this method will return the corresponding id for the queueName which was passed,
      * this method does not guarantee that the queue actually exists but will return an id that can be used for the other methods.
@@ -88,6 +100,8 @@ public interface CloudRuntime {
      */
     String getQueueId(String queueName);
 
+    String DEAD_LETTER_QUEUE_SUFFIX = "-DEAD-LETTER-QUEUE";
+
     default List<String> listQueueIds(String location) {
         return listQueueIds(location, false);
     }
@@ -100,10 +114,39 @@ public interface CloudRuntime {
      */
     String getQueueName(String queueId);
 
+    /**
+     * the dead letter queue of a location is neither a work queue nor the queue of an instance so it is never returned by this method,
+     * its name always ends with DEAD_LETTER_QUEUE_SUFFIX.
+     *
+     * @param location the location to list the queues of or null for all locations.
+     * @param includeWorkQueues true if the work queues of the locations should be returned as well as the instance queues.
+     * @return the ids of the queues.
+     */
     List<String> listQueueIds(String location, boolean includeWorkQueues);
 
     int pollQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException;
 
+    /**
+     * this method will poll a queue for at most the number of messages specified, runtimes which cannot control the number of
+     * messages they retrieve will simply poll the queue as they normally would.
+     *
+     * @param queueId the id of the queue to poll
+     * @param processor the processor which will receive each message
+     * @param maxMessages the maximum number of messages the caller is ready to process
+     * @return the number of messages which were retrieved from the queue
+     * @throws QueueDoesNotExistException if the queue does not exist
+     */
+    default int pollQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
+        return pollQueue(queueId, processor);
+    }
+
+    /**
+     * @return the largest number of messages a single poll of a queue can return.
+     */
+    default int getMaxPollSize() {
+        return 10; //this is the number of messages the runtimes retrieved before the number could be chosen.
+    }
+
     boolean hasNoSQLTable(String tableName);
 
     void createNoSQLTable(String tableName);
@@ -310,7 +310,7 @@ public class GCPRuntime implements CloudRuntime {
                     final int index = id.lastIndexOf('/');
                     final String name = id.substring(index + 1);
                     return name.startsWith(prefix) &&
-                            (!name.endsWith("-WORK-QUEUE") || includeWorkQueues);
+                            (!name.endsWith("-WORK-QUEUE") || includeWorkQueues) && !name.endsWith(DEAD_LETTER_QUEUE_SUFFIX);
                 })
                 .map(SystemDBMetaData::getId)
                 .collect(toList());
@@ -318,6 +318,16 @@ public class GCPRuntime implements CloudRuntime {
 
     @Override
     public int pollQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException {
+        return pollQueue(queueId, processor, 10);
+    }
+
+    @Override
+    public int getMaxPollSize() {
+        return Integer.MAX_VALUE; //the messages are read from a table so there is no limit.
+    }
+
+    @Override
+    public int pollQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
         try {
             final SystemDBMetaData systemDBMetaData = getNoSQL(QUEUES_METADATA, queueId, SystemDBMetaData.class);
             if (systemDBMetaData == null) {
@@ -327,22 +337,24 @@ public class GCPRuntime implements CloudRuntime {
             throw new RuntimeException(e);
         }
 
-        int[] messageNumber = {0};
-        final List<SystemDBMessage> systemDBMessages = listNoSQL(queueId, SystemDBMessage.class);
-        systemDBMessages.stream()
-                .limit(10).parallel()
+        final List<SystemDBMessage> systemDBMessages = listNoSQL(queueId, SystemDBMessage.class).stream()
+                .limit(Math.max(1, maxMessages))
+                .collect(toList());
+        if (systemDBMessages.isEmpty()) {
+            return 0;
+        }
+        //first we delete so nobody else will get these messages, all of the entities are removed with a single batch call.
+        deleteNoSQL(queueId, systemDBMessages.toArray(new SystemDBMessage[0]));
+        systemDBMessages.parallelStream()
                 .forEach(msg -> {
-                    messageNumber[0]++;
-                    //first we delete so nobody else will get this message.
-                    deleteNoSQL(queueId, msg);
-                    JemoMessage ccMsg = Util.F(msg, (SystemDBMessage x) -> Jemo.fromJSONString(JemoMessage.class, x.getJsonMessage()));
+                    JemoMessage ccMsg = Util.F(msg, (SystemDBMessage x) -> JemoMessageCodec.read(x.getJsonMessage()));
 
                     //the message will contain a relevant plugin-id so we will use that id to know what we need to run.
                     if (ccMsg != null) {
                         EVENT_PROCESSOR.submit(() -> processor.processMessage(ccMsg));
                     }
                 });
-        return messageNumber[0];
+        return systemDBMessages.size();
     }
 
     @Override
@@ -361,6 +373,16 @@ public class GCPRuntime implements CloudRuntime {
         return systemDBMessage.getId();
     }
 
+    @Override
+    public List<String> sendMessages(String queueId, List<String> jsonMessages) {
+        final List<SystemDBMessage> systemDBMessages = jsonMessages.stream().map(SystemDBMessage::new).collect(toList());
+        //datastore will write at most 500 entities in a single commit.
+        for (int i = 0; i < systemDBMessages.size(); i += 500) {
+            saveNoSQL(queueId, systemDBMessages.subList(i, Math.min(i + 500, systemDBMessages.size())).toArray(new SystemDBMessage[0]));
+        }
+        return systemDBMessages.stream().map(SystemDBMessage::getId).collect(toList());
+    }
+
     @Override
     public void createNoSQLTable(String tableName) {
         // It is not possible to create an empty "Kind" (similar to teh relational "Table" or the document db "Collection" term) GCP datastore.
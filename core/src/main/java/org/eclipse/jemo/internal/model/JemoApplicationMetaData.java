@@ -18,6 +18,7 @@ package org.eclipse.jemo.internal.model;
 
 import org.eclipse.jemo.api.Frequency;
 import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.api.RetryPolicy;
 import org.eclipse.jemo.sys.Accumulator;
 
 import java.util.Map;
@@ -63,6 +64,50 @@ public class JemoApplicationMetaData implements SystemDBObject {
         }
     }
 
+    public static class JemoModuleRetryPolicy extends RetryPolicy {
+
+        public JemoModuleRetryPolicy() {
+            super();
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public void setInitialDelay(long initialDelay) {
+            this.initialDelay = initialDelay;
+        }
+
+        public void setMaxDelay(long maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+
+        public static JemoModuleRetryPolicy wrap(RetryPolicy policy) {
+            if (policy != null) {
+                if (policy instanceof JemoModuleRetryPolicy) {
+                    return JemoModuleRetryPolicy.class.cast(policy);
+                } else {
+                    JemoModuleRetryPolicy retval = new JemoModuleRetryPolicy();
+                    retval.setMaxAttempts(policy.getMaxAttempts());
+                    retval.setInitialDelay(policy.getInitialDelay());
+                    retval.setMaxDelay(policy.getMaxDelay());
+                    retval.setMultiplier(policy.getMultiplier());
+                    retval.setJitter(policy.getJitter());
+                    return retval;
+                }
+            }
+            return null;
+        }
+    }
+
     public static class JemoModuleLimits extends ModuleLimit {
 
         public void setMaxActiveBatchesPerInstance(int maxActiveBatchesPerInstance) {
@@ -121,6 +166,26 @@ public class JemoApplicationMetaData implements SystemDBObject {
             this.fixedLocations = fixedLocations;
         }
 
+        public void setEventRetryPolicy(JemoModuleRetryPolicy eventRetryPolicy) {
+            this.eventRetryPolicy = eventRetryPolicy;
+        }
+
+        public void setEventPriority(int eventPriority) {
+            this.eventPriority = eventPriority;
+        }
+
+        public void setEventWeight(int eventWeight) {
+            this.eventWeight = eventWeight;
+        }
+
+        public void setMaxWebSocketConnectionsPerInstance(int maxWebSocketConnectionsPerInstance) {
+            this.maxWebSocketConnectionsPerInstance = maxWebSocketConnectionsPerInstance;
+        }
+
+        public void setWebSocketSendBuffer(int webSocketSendBuffer) {
+            this.webSocketSendBuffer = webSocketSendBuffer;
+        }
+
         public static JemoModuleLimits wrap(ModuleLimit limit) {
             JemoModuleLimits lim = new JemoModuleLimits();
             lim.setBatchFrequency(JemoModuleFrequency.wrap(limit.getBatchFrequency()));
@@ -137,6 +202,11 @@ public class JemoApplicationMetaData implements SystemDBObject {
             lim.setMaxActiveFixedPerGSM(limit.getMaxActiveFixedPerGSM());
             lim.setMaxActiveFixedPerInstance(limit.getMaxActiveFixedPerInstance());
             lim.setMaxActiveFixedPerLocation(limit.getMaxActiveFixedPerLocation());
+            lim.setEventRetryPolicy(JemoModuleRetryPolicy.wrap(limit.getEventRetryPolicy()));
+            lim.setEventPriority(limit.getEventPriority());
+            lim.setEventWeight(limit.getEventWeight());
+            lim.setMaxWebSocketConnectionsPerInstance(limit.getMaxWebSocketConnectionsPerInstance());
+            lim.setWebSocketSendBuffer(limit.getWebSocketSendBuffer());
             return lim;
         }
     }
@@ -157,6 +227,7 @@ public class JemoApplicationMetaData implements SystemDBObject {
     private Set<String> fixed = new ConcurrentSkipListSet<>();
     private Map<String, JemoModuleLimits> limits = new ConcurrentHashMap<>();
     private Map<String, Accumulator> stats = new ConcurrentHashMap<>();
+    private Map<String, Accumulator> endpointStats = new ConcurrentHashMap<>();
 
     @Override
     public String getId() {
@@ -254,4 +325,8 @@ public class JemoApplicationMetaData implements SystemDBObject {
     public Map<String, Accumulator> getStats() {
         return stats;
     }
+
+    public Map<String, Accumulator> getEndpointStats() {
+        return endpointStats;
+    }
 }
@@ -19,7 +19,9 @@ package org.eclipse.jemo.internal.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -35,6 +37,53 @@ public class JemoMessage {
 	public static final String LOCATION_LOCALLY = "LOCAL";
 	public static final String LOCATION_CLOUD = "CLOUD";
 	public static final String LOCATION_THIS = "THIS";
+
+	/**
+	 * the methods of the engine which messages are sent through. they are looked up once when the first message is sent rather than
+	 * by reflection on every call, and because the handles are static and final the jit can inline the calls like direct ones.
+	 */
+	private static final class ServerBinding {
+		private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+		private static final Class BINDING = resolveBinding();
+		//each handle is resolved on its own so that one which is missing does not take the others with it.
+		private static final MethodHandle SEND = resolve("send", MethodType.methodType(void.class, String.class, JemoMessage.class));
+		private static final MethodHandle BROADCAST = resolve("broadcast", MethodType.methodType(BroadcastResult.class, String.class, JemoMessage.class));
+		private static final MethodHandle GET_INSTANCE = resolve("getInstance", MethodType.methodType(String.class));
+		private static final MethodHandle GET_INSTANCE_QUEUE_URL = resolve("getInstanceQueueUrl", MethodType.methodType(String.class));
+
+		private static Class resolveBinding() {
+			try {
+				return Class.forName("org.eclipse.jemo.internal.model.ServerMessage");
+			}catch(ClassNotFoundException ex) {
+				return null;
+			}
+		}
+
+		private static MethodHandle resolve(String name, MethodType type) {
+			if(BINDING == null) {
+				return null;
+			}
+			try {
+				return LOOKUP.findStatic(BINDING, name, type);
+			}catch(ReflectiveOperationException ex) {
+				Logger.getLogger("Jemo").log(Level.SEVERE, String.format("[ServerMessage] - FATAL ERROR: the engine binding %s could not be resolved {%s}", name, JemoError.toString(ex)));
+				return null;
+			}
+		}
+
+		/**
+		 * @param handle the entry point to check.
+		 * @param name the name of the entry point.
+		 * @return the entry point.
+		 * @throws IllegalStateException if the entry point is not available, which is the case when the api is used outside of the engine.
+		 */
+		private static MethodHandle require(MethodHandle handle, String name) {
+			if(handle == null) {
+				throw new IllegalStateException(name + " is not available outside of the Jemo engine");
+			}
+			return handle;
+		}
+	}
 	
 	private String id = UUID.randomUUID().toString();
 	private int pluginId = 0;
@@ -202,41 +251,53 @@ public class JemoMessage {
 	
 	@JsonIgnore
 	public void broadcast(String location) {
-		jemoCall(Void.class, "broadcast", location, this);
+		broadcastWithResult(location);
+	}
+
+	/**
+	 * this method will broadcast the message and report which instances it reached.
+	 *
+	 * @param location the location to broadcast the message to.
+	 * @return what happened to the message at each instance or null if the message could not be broadcast at all.
+	 */
+	@JsonIgnore
+	public BroadcastResult broadcastWithResult(String location) {
+		try {
+			return (BroadcastResult)ServerBinding.require(ServerBinding.BROADCAST, "broadcast").invokeExact(location, this);
+		}catch(Throwable ex) {
+			logFailure("broadcast", ex);
+		}
+		return null;
 	}
 	
 	@JsonIgnore
 	public void send(String location) {
-		jemoCall(Void.class, "send", location, this);
+		try {
+			ServerBinding.require(ServerBinding.SEND, "send").invokeExact(location, this);
+		}catch(Throwable ex) {
+			logFailure("send", ex);
+		}
 	}
 	
 	public static String getInstanceID() {
-		return jemoCall(String.class,"getInstance");
+		try {
+			return (String)ServerBinding.require(ServerBinding.GET_INSTANCE, "getInstance").invokeExact();
+		}catch(Throwable ex) {
+			logFailure("getInstance", ex);
+		}
+		return null;
 	}
 	
 	public static String getInstanceQueueUrl() {
-		return jemoCall(String.class,"getInstanceQueueUrl");
-	}
-	
-	private static <T extends Object> T jemoCall(Class<T> returnType, String method, Object... parameters) {
 		try {
-			Class binding = Class.forName("org.eclipse.jemo.internal.model.ServerMessage");
-			Class[] paramList = (parameters == null || parameters.length == 0 ? new Class[] {} : new Class[parameters.length]);
-			if(parameters != null) {
-				for(int i = 0; i < paramList.length; i++) {
-					paramList[i] = parameters[i].getClass();
-				}
-			}
-			Method m = binding.getMethod(method, paramList);
-			if(m != null) {
-				return returnType.cast(m.invoke(binding, parameters));
-			} else {
-				Logger.getLogger("Jemo").log(Level.SEVERE, "[%s] METHOD DOES NOT EXISTING IN BINDING CLASS", new Object[]{method});
-			}
+			return (String)ServerBinding.require(ServerBinding.GET_INSTANCE_QUEUE_URL, "getInstanceQueueUrl").invokeExact();
 		}catch(Throwable ex) {
-			Logger.getLogger("Jemo").log(Level.SEVERE, String.format("[%s] - FATAL ERROR: {%s}", new Object[]{method, JemoError.toString(ex)}));
+			logFailure("getInstanceQueueUrl", ex);
 		}
-		
 		return null;
 	}
+	
+	private static void logFailure(String method, Throwable ex) {
+		Logger.getLogger("Jemo").log(Level.SEVERE, String.format("[%s] - FATAL ERROR: {%s}", new Object[]{method, JemoError.toString(ex)}));
+	}
 }
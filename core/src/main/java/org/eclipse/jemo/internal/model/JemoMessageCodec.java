@@ -0,0 +1,160 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import org.eclipse.jemo.sys.internal.Util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * a codec converts a message to and from the text payload which is sent over the cloud runtime queues.
+ *
+ * every instance can read every codec it knows about as the codec used is recognised from the payload itself, the codec an
+ * instance writes with is chosen per destination queue so that instances running an older version of Jemo only ever receive
+ * messages in a format they understand. json is the baseline format which every version of Jemo can read.
+ *
+ * large messages may also be compressed, a compressed payload wraps the bytes of the codec it was written with (see MessageCompression).
+ */
+public interface JemoMessageCodec {
+
+	JemoMessageCodec JSON = new JemoMessageCodec() {
+		@Override
+		public String getName() {
+			return "json";
+		}
+
+		@Override
+		public boolean canDecode(String payload) {
+			return true; //json is the format of last resort.
+		}
+
+		@Override
+		public String encode(JemoMessage message) throws IOException {
+			return Util.toJSONString(message);
+		}
+
+		@Override
+		public JemoMessage decode(String payload) throws IOException {
+			return Util.fromJSONString(JemoMessage.class, payload);
+		}
+
+		@Override
+		public byte[] toBytes(JemoMessage message) throws IOException {
+			return Util.mapper.writeValueAsBytes(message);
+		}
+
+		@Override
+		public JemoMessage fromBytes(byte[] data) throws IOException {
+			return Util.mapper.readValue(data, JemoMessage.class);
+		}
+
+		@Override
+		public String toPayload(byte[] data) {
+			return new String(data, StandardCharsets.UTF_8);
+		}
+	};
+
+	JemoMessageCodec BINARY = new BinaryMessageCodec();
+
+	/**
+	 * all of the codecs this instance can read in the order in which they will be tried, json must always be the last.
+	 */
+	List<JemoMessageCodec> CODECS = Collections.unmodifiableList(Arrays.asList(BINARY, JSON));
+
+	String getName();
+
+	/**
+	 * @param payload the body of a message received from a queue.
+	 * @return true if the payload was written with this codec.
+	 */
+	boolean canDecode(String payload);
+
+	default String encode(JemoMessage message) throws IOException {
+		return toPayload(toBytes(message));
+	}
+
+	JemoMessage decode(String payload) throws IOException;
+
+	/**
+	 * @param message the message to encode.
+	 * @return the raw bytes of the encoded message, these are what gets compressed.
+	 * @throws IOException if the message could not be encoded.
+	 */
+	byte[] toBytes(JemoMessage message) throws IOException;
+
+	JemoMessage fromBytes(byte[] data) throws IOException;
+
+	/**
+	 * @param data the raw bytes of an encoded message.
+	 * @return the text payload the bytes are sent as when they are not compressed.
+	 */
+	String toPayload(byte[] data);
+
+	/**
+	 * @param name the name of the codec.
+	 * @return the codec with the given name or json if this instance does not know a codec with that name.
+	 */
+	static JemoMessageCodec forName(String name) {
+		return CODECS.stream().filter(c -> c.getName().equalsIgnoreCase(name)).findAny().orElse(JSON);
+	}
+
+	/**
+	 * @param payload the body of a message received from a queue.
+	 * @return true if the payload is an encoded message rather than a reference to a message the runtime stored elsewhere because it was too large.
+	 */
+	static boolean isMessage(String payload) {
+		return payload.startsWith("{") || MessageCompression.isCompressed(payload) || BINARY.canDecode(payload);
+	}
+
+	/**
+	 * this method will decode a message received from a queue using the codec the message was written with.
+	 *
+	 * @param payload the body of the message.
+	 * @return the decoded message or null if the payload is empty.
+	 * @throws IOException if the payload is not a valid message.
+	 */
+	static JemoMessage read(String payload) throws IOException {
+		if(payload == null || payload.isEmpty()) {
+			return null;
+		}
+		if(MessageCompression.isCompressed(payload)) {
+			return MessageCompression.read(payload);
+		}
+		for(JemoMessageCodec codec : CODECS) {
+			if(codec.canDecode(payload)) {
+				return codec.decode(payload);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the names of all the codecs and compression algorithms this instance can read, this is what an instance advertises
+	 * to the rest of the cluster.
+	 */
+	static List<String> getReadableFormats() {
+		List<String> formats = new ArrayList<>();
+		CODECS.forEach(c -> formats.add(c.getName()));
+		Arrays.asList(MessageCompression.values()).forEach(c -> formats.add(c.getName()));
+		return formats;
+	}
+}
@@ -0,0 +1,179 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * the compression algorithms which can be applied to the payload of a large message.
+ *
+ * a compressed payload has the form ~jmz1:[algorithm]:[codec]:[base64 of the compressed bytes], the header tells the receiver both
+ * how to decompress the bytes and which codec wrote them. like codecs, an instance advertises the algorithms it can read and
+ * messages are only compressed when every instance reading the destination queue can decompress them.
+ */
+public enum MessageCompression {
+
+	DEFLATE("deflate") {
+		@Override
+		protected byte[] compress(byte[] data) {
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED, true); //messages are compressed on the send path so speed matters more than ratio.
+			try {
+				deflater.setInput(data);
+				deflater.finish();
+				ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+				byte[] buf = new byte[8192];
+				while(!deflater.finished()) {
+					out.write(buf, 0, deflater.deflate(buf));
+				}
+				return out.toByteArray();
+			} finally {
+				deflater.end();
+			}
+		}
+
+		@Override
+		protected byte[] decompress(byte[] data) throws IOException {
+			Inflater inflater = new Inflater(true);
+			try {
+				inflater.setInput(data);
+				ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+				byte[] buf = new byte[8192];
+				while(!inflater.finished()) {
+					int len = inflater.inflate(buf);
+					if(len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						throw new IOException("the compressed payload is truncated");
+					}
+					out.write(buf, 0, len);
+					checkSize(out.size());
+				}
+				return out.toByteArray();
+			} catch(DataFormatException ex) {
+				throw new IOException("the compressed payload is not valid", ex);
+			} finally {
+				inflater.end();
+			}
+		}
+	},
+
+	GZIP("gzip") {
+		@Override
+		protected byte[] compress(byte[] data) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+			try(GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+				gzip.write(data);
+			}
+			return out.toByteArray();
+		}
+
+		@Override
+		protected byte[] decompress(byte[] data) throws IOException {
+			try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+				byte[] buf = new byte[8192];
+				int len;
+				while((len = in.read(buf)) != -1) {
+					out.write(buf, 0, len);
+					checkSize(out.size());
+				}
+				return out.toByteArray();
+			}
+		}
+	};
+
+	public static final String PREFIX = "~jmz1:";
+	private static final int MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024; //no queue accepts messages anywhere near a compression ratio which would exceed this.
+
+	private final String name;
+
+	MessageCompression(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	protected abstract byte[] compress(byte[] data) throws IOException;
+
+	protected abstract byte[] decompress(byte[] data) throws IOException;
+
+	/**
+	 * @param codec the codec which wrote the data.
+	 * @param data the raw bytes of the encoded message.
+	 * @return the compressed payload for the message.
+	 * @throws IOException if the data could not be compressed.
+	 */
+	public String write(JemoMessageCodec codec, byte[] data) throws IOException {
+		return PREFIX + name + ":" + codec.getName() + ":" + Base64.getEncoder().encodeToString(compress(data));
+	}
+
+	private static void checkSize(int size) throws IOException {
+		if(size > MAX_DECOMPRESSED_SIZE) {
+			throw new IOException("the compressed payload expands to more than " + MAX_DECOMPRESSED_SIZE + " bytes");
+		}
+	}
+
+	/**
+	 * @param name the name of the algorithm.
+	 * @return the algorithm with the given name or null if compression is disabled or this instance does not know the algorithm.
+	 */
+	public static MessageCompression forName(String name) {
+		for(MessageCompression compression : values()) {
+			if(compression.name.equalsIgnoreCase(name)) {
+				return compression;
+			}
+		}
+		return null;
+	}
+
+	public static boolean isCompressed(String payload) {
+		return payload.startsWith(PREFIX);
+	}
+
+	/**
+	 * @param payload a compressed payload.
+	 * @return the message the payload contains.
+	 * @throws IOException if the payload uses an algorithm or codec this instance does not know or is not valid.
+	 */
+	public static JemoMessage read(String payload) throws IOException {
+		int algorithmEnd = payload.indexOf(':', PREFIX.length());
+		int codecEnd = algorithmEnd == -1 ? -1 : payload.indexOf(':', algorithmEnd + 1);
+		if(codecEnd == -1) {
+			throw new IOException("the compressed payload has an invalid header");
+		}
+		MessageCompression compression = forName(payload.substring(PREFIX.length(), algorithmEnd));
+		String codecName = payload.substring(algorithmEnd + 1, codecEnd);
+		JemoMessageCodec codec = JemoMessageCodec.CODECS.stream().filter(c -> c.getName().equals(codecName)).findAny().orElse(null);
+		if(compression == null || codec == null) {
+			throw new IOException("the compressed payload uses an unknown format " + payload.substring(PREFIX.length(), codecEnd));
+		}
+		try {
+			return codec.fromBytes(compression.decompress(Base64.getDecoder().decode(payload.substring(codecEnd + 1))));
+		} catch(IllegalArgumentException ex) {
+			throw new IOException("the compressed payload is not valid base64", ex);
+		}
+	}
+}
@@ -17,22 +17,33 @@
 package org.eclipse.jemo.internal.model;
 
 import com.amazonaws.services.sqs.model.QueueDoesNotExistException;
+import org.eclipse.jemo.AbstractJemo;
 import org.eclipse.jemo.Jemo;
-import static org.eclipse.jemo.Jemo.toJSONString;
 
 import org.eclipse.jemo.api.KeyValue;
 import org.eclipse.jemo.api.ModuleLimit;
 
 import static org.eclipse.jemo.sys.JemoPluginManager.PLUGIN_ID;
 import static org.eclipse.jemo.sys.JemoPluginManager.PLUGIN_VERSION;
+import org.eclipse.jemo.sys.JemoClusterMembership;
+import org.eclipse.jemo.sys.JemoEventAdmission;
+import org.eclipse.jemo.sys.JemoFairExecutor;
 import org.eclipse.jemo.sys.JemoPluginManager;
+import org.eclipse.jemo.sys.JemoRoutingTable;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -65,8 +76,51 @@ public class ServerMessage {
 	}
 	private static Pattern instanceLocationPattern = Pattern.compile("([a-z0-9]{8}-[a-z0-9]{4}-[a-z0-9]{4}-[a-z0-9]{4}-[a-z0-9]{12})");
 	
+	/**
+	 * this method will send a message to a location. messages which are delivered to this instance are handed to its scheduler as they
+	 * are without being serialised, so a message must not be changed once it has been sent.
+	 *
+	 * @param location the location to send the message to.
+	 * @param message the message to send.
+	 * @throws JsonProcessingException if the message could not be serialised.
+	 */
 	public static final void send(String location, JemoMessage message) throws JsonProcessingException {
 		prepareMessage(message);
+		String locationQueue = route(location, message);
+		if(locationQueue != null) {
+			transmitMessage(message, locationQueue, location);
+		}
+	}
+
+	/**
+	 * this method will send several messages to the same location, messages which end up on the same queue are sent to it in a single batch.
+	 *
+	 * @param location the location to send the messages to.
+	 * @param messages the messages to send.
+	 * @throws JsonProcessingException if a message could not be serialised.
+	 */
+	public static final void send(String location, List<JemoMessage> messages) throws JsonProcessingException {
+		final Map<String,List<JemoMessage>> queueMessages = new LinkedHashMap<>();
+		for(JemoMessage message : messages) {
+			prepareMessage(message);
+			String queueId = route(location, message);
+			if(queueId != null && isTransmittable(message, queueId, location)) {
+				queueMessages.computeIfAbsent(queueId, q -> new ArrayList<>()).add(message);
+			}
+		}
+		for(Map.Entry<String,List<JemoMessage>> entry : queueMessages.entrySet()) {
+			deliver(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * this method will work out which queue a message sent to a location should be delivered to.
+	 *
+	 * @param location the location the message is being sent to.
+	 * @param message the message being sent.
+	 * @return the id of the queue the message should be delivered to or null if there is no queue for the location.
+	 */
+	private static String route(String location, JemoMessage message) {
 		String locationQueue;
 		String clusterLocation;
 		switch (location) {
@@ -107,36 +161,96 @@ public class ServerMessage {
 			//2. we will check if the module named as the reciever actually exists in the system and that it implements event patterns (if not we drop the message)
 			//3. we will check how many of these are actually running on each of the target instances before routing (so we spread things evenly).
 			//4. we will not verify compliance limits as those should be verified on the singular instances and if the execution limit is reached messages should have their delivery delayed locally.
-			if(message.getPluginId() != 0) {
-				Map<String, String> instanceLocationMap = JemoPluginManager.getServerInstance().getPluginManager().getActiveLocationList().stream()
-					.flatMap(loc -> JemoPluginManager.getServerInstance().getPluginManager().listInstances(loc).stream()
-						.map(inst -> new KeyValue<>(inst,loc))
-					)
-					.collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue));
-				
-				Map<String,Integer> gsmExecutionMap = instanceLocationMap.entrySet().stream()
-					.filter(e -> clusterLocation.equals("GLOBAL") || e.getValue().equalsIgnoreCase(clusterLocation))
-					.filter(e -> Arrays.asList(JemoPluginManager.getServerInstance().getPluginManager().getModuleList(e.getKey())).stream()
-						.anyMatch(m -> m.getId() == message.getPluginId() && m.getVersion() == message.getPluginVersion() && m.getImplementation().equals(message.getModuleClass()))
-					)
-					.map(e -> new KeyValue<>(e.getKey(), JemoPluginManager.getNumModuleEventsRunning(e.getKey(), message.getPluginId(), message.getPluginVersion(), message.getModuleClass())))
-					.collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue));
-
-				//the execution map will have a list of valid locations (instance id's) in the target location and we will pick the one with the least amount of processes running.
-				locationQueue = gsmExecutionMap.entrySet().stream()
-					.min((e1,e2) -> e1.getValue().compareTo(e2.getValue()))
-					.map(e -> CloudProvider.getInstance().getRuntime().getQueueId("JEMO-"+instanceLocationMap.get(e.getKey())+"-"+e.getKey()))
-					.orElse(locationQueue); //messages will always be sent however if no valid instance can be found they will be sent to the target location
-				final String fLocationQueue = locationQueue;
-				JemoPluginManager.getServerInstance().LOG(Level.FINE, "[ServerMessage][SEND] Selected %s current executing %d messages, execution map %s",locationQueue, gsmExecutionMap.entrySet().stream()
-					.filter(e -> CloudProvider.getInstance().getRuntime().getQueueId("JEMO-"+instanceLocationMap.get(e.getKey())+"-"+e.getKey()).equalsIgnoreCase(fLocationQueue)).map(e -> e.getValue()).findAny().orElse(0), gsmExecutionMap.toString());
+			if(message.getPluginId() != 0 && isDeliverableLocally(locationQueue, message)) {
+				Jemo.log(Level.FINE, "[ServerMessage][SEND] %s is loaded on this instance and has room to run the message so it will be scheduled locally", message.getModuleClass());
+				locationQueue = JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL();
+			} else if(message.getPluginId() != 0) {
+				locationQueue = routeToInstance(locationQueue, clusterLocation, message);
 			}
-			transmitMessage(message, locationQueue, location);
 		}
+		return locationQueue;
 	}
 	
-	protected static final void transmitMessage(JemoMessage message, String queueId, String location) throws JsonProcessingException {
-		boolean sendMessage = true;
+	/**
+	 * this method will pick the instance in the target location which should process a message for a module. the routing table is used
+	 * when it is fresh so that no storage is read, otherwise the module list of every active instance is read and the least loaded
+	 * instance is picked.
+	 *
+	 * @param locationQueue the work queue of the target location, which is used if no instance runs the module.
+	 * @param clusterLocation the target location or GLOBAL for any location.
+	 * @param message the message being sent.
+	 * @return the queue the message should be delivered to.
+	 */
+	private static String routeToInstance(String locationQueue, final String clusterLocation, final JemoMessage message) {
+		final JemoRoutingTable routingTable = JemoPluginManager.getServerInstance().getRoutingTable();
+		if(routingTable.isFresh()) {
+			resolveVersion(message);
+			String instanceQueue = routingTable.route(clusterLocation.equals("GLOBAL") ? null : clusterLocation, message.getPluginId(), message.getPluginVersion(), message.getModuleClass());
+			JemoPluginManager.getServerInstance().LOG(Level.FINE, "[ServerMessage][SEND] Selected %s from the routing table for %s", instanceQueue, message.getModuleClass());
+			return instanceQueue != null ? instanceQueue : locationQueue; //messages will always be sent however if no valid instance can be found they will be sent to the target location
+		}
+		Map<String, String> instanceLocationMap = JemoPluginManager.getServerInstance().getPluginManager().getActiveLocationList().stream()
+			.flatMap(loc -> JemoPluginManager.getServerInstance().getPluginManager().listInstances(loc).stream()
+				.map(inst -> new KeyValue<>(inst,loc))
+			)
+			.collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue));
+		
+		Map<String,Integer> gsmExecutionMap = instanceLocationMap.entrySet().stream()
+			.filter(e -> clusterLocation.equals("GLOBAL") || e.getValue().equalsIgnoreCase(clusterLocation))
+			.filter(e -> Arrays.asList(JemoPluginManager.getServerInstance().getPluginManager().getModuleList(e.getKey())).stream()
+				.anyMatch(m -> m.getId() == message.getPluginId() && m.getVersion() == message.getPluginVersion() && m.getImplementation().equals(message.getModuleClass()))
+			)
+			.map(e -> new KeyValue<>(e.getKey(), JemoPluginManager.getNumModuleEventsRunning(e.getKey(), message.getPluginId(), message.getPluginVersion(), message.getModuleClass())))
+			.collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue));
+
+		//the execution map will have a list of valid locations (instance id's) in the target location and we will pick the one with the least amount of processes running.
+		locationQueue = gsmExecutionMap.entrySet().stream()
+			.min((e1,e2) -> e1.getValue().compareTo(e2.getValue()))
+			.map(e -> CloudProvider.getInstance().getRuntime().getQueueId("JEMO-"+instanceLocationMap.get(e.getKey())+"-"+e.getKey()))
+			.orElse(locationQueue); //messages will always be sent however if no valid instance can be found they will be sent to the target location
+		final String fLocationQueue = locationQueue;
+		JemoPluginManager.getServerInstance().LOG(Level.FINE, "[ServerMessage][SEND] Selected %s current executing %d messages, execution map %s",locationQueue, gsmExecutionMap.entrySet().stream()
+			.filter(e -> CloudProvider.getInstance().getRuntime().getQueueId("JEMO-"+instanceLocationMap.get(e.getKey())+"-"+e.getKey()).equalsIgnoreCase(fLocationQueue)).map(e -> e.getValue()).findAny().orElse(0), gsmExecutionMap.toString());
+		return locationQueue;
+	}
+
+	/**
+	 * this method will check if a message can skip cluster routing and be scheduled on this instance. this is the case when this
+	 * instance reads the destination, the module is loaded here and it could start the event straight away. the answer comes from
+	 * memory only so nothing is read from storage.
+	 *
+	 * @param locationQueue the queue the message would be sent to without any routing.
+	 * @param message the message being sent.
+	 * @return true if the message should be scheduled on this instance.
+	 */
+	private static boolean isDeliverableLocally(String locationQueue, JemoMessage message) {
+		final AbstractJemo server = JemoPluginManager.getServerInstance();
+		if(!server.isLocalFirstDelivery()) {
+			return false;
+		}
+		if(!locationQueue.equals(server.getINSTANCE_QUEUE_URL()) && !locationQueue.equals(server.getLOCATION_QUEUE_URL()) && !locationQueue.equals(server.getGLOBAL_QUEUE_URL())) {
+			return false;
+		}
+		resolveVersion(message);
+		if(!server.getPluginManager().isModuleLive(message.getPluginId(), message.getPluginVersion(), message.getModuleClass())) {
+			return false;
+		}
+		ModuleLimit limits = server.getPluginManager().getModuleLimits(message.getPluginId(), message.getPluginVersion(), message.getModuleClass());
+		if(limits != null && (limits.getEventFrequency() != null || limits.getMaxActiveEventsPerGSM() > 0 || limits.getMaxActiveEventsPerLocation() > 0 || limits.getMaxActiveEventsPerInstance() > 0)) {
+			JemoEventAdmission.Gate gate = server.getEventAdmission().gate(message.getPluginId(), message.getPluginVersion(), message.getModuleClass(), limits);
+			if(!gate.hasCapacity()) {
+				return false;
+			}
+		}
+		//the instance is saturated if every event thread is busy and events are already waiting for one.
+		final JemoFairExecutor executor = server.getEVENT_EXECUTOR();
+		return executor.getActiveCount() < executor.getMaximumPoolSize() || executor.getQueue().isEmpty();
+	}
+
+	/**
+	 * this method will set the version of a message which does not name one to the latest version of the module which handles it.
+	 */
+	private static void resolveVersion(JemoMessage message) {
 		if(message.getPluginVersion() == 0 && message.getPluginId() != 0) {
 			//we need to find the largest plugin version deployed.
 			message.setPluginVersion(JemoPluginManager.getServerInstance().getPluginManager().getApplicationList().stream()
@@ -146,6 +260,20 @@ public class ServerMessage {
 					.orElse(1.0)
 				);
 		}
+	}
+
+	protected static final void transmitMessage(JemoMessage message, String queueId, String location) throws JsonProcessingException {
+		if(isTransmittable(message, queueId, location)) {
+			deliver(queueId, Arrays.asList(message));
+		}
+	}
+
+	/**
+	 * this method will check that the module the message is for is able to receive it on the destination queue.
+	 */
+	private static boolean isTransmittable(JemoMessage message, String queueId, String location) {
+		boolean sendMessage = true;
+		resolveVersion(message);
 		if(message.getPluginId() != 0 && JemoPluginManager.getServerInstance().getPluginManager().getApplicationList()
 					.stream()
 					.anyMatch(app -> PLUGIN_ID(app.getId()) == message.getPluginId() && message.getPluginVersion() == PLUGIN_VERSION(app.getId()) && app.getEvents().contains(message.getModuleClass()))) {
@@ -159,10 +287,16 @@ public class ServerMessage {
 			}
 			if(isMessageValidForLocation) {
 				//if the queue id does not end with WORK-QUEUE then we need to check if the target instance will actually process it.
-				if(!queueId.toUpperCase().endsWith("-WORK-QUEUE")) {
+				if(queueId.equals(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL())) {
+					//this instance publishes the modules it is allowed to run so we do not need to read its list back from storage.
+					sendMessage = JemoPluginManager.getServerInstance().PLUGIN_VALID(message.getPluginId());
+				} else if(!queueId.toUpperCase().endsWith("-WORK-QUEUE")) {
 					final String queueName = CloudProvider.getInstance().getRuntime().getQueueName(queueId);
 					final String instanceId = queueName.substring(queueName.length()-36);
-					if(!Arrays.asList(JemoPluginManager.getServerInstance().getPluginManager().getModuleList(instanceId)).stream()
+					final JemoRoutingTable routingTable = JemoPluginManager.getServerInstance().getRoutingTable();
+					if(routingTable.isFresh()) {
+						sendMessage = routingTable.runsModule(instanceId, message.getPluginId(), message.getPluginVersion(), message.getModuleClass());
+					} else if(!Arrays.asList(JemoPluginManager.getServerInstance().getPluginManager().getModuleList(instanceId)).stream()
 						.anyMatch(m -> m.getId() == message.getPluginId() && m.getVersion() == message.getPluginVersion() && m.getImplementation().equals(message.getModuleClass()))) {
 						sendMessage = false;
 					}
@@ -173,71 +307,210 @@ public class ServerMessage {
 		} else if(message.getPluginId() != 0 && !message.getModuleClass().equals(Jemo.class.getName())) {
 			sendMessage = false;
 		}
-		if(sendMessage) {
-			try {
-				if(queueId.equals(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL())) {
-					Jemo.log("[MESSAGE SENT]{"+queueId+"} - Message Processed Locally because the destination is local", Level.FINE);
+		return sendMessage;
+	}
+
+	/**
+	 * this method will check if every instance which reads a queue has advertised that it can read a codec or compression algorithm.
+	 *
+	 * @param queueId the id of the queue messages are being sent to.
+	 * @param format the name of the codec or compression algorithm.
+	 * @return true if the messages sent to the queue can be written in the format.
+	 */
+	private static boolean isFormatSupported(String queueId, String format) {
+		final String queueName = CloudProvider.getInstance().getRuntime().getQueueName(queueId);
+		if(queueName == null || !queueName.toUpperCase().startsWith("JEMO-")) {
+			return false;
+		}
+		JemoClusterMembership.View view = JemoPluginManager.getServerInstance().getClusterMembership().getView();
+		if(queueName.toUpperCase().endsWith("-WORK-QUEUE")) {
+			return view.supportsCodecInLocation(queueName.substring(5, queueName.length()-11), format);
+		}
+		return queueName.length() > 36 && view.supportsCodec(queueName.substring(queueName.length()-36), format);
+	}
+
+	/**
+	 * this method will pick the codec messages sent to a queue should be written with. the codec configured for this instance is only
+	 * used if every instance which reads the queue has advertised that it can read it, otherwise messages are written as json.
+	 *
+	 * @param queueId the id of the queue the messages are being sent to.
+	 * @return the codec to write the messages with.
+	 */
+	static JemoMessageCodec codecFor(String queueId) {
+		JemoMessageCodec codec = JemoPluginManager.getServerInstance().getMessageCodec();
+		return codec == JemoMessageCodec.JSON || isFormatSupported(queueId, codec.getName()) ? codec : JemoMessageCodec.JSON;
+	}
+
+	/**
+	 * @param queueId the id of the queue the messages are being sent to.
+	 * @return the algorithm large messages sent to the queue should be compressed with or null if they should not be compressed.
+	 */
+	static MessageCompression compressionFor(String queueId) {
+		MessageCompression compression = JemoPluginManager.getServerInstance().getMessageCompression();
+		return compression != null && isFormatSupported(queueId, compression.getName()) ? compression : null;
+	}
+
+	private static void deliver(String queueId, List<JemoMessage> messages) throws JsonProcessingException {
+		try {
+			if(queueId.equals(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL())) {
+				Jemo.log("[MESSAGE SENT]{"+queueId+"} - Message Processed Locally because the destination is local", Level.FINE);
+				for(JemoMessage message : messages) {
 					JemoPluginManager.getServerInstance().sys_getInstanceQueueListener().scheduleMessage(message);
-				} else {
-					Jemo.log("[MESSAGE SENT]{"+queueId+"} - MessageID: "+CloudProvider.getInstance().getRuntime().sendMessage(queueId, Jemo.toJSONString(message)),Level.FINE);
 				}
-			}catch(QueueDoesNotExistException qNfEx) {
+				return;
+			}
+			final JemoMessageCodec codec = codecFor(queueId);
+			final MessageCompression compression = compressionFor(queueId);
+			final int compressionThreshold = JemoPluginManager.getServerInstance().getMessageCompressionThreshold();
+			List<String> payloadList = new ArrayList<>();
+			for(JemoMessage message : messages) {
+				payloadList.add(encode(codec, compression, compressionThreshold, message));
+			}
+			if(payloadList.size() == 1) {
+				Jemo.log("[MESSAGE SENT]{"+queueId+"} - MessageID: "+CloudProvider.getInstance().getRuntime().sendMessage(queueId, payloadList.get(0)),Level.FINE);
+			} else {
+				Jemo.log("[MESSAGE SENT]{"+queueId+"} - MessageID: "+CloudProvider.getInstance().getRuntime().sendMessages(queueId, payloadList),Level.FINE);
+			}
+		}catch(QueueDoesNotExistException qNfEx) {
+			for(JemoMessage message : messages) {
 				Jemo.log(Level.WARNING, "[MESSAGE FAILED]{%s} - Message: %s",queueId, Jemo.toJSONString(message));
 			}
 		}
 	}
-	
-	public static final void broadcast(String location, JemoMessage message) throws JsonProcessingException {
-		prepareMessage(message);
-		List<String> queueUrls;
+
+	/**
+	 * this method will write a message as the payload which is sent to the queue. messages whose encoded size reaches the threshold
+	 * are compressed, as long as compressing them actually makes the payload smaller.
+	 */
+	static String encode(JemoMessageCodec codec, MessageCompression compression, int compressionThreshold, JemoMessage message) throws JsonProcessingException {
 		try {
-			if(location.equals(JemoMessage.LOCATION_ANYWHERE)) {
-				queueUrls = CloudProvider.getInstance().getRuntime().listQueueIds(null);
-			} else if(location.equals(JemoMessage.LOCATION_LOCALLY)) {
-				queueUrls = CloudProvider.getInstance().getRuntime().listQueueIds(JemoPluginManager.getServerInstance().getLOCATION());
-			} else if(location.equals(JemoMessage.LOCATION_CLOUD)) {
-				queueUrls = new ArrayList<>();
-				Arrays.asList(Jemo.CLOUD_LOCATIONS).forEach(l -> queueUrls.addAll(CloudProvider.getInstance().getRuntime().listQueueIds(l)));
-			} else {
-				queueUrls = CloudProvider.getInstance().getRuntime().listQueueIds(location);
+			if(compression == null) {
+				return codec.encode(message);
 			}
-		}catch(Throwable ex) {
-			Jemo.log(Level.WARNING, "[%s] no destinations for the message could be found because of error %s. message broadcast request ignored.", location, ex.getMessage());
-			return;
-		}
-		final String msgJson = toJSONString(message);
-		if(!queueUrls.contains(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL())) {
-			switch(location) {
-				case JemoMessage.LOCATION_ANYWHERE:
-				case JemoMessage.LOCATION_LOCALLY:
-					queueUrls.add(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL());
-					break;
-				case JemoMessage.LOCATION_CLOUD:
-					if(Arrays.asList(Jemo.CLOUD_LOCATIONS).stream().anyMatch(cl -> JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL().toUpperCase().contains("/JEMO-"+cl.toUpperCase()))) {
-						queueUrls.add(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL());
-					}
-					break;
-				default:
-					if(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL().toUpperCase().contains("/JEMO-"+location.toUpperCase())) {
-						queueUrls.add(JemoPluginManager.getServerInstance().getINSTANCE_QUEUE_URL());
+			byte[] data = codec.toBytes(message);
+			String payload = codec.toPayload(data);
+			if(data.length >= compressionThreshold) {
+				String compressedPayload = compression.write(codec, data);
+				if(compressedPayload.length() < payload.length()) {
+					return compressedPayload;
+				}
+			}
+			return payload;
+		} catch(JsonProcessingException jsonEx) {
+			throw jsonEx;
+		} catch(IOException ioEx) {
+			Jemo.log(Level.WARNING, "[%s] the message %s could not be encoded and will be sent as json: %s", codec.getName(), message.getId(), JemoError.toString(ioEx));
+			return Jemo.toJSONString(message);
+		}
+	}
+
+	/**
+	 * this method will send a message to every active instance in a location.
+	 *
+	 * the instances are taken from the cluster membership view and the message is sent to each of their queues on the broadcast
+	 * executor, so a slow queue only holds up its own send. the message is encoded once for each format the queues need and every
+	 * send which has not finished when the broadcast timeout runs out is abandoned. the message is scheduled directly if this
+	 * instance is one of the targets.
+	 *
+	 * @param location the location to broadcast to, this can be ANYWHERE, LOCALLY, CLOUD or the name of a location.
+	 * @param message the message to broadcast.
+	 * @return what happened to the message at each of the instances it was sent to.
+	 * @throws JsonProcessingException if the message could not be serialised.
+	 */
+	public static final BroadcastResult broadcast(String location, JemoMessage message) throws JsonProcessingException {
+		prepareMessage(message);
+		resolveVersion(message); //the version has to be set before the message is encoded for the other instances.
+		final AbstractJemo server = JemoPluginManager.getServerInstance();
+		final JemoClusterMembership.View view = server.getClusterMembership().getView();
+		final Map<String,List<String>> targetMap = new TreeMap<>(); //location -> instances
+		view.getActiveInstances().stream()
+			.filter(inst -> !inst.equals(server.getINSTANCE_ID()) && view.getInstanceLocationMap().get(inst) != null)
+			.filter(inst -> isBroadcastLocation(location, view.getInstanceLocationMap().get(inst)))
+			.forEach(inst -> targetMap.computeIfAbsent(view.getInstanceLocationMap().get(inst), l -> new ArrayList<>()).add(inst));
+
+		final BroadcastResult result = new BroadcastResult(location);
+		final Map<String,String> payloadMap = new HashMap<>(); //format -> payload
+		final Map<BroadcastResult.Target,Future<Boolean>> sendMap = new LinkedHashMap<>();
+		final long deadline = System.currentTimeMillis() + server.getBroadcastTimeout();
+		for(Map.Entry<String,List<String>> entry : targetMap.entrySet()) {
+			final String targetLocation = entry.getKey();
+			for(String instanceId : entry.getValue()) {
+				final String queueId = server.getRoutingTable().getQueueId(instanceId, targetLocation);
+				final BroadcastResult.Target target = result.addTarget(instanceId, targetLocation, queueId);
+				if(queueId == null) {
+					target.setStatus(BroadcastResult.Status.FAILED, "the queue of the instance does not exist");
+					continue;
+				}
+				final JemoMessageCodec codec = codecFor(queueId);
+				final MessageCompression compression = compressionFor(queueId);
+				final String format = codec.getName() + ":" + (compression == null ? "" : compression.getName());
+				String payload = payloadMap.get(format);
+				if(payload == null) {
+					payload = encode(codec, compression, server.getMessageCompressionThreshold(), message);
+					payloadMap.put(format, payload);
+				}
+				final String fPayload = payload;
+				sendMap.put(target, server.getBROADCAST_EXECUTOR().submit(() -> {
+					if(!isTransmittable(message, queueId, targetLocation)) {
+						return false;
 					}
+					CloudProvider.getInstance().getRuntime().sendMessage(queueId, fPayload);
+					return true;
+				}));
 			}
 		}
-		//make sure we are not sending to dead instances.
-		Set<String> activeInstances = JemoPluginManager.getServerInstance().getPluginManager().getActiveLocationList().stream()
-			.flatMap(l -> JemoPluginManager.getServerInstance().getPluginManager().listInstances(l).stream().map(inst -> ("jemo-"+l+"-"+inst).toUpperCase()))
-			.collect(Collectors.toSet());
 
-		queueUrls.removeIf(q -> !activeInstances.contains(CloudProvider.getInstance().getRuntime().getQueueName(q).toUpperCase()));
-		
-		queueUrls.parallelStream().forEach((q) -> {
+		//the message is only handed to our own scheduler once it has been encoded for everyone else.
+		if(isBroadcastLocation(location, server.getLOCATION())) {
+			final BroadcastResult.Target target = result.addTarget(server.getINSTANCE_ID(), server.getLOCATION(), server.getINSTANCE_QUEUE_URL());
 			try {
-				String queueName = CloudProvider.getInstance().getRuntime().getQueueName(q);
-				transmitMessage(message, q, queueName.substring(5,queueName.length()-37));
+				if(isTransmittable(message, server.getINSTANCE_QUEUE_URL(), server.getLOCATION())) {
+					server.sys_getInstanceQueueListener().scheduleMessage(message);
+					target.setStatus(BroadcastResult.Status.DELIVERED, null);
+				} else {
+					target.setStatus(BroadcastResult.Status.SKIPPED, null);
+				}
 			}catch(Throwable ex) {
-				Jemo.log(Level.FINE, "[%s][%s] could not broadcast message the queue probably does not exist: message body: %s error %s", q, location, msgJson, JemoError.toString(ex));
+				target.setStatus(BroadcastResult.Status.FAILED, JemoError.toString(ex));
+			}
+		}
+
+		for(Map.Entry<BroadcastResult.Target,Future<Boolean>> entry : sendMap.entrySet()) {
+			final BroadcastResult.Target target = entry.getKey();
+			try {
+				boolean sent = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				target.setStatus(sent ? BroadcastResult.Status.DELIVERED : BroadcastResult.Status.SKIPPED, null);
+			}catch(TimeoutException timeoutEx) {
+				entry.getValue().cancel(true);
+				target.setStatus(BroadcastResult.Status.TIMED_OUT, "the message was not sent within "+server.getBroadcastTimeout()+"ms");
+			}catch(ExecutionException ex) {
+				target.setStatus(BroadcastResult.Status.FAILED, JemoError.toString(ex.getCause()));
+				Jemo.log(Level.FINE, "[%s][%s] could not broadcast message the queue probably does not exist: message id: %s error %s", target.getQueueId(), location, message.getId(), JemoError.toString(ex.getCause()));
+			}catch(InterruptedException irrEx) {
+				Thread.currentThread().interrupt();
+				entry.getValue().cancel(true);
+				target.setStatus(BroadcastResult.Status.FAILED, "the broadcast was interrupted");
 			}
-		});
-		Jemo.log(Level.FINE, "broadcasted to [%s] - %s", location, msgJson);
+		}
+		Jemo.log(result.isSuccessful() ? Level.FINE : Level.WARNING, "broadcasted message %s: %s", message.getId(), result.toString());
+		return result;
+	}
+
+	/**
+	 * @param location the location a message is broadcast to.
+	 * @param instanceLocation the location an instance runs in.
+	 * @return true if the instance should receive the broadcast.
+	 */
+	private static boolean isBroadcastLocation(String location, String instanceLocation) {
+		switch(location) {
+			case JemoMessage.LOCATION_ANYWHERE:
+				return true;
+			case JemoMessage.LOCATION_LOCALLY:
+				return instanceLocation.equalsIgnoreCase(JemoPluginManager.getServerInstance().getLOCATION());
+			case JemoMessage.LOCATION_CLOUD:
+				return Arrays.stream(Jemo.CLOUD_LOCATIONS).anyMatch(instanceLocation::equalsIgnoreCase);
+			default:
+				return instanceLocation.equalsIgnoreCase(location);
+		}
 	}
 }
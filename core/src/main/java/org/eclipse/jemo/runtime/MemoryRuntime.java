@@ -23,12 +23,14 @@ import org.eclipse.jemo.sys.ClusterParams;
 import org.eclipse.jemo.sys.internal.TerraformJob;
 import org.eclipse.jemo.sys.internal.Util;
 import org.eclipse.jemo.api.JemoParameter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.io.*;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Handler;
 import java.util.logging.Logger;
@@ -68,7 +70,7 @@ public class MemoryRuntime implements CloudRuntime {
 
 		private final String ID;
 		private final String name;
-		private final List<Message> messages = new CopyOnWriteArrayList<>();
+		private final Queue<Message> messages = new ConcurrentLinkedQueue<>(); //fifo ordered and non-blocking on both the producer and the consumer side.
 		private final AtomicInteger total = new AtomicInteger(0);
 		private final AtomicInteger retrieved = new AtomicInteger(0);
 		public final AtomicInteger processed = new AtomicInteger(0);
@@ -86,16 +88,20 @@ public class MemoryRuntime implements CloudRuntime {
 			return ID;
 		}
 
-		public synchronized String sendMessage(String data) {
+		public String sendMessage(String data) {
 			Message msg = new Message(data);
-			messages.add(msg);
+			messages.offer(msg);
 			//System.out.println(String.format("QUEUE [%s] - message added total messages to process are: %d total added to queue %d retrieved %d processed %d", getName(), messages.size(), total.addAndGet(1), retrieved.get(), processed.get()));
 			return msg.getID();
 		}
 
-		public synchronized List<Message> retrieveMessages(int quantity) {
-			List<Message> result = messages.stream().limit(quantity).collect(Collectors.toList());
-			messages.removeIf(m -> result.stream().anyMatch(r -> r.getID().equals(m.getID())));
+		public List<Message> retrieveMessages(int quantity) {
+			//each poll removes the head of the queue so a message can only ever be handed to a single consumer.
+			List<Message> result = new ArrayList<>(quantity);
+			Message msg;
+			while(result.size() < quantity && (msg = messages.poll()) != null) {
+				result.add(msg);
+			}
 			/*if(!result.isEmpty()) {
 				System.out.println(String.format("QUEUE [%s] - message retrieved total messages to process are: %d total added to queue %d retrieved %d processed %d", getName(), messages.size(), total.get(), retrieved.addAndGet(result.size()), processed.get()));
 			}*/
@@ -104,39 +110,42 @@ public class MemoryRuntime implements CloudRuntime {
 	}
 
 	private static class MessageQueueSystem {
-		private final List<MessageQueue> queueList = new ArrayList<>();
-
-		protected synchronized MessageQueue createQueue(String queueName) {
-			MessageQueue queue = queueList.stream().filter(q -> q.getName().equals(queueName)).findAny().orElse(null);
-			if(queue == null) {
-				queue = new MessageQueue(queueName);
-				queueList.add(queue);
-			}
-
-			return queue;
+		private final Map<String,MessageQueue> queuesById = new ConcurrentHashMap<>();
+		private final Map<String,MessageQueue> queuesByName = new ConcurrentHashMap<>();
+
+		protected MessageQueue createQueue(String queueName) {
+			return queuesByName.computeIfAbsent(queueName, n -> {
+				MessageQueue queue = new MessageQueue(n);
+				queuesById.put(queue.getID(), queue);
+				return queue;
+			});
 		}
 
-		protected synchronized void deleteQueue(String queueId) {
-			queueList.removeIf(q -> q.getID().equals(queueId));
+		protected void deleteQueue(String queueId) {
+			MessageQueue queue = queuesById.remove(queueId);
+			if(queue != null) {
+				queuesByName.remove(queue.getName(), queue);
+			}
 		}
 
 		protected MessageQueue getQueue(String queueId) {
-			return queueList.stream().filter(q -> q.getID().equals(queueId)).findAny().orElse(null);
+			return queueId == null ? null : queuesById.get(queueId);
 		}
 
 		protected MessageQueue getQueueByName(String queueName) {
-			return queueList.stream().filter(q -> q.getName().equals(queueName)).findAny().orElse(null);
+			return queueName == null ? null : queuesByName.get(queueName);
 		}
 
-		protected List<MessageQueue> listQueues() {
-			return queueList;
+		protected Collection<MessageQueue> listQueues() {
+			return queuesById.values();
 		}
 	}
 
 	private static class NoSQLDatabase {
 		private static class NoSQLDataRow {
 			private final String id;
-			private String data;
+			private final String data;
+			private volatile JsonNode tree = null;
 
 			protected NoSQLDataRow(String id,String data) {
 				this.id = id;
@@ -151,14 +160,29 @@ public class MemoryRuntime implements CloudRuntime {
 				return data;
 			}
 
-			public void setData(String data) {
-				this.data = data;
+			/**
+			 * rows are immutable so the parsed json tree can be kept for the lifetime of the row, this means that
+			 * repeated reads of the same row will only bind the tree to the requested type instead of parsing the json again.
+			 * we do not hand out shared instances of the typed object because callers are free to modify what they read.
+			 */
+			public <T extends Object> T getData(Class<T> objectType) throws IOException {
+				if(data == null || data.isEmpty()) {
+					return null;
+				}
+				JsonNode rowTree = tree;
+				if(rowTree == null) {
+					rowTree = Util.mapper.readTree(data);
+					tree = rowTree;
+				}
+				return READER_CACHE.computeIfAbsent(objectType, t -> Util.mapper.readerFor(t)).readValue(rowTree);
 			}
 		}
 
+		private static final Map<Class,ObjectReader> READER_CACHE = new ConcurrentHashMap<>();
+
 		protected static class NoSQLTable {
 			private final String name;
-			private final List<NoSQLDataRow> rows = new ArrayList<>();
+			private final Map<String,NoSQLDataRow> rows = new ConcurrentHashMap<>();
 
 			protected NoSQLTable(String name) {
 				this.name = name;
@@ -168,42 +192,37 @@ public class MemoryRuntime implements CloudRuntime {
 				return name;
 			}
 
-			public synchronized NoSQLDataRow getRow(String id) {
-				return rows.stream().filter(r -> r.getId().equals(id)).findAny().orElse(null);
+			public NoSQLDataRow getRow(String id) {
+				return id == null ? null : rows.get(id);
+			}
+
+			public void setRow(NoSQLDataRow row) {
+				rows.put(row.getId(), row);
 			}
 
-			public synchronized void setRow(NoSQLDataRow row) {
-				NoSQLDataRow r = getRow(row.getId());
-				if(r == null) {
-					rows.add(row);
-				} else {
-					r.setData(row.getData());
+			public void deleteRow(String id) {
+				if(id != null) {
+					rows.remove(id);
 				}
 			}
 
-			public synchronized void deleteRow(String id) {
-				rows.removeIf(r -> r.getId().equals(id));
+			public Collection<NoSQLDataRow> listRows() {
+				return rows.values();
 			}
 		}
 
-		private final List<NoSQLTable> tables = new ArrayList<>();
+		private final Map<String,NoSQLTable> tables = new ConcurrentHashMap<>();
 
-		protected synchronized NoSQLTable getTableByName(String tableName) {
-			return tables.stream().filter(t -> t.getName().equals(tableName)).findAny().orElse(null);
+		protected NoSQLTable getTableByName(String tableName) {
+			return tableName == null ? null : tables.get(tableName);
 		}
 
-		protected synchronized NoSQLTable createTable(String tableName) {
-			NoSQLTable table = getTableByName(tableName);
-			if(table == null) {
-				table = new NoSQLTable(tableName);
-				tables.add(table);
-			}
-
-			return table;
+		protected NoSQLTable createTable(String tableName) {
+			return tables.computeIfAbsent(tableName, NoSQLTable::new);
 		}
 
-		protected synchronized void dropTable(String tableName) {
-			tables.removeIf(t -> t.getName().equals(tableName));
+		protected void dropTable(String tableName) {
+			tables.remove(tableName);
 		}
 	}
 
@@ -303,6 +322,12 @@ public class MemoryRuntime implements CloudRuntime {
 		return QUEUE_SYSTEM.getQueue(queueId).sendMessage(jsonMessage);
 	}
 
+	@Override
+	public List<String> sendMessages(String queueId, List<String> jsonMessages) {
+		MessageQueue q = QUEUE_SYSTEM.getQueue(queueId);
+		return jsonMessages.stream().map(q::sendMessage).collect(Collectors.toList());
+	}
+
 	@Override
 	public String getQueueId(String queueName) {
 		MessageQueue queue = QUEUE_SYSTEM.getQueueByName(queueName);
@@ -314,6 +339,7 @@ public class MemoryRuntime implements CloudRuntime {
 		return QUEUE_SYSTEM.listQueues().stream()
 			.filter(q -> location == null || q.getName().startsWith("JEMO-"+location))
 			.filter(q -> includeWorkQueues || !q.getName().endsWith("-WORK-QUEUE"))
+			.filter(q -> !q.getName().endsWith(DEAD_LETTER_QUEUE_SUFFIX))
 			.map(q -> q.getID())
 			.collect(Collectors.toList());
 	}
@@ -325,12 +351,22 @@ public class MemoryRuntime implements CloudRuntime {
 	}
 
 	@Override
-	public synchronized int pollQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException {
+	public int pollQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException {
+		return pollQueue(queueId, processor, 10); //retrieve 10 messages at a time.
+	}
+
+	@Override
+	public int getMaxPollSize() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int pollQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
 		MessageQueue q = QUEUE_SYSTEM.getQueue(queueId);
 		if(q != null) {
-			List<MessageQueue.Message> msgList = q.retrieveMessages(10); //retrieve 10 messages at a time.
+			List<MessageQueue.Message> msgList = q.retrieveMessages(Math.max(1, maxMessages));
 			msgList.forEach(m -> {
-				Util.B(null, x -> processor.processMessage(Util.fromJSONString(JemoMessage.class, m.getData())));
+				Util.B(null, x -> processor.processMessage(JemoMessageCodec.read(m.getData())));
 				/*System.out.println(String.format("QUEUE [%s] - message processed total messages to process are: %d total added to queue %d retrieved %d processed %d", q.getName(), q.messages.size(), q.total.get(), 
 					q.retrieved.get(), q.processed.addAndGet(1)));*/
 			});
@@ -357,16 +393,20 @@ public class MemoryRuntime implements CloudRuntime {
 
 	@Override
 	public <T> List<T> listNoSQL(String tableName, Class<T> objectType) {
-		return NOSQL_DATABASE.getTableByName(tableName).rows.stream()
-			.map(r -> Util.F(null, x -> Util.fromJSONString(objectType, r.getData())))
+		return NOSQL_DATABASE.getTableByName(tableName).listRows().stream()
+			.map(r -> Util.F(null, x -> r.getData(objectType)))
 			.collect(Collectors.toList());
 	}
 
 	@Override
 	public <T> List<T> queryNoSQL(String tableName, Class<T> objectType, String... pkList) {
-		return NOSQL_DATABASE.getTableByName(tableName).rows.stream()
-			.filter(r -> asList(pkList).contains(r.getId()))
-			.map(r -> Util.F(null, x -> Util.fromJSONString(objectType, r.getData())))
+		//queries are only ever made on the primary key so we can resolve each key directly from the table index.
+		NoSQLDatabase.NoSQLTable table = NOSQL_DATABASE.getTableByName(tableName);
+		return Arrays.stream(pkList)
+			.distinct()
+			.map(table::getRow)
+			.filter(Objects::nonNull)
+			.map(r -> Util.F(null, x -> r.getData(objectType)))
 			.collect(Collectors.toList());
 	}
 
@@ -374,7 +414,7 @@ public class MemoryRuntime implements CloudRuntime {
 	public <T> T getNoSQL(String tableName, String id, Class<T> objectType) throws IOException {
 		NoSQLDatabase.NoSQLDataRow row = NOSQL_DATABASE.getTableByName(tableName).getRow(id);
 		if(row != null) {
-			return Util.fromJSONString(objectType,row.getData());
+			return row.getData(objectType);
 		}
 
 		return null;
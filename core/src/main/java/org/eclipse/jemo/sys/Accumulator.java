@@ -17,12 +17,35 @@ public class Accumulator {
     @JsonProperty
     private AtomicLong totalTime = new AtomicLong();
 
-    public synchronized Accumulator add(long execTime) {
+    @JsonProperty
+    private LatencyHistogram histogram = new LatencyHistogram();
+
+    public Accumulator add(long execTime) {
         samples.incrementAndGet();
         totalTime.addAndGet(execTime);
+        histogram.record(execTime);
         return this;
     }
 
+    /**
+     * Adds the samples of another accumulator to this one, this is used when the statistics of several instances are combined.
+     *
+     * @param other the accumulator to merge into this one.
+     * @return a reference to this accumulator.
+     */
+    public Accumulator merge(Accumulator other) {
+        if (other != null && other != this) {
+            samples.addAndGet(other.samples.get());
+            totalTime.addAndGet(other.totalTime.get());
+            histogram.merge(other.histogram);
+        }
+        return this;
+    }
+
+    public LatencyHistogram histogram() {
+        return histogram;
+    }
+
     public double avg() {
         return ((double) totalTime.get()) / samples.get();
     }
@@ -32,6 +55,7 @@ public class Accumulator {
         return "Accumulator{" +
                 "samples=" + samples +
                 ", totalTime=" + totalTime +
+                ", histogram=" + histogram +
                 '}';
     }
 
@@ -0,0 +1,403 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.Jemo;
+import org.eclipse.jemo.api.JemoParameter;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.JemoError;
+import org.eclipse.jemo.internal.model.JemoMessage;
+import org.eclipse.jemo.internal.model.JemoMessageCodec;
+import org.eclipse.jemo.sys.internal.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * this class keeps a locally cached and eventually consistent view of the instances and locations which make up the GSM.
+ *
+ * the view is rebuilt in the background from a single listing of the instance queues and the last poll time of each instance,
+ * and is updated in between refreshes by heartbeats which instances push to each other when they join or leave the cluster.
+ * reads always return the current immutable snapshot so they never lock and never go to the cloud runtime on the hot path.
+ *
+ * the view also holds the message codecs and compression algorithms each instance can read, instances publish these once when
+ * they start and again in their join heartbeat, so that messages are only sent in a format every instance reading the destination
+ * queue understands.
+ */
+public class JemoClusterMembership {
+
+	public static final String EVENT_HEARTBEAT = "MEMBERSHIP_HEARTBEAT";
+	public static final String ATTR_INSTANCE = "MEMBERSHIP_INSTANCE";
+	public static final String ATTR_LOCATION = "MEMBERSHIP_LOCATION";
+	public static final String ATTR_TIMESTAMP = "MEMBERSHIP_TIMESTAMP";
+	public static final String ATTR_CODECS = "MEMBERSHIP_CODECS";
+
+	private static final String QUEUE_NAME_PREFIX = "JEMO-";
+	private static final int INSTANCE_ID_LENGTH = 36;
+	private static final long ACTIVE_WINDOW = TimeUnit.MINUTES.toMillis(5); //an instance which has polled in the last 5 minutes is considered active.
+
+	/**
+	 * an immutable snapshot of the cluster. all of the derived collections are computed when the snapshot is built.
+	 */
+	public static final class View {
+		private final long createdOn;
+		private final Map<String,String> instanceLocationMap; //all instances which have a queue mapped to their location
+		private final Map<String,Long> lastPollMap;
+		private final Set<String> activeInstances;
+		private final Set<String> activeLocations;
+		private final Map<String,List<String>> activeInstancesByLocation;
+		private final Map<String,Set<String>> codecMap;
+
+		private View(long createdOn, Map<String,String> instanceLocationMap, Map<String,Long> lastPollMap, Map<String,Set<String>> codecMap) {
+			this.createdOn = createdOn;
+			this.codecMap = Collections.unmodifiableMap(codecMap);
+			this.instanceLocationMap = Collections.unmodifiableMap(instanceLocationMap);
+			this.lastPollMap = Collections.unmodifiableMap(lastPollMap);
+			Set<String> active = new HashSet<>();
+			Map<String,List<String>> byLocation = new HashMap<>();
+			instanceLocationMap.forEach((inst,loc) -> {
+				Long lastPoll = lastPollMap.get(inst);
+				if(lastPoll != null && createdOn - ACTIVE_WINDOW < lastPoll) {
+					active.add(inst);
+					byLocation.computeIfAbsent(loc, l -> new ArrayList<>()).add(inst);
+				}
+			});
+			this.activeInstances = Collections.unmodifiableSet(active);
+			this.activeLocations = Collections.unmodifiableSet(new HashSet<>(byLocation.keySet()));
+			this.activeInstancesByLocation = Collections.unmodifiableMap(byLocation);
+		}
+
+		public long getCreatedOn() {
+			return createdOn;
+		}
+
+		public Map<String,String> getInstanceLocationMap() {
+			return instanceLocationMap;
+		}
+
+		public Set<String> getActiveInstances() {
+			return activeInstances;
+		}
+
+		public Set<String> getActiveLocations() {
+			return activeLocations;
+		}
+
+		public List<String> getActiveInstances(String location) {
+			List<String> instanceList = activeInstancesByLocation.get(location);
+			return instanceList == null ? Collections.emptyList() : Collections.unmodifiableList(instanceList);
+		}
+
+		public boolean isKnown(String instanceId) {
+			return lastPollMap.containsKey(instanceId) || instanceLocationMap.containsKey(instanceId);
+		}
+
+		public boolean isActive(String instanceId) {
+			Long lastPoll = lastPollMap.get(instanceId);
+			return lastPoll != null && System.currentTimeMillis() - ACTIVE_WINDOW < lastPoll;
+		}
+
+		/**
+		 * @param instanceId the id of the instance.
+		 * @param codec the name of the codec or compression algorithm.
+		 * @return true if the instance has advertised that it can read messages written with the codec, json can always be read.
+		 */
+		public boolean supportsCodec(String instanceId, String codec) {
+			if(JemoMessageCodec.JSON.getName().equals(codec)) {
+				return true;
+			}
+			Set<String> codecs = codecMap.get(instanceId);
+			return codecs != null && codecs.contains(codec);
+		}
+
+		/**
+		 * the work queue of a location can be read by any instance in the location, even one which is not currently active, so
+		 * a codec is only considered supported if every instance we know of in the location can read it.
+		 *
+		 * @param location the location or GLOBAL for the global work queue.
+		 * @param codec the name of the codec or compression algorithm.
+		 * @return true if every known instance in the location can read messages written with the codec.
+		 */
+		public boolean supportsCodecInLocation(String location, String codec) {
+			List<String> instanceList = instanceLocationMap.entrySet().stream()
+				.filter(e -> "GLOBAL".equalsIgnoreCase(location) || e.getValue().equalsIgnoreCase(location))
+				.map(Map.Entry::getKey)
+				.collect(Collectors.toList());
+			return !instanceList.isEmpty() && instanceList.stream().allMatch(inst -> supportsCodec(inst, codec));
+		}
+	}
+
+	private final AbstractJemo jemoServer;
+	private final long refreshInterval;
+	private final Map<String,Long> HEARTBEATS = new ConcurrentHashMap<>(); //heartbeats pushed to us which are still in the active window.
+	private final Map<String,String> HEARTBEAT_LOCATIONS = new ConcurrentHashMap<>();
+	private final Map<String,Long> DEPARTED = new ConcurrentHashMap<>(); //instances which told us they left, until their last poll is no longer active.
+	private final Map<String,Set<String>> CODECS = new ConcurrentHashMap<>(); //the codecs each instance can read, these never change while an instance runs.
+	private final AtomicBoolean refreshing = new AtomicBoolean(false);
+	private volatile View view = null;
+	private ScheduledFuture<?> refreshTask = null;
+
+	public JemoClusterMembership(AbstractJemo jemoServer) {
+		this.jemoServer = jemoServer;
+		this.refreshInterval = TimeUnit.SECONDS.toMillis(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.MEMBERSHIP_REFRESH.label(), "10")));
+	}
+
+	/**
+	 * this method will build the first view of the cluster, schedule the background refresh and announce this instance to the
+	 * other members of the cluster.
+	 */
+	public synchronized void start() {
+		if(refreshTask == null) {
+			publishCodecs();
+			refresh();
+			refreshTask = jemoServer.getSCHEDULER().scheduleWithFixedDelay(() -> refresh(), refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+			announce(true);
+		}
+	}
+
+	/**
+	 * this method will stop the background refresh and tell the other members of the cluster that this instance is leaving.
+	 */
+	public synchronized void stop() {
+		if(refreshTask != null) {
+			refreshTask.cancel(false);
+			refreshTask = null;
+			announce(false);
+		}
+	}
+
+	/**
+	 * @return the current snapshot of the cluster, if the snapshot is older than the refresh interval a refresh will be started
+	 * in the background and the current snapshot will be returned in the meantime.
+	 */
+	public View getView() {
+		View currentView = view;
+		if(currentView == null) {
+			return refresh();
+		} else if(System.currentTimeMillis() - currentView.getCreatedOn() > refreshInterval * 2) {
+			refreshAsync();
+		}
+
+		return currentView;
+	}
+
+	/**
+	 * this method will check if an instance is active, instances which are not part of our view will be checked directly against the
+	 * cloud runtime as they may have joined since the view was last built.
+	 *
+	 * @param instanceId the id of the instance to check
+	 * @return true if the instance has polled its queue in the last 5 minutes.
+	 */
+	public boolean isInstanceActive(String instanceId) {
+		View currentView = getView();
+		if(currentView.isKnown(instanceId)) {
+			return currentView.isActive(instanceId);
+		}
+
+		Long lastPollDate = CloudProvider.getInstance().getRuntime().retrieve(instanceId + ".lastpoll", Long.class);
+		return lastPollDate != null && System.currentTimeMillis() - ACTIVE_WINDOW < lastPollDate;
+	}
+
+	/**
+	 * records a heartbeat from an instance, if the instance was not previously active the view will be rebuilt straight away
+	 * so the instance can be targeted without waiting for the next refresh.
+	 *
+	 * @param instanceId the id of the instance the heartbeat is from.
+	 * @param location the location the instance is running in.
+	 * @param timestamp the time the heartbeat was sent or 0 if the instance is leaving the cluster.
+	 */
+	public void heartbeat(String instanceId, String location, long timestamp) {
+		if(instanceId == null || location == null) {
+			return;
+		}
+		if(timestamp == 0) {
+			//the last poll of an instance which has left will still be in storage so we keep excluding it until it is too old to count.
+			HEARTBEATS.remove(instanceId);
+			HEARTBEAT_LOCATIONS.remove(instanceId);
+			DEPARTED.put(instanceId, System.currentTimeMillis());
+		} else {
+			DEPARTED.remove(instanceId);
+			HEARTBEATS.merge(instanceId, timestamp, Math::max);
+			HEARTBEAT_LOCATIONS.put(instanceId, location);
+		}
+		View currentView = view;
+		if(currentView != null && (timestamp == 0 || !currentView.getActiveInstances().contains(instanceId))) {
+			synchronized(this) {
+				view = merge(view.instanceLocationMap, view.lastPollMap);
+			}
+		}
+	}
+
+	public void processHeartbeat(JemoMessage msg) {
+		Object timestamp = msg.getAttributes().get(ATTR_TIMESTAMP);
+		Object codecs = msg.getAttributes().get(ATTR_CODECS);
+		if(codecs instanceof Collection && msg.getAttributes().get(ATTR_INSTANCE) != null) {
+			CODECS.put((String)msg.getAttributes().get(ATTR_INSTANCE), toCodecSet(((Collection<?>)codecs).stream().map(String::valueOf).collect(Collectors.toList())));
+		}
+		heartbeat((String)msg.getAttributes().get(ATTR_INSTANCE), (String)msg.getAttributes().get(ATTR_LOCATION), timestamp instanceof Number ? ((Number)timestamp).longValue() : 0);
+	}
+
+	private void refreshAsync() {
+		if(refreshing.compareAndSet(false, true)) {
+			try {
+				jemoServer.getSCHEDULER().submit(() -> {
+					try {
+						refresh();
+					} finally {
+						refreshing.set(false);
+					}
+				});
+			} catch(Throwable ex) {
+				refreshing.set(false); //the scheduler may have been shutdown.
+			}
+		}
+	}
+
+	/**
+	 * this method will rebuild the view from the cloud runtime, this is the only place where the cluster is read from storage.
+	 *
+	 * @return the newly built view.
+	 */
+	public View refresh() {
+		try {
+			final Map<String,String> instanceLocationMap = new ConcurrentHashMap<>();
+			CloudProvider.getInstance().getRuntime().listQueueIds(null, false).stream()
+				.filter(q -> q.toUpperCase().contains(QUEUE_NAME_PREFIX))
+				.map(q -> q.substring(q.toUpperCase().indexOf(QUEUE_NAME_PREFIX)))
+				.filter(q -> q.length() > QUEUE_NAME_PREFIX.length() + INSTANCE_ID_LENGTH + 1)
+				.forEach(q -> instanceLocationMap.put(q.substring(q.length() - INSTANCE_ID_LENGTH), q.substring(QUEUE_NAME_PREFIX.length(), q.length() - (INSTANCE_ID_LENGTH + 1))));
+			final Map<String,Long> lastPollMap = new ConcurrentHashMap<>();
+			//these are blocking reads so they run on the work executor of the server rather than on the common fork join pool.
+			final List<Callable<Void>> lookups = instanceLocationMap.keySet().stream().map(inst -> (Callable<Void>)() -> {
+				Long lastPoll = CloudProvider.getInstance().getRuntime().retrieve(inst + ".lastpoll", Long.class);
+				if(lastPoll != null) {
+					lastPollMap.put(inst, lastPoll);
+				}
+				if(!CODECS.containsKey(inst)) {
+					//instances running a version of jemo without codecs will never publish any and so can only read json.
+					String codecs = CloudProvider.getInstance().getRuntime().retrieve(inst + ".codecs", String.class);
+					CODECS.put(inst, toCodecSet(codecs == null ? Collections.emptyList() : Arrays.asList(codecs.split(","))));
+				}
+				return null;
+			}).collect(Collectors.toList());
+			for(Future<Void> lookup : jemoServer.getWORK_EXECUTOR().invokeAll(lookups)) {
+				lookup.get();
+			}
+			synchronized(this) {
+				CODECS.keySet().removeIf(inst -> !instanceLocationMap.containsKey(inst) && !inst.equals(jemoServer.getINSTANCE_ID()));
+				//heartbeats and departures older than the active window can no longer change whether an instance is active.
+				final long expiredBefore = System.currentTimeMillis() - ACTIVE_WINDOW;
+				HEARTBEATS.values().removeIf(timestamp -> timestamp < expiredBefore);
+				HEARTBEAT_LOCATIONS.keySet().retainAll(HEARTBEATS.keySet());
+				DEPARTED.values().removeIf(leftOn -> leftOn < expiredBefore);
+				view = merge(instanceLocationMap, lastPollMap);
+			}
+		} catch(Throwable ex) {
+			jemoServer.LOG(Level.WARNING, "[%s] the cluster view could not be refreshed: %s", getClass().getSimpleName(), JemoError.toString(ex));
+			if(view == null) {
+				view = new View(System.currentTimeMillis(), new HashMap<>(), new HashMap<>(), new HashMap<>(CODECS));
+			}
+		}
+
+		return view;
+	}
+
+	private View merge(Map<String,String> instanceLocationMap, Map<String,Long> lastPollMap) {
+		Map<String,String> locations = new HashMap<>(instanceLocationMap);
+		Map<String,Long> lastPolls = new HashMap<>(lastPollMap);
+		HEARTBEATS.forEach((inst,timestamp) -> {
+			locations.putIfAbsent(inst, HEARTBEAT_LOCATIONS.get(inst));
+			lastPolls.merge(inst, timestamp, Math::max);
+		});
+		//instances which have told us they have left the cluster.
+		locations.keySet().removeAll(DEPARTED.keySet());
+		lastPolls.keySet().removeAll(DEPARTED.keySet());
+		locations.values().removeIf(loc -> loc == null);
+
+		return new View(System.currentTimeMillis(), locations, lastPolls, new HashMap<>(CODECS));
+	}
+
+	private static Set<String> toCodecSet(Collection<String> codecs) {
+		return Collections.unmodifiableSet(codecs.stream().map(String::trim).filter(c -> !c.isEmpty()).collect(Collectors.toSet()));
+	}
+
+	/**
+	 * this method will store the list of codecs this instance can read so that other instances can find it when they next refresh
+	 * their view.
+	 */
+	private void publishCodecs() {
+		if(jemoServer.getINSTANCE_ID() == null) {
+			return;
+		}
+		List<String> codecs = JemoMessageCodec.getReadableFormats();
+		CODECS.put(jemoServer.getINSTANCE_ID(), toCodecSet(codecs));
+		try {
+			CloudProvider.getInstance().getRuntime().store(jemoServer.getINSTANCE_ID() + ".codecs", String.join(",", codecs));
+		} catch(Throwable ex) {
+			jemoServer.LOG(Level.WARNING, "[%s] the codecs of this instance could not be published: %s", getClass().getSimpleName(), JemoError.toString(ex));
+		}
+	}
+
+	/**
+	 * pushes a heartbeat for this instance directly onto the queue of every other instance in the view.
+	 *
+	 * @param join true if we are joining the cluster and false if we are leaving it.
+	 */
+	private void announce(boolean join) {
+		View currentView = view;
+		if(currentView == null || jemoServer.getINSTANCE_ID() == null) {
+			return;
+		}
+		JemoMessage msg = new JemoMessage();
+		msg.setModuleClass(Jemo.class.getName());
+		msg.setPluginId(0);
+		msg.getAttributes().put(EVENT_HEARTBEAT, join ? "JOIN" : "LEAVE");
+		msg.getAttributes().put(ATTR_INSTANCE, jemoServer.getINSTANCE_ID());
+		msg.getAttributes().put(ATTR_LOCATION, jemoServer.getLOCATION());
+		msg.getAttributes().put(ATTR_TIMESTAMP, join ? System.currentTimeMillis() : 0);
+		msg.getAttributes().put(ATTR_CODECS, JemoMessageCodec.getReadableFormats());
+		final String msgJson = Util.F(null, x -> Jemo.toJSONString(msg));
+		currentView.getActiveInstances().stream()
+			.filter(inst -> !inst.equals(jemoServer.getINSTANCE_ID()))
+			.forEach(inst -> {
+				try {
+					String queueId = CloudProvider.getInstance().getRuntime().getQueueId(QUEUE_NAME_PREFIX + currentView.getInstanceLocationMap().get(inst) + "-" + inst);
+					if(queueId != null) {
+						CloudProvider.getInstance().getRuntime().sendMessage(queueId, msgJson);
+					}
+				} catch(Throwable ex) {
+					jemoServer.LOG(Level.FINE, "[%s] could not send heartbeat to instance %s: %s", getClass().getSimpleName(), inst, JemoError.toString(ex));
+				}
+			});
+	}
+}
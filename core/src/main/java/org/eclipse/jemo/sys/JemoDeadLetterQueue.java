@@ -0,0 +1,220 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.api.RetryPolicy;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.JemoError;
+import org.eclipse.jemo.internal.model.JemoMessage;
+import org.eclipse.jemo.internal.model.QueueDoesNotExistException;
+import org.eclipse.jemo.internal.model.ServerMessage;
+import org.eclipse.jemo.sys.internal.Util;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * this class manages the dead letter queue of the location this instance runs in.
+ *
+ * events which still fail after the last attempt allowed by the retry policy of their module are moved to the dead letter queue
+ * instead of being discarded, from there they can be replayed in bulk once the module has been fixed. messages are always written
+ * to the dead letter queue as json so that any instance in the location can replay them.
+ */
+public class JemoDeadLetterQueue {
+
+	private static final int REPLAY_BATCH_SIZE = 10;
+	private static final long COLLECT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+	public static class ReplayResult {
+		private final int replayed;
+		private final int retained;
+
+		private ReplayResult(int replayed, int retained) {
+			this.replayed = replayed;
+			this.retained = retained;
+		}
+
+		/**
+		 * @return the number of messages which were sent back to the location work queue.
+		 */
+		public int getReplayed() {
+			return replayed;
+		}
+
+		/**
+		 * @return the number of messages which were put back on the dead letter queue because their module is no longer deployed.
+		 */
+		public int getRetained() {
+			return retained;
+		}
+	}
+
+	private final AbstractJemo jemoServer;
+
+	public JemoDeadLetterQueue(AbstractJemo jemoServer) {
+		this.jemoServer = jemoServer;
+	}
+
+	/**
+	 * @param msg the message which failed.
+	 * @return the retry policy of the module the message is for or the default policy if the module does not define one.
+	 */
+	public RetryPolicy getRetryPolicy(JemoMessage msg) {
+		if(msg.getPluginId() != 0) {
+			ModuleLimit limits = jemoServer.getPluginManager().getModuleLimits(msg.getPluginId(), msg.getPluginVersion(), msg.getModuleClass());
+			if(limits != null && limits.getEventRetryPolicy() != null) {
+				return limits.getEventRetryPolicy();
+			}
+		}
+		return RetryPolicy.defaultInstance();
+	}
+
+	/**
+	 * this method will move a message which can no longer be retried to the dead letter queue.
+	 *
+	 * @param msg the message to move.
+	 * @param queueUrl the queue the message was last received from.
+	 */
+	public void add(JemoMessage msg, String queueUrl) {
+		try {
+			final String msgJson = Util.toJSONString(msg);
+			if(jemoServer.getDEAD_LETTER_QUEUE_URL() == null) {
+				jemoServer.LOG(Level.WARNING, "[%s][%s] Discarded message: %s too many errors, there is no dead letter queue", getClass().getSimpleName(), queueUrl, msgJson);
+				return;
+			}
+			CloudProvider.getInstance().getRuntime().sendMessage(jemoServer.getDEAD_LETTER_QUEUE_URL(), msgJson);
+			jemoServer.LOG(Level.WARNING, "[%s][%s][%d] message %s moved to the dead letter queue after %d attempts", getClass().getSimpleName(), queueUrl,
+				msg.getPluginId(), msg.getId(), msg.getExecutionCount());
+		}catch(Throwable ex) {
+			jemoServer.LOG(Level.SEVERE, "[%s][%s] message %s could not be moved to the dead letter queue and was discarded: %s", getClass().getSimpleName(), queueUrl,
+				msg.getId(), JemoError.toString(ex));
+		}
+	}
+
+	/**
+	 * @param received the queue the polled messages are delivered to.
+	 * @param messages the list to add the messages to.
+	 * @param count the number of messages the poll reported.
+	 * @return false if the thread was interrupted while it waited for the messages.
+	 */
+	private static boolean collect(BlockingQueue<JemoMessage> received, List<JemoMessage> messages, int count) {
+		final long deadline = System.currentTimeMillis() + COLLECT_TIMEOUT;
+		try {
+			for(int i = 0; i < count; i++) {
+				JemoMessage msg = received.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				if(msg == null) {
+					break; //messages the runtime could not decode are never delivered.
+				}
+				messages.add(msg);
+			}
+			return true;
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * this method will take messages off the dead letter queue. some runtimes hand the messages they poll to the processor on other threads
+	 * after the poll has returned, so the messages are collected on a blocking queue and each poll waits for the messages it reported
+	 * before the next one is made.
+	 *
+	 * @param maxMessages the maximum number of messages to take.
+	 * @return the messages taken off the dead letter queue.
+	 * @throws QueueDoesNotExistException if the dead letter queue does not exist.
+	 */
+	List<JemoMessage> poll(int maxMessages) throws QueueDoesNotExistException {
+		final List<JemoMessage> messages = new ArrayList<>();
+		final BlockingQueue<JemoMessage> received = new LinkedBlockingQueue<>();
+		while(messages.size() < maxMessages) {
+			final int polled = CloudProvider.getInstance().getRuntime().pollQueue(jemoServer.getDEAD_LETTER_QUEUE_URL(), received::add,
+				Math.min(REPLAY_BATCH_SIZE, maxMessages - messages.size()));
+			if(polled <= 0 || !collect(received, messages, polled)) {
+				break;
+			}
+		}
+		received.drainTo(messages); //anything which arrived after its poll stopped waiting.
+		return messages;
+	}
+
+	/**
+	 * this method will take messages off the dead letter queue and send them back to the work queue of this location with their
+	 * execution count reset. messages for modules which are no longer deployed are put back on the dead letter queue.
+	 *
+	 * @param maxMessages the maximum number of messages to replay, runtimes which cannot limit the number of messages they poll may replay a few more.
+	 * @return the number of messages replayed and retained.
+	 * @throws QueueDoesNotExistException if the dead letter queue does not exist.
+	 * @throws JsonProcessingException if a message could not be serialised.
+	 */
+	public ReplayResult replay(int maxMessages) throws QueueDoesNotExistException, JsonProcessingException {
+		final List<JemoMessage> messages = poll(maxMessages);
+		//the messages are no longer on the dead letter queue so they are kept as they were polled until they have been sent on.
+		final Map<JemoMessage,String> polledJson = new IdentityHashMap<>();
+		for(JemoMessage msg : messages) {
+			polledJson.put(msg, Util.toJSONString(msg));
+		}
+
+		final Map<Boolean,List<JemoMessage>> deployedMap = messages.stream()
+			.collect(Collectors.partitioningBy(msg -> msg.getPluginId() == 0 || jemoServer.getPluginManager().getApplication(msg.getPluginId(), msg.getPluginVersion()) != null));
+		final List<JemoMessage> replayList = deployedMap.get(true);
+		final List<String> retainList = deployedMap.get(false).stream().map(polledJson::get).collect(Collectors.toList());
+		List<JemoMessage> unsent = messages;
+		try {
+			if(!retainList.isEmpty()) {
+				CloudProvider.getInstance().getRuntime().sendMessages(jemoServer.getDEAD_LETTER_QUEUE_URL(), retainList);
+			}
+			unsent = replayList;
+			replayList.forEach(msg -> {
+				msg.setExecutionCount(0);
+				msg.json_setLastError(null);
+			});
+			if(!replayList.isEmpty()) {
+				ServerMessage.send(jemoServer.getLOCATION(), replayList);
+			}
+		} catch(RuntimeException | JsonProcessingException ex) {
+			restore(unsent.stream().map(polledJson::get).collect(Collectors.toList()));
+			throw ex;
+		}
+		jemoServer.LOG(Level.INFO, "[%s] replayed %d messages from the dead letter queue, %d messages were retained", getClass().getSimpleName(), replayList.size(), retainList.size());
+		return new ReplayResult(replayList.size(), retainList.size());
+	}
+
+	/**
+	 * this method will put messages which could not be sent on back on the dead letter queue, some of them may have been sent already
+	 * but a message which is replayed twice is better than a message which is lost.
+	 *
+	 * @param jsonMessages the messages as they were polled.
+	 */
+	private void restore(List<String> jsonMessages) {
+		try {
+			CloudProvider.getInstance().getRuntime().sendMessages(jemoServer.getDEAD_LETTER_QUEUE_URL(), jsonMessages);
+		} catch(Throwable ex) {
+			jemoServer.LOG(Level.SEVERE, "[%s] %d messages could not be put back on the dead letter queue and were discarded: %s %s", getClass().getSimpleName(),
+				jsonMessages.size(), JemoError.toString(ex), jsonMessages);
+		}
+	}
+}
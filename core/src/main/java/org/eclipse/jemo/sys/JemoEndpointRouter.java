@@ -0,0 +1,126 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * this is an immutable, case insensitive prefix tree over the set of endpoints registered with the plugin manager.
+ * a router is built once from a snapshot of the endpoints and is then swapped in as a whole whenever modules are
+ * registered or removed, this means that a lookup never needs to lock and never sees a partially updated set of endpoints.
+ *
+ * resolving a path walks the tree one character at a time and remembers the deepest endpoint it passed through, so the
+ * longest registered prefix of the path is found in a time proportional to the length of the path without creating any objects.
+ */
+public final class JemoEndpointRouter {
+
+    public static final JemoEndpointRouter EMPTY = new JemoEndpointRouter(new Node(new char[0], new Node[0], null));
+
+    private static final class Node {
+        private final char[] keys; //sorted so that children can be found with a binary search.
+        private final Node[] children;
+        private final String endpoint; //the original endpoint which terminates at this node or null if none does.
+
+        private Node(char[] keys, Node[] children, String endpoint) {
+            this.keys = keys;
+            this.children = children;
+            this.endpoint = endpoint;
+        }
+
+        private Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx < 0 ? null : children[idx];
+        }
+    }
+
+    /**
+     * a mutable node which is only used while the tree is being built.
+     */
+    private static final class Builder {
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+        private String endpoint = null;
+
+        private Node build() {
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> child : children.entrySet()) {
+                keys[i] = child.getKey();
+                nodes[i] = child.getValue().build();
+                i++;
+            }
+            return new Node(keys, nodes, endpoint);
+        }
+    }
+
+    private final Node root;
+
+    private JemoEndpointRouter(Node root) {
+        this.root = root;
+    }
+
+    public static JemoEndpointRouter build(Collection<String> endpointList) {
+        Builder root = new Builder();
+        for (String endpoint : endpointList) {
+            if (endpoint == null) {
+                continue;
+            }
+            Builder node = root;
+            for (int i = 0; i < endpoint.length(); i++) {
+                node = node.children.computeIfAbsent(normalise(endpoint.charAt(i)), c -> new Builder());
+            }
+            //if two endpoints only differ by case we will keep the one which sorts first so that routing is deterministic.
+            if (node.endpoint == null || endpoint.compareTo(node.endpoint) < 0) {
+                node.endpoint = endpoint;
+            }
+        }
+
+        return new JemoEndpointRouter(root.build());
+    }
+
+    /**
+     * this method will return the longest registered endpoint which is a case insensitive prefix of the path.
+     *
+     * @param path the path of the request being routed.
+     * @return the endpoint exactly as it was registered or null if no endpoint matches the path.
+     */
+    public String resolve(String path) {
+        if (path == null) {
+            return null;
+        }
+        Node node = root;
+        String match = node.endpoint;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.child(normalise(path.charAt(i)));
+            if (node == null) {
+                break;
+            }
+            if (node.endpoint != null) {
+                match = node.endpoint;
+            }
+        }
+
+        return match;
+    }
+
+    private static char normalise(char c) {
+        return Character.toUpperCase(c);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.internal.model.JemoError;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * this class decides if an event for a module with execution limits can start on this instance straight away.
+ *
+ * every limited module has a gate which counts the events it is running here. the instance limit is enforced exactly by the gate, the
+ * location and GSM limits are split into leases which are handed to the instances that currently have events running or waiting for the
+ * module. the leases are renewed in the background from the published event counters so an admission decision is a compare and swap on
+ * a local counter and never needs to read from storage.
+ *
+ * leases are eventually consistent, while instances start or stop needing a module the sum of the leases can briefly differ from the limit.
+ * a gate which has had nothing running or waiting for a whole lease interval is removed, it is created again by the next event.
+ */
+public class JemoEventAdmission {
+
+	public final class Gate {
+		private final long moduleId;
+		private final double moduleVersion;
+		private final String moduleClass;
+		private final AtomicInteger inFlight = new AtomicInteger(0);
+		private final AtomicInteger waiting = new AtomicInteger(0);
+		private volatile ModuleLimit limits;
+		private volatile int locationLease = 0;
+		private volatile int gsmLease = 0;
+		private volatile long lastUsed = System.currentTimeMillis();
+
+		private Gate(long moduleId, double moduleVersion, String moduleClass, ModuleLimit limits) {
+			this.moduleId = moduleId;
+			this.moduleVersion = moduleVersion;
+			this.moduleClass = moduleClass;
+			this.limits = limits;
+		}
+
+		private boolean isAllowed(int running) {
+			final ModuleLimit currentLimits = limits;
+			if(currentLimits.getMaxActiveEventsPerGSM() != -1 && gsmLease > running) {
+				return true;
+			} else if(currentLimits.getMaxActiveEventsPerLocation() != -1 && locationLease > running) {
+				return true;
+			} else if(currentLimits.getMaxActiveEventsPerInstance() != -1 && currentLimits.getMaxActiveEventsPerInstance() > running) {
+				return true;
+			}
+
+			return currentLimits.getMaxActiveEventsPerGSM() == -1 && currentLimits.getMaxActiveEventsPerLocation() == -1 && currentLimits.getMaxActiveEventsPerInstance() == -1;
+		}
+
+		/**
+		 * @return true if the event can start now, in which case release must be called once it has finished.
+		 */
+		public boolean tryAcquire() {
+			int running = inFlight.get();
+			while(isAllowed(running)) {
+				if(inFlight.compareAndSet(running, running+1)) {
+					return true;
+				}
+				running = inFlight.get();
+			}
+
+			return false;
+		}
+
+		public void release() {
+			inFlight.decrementAndGet();
+			lastUsed = System.currentTimeMillis();
+		}
+
+		/**
+		 * @return true if an event could start now without waiting, no permit is taken.
+		 */
+		public boolean hasCapacity() {
+			return waiting.get() == 0 && getNextLaunchTime() <= System.currentTimeMillis() && isAllowed(inFlight.get());
+		}
+
+		/**
+		 * @return the time at which the event frequency of the module allows the next event to start, this will be in the past if an event can start now.
+		 */
+		public long getNextLaunchTime() {
+			final ModuleLimit currentLimits = limits;
+			if(currentLimits.getEventFrequency() == null) {
+				return 0;
+			}
+			long lastLaunchedOn = jemoServer.getEventCounters().getLastLaunched(moduleId, moduleVersion, moduleClass);
+			return lastLaunchedOn == 0 ? 0 : lastLaunchedOn + currentLimits.getEventFrequency().getUnit().toMillis(currentLimits.getEventFrequency().getValue());
+		}
+
+		public void waiting(int delta) {
+			waiting.addAndGet(delta);
+			lastUsed = System.currentTimeMillis();
+			jemoServer.getEventCounters().adjustWaiting(moduleId, moduleVersion, moduleClass, delta);
+		}
+
+		public int getInFlight() {
+			return inFlight.get();
+		}
+
+		public int getLocationLease() {
+			return locationLease;
+		}
+
+		public int getGsmLease() {
+			return gsmLease;
+		}
+
+		private boolean isIdle(long now) {
+			return inFlight.get() == 0 && waiting.get() == 0 && now - lastUsed > leaseInterval;
+		}
+
+		private void renew(long slot) {
+			final ModuleLimit currentLimits = limits;
+			final boolean localDemand = inFlight.get() > 0 || waiting.get() > 0;
+			if(currentLimits.getMaxActiveEventsPerLocation() != -1) {
+				locationLease = lease(currentLimits.getMaxActiveEventsPerLocation(), jemoServer.getEventCounters().getInstancesWithDemand(jemoServer.getLOCATION(), moduleId, moduleVersion, moduleClass, localDemand), slot);
+			}
+			if(currentLimits.getMaxActiveEventsPerGSM() != -1) {
+				gsmLease = lease(currentLimits.getMaxActiveEventsPerGSM(), jemoServer.getEventCounters().getInstancesWithDemand(null, moduleId, moduleVersion, moduleClass, localDemand), slot);
+			}
+		}
+
+		/**
+		 * the limit is split evenly between the instances which need the module, when the limit does not divide evenly the extra permits
+		 * rotate between the instances on every lease interval so that no instance waits forever.
+		 */
+		private int lease(int limit, List<String> instanceList, long slot) {
+			int idx = instanceList.indexOf(jemoServer.getINSTANCE_ID());
+			if(idx == -1) {
+				return 0;
+			}
+			int numInstances = instanceList.size();
+			int extra = (int)Math.floorMod(idx - slot, (long)numInstances) < limit % numInstances ? 1 : 0;
+			return limit / numInstances + extra;
+		}
+	}
+
+	private final AbstractJemo jemoServer;
+	private final Map<String,Gate> GATES = new ConcurrentHashMap<>();
+	private final long leaseInterval;
+	private ScheduledFuture<?> renewTask = null;
+
+	public JemoEventAdmission(AbstractJemo jemoServer) {
+		this.jemoServer = jemoServer;
+		this.leaseInterval = jemoServer.getEventCounters().getPublishInterval();
+	}
+
+	public synchronized void start() {
+		if(renewTask == null) {
+			renewTask = jemoServer.getSCHEDULER().scheduleWithFixedDelay(() -> renewAll(), leaseInterval, leaseInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if(renewTask != null) {
+			renewTask.cancel(false);
+			renewTask = null;
+		}
+	}
+
+	/**
+	 * @return the gate for the module, the limits are always refreshed as they change when a module is upgraded.
+	 */
+	public Gate gate(final long moduleId, final double moduleVersion, final String moduleClass, final ModuleLimit limits) {
+		//the gate is marked as used inside compute so that it can never be removed as idle between being handed out and being acquired.
+		return GATES.compute(JemoEventCounters.buildCounterKey(moduleId, moduleVersion, moduleClass), (key,gate) -> {
+			if(gate == null) {
+				gate = new Gate(moduleId, moduleVersion, moduleClass, limits);
+				gate.waiting.set(1); //the event which created the gate needs the module, so it will get a share of the lease straight away.
+				gate.renew(jemoServer.getEventCounters().getLeaseSlot());
+				gate.waiting.set(0);
+			}
+			gate.limits = limits;
+			gate.lastUsed = System.currentTimeMillis();
+			return gate;
+		});
+	}
+
+	int getGateCount() {
+		return GATES.size();
+	}
+
+	void renewAll() {
+		//a module which no longer has any events scheduled here does not need a lease.
+		final long now = System.currentTimeMillis();
+		GATES.keySet().forEach(key -> GATES.computeIfPresent(key, (k,gate) -> gate.isIdle(now) ? null : gate));
+		jemoServer.getEventCounters().advanceLeaseSlot();
+		final long slot = jemoServer.getEventCounters().getLeaseSlot();
+		GATES.values().forEach(gate -> {
+			try {
+				gate.renew(slot);
+			} catch(Throwable ex) {
+				jemoServer.LOG(Level.WARNING, "[%s][%s] the lease for the module could not be renewed: %s", getClass().getSimpleName(), gate.moduleClass, JemoError.toString(ex));
+			}
+		});
+	}
+}
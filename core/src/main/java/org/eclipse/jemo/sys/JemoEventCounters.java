@@ -0,0 +1,517 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.Jemo;
+import org.eclipse.jemo.api.JemoParameter;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.JemoError;
+import org.eclipse.jemo.sys.internal.Util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * this class keeps track of the number of module events running across the GSM without ever touching storage while an event starts or ends.
+ *
+ * every instance counts the events it starts and finishes in local atomic counters. the counters only ever grow so together they form a
+ * PN-counter where the number of running events is the difference between the two. every few seconds each instance publishes all of its
+ * counters as a single snapshot and reads back the snapshots of the other active instances. snapshots are merged by taking the maximum of
+ * each counter, so a stale or out of order read can never move a count backwards, and the totals for each location and the GSM are then
+ * computed once per refresh rather than once per event.
+ *
+ * counts for this instance are always exact, counts for other instances are at most one publishing interval old.
+ */
+public class JemoEventCounters {
+
+	private static final String STORAGE_PATH = Jemo.SYSTEM_STORAGE_PATH + "/event_counters";
+	static final long LAST_LAUNCHED_WINDOW = TimeUnit.MINUTES.toMillis(30); //a launch older than this is no longer reported, as it was when launches were kept in storage.
+
+	/**
+	 * the state of a counter as it is published. started and finished only ever grow for a given epoch, waiting is a gauge of the
+	 * number of events which are being held back by the module limits and is always taken from the latest snapshot.
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class CounterState {
+		private long started = 0;
+		private long finished = 0;
+		private long lastLaunched = 0;
+		private long waiting = 0;
+
+		public CounterState() {}
+
+		public CounterState(long started, long finished, long lastLaunched, long waiting) {
+			this.started = started;
+			this.finished = finished;
+			this.lastLaunched = lastLaunched;
+			this.waiting = waiting;
+		}
+
+		public long getStarted() {
+			return started;
+		}
+
+		public void setStarted(long started) {
+			this.started = started;
+		}
+
+		public long getFinished() {
+			return finished;
+		}
+
+		public void setFinished(long finished) {
+			this.finished = finished;
+		}
+
+		public long getLastLaunched() {
+			return lastLaunched;
+		}
+
+		public void setLastLaunched(long lastLaunched) {
+			this.lastLaunched = lastLaunched;
+		}
+
+		public long getWaiting() {
+			return waiting;
+		}
+
+		public void setWaiting(long waiting) {
+			this.waiting = waiting;
+		}
+
+		@JsonIgnore
+		public long getActive() {
+			return Math.max(0, started - finished);
+		}
+
+		@JsonIgnore
+		public boolean hasDemand() {
+			return getActive() > 0 || waiting > 0;
+		}
+
+		private CounterState merge(CounterState other, boolean otherIsNewer) {
+			return other == null ? this : new CounterState(Math.max(started, other.started), Math.max(finished, other.finished), Math.max(lastLaunched, other.lastLaunched),
+				otherIsNewer ? other.waiting : waiting);
+		}
+	}
+
+	/**
+	 * all of the counters of a single instance. the epoch is the time the instance started, counters restart from zero with a new epoch
+	 * so a snapshot from a later epoch always replaces an earlier one.
+	 */
+	@JsonIgnoreProperties(ignoreUnknown = true)
+	public static class InstanceSnapshot {
+		private String instanceId = null;
+		private long epoch = 0;
+		private long sequence = 0;
+		private long leaseSlot = 0;
+		private Map<String,CounterState> counters = new HashMap<>();
+
+		public String getInstanceId() {
+			return instanceId;
+		}
+
+		public void setInstanceId(String instanceId) {
+			this.instanceId = instanceId;
+		}
+
+		public long getEpoch() {
+			return epoch;
+		}
+
+		public void setEpoch(long epoch) {
+			this.epoch = epoch;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public void setSequence(long sequence) {
+			this.sequence = sequence;
+		}
+
+		public long getLeaseSlot() {
+			return leaseSlot;
+		}
+
+		public void setLeaseSlot(long leaseSlot) {
+			this.leaseSlot = leaseSlot;
+		}
+
+		public Map<String,CounterState> getCounters() {
+			return counters;
+		}
+
+		public void setCounters(Map<String,CounterState> counters) {
+			this.counters = counters == null ? new HashMap<>() : counters;
+		}
+
+		private InstanceSnapshot merge(InstanceSnapshot other) {
+			if(other == null || other.epoch < epoch) {
+				return this;
+			} else if(other.epoch > epoch) {
+				return other;
+			}
+			final boolean otherIsNewer = other.sequence >= sequence;
+			InstanceSnapshot merged = new InstanceSnapshot();
+			merged.instanceId = instanceId;
+			merged.epoch = epoch;
+			merged.sequence = Math.max(sequence, other.sequence);
+			merged.leaseSlot = Math.max(leaseSlot, other.leaseSlot);
+			final CounterState none = new CounterState();
+			counters.forEach((key,state) -> merged.counters.put(key, state.merge(other.counters.getOrDefault(key, none), otherIsNewer)));
+			other.counters.forEach((key,state) -> merged.counters.computeIfAbsent(key, k -> none.merge(state, otherIsNewer)));
+			return merged;
+		}
+	}
+
+	/**
+	 * the totals of all the other instances in the GSM, this is rebuilt as a whole on every refresh.
+	 */
+	private static final class RemoteTotals {
+		private static final RemoteTotals EMPTY = new RemoteTotals(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+		private final Map<String,Map<String,Long>> activeByInstance; //instance -> counter key -> active
+		private final Map<String,Map<String,Long>> activeByLocation; //location -> counter key -> active
+		private final Map<String,Long> activeOnGSM;
+		private final Map<String,Long> lastLaunchedOnGSM;
+
+		private RemoteTotals(Map<String,Map<String,Long>> activeByInstance, Map<String,Map<String,Long>> activeByLocation, Map<String,Long> activeOnGSM, Map<String,Long> lastLaunchedOnGSM) {
+			this.activeByInstance = activeByInstance;
+			this.activeByLocation = activeByLocation;
+			this.activeOnGSM = activeOnGSM;
+			this.lastLaunchedOnGSM = lastLaunchedOnGSM;
+		}
+	}
+
+	private static final class LocalCounter {
+		private final AtomicLong started;
+		private final AtomicLong finished;
+		private final AtomicLong lastLaunched = new AtomicLong();
+		private final AtomicLong waiting = new AtomicLong();
+
+		private LocalCounter(long base) {
+			this.started = new AtomicLong(base);
+			this.finished = new AtomicLong(base);
+		}
+
+		private boolean isIdle() {
+			return started.get() == finished.get() && waiting.get() == 0 && lastLaunched.get() == 0;
+		}
+	}
+
+	private final AbstractJemo jemoServer;
+	private final long publishInterval;
+	private final long epoch = System.currentTimeMillis();
+	private final Map<String,LocalCounter> LOCAL_COUNTERS = new ConcurrentHashMap<>();
+	private final AtomicLong retiredCount = new AtomicLong(); //the highest count of a retired counter, new counters start from it so published counts never go backwards.
+	private final Map<String,InstanceSnapshot> REMOTE_SNAPSHOTS = new ConcurrentHashMap<>();
+	private final AtomicLong changes = new AtomicLong();
+	private final AtomicLong leaseSlot = new AtomicLong();
+	private volatile long publishedChanges = -1;
+	private volatile RemoteTotals remoteTotals = RemoteTotals.EMPTY;
+	private ScheduledFuture<?> publishTask = null;
+
+	public JemoEventCounters(AbstractJemo jemoServer) {
+		this.jemoServer = jemoServer;
+		this.publishInterval = TimeUnit.SECONDS.toMillis(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.EVENT_COUNTER_PUBLISH.label(), "2")));
+	}
+
+	public synchronized void start() {
+		if(publishTask == null) {
+			publishAndRefresh();
+			publishTask = jemoServer.getSCHEDULER().scheduleWithFixedDelay(() -> publishAndRefresh(), publishInterval, publishInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if(publishTask != null) {
+			publishTask.cancel(false);
+			publishTask = null;
+			publish();
+		}
+	}
+
+	static String buildCounterKey(final long moduleId, final double moduleVersion, final String moduleClass) {
+		return String.valueOf(moduleId) + "_" + String.valueOf(moduleVersion) + "_" + moduleClass;
+	}
+
+	/**
+	 * the counter is updated inside compute so it can never be retired as idle between being looked up and being updated.
+	 */
+	private void updateLocalCounter(final long moduleId, final double moduleVersion, final String moduleClass, final Consumer<LocalCounter> update) {
+		LOCAL_COUNTERS.compute(buildCounterKey(moduleId, moduleVersion, moduleClass), (key,counter) -> {
+			final LocalCounter current = counter == null ? new LocalCounter(retiredCount.get()) : counter;
+			update.accept(current);
+			return current;
+		});
+		changes.incrementAndGet();
+	}
+
+	public void eventStarted(final long moduleId, final double moduleVersion, final String moduleClass) {
+		updateLocalCounter(moduleId, moduleVersion, moduleClass, counter -> {
+			counter.lastLaunched.accumulateAndGet(System.currentTimeMillis(), Math::max);
+			counter.started.incrementAndGet();
+		});
+	}
+
+	public void eventFinished(final long moduleId, final double moduleVersion, final String moduleClass) {
+		updateLocalCounter(moduleId, moduleVersion, moduleClass, counter -> counter.finished.incrementAndGet());
+	}
+
+	/**
+	 * records a change in the number of events which are held back on this instance because of the module limits.
+	 */
+	void adjustWaiting(final long moduleId, final double moduleVersion, final String moduleClass, final int delta) {
+		updateLocalCounter(moduleId, moduleVersion, moduleClass, counter -> counter.waiting.addAndGet(delta));
+	}
+
+	private long localActive(String key) {
+		LocalCounter counter = LOCAL_COUNTERS.get(key);
+		return counter == null ? 0 : Math.max(0, counter.started.get() - counter.finished.get());
+	}
+
+	private boolean isLocal(String instanceId) {
+		return instanceId == null || instanceId.equals(jemoServer.getINSTANCE_ID());
+	}
+
+	public int getActiveOnInstance(final String instanceId, final long moduleId, final double moduleVersion, final String moduleClass) {
+		final String key = buildCounterKey(moduleId, moduleVersion, moduleClass);
+		if(isLocal(instanceId)) {
+			return (int)localActive(key);
+		}
+		return remoteTotals.activeByInstance.getOrDefault(instanceId, Collections.emptyMap()).getOrDefault(key, 0L).intValue();
+	}
+
+	public int getActiveOnLocation(final String location, final long moduleId, final double moduleVersion, final String moduleClass) {
+		final String key = buildCounterKey(moduleId, moduleVersion, moduleClass);
+		long active = remoteTotals.activeByLocation.getOrDefault(location, Collections.emptyMap()).getOrDefault(key, 0L);
+		if(location != null && location.equals(jemoServer.getLOCATION())) {
+			active += localActive(key);
+		}
+		return (int)active;
+	}
+
+	public int getActiveOnGSM(final long moduleId, final double moduleVersion, final String moduleClass) {
+		final String key = buildCounterKey(moduleId, moduleVersion, moduleClass);
+		return (int)(remoteTotals.activeOnGSM.getOrDefault(key, 0L) + localActive(key));
+	}
+
+	public long getLastLaunched(final long moduleId, final double moduleVersion, final String moduleClass) {
+		LocalCounter counter = LOCAL_COUNTERS.get(buildCounterKey(moduleId, moduleVersion, moduleClass));
+		return counter == null ? 0 : counter.lastLaunched.get();
+	}
+
+	public long getLastLaunchedOnGSM(final long moduleId, final double moduleVersion, final String moduleClass) {
+		return Math.max(getLastLaunched(moduleId, moduleVersion, moduleClass), remoteTotals.lastLaunchedOnGSM.getOrDefault(buildCounterKey(moduleId, moduleVersion, moduleClass), 0L));
+	}
+
+	/**
+	 * this method will list the instances which are either running or waiting to run events for a module according to the last
+	 * snapshots we have of them.
+	 *
+	 * @param location the location to list the instances for or null for the whole GSM.
+	 * @param localDemand true if this instance should be listed as it needs to run events for the module.
+	 * @return the sorted list of instance id's so that every instance derives the same order.
+	 */
+	List<String> getInstancesWithDemand(final String location, final long moduleId, final double moduleVersion, final String moduleClass, final boolean localDemand) {
+		final String key = buildCounterKey(moduleId, moduleVersion, moduleClass);
+		final JemoClusterMembership.View view = jemoServer.getClusterMembership().getView();
+		List<String> instanceList = REMOTE_SNAPSHOTS.entrySet().stream()
+			.filter(e -> location == null || location.equals(view.getInstanceLocationMap().get(e.getKey())))
+			.filter(e -> e.getValue().getCounters().containsKey(key) && e.getValue().getCounters().get(key).hasDemand())
+			.map(Map.Entry::getKey)
+			.collect(Collectors.toList());
+		if(localDemand && jemoServer.getINSTANCE_ID() != null) {
+			instanceList.add(jemoServer.getINSTANCE_ID());
+		}
+		Collections.sort(instanceList);
+		return instanceList;
+	}
+
+	/**
+	 * the lease slot decides which instances get the permits of a limit which do not divide evenly between them, every instance must use
+	 * the same slot so it is not derived from the local clock. it is advanced by a single instance, the active instance with the lowest id,
+	 * and the others read it from the snapshot that instance publishes.
+	 *
+	 * @return the current lease slot.
+	 */
+	long getLeaseSlot() {
+		final String leader = getLeaseLeader();
+		if(!isLocal(leader)) {
+			InstanceSnapshot snapshot = REMOTE_SNAPSHOTS.get(leader);
+			if(snapshot != null) {
+				leaseSlot.set(snapshot.getLeaseSlot()); //we keep the slot of the leader so we carry on from it if we take over.
+			}
+		}
+		return leaseSlot.get();
+	}
+
+	/**
+	 * moves on to the next lease slot if this instance is the one which advances it, this is called once every lease interval.
+	 */
+	void advanceLeaseSlot() {
+		if(isLocal(getLeaseLeader())) {
+			leaseSlot.incrementAndGet();
+			changes.incrementAndGet(); //the other instances can only follow the slot if it is published.
+		}
+	}
+
+	private String getLeaseLeader() {
+		final String instanceId = jemoServer.getINSTANCE_ID();
+		return jemoServer.getClusterMembership().getView().getActiveInstances().stream()
+			.filter(REMOTE_SNAPSHOTS::containsKey) //we can only follow an instance which has published its counters.
+			.filter(inst -> instanceId == null || inst.compareTo(instanceId) < 0)
+			.min(String::compareTo)
+			.orElse(instanceId);
+	}
+
+	long getPublishInterval() {
+		return publishInterval;
+	}
+
+	private static String buildStorageKey(String instanceId) {
+		return "jemo_event_counters_" + instanceId;
+	}
+
+	/**
+	 * @return a snapshot of the counters of this instance in the form it is published in.
+	 */
+	public InstanceSnapshot snapshot() {
+		InstanceSnapshot snapshot = new InstanceSnapshot();
+		snapshot.setInstanceId(jemoServer.getINSTANCE_ID());
+		snapshot.setEpoch(epoch);
+		snapshot.setSequence(changes.get());
+		snapshot.setLeaseSlot(leaseSlot.get());
+		//finished is read before started so that a snapshot can never show fewer events running than there really were.
+		LOCAL_COUNTERS.forEach((key,counter) -> {
+			long finished = counter.finished.get();
+			snapshot.getCounters().put(key, new CounterState(counter.started.get(), finished, counter.lastLaunched.get(), Math.max(0, counter.waiting.get())));
+		});
+		return snapshot;
+	}
+
+	private void publish() {
+		long currentChanges = changes.get();
+		if(currentChanges != publishedChanges && jemoServer.getINSTANCE_ID() != null) {
+			CloudProvider.getInstance().getRuntime().write(STORAGE_PATH, buildStorageKey(jemoServer.getINSTANCE_ID()), snapshot());
+			publishedChanges = currentChanges;
+		}
+	}
+
+	/**
+	 * this method will merge a snapshot published by another instance into the ones we already know about.
+	 *
+	 * @param snapshot the snapshot to merge.
+	 */
+	void merge(InstanceSnapshot snapshot) {
+		if(snapshot != null && snapshot.getInstanceId() != null && !isLocal(snapshot.getInstanceId())) {
+			REMOTE_SNAPSHOTS.merge(snapshot.getInstanceId(), snapshot, InstanceSnapshot::merge);
+		}
+	}
+
+	/**
+	 * this method will read the snapshots of the other active instances and rebuild the remote totals from them.
+	 */
+	void refresh() throws InterruptedException, ExecutionException {
+		final JemoClusterMembership.View view = jemoServer.getClusterMembership().getView();
+		//these are blocking reads so they run on the work executor of the server rather than on the common fork join pool.
+		final List<Callable<Void>> reads = view.getActiveInstances().stream()
+			.filter(inst -> !isLocal(inst))
+			.map(inst -> (Callable<Void>)() -> {
+				merge(CloudProvider.getInstance().getRuntime().read(InstanceSnapshot.class, STORAGE_PATH, buildStorageKey(inst)));
+				return null;
+			})
+			.collect(Collectors.toList());
+		for(Future<Void> read : jemoServer.getWORK_EXECUTOR().invokeAll(reads)) {
+			read.get();
+		}
+		REMOTE_SNAPSHOTS.keySet().removeIf(inst -> !view.getActiveInstances().contains(inst));
+
+		final Map<String,Map<String,Long>> activeByInstance = new HashMap<>();
+		final Map<String,Map<String,Long>> activeByLocation = new HashMap<>();
+		final Map<String,Long> activeOnGSM = new HashMap<>();
+		final Map<String,Long> lastLaunchedOnGSM = new HashMap<>();
+		final long launchedAfter = System.currentTimeMillis() - LAST_LAUNCHED_WINDOW;
+		REMOTE_SNAPSHOTS.forEach((inst,snapshot) -> {
+			final String location = view.getInstanceLocationMap().get(inst);
+			final Map<String,Long> instanceActive = new HashMap<>();
+			snapshot.getCounters().forEach((key,state) -> {
+				instanceActive.put(key, state.getActive());
+				if(location != null) {
+					activeByLocation.computeIfAbsent(location, l -> new HashMap<>()).merge(key, state.getActive(), Long::sum);
+				}
+				activeOnGSM.merge(key, state.getActive(), Long::sum);
+				if(state.getLastLaunched() >= launchedAfter) {
+					lastLaunchedOnGSM.merge(key, state.getLastLaunched(), Math::max);
+				}
+			});
+			activeByInstance.put(inst, instanceActive);
+		});
+		remoteTotals = new RemoteTotals(activeByInstance, activeByLocation, activeOnGSM, lastLaunchedOnGSM);
+	}
+
+	/**
+	 * this method will forget the last launch of any module on this instance which is older than the last launched window, a counter
+	 * which is then idle is retired so that modules which no longer run here are not kept and published forever.
+	 *
+	 * @param now the current time.
+	 */
+	void evictLastLaunched(long now) {
+		LOCAL_COUNTERS.values().forEach(counter -> {
+			long lastLaunched = counter.lastLaunched.get();
+			if(lastLaunched != 0 && lastLaunched < now - LAST_LAUNCHED_WINDOW) {
+				counter.lastLaunched.compareAndSet(lastLaunched, 0);
+			}
+		});
+		LOCAL_COUNTERS.keySet().forEach(key -> LOCAL_COUNTERS.computeIfPresent(key, (k,counter) -> {
+			if(!counter.isIdle()) {
+				return counter;
+			}
+			//other instances keep the highest count they have seen, so a counter created again for the module has to start above it.
+			retiredCount.accumulateAndGet(counter.started.get(), Math::max);
+			changes.incrementAndGet();
+			return null;
+		}));
+	}
+
+	private void publishAndRefresh() {
+		try {
+			evictLastLaunched(System.currentTimeMillis());
+			publish();
+			refresh();
+		} catch(Throwable ex) {
+			jemoServer.LOG(Level.WARNING, "[%s] the module event counters could not be synchronised: %s", getClass().getSimpleName(), JemoError.toString(ex));
+		}
+	}
+}
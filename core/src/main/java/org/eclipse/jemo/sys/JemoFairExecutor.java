@@ -0,0 +1,338 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * this executor shares a fixed number of threads fairly between the modules which submit work to it.
+ *
+ * every task belongs to a lane (one per module) and waiting tasks are queued per lane. when a thread becomes free the next task is taken
+ * from the lane with the highest priority and among lanes with the same priority from the lane which has received the least service
+ * relative to its weight (stride scheduling). a module flooding the executor therefore only delays its own backlog, the other modules
+ * keep getting their share of the threads as soon as they free up. a lane which was idle starts from the current virtual time so it
+ * cannot save up credit while it has nothing to run.
+ *
+ * priorities are strict so a lane with a higher priority can starve the lanes below it while it has work queued.
+ */
+public class JemoFairExecutor extends ThreadPoolExecutor {
+
+	public static final String DEFAULT_LANE = "";
+	public static final String SYSTEM_LANE = "system";
+	public static final int SYSTEM_PRIORITY = Integer.MAX_VALUE;
+	public static final int DEFAULT_PRIORITY = 0;
+	public static final int DEFAULT_WEIGHT = 1;
+	public static final int MAX_WEIGHT = 1000;
+
+	private static final long STRIDE = 1L << 20;
+	private static final int MAX_FINISH_TAGS = 1024;
+
+	private static class FairTask<T> extends FutureTask<T> {
+		private final String lane;
+		private final int priority;
+		private final int weight;
+
+		private FairTask(String lane, int priority, int weight, Runnable task) {
+			super(task, null);
+			this.lane = lane;
+			this.priority = priority;
+			this.weight = weight;
+		}
+	}
+
+	private static class Lane {
+		private final String key;
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+		private int priority = DEFAULT_PRIORITY;
+		private int weight = DEFAULT_WEIGHT;
+		private long pass;
+		private long served; //lanes with the same pass are served in the order they were last served.
+
+		private Lane(String key, long pass, long served) {
+			this.key = key;
+			this.pass = pass;
+			this.served = served;
+		}
+	}
+
+	/**
+	 * the work queue of the executor, tasks which are not submitted through a lane end up in the default lane.
+	 */
+	static class FairQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition notEmpty = lock.newCondition();
+		private final Map<String,Lane> lanes = new HashMap<>(); //only lanes with waiting tasks are kept here.
+		private final Map<String,Long> finishTags = new HashMap<>(); //the pass of lanes which emptied while they were ahead of the virtual time.
+		private long virtualTime = 0;
+		private long sequence = 0;
+		private int count = 0;
+
+		@Override
+		public boolean offer(Runnable task) {
+			if(task == null) {
+				throw new NullPointerException();
+			}
+			final String key;
+			final int priority;
+			final int weight;
+			if(task instanceof FairTask) {
+				FairTask<?> fairTask = (FairTask<?>)task;
+				key = fairTask.lane;
+				priority = fairTask.priority;
+				weight = fairTask.weight;
+			} else {
+				key = DEFAULT_LANE;
+				priority = DEFAULT_PRIORITY;
+				weight = DEFAULT_WEIGHT;
+			}
+			lock.lock();
+			try {
+				Lane lane = lanes.get(key);
+				if(lane == null) {
+					Long finishTag = finishTags.remove(key);
+					lane = new Lane(key, finishTag == null ? virtualTime : Math.max(virtualTime, finishTag), sequence++);
+					lanes.put(key, lane);
+				}
+				lane.priority = priority;
+				lane.weight = Math.min(MAX_WEIGHT, Math.max(1, weight));
+				lane.tasks.add(task);
+				count++;
+				notEmpty.signal();
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+			return offer(task);
+		}
+
+		@Override
+		public void put(Runnable task) {
+			offer(task);
+		}
+
+		private Lane nextLane() {
+			Lane next = null;
+			for(Lane lane : lanes.values()) {
+				if(next == null || lane.priority > next.priority || (lane.priority == next.priority && (lane.pass < next.pass || (lane.pass == next.pass && lane.served < next.served)))) {
+					next = lane;
+				}
+			}
+			return next;
+		}
+
+		private Runnable dequeue() {
+			Lane lane = nextLane();
+			Runnable task = lane.tasks.poll();
+			virtualTime = Math.max(virtualTime, lane.pass);
+			lane.pass += STRIDE / lane.weight;
+			lane.served = sequence++;
+			if(lane.tasks.isEmpty()) {
+				lanes.remove(lane.key);
+				if(lane.pass > virtualTime) {
+					if(finishTags.size() >= MAX_FINISH_TAGS) {
+						finishTags.values().removeIf(tag -> tag <= virtualTime);
+					}
+					finishTags.put(lane.key, lane.pass);
+				}
+			}
+			count--;
+			return task;
+		}
+
+		@Override
+		public Runnable poll() {
+			lock.lock();
+			try {
+				return count == 0 ? null : dequeue();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+			long nanos = unit.toNanos(timeout);
+			lock.lockInterruptibly();
+			try {
+				while(count == 0) {
+					if(nanos <= 0) {
+						return null;
+					}
+					nanos = notEmpty.awaitNanos(nanos);
+				}
+				return dequeue();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public Runnable take() throws InterruptedException {
+			lock.lockInterruptibly();
+			try {
+				while(count == 0) {
+					notEmpty.await();
+				}
+				return dequeue();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public Runnable peek() {
+			lock.lock();
+			try {
+				return count == 0 ? null : nextLane().tasks.peek();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean remove(Object task) {
+			lock.lock();
+			try {
+				for(Iterator<Lane> itr = lanes.values().iterator(); itr.hasNext();) {
+					Lane lane = itr.next();
+					if(lane.tasks.remove(task)) {
+						if(lane.tasks.isEmpty()) {
+							itr.remove();
+						}
+						count--;
+						return true;
+					}
+				}
+				return false;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int size() {
+			lock.lock();
+			try {
+				return count;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int remainingCapacity() {
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public int drainTo(Collection<? super Runnable> target) {
+			return drainTo(target, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public int drainTo(Collection<? super Runnable> target, int maxElements) {
+			lock.lock();
+			try {
+				int drained = 0;
+				while(count > 0 && drained < maxElements) {
+					target.add(dequeue());
+					drained++;
+				}
+				return drained;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * @return an iterator over a snapshot of the waiting tasks, the iterator does not support removal.
+		 */
+		@Override
+		public Iterator<Runnable> iterator() {
+			lock.lock();
+			try {
+				List<Runnable> snapshot = new ArrayList<>(count);
+				lanes.values().forEach(lane -> snapshot.addAll(lane.tasks));
+				return Collections.unmodifiableList(snapshot).iterator();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * @return the number of tasks waiting in each lane.
+		 */
+		Map<String,Integer> getLaneSizes() {
+			lock.lock();
+			try {
+				Map<String,Integer> sizes = new HashMap<>();
+				lanes.values().forEach(lane -> sizes.put(lane.key, lane.tasks.size()));
+				return sizes;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @param threads the number of threads shared by all of the lanes.
+	 */
+	public JemoFairExecutor(int threads) {
+		super(threads, threads, 60, TimeUnit.SECONDS, new FairQueue());
+	}
+
+	/**
+	 * this method will submit a task to a lane of this executor.
+	 *
+	 * @param lane the lane the task belongs to, usually the module which will run it.
+	 * @param priority tasks in lanes with a higher priority are always started first.
+	 * @param weight the share of the threads the lane receives relative to the other lanes with the same priority.
+	 * @param task the task to run.
+	 * @return a future which completes when the task has run.
+	 */
+	public Future<?> submit(String lane, int priority, int weight, Runnable task) {
+		FairTask<Object> fairTask = new FairTask<>(lane == null ? DEFAULT_LANE : lane, priority, weight, task);
+		execute(fairTask);
+		return fairTask;
+	}
+
+	/**
+	 * @return the number of tasks waiting in each lane which has work queued.
+	 */
+	public Map<String,Integer> getQueuedTasks() {
+		return ((FairQueue)getQueue()).getLaneSizes();
+	}
+}
@@ -18,16 +18,28 @@ package org.eclipse.jemo.sys;
 
 import org.eclipse.jemo.AbstractJemo;
 import org.eclipse.jemo.Jemo;
+import org.eclipse.jemo.api.JemoParameter;
+import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.api.WebSocketHandler;
+import org.eclipse.jemo.api.WebSocketModule;
 import org.eclipse.jemo.internal.model.JemoError;
 import org.eclipse.jemo.internal.model.JemoModule;
+import org.eclipse.jemo.sys.internal.ManagedConsumer;
+import org.eclipse.jemo.sys.internal.ManagedFunctionWithException;
+import org.eclipse.jemo.sys.internal.Util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.KeyStore;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Level;
+import javax.servlet.AsyncContext;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.MultipartConfig;
@@ -35,6 +47,11 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
@@ -43,11 +60,13 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
 import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 
@@ -57,6 +76,12 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 public class JemoHTTPConnector {
 
 	private static final Map<String, AbstractJemo> JEMO_SERVER_REFERENCE_MAP = new HashMap<>();
+	private static final String WEBSOCKET_MODULE_ATTRIBUTE = "org.eclipse.jemo.websocket.module";
+
+	//gateways and meshes multiplex many small requests over a few connections so we allow more concurrent streams than the jetty
+	//defaults and larger receive windows so a single busy connection is not throttled by flow control.
+	private static final int HTTP2_SESSION_RECV_WINDOW = 16 * 1024 * 1024;
+	private static final int HTTP2_STREAM_RECV_WINDOW = 1024 * 1024;
 
 	private AbstractJemo jemoServer;
 
@@ -81,24 +106,57 @@ public class JemoHTTPConnector {
 
 		private JemoWebSocketServlet wsHandler = null;
 
+		@Override
+		public void init() throws ServletException {
+			wsHandler = new JemoWebSocketServlet(JEMO_SERVER_REFERENCE_MAP.get(getInitParameter("server_reference_id")));
+			wsHandler.init(getServletConfig());
+		}
+
+		@Override
+		public void destroy() {
+			wsHandler.destroy();
+		}
+
 		@Override
 		protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-			String connectionHeader = request.getHeader("Connection");
-			if (connectionHeader != null && connectionHeader.equalsIgnoreCase("Upgrade")) {
-				//TODO: we should add the web socket implementation handlers to the module interface and implement the pass through here.
-				//this is a key missing feature here so we should implement it.
-				if (wsHandler == null) {
-					wsHandler = new JemoWebSocketServlet();
+			if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+				//websocket connections are routed to modules exactly like http requests and then handed to the websocket servlet for the upgrade.
+				final AbstractJemo jemoServer = JEMO_SERVER_REFERENCE_MAP.get(getInitParameter("server_reference_id"));
+				final JemoModule module = jemoServer.getPluginManager().resolveModule(request, response);
+				if (module == null) {
+					if (!response.isCommitted()) {
+						response.sendError(404, "no module mapping defined for: " + request.getServletPath());
+					}
+				} else if (!(module.getModule() instanceof WebSocketModule)) {
+					response.sendError(400, "the module mapped to: " + request.getServletPath() + " does not accept websocket connections");
+				} else {
+					request.setAttribute(WEBSOCKET_MODULE_ATTRIBUTE, module);
+					wsHandler.service(request, response);
 				}
-				wsHandler.service(request, response);
 			} else {
 				//we need to process a normal http request. this will involve asking the plugin manager for an adequet module to handle this request.
+				//the request is processed asynchronously so the connector thread is released as soon as the request has been handed to the http executor,
+				//which finds the module and runs it.
+				final AbstractJemo jemoServer = JEMO_SERVER_REFERENCE_MAP.get(getInitParameter("server_reference_id"));
+				final AsyncContext asyncContext = request.startAsync();
+				asyncContext.setTimeout(0); //the plugin manager enforces the module timeout.
+				CompletableFuture<Void> result;
 				try {
-					AbstractJemo jemoServer = JEMO_SERVER_REFERENCE_MAP.get(getInitParameter("server_reference_id"));
-					jemoServer.getPluginManager().process(request, response);
+					result = jemoServer.getPluginManager().processAsync(request, response);
 				} catch (Throwable ex) {
-					throw new ServletException(ex);
+					result = new CompletableFuture<>();
+					result.completeExceptionally(ex);
 				}
+				result.whenComplete((retval, ex) -> {
+					if (ex != null && !response.isCommitted()) {
+						try {
+							response.sendError(500, JemoError.newInstance(ex).toString());
+						} catch (IOException | IllegalStateException sendEx) {
+							jemoServer.LOG(Level.WARNING, "[%s] the error response could not be sent: %s", request.getRequestURI(), JemoError.toString(sendEx));
+						}
+					}
+					asyncContext.complete();
+				});
 			}
 		}
 
@@ -108,44 +166,168 @@ public class JemoHTTPConnector {
 		}
 	}
 
+	/**
+	 * connects a websocket to the module it was routed to. jetty calls the methods of a connection one at a time and the module runs
+	 * on the calling thread, so the next message is not read from the connection until the module has handled the previous one.
+	 */
 	private static class JemoWebSocket extends WebSocketAdapter {
-		private JemoModule module = null;
+		private final AbstractJemo jemoServer;
+		private final JemoModule module;
+		private final int sendBuffer;
+		private final AtomicBoolean released = new AtomicBoolean(false);
+		private JemoWebSocketSession session = null;
+		private WebSocketHandler handler = null;
+
+		private JemoWebSocket(AbstractJemo jemoServer, JemoModule module, int sendBuffer) {
+			this.jemoServer = jemoServer;
+			this.module = module;
+			this.sendBuffer = sendBuffer;
+		}
+
+		/**
+		 * @return the result of the function or the error it raised, errors are logged with the module which raised them.
+		 */
+		private Object callModule(ManagedFunctionWithException<JemoModule, Object> func) {
+			return jemoServer.getPluginManager().runInContext(module, func);
+		}
+
+		private void callHandler(ManagedConsumer<WebSocketHandler> func) {
+			if (handler != null && callModule(m -> {
+				func.accept(handler);
+				return null;
+			}) instanceof Throwable && isConnected()) {
+				getSession().close(1011, "the module could not process the message");
+			}
+		}
+
+		private void release() {
+			if (released.compareAndSet(false, true)) {
+				JemoWebSocketManager.release(module.getModule(), session);
+			}
+		}
+
+		@Override
+		public void onWebSocketConnect(Session wsSession) {
+			super.onWebSocketConnect(wsSession);
+			session = new JemoWebSocketSession(wsSession.getUpgradeRequest().getRequestURI().getPath(), wsSession.getUpgradeRequest().getQueryString(),
+					wsSession.getUpgradeRequest()::getHeader, String.valueOf(wsSession.getRemoteAddress()), sendBuffer, new JettyTransport(wsSession));
+			JemoWebSocketManager.opened(module.getModule(), session);
+			Object result = callModule(m -> ((WebSocketModule) m.getModule()).onConnect(session));
+			if (result instanceof WebSocketHandler) {
+				handler = (WebSocketHandler) result;
+			} else if (result instanceof Throwable) {
+				wsSession.close(1011, "the connection could not be set up");
+			} else {
+				wsSession.close(1008, "the connection was refused");
+			}
+		}
 
 		@Override
 		public void onWebSocketText(String message) {
 			super.onWebSocketText(message);
+			callHandler(h -> h.onText(session, message));
+		}
+
+		@Override
+		public void onWebSocketBinary(byte[] payload, int offset, int len) {
+			super.onWebSocketBinary(payload, offset, len);
+			final byte[] data = Arrays.copyOfRange(payload, offset, offset + len);
+			callHandler(h -> h.onBinary(session, data));
 		}
 
 		@Override
 		public void onWebSocketError(Throwable cause) {
 			Jemo.log(Level.WARNING, "WebSocket Channel Communication Error [%s]", JemoError.toString(cause));
 			super.onWebSocketError(cause);
+			if (session == null) {
+				release(); //the connection failed before it was opened so there will not be a close.
+			} else {
+				callHandler(h -> h.onError(session, cause));
+			}
 		}
 
 		@Override
-		public void onWebSocketConnect(Session session) {
-			//session.getUpgradeRequest().getRequestURI()
-			super.onWebSocketConnect(session); //To change body of generated methods, choose Tools | Templates.
+		public void onWebSocketClose(int statusCode, String reason) {
+			super.onWebSocketClose(statusCode, reason);
+			release();
+			final WebSocketHandler closedHandler = handler;
+			handler = null;
+			if (closedHandler != null) {
+				callModule(m -> {
+					closedHandler.onClose(session, statusCode, reason);
+					return null;
+				});
+			}
+		}
+	}
+
+	private static class JettyTransport implements JemoWebSocketSession.Transport {
+		private final Session wsSession;
+
+		private JettyTransport(Session wsSession) {
+			this.wsSession = wsSession;
+		}
+
+		private static WriteCallback callback(Consumer<Throwable> callback) {
+			return new WriteCallback() {
+				@Override
+				public void writeFailed(Throwable x) {
+					callback.accept(x);
+				}
+
+				@Override
+				public void writeSuccess() {
+					callback.accept(null);
+				}
+			};
 		}
 
 		@Override
-		public void onWebSocketClose(int statusCode, String reason) {
-			module = null;
-			super.onWebSocketClose(statusCode, reason); //To change body of generated methods, choose Tools | Templates.
+		public void sendText(String message, Consumer<Throwable> callback) {
+			wsSession.getRemote().sendString(message, callback(callback));
 		}
 
 		@Override
-		public void onWebSocketBinary(byte[] payload, int offset, int len) {
-			super.onWebSocketBinary(payload, offset, len); //To change body of generated methods, choose Tools | Templates.
+		public void sendBinary(ByteBuffer data, Consumer<Throwable> callback) {
+			wsSession.getRemote().sendBytes(data, callback(callback));
+		}
+
+		@Override
+		public void close(int statusCode, String reason) {
+			wsSession.close(statusCode, reason);
 		}
 
+		@Override
+		public boolean isOpen() {
+			return wsSession.isOpen();
+		}
 	}
 
 	private static class JemoWebSocketServlet extends WebSocketServlet {
+		private final AbstractJemo jemoServer;
+
+		private JemoWebSocketServlet(AbstractJemo jemoServer) {
+			this.jemoServer = jemoServer;
+		}
 
 		@Override
 		public void configure(WebSocketServletFactory wsFactory) {
-			wsFactory.register(JemoWebSocket.class);
+			wsFactory.setCreator((request, response) -> {
+				final JemoModule module = (JemoModule) request.getHttpServletRequest().getAttribute(WEBSOCKET_MODULE_ATTRIBUTE);
+				ModuleLimit limits = jemoServer.getPluginManager().getModuleLimits(module.getMetaData().getId(), module.getMetaData().getVersion(), module.getModule().getClass().getName());
+				if (limits == null) {
+					limits = ModuleLimit.defaultInstance();
+				}
+				if (!JemoWebSocketManager.reserve(module.getModule(), limits.getMaxWebSocketConnectionsPerInstance())) {
+					try {
+						response.sendError(503, "the module has reached the maximum number of websocket connections on this instance");
+					} catch (IOException ex) {
+						jemoServer.LOG(Level.WARNING, "[%s] the error response could not be sent: %s", module.getMetaData().getName(), JemoError.toString(ex));
+					}
+					return null;
+				}
+				return new JemoWebSocket(jemoServer, module, limits.getWebSocketSendBuffer());
+			});
 		}
 	}
 
@@ -256,7 +438,19 @@ public class JemoHTTPConnector {
 		http_config.setSendServerVersion(false);
 		http_config.setSendDateHeader(false);
 
-		jettyServer = new Server(httpPort); //the http port will always be an increment of the https port.
+		final boolean http2 = Boolean.parseBoolean(Util.readParameterFromJvmOrEnv(JemoParameter.HTTP2.label(), "true"));
+		final boolean h2c = Boolean.parseBoolean(Util.readParameterFromJvmOrEnv(JemoParameter.H2C.label(), "false"));
+		final int http2MaxStreams = Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.HTTP2_MAX_STREAMS.label(), "256"));
+
+		jettyServer = new Server();
+
+		//the cleartext connector speaks http/1.1 and optionally h2c, either by prior knowledge or through an upgrade from http/1.1.
+		HttpConnectionFactory httpConnectionFactory = new HttpConnectionFactory(http_config);
+		ServerConnector httpConnector = h2c
+				? new ServerConnector(jettyServer, httpConnectionFactory, configureHTTP2(new HTTP2CServerConnectionFactory(http_config), http2MaxStreams))
+				: new ServerConnector(jettyServer, httpConnectionFactory);
+		httpConnector.setPort(httpPort); //the http port will always be an increment of the https port.
+		jettyServer.addConnector(httpConnector);
 
 		ServletHandler ccHttpHandler = new ServletHandler() {
 			private final MultipartConfigElement MULTI_PART_CONFIG = new MultipartConfigElement(System.getProperty("java.io.tmpdir"));
@@ -271,7 +465,9 @@ public class JemoHTTPConnector {
 		};
 		jettyServer.setHandler(ccHttpHandler);
 
-		ccHttpHandler.addServletWithMapping(JemoHTTPServlet.class, "/").setInitParameter("server_reference_id", SERVER_ID);
+		ServletHolder jemoServlet = ccHttpHandler.addServletWithMapping(JemoHTTPServlet.class, "/");
+		jemoServlet.setInitParameter("server_reference_id", SERVER_ID);
+		jemoServlet.setAsyncSupported(true);
 
 		SslContextFactory sslContextFactory = new SslContextFactory(true);
 		KeyStore ks = KeyStore.getInstance("JKS");
@@ -281,14 +477,32 @@ public class JemoHTTPConnector {
 
 		HttpConfiguration https_config = new HttpConfiguration(http_config);
 		https_config.addCustomizer(new SecureRequestCustomizer());
-		ServerConnector sslConnector = new ServerConnector(jettyServer,
-				new SslConnectionFactory(sslContextFactory, "http/1.1"), new HttpConnectionFactory(https_config));
+		HttpConnectionFactory httpsConnectionFactory = new HttpConnectionFactory(https_config);
+		ServerConnector sslConnector;
+		if (http2) {
+			//http/2 is negotiated with alpn and clients which do not support it fall back to http/1.1.
+			sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+			sslContextFactory.setUseCipherSuitesOrder(true);
+			ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+			alpn.setDefaultProtocol(httpsConnectionFactory.getProtocol());
+			sslConnector = new ServerConnector(jettyServer, new SslConnectionFactory(sslContextFactory, alpn.getProtocol()), alpn,
+					configureHTTP2(new HTTP2ServerConnectionFactory(https_config), http2MaxStreams), httpsConnectionFactory);
+		} else {
+			sslConnector = new ServerConnector(jettyServer, new SslConnectionFactory(sslContextFactory, "http/1.1"), httpsConnectionFactory);
+		}
 		sslConnector.setPort(httpsPort);
 		jettyServer.addConnector(sslConnector);
 
 		jettyServer.start();
 
-		jemoServer.LOG("HTTP CONNECTOR STARTED HTTP(" + (httpPort) + ") HTTPS(" + (httpsPort) + ")", Level.INFO);
+		jemoServer.LOG("HTTP CONNECTOR STARTED HTTP(" + (httpPort) + ") " + httpConnector.getProtocols() + " HTTPS(" + (httpsPort) + ") " + sslConnector.getProtocols(), Level.INFO);
+	}
+
+	private static <T extends AbstractHTTP2ServerConnectionFactory> T configureHTTP2(T connectionFactory, int maxStreams) {
+		connectionFactory.setMaxConcurrentStreams(maxStreams);
+		connectionFactory.setInitialSessionRecvWindow(HTTP2_SESSION_RECV_WINDOW);
+		connectionFactory.setInitialStreamRecvWindow(HTTP2_STREAM_RECV_WINDOW);
+		return connectionFactory;
 	}
 
 	public void stop() throws Exception {
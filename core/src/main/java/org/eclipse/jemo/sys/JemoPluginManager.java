@@ -42,16 +42,24 @@ import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.logging.Level;
@@ -105,13 +113,17 @@ public class JemoPluginManager {
     private static final String STATS_PLUGIN_JAR_FILE_NAME = "1_StatsPlugin-1.0.jar";
 
     public static class MonitoringInterval {
+        private static final AtomicLongFieldUpdater<MonitoringInterval> INTERVAL_START = AtomicLongFieldUpdater.newUpdater(MonitoringInterval.class, "intervalStart");
+
         private String key;
         private long duration;
-        private long httpRequests = 0;
-        private long eventRequests = 0;
-        private long totalHttpTime = 0;
-        private long totalEventTime = 0;
-        private long intervalStart = System.currentTimeMillis();
+        private final AtomicLong httpRequests = new AtomicLong();
+        private final AtomicLong eventRequests = new AtomicLong();
+        private final AtomicLong totalHttpTime = new AtomicLong();
+        private final AtomicLong totalEventTime = new AtomicLong();
+        private final LatencyHistogram httpLatency = new LatencyHistogram();
+        private final LatencyHistogram eventLatency = new LatencyHistogram();
+        private volatile long intervalStart = System.currentTimeMillis();
 
         public MonitoringInterval(String key, long duration, TimeUnit unit) {
             this.key = key;
@@ -121,25 +133,31 @@ public class JemoPluginManager {
         @JsonIgnore
         public void httpRequest(long durationInMilliseconds) {
             checkInterval();
-            this.httpRequests++;
-            this.totalHttpTime += durationInMilliseconds;
+            this.httpRequests.incrementAndGet();
+            this.totalHttpTime.addAndGet(durationInMilliseconds);
+            this.httpLatency.record(durationInMilliseconds);
         }
 
         @JsonIgnore
         public void eventRequest(long durationInMilliseconds) {
             checkInterval();
-            this.eventRequests++;
-            this.totalEventTime += durationInMilliseconds;
+            this.eventRequests.incrementAndGet();
+            this.totalEventTime.addAndGet(durationInMilliseconds);
+            this.eventLatency.record(durationInMilliseconds);
         }
 
         @JsonIgnore
         private void checkInterval() {
-            if (System.currentTimeMillis() - intervalStart > duration) {
-                this.intervalStart = System.currentTimeMillis();
-                this.httpRequests = 0;
-                this.eventRequests = 0;
-                this.totalEventTime = 0;
-                this.totalHttpTime = 0;
+            long start = intervalStart;
+            long now = System.currentTimeMillis();
+            //only the thread which moves the interval forward will reset the counters.
+            if (now - start > duration && INTERVAL_START.compareAndSet(this, start, now)) {
+                this.httpRequests.set(0);
+                this.eventRequests.set(0);
+                this.totalEventTime.set(0);
+                this.totalHttpTime.set(0);
+                this.httpLatency.reset();
+                this.eventLatency.reset();
             }
         }
 
@@ -152,19 +170,27 @@ public class JemoPluginManager {
         }
 
         public long getHttpRequests() {
-            return httpRequests;
+            return httpRequests.get();
         }
 
         public long getEventRequests() {
-            return eventRequests;
+            return eventRequests.get();
         }
 
         public long getTotalHttpTime() {
-            return totalHttpTime;
+            return totalHttpTime.get();
         }
 
         public long getTotalEventTime() {
-            return totalEventTime;
+            return totalEventTime.get();
+        }
+
+        public LatencyHistogram getHttpLatency() {
+            return httpLatency;
+        }
+
+        public LatencyHistogram getEventLatency() {
+            return eventLatency;
         }
     }
 
@@ -201,6 +227,9 @@ public class JemoPluginManager {
 
     private final Map<String, Set<JemoModule>> LIVE_MODULE_MAP = new ConcurrentHashMap<>();
     private final Map<String, String> moduleEndpointMap = new ConcurrentHashMap<>();
+    private volatile JemoEndpointRouter endpointRouter = JemoEndpointRouter.EMPTY; //rebuilt from the moduleEndpointMap every time it changes.
+    private final JemoResponseCache responseCache = new JemoResponseCache(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.RESPONSE_CACHE_SIZE.label(), "64")) * 1024 * 1024);
+    private static final Pattern VHOST_URL_PATTERN = Pattern.compile("(\\/\\/)([^:]+)(\\:[0-9]+)(\\/.*)");
     private final Map<String, List<ModuleEventListener>> eventListeners = new ConcurrentHashMap<>();
     private final Map<String, String> virtualHostMap = new ConcurrentSkipListMap<>((o1, o2) -> new Integer(o1.length()).compareTo(o2.length()) == 0 ? o1.compareTo(o2) : new Integer(o1.length()).compareTo(o2.length())); //a virtual host definition will be mapped to an actual module endpoint.
     private int TIMEOUT_COUNT = 0;
@@ -252,7 +281,7 @@ public class JemoPluginManager {
 
         PLUGIN_MANAGER_MODULE = new PluginManagerModule(jemoServer);
         DEPLOYMENT_HISTORY_MODULE = new DeploymentHistoryModule();
-        MODULES_STATS_MODULE = new ModulesStatsModule(KNOWN_APPLICATIONS);
+        MODULES_STATS_MODULE = new ModulesStatsModule(jemoServer, KNOWN_APPLICATIONS);
         addDefaultModulesToModuleMap();
 
         //load on startup is not a good idea instead we are going to lazy load things when they are requested so we can have smaller clusters running more stuff.
@@ -262,6 +291,7 @@ public class JemoPluginManager {
                     moduleEndpointMap.putAll(app.getEndpoints().values().stream()
                             .collect(Collectors.toMap(e -> e, e -> app.getId())));
                 });
+        rebuildEndpointRouter();
 
         addDefaultModuleToAppList("PluginManager", asList(PLUGIN_MANAGER_MODULE), DEFAULT_PLUGIN_JAR_FILE_NAME);
         addDefaultModuleToAppList("StatsPlugin", asList(DEPLOYMENT_HISTORY_MODULE, MODULES_STATS_MODULE), STATS_PLUGIN_JAR_FILE_NAME);
@@ -278,6 +308,7 @@ public class JemoPluginManager {
             add(pluginManager);
         }});
         moduleEndpointMap.put(PLUGIN_MANAGER_MODULE.getBasePath(), DEFAULT_PLUGIN_JAR_FILE_NAME);
+        rebuildEndpointRouter();
 
         final JemoModule deploymentHistory = createAndStartDefaultModule(DEPLOYMENT_HISTORY_MODULE, STATS_PLUGIN_JAR_FILE_NAME);
         final JemoModule moduleStats = createAndStartDefaultModule(MODULES_STATS_MODULE, STATS_PLUGIN_JAR_FILE_NAME);
@@ -293,6 +324,7 @@ public class JemoPluginManager {
 
         final Logger moduleLogger = getModuleLogger(pluginId, pluginVersion, module.getClass());
         final JemoModule jemoModule = new JemoModule(module, new ModuleMetaData(pluginId, pluginVersion, module.getClass().getSimpleName(), pluginJarName, moduleLogger));
+        Module.ModuleInfo.bind(module.getClass(), new Module.ModuleInfo(moduleLogger, jemoModule.getMetaData().getName(), pluginId, pluginVersion));
         module.construct(jemoModule.getMetaData().getLog(), jemoModule.getMetaData().getName(), jemoModule.getMetaData().getId(), jemoModule.getMetaData().getVersion());
         module.start();
         return jemoModule;
@@ -349,6 +381,27 @@ public class JemoPluginManager {
         return APPLICATION_LIST;
     }
 
+    /**
+     * this method will check if a module is loaded on this instance without loading it or reading anything from storage.
+     *
+     * @param pluginId the id of the module.
+     * @param version the version of the module.
+     * @param moduleClass the class which implements the module.
+     * @return true if the module is loaded on this instance.
+     */
+    public boolean isModuleLive(final int pluginId, final double version, final String moduleClass) {
+        for (Map.Entry<String, Set<JemoModule>> entry : LIVE_MODULE_MAP.entrySet()) {
+            if (PLUGIN_ID(entry.getKey()) == pluginId && PLUGIN_VERSION(entry.getKey()) == version) {
+                try {
+                    return entry.getValue().stream().anyMatch(m -> m.getModule().getClass().getName().equals(moduleClass));
+                } catch (ConcurrentModificationException ex) {
+                    return false; //the module is still being loaded.
+                }
+            }
+        }
+        return false;
+    }
+
     public synchronized Set<JemoModule> getLoadedModules() {
         return LIVE_MODULE_MAP.values().stream()
                 .flatMap(Collection::stream)
@@ -369,7 +422,7 @@ public class JemoPluginManager {
                 .collect(Collectors.partitioningBy(JemoApplicationMetaData::isEnabled));
 
         //step 2: we need to check how much data is in here.
-        appMetaDataPartition.get(true).forEach(jemoAppMetaData -> KNOWN_APPLICATIONS.put(jemoAppMetaData.getId(), jemoAppMetaData));
+        appMetaDataPartition.get(true).forEach(jemoAppMetaData -> KNOWN_APPLICATIONS.put(jemoAppMetaData.getId(), withLocalStats(jemoAppMetaData, null)));
 
         final Set<String> disabledAppMetaDataIds = appMetaDataPartition.get(false).stream()
                 .map(JemoApplicationMetaData::getId)
@@ -398,7 +451,7 @@ public class JemoPluginManager {
             }
             jemoServer.LOG(Level.INFO, "[%s] Application List was created successfully", JemoPluginManager.class.getSimpleName());
             CloudProvider.getInstance().getRuntime().listNoSQL(MODULE_METADATA_TABLE, JemoApplicationMetaData.class)
-                    .forEach(jemoAppMetaData -> KNOWN_APPLICATIONS.put(jemoAppMetaData.getId(), jemoAppMetaData));
+                    .forEach(jemoAppMetaData -> KNOWN_APPLICATIONS.put(jemoAppMetaData.getId(), withLocalStats(jemoAppMetaData, null)));
         }
 
         return new ArrayList<>(KNOWN_APPLICATIONS.values()); //we should return all applications because none will be loaded on startup.
@@ -418,6 +471,16 @@ public class JemoPluginManager {
         return this.virtualHostMap;
     }
 
+    /**
+     * the router is an immutable snapshot of the endpoint map, so this method needs to be called
+     * after every change to the moduleEndpointMap for the change to become visible to incoming requests.
+     */
+    private void rebuildEndpointRouter() {
+        synchronized (moduleEndpointMap) {
+            endpointRouter = JemoEndpointRouter.build(moduleEndpointMap.keySet());
+        }
+    }
+
     public MonitoringInterval getMonitoringInterval(String intervalKey) {
         return asList(SYSTEM_INTERVALS).parallelStream().filter(interval -> interval.getKey().equals(intervalKey)).findAny().orElse(null);
     }
@@ -574,6 +637,31 @@ public class JemoPluginManager {
     }
 
     public JemoMessage process(JemoMessage msg) throws Throwable {
+        try {
+            return processAsync(msg).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * this method will run the module an event or batch message is addressed to on the calling thread.
+     *
+     * @param msg the message to process.
+     * @return a future which completes with the reply of the module, with null if no enabled application can receive the message
+     * or exceptionally with the error the module raised or with a TimeoutException if it ran for too long.
+     */
+    public CompletableFuture<JemoMessage> processAsync(JemoMessage msg) {
+        try {
+            return findAndProcess(msg);
+        } catch (Throwable ex) {
+            final CompletableFuture<JemoMessage> result = new CompletableFuture<>();
+            result.completeExceptionally(ex);
+            return result;
+        }
+    }
+
+    private CompletableFuture<JemoMessage> findAndProcess(JemoMessage msg) {
         //so first of all this is actually used for both batch processing and standard processing.
         boolean isBatch = msg.getAttributes().containsKey("module_class");
 
@@ -592,7 +680,7 @@ public class JemoPluginManager {
                 .findFirst();
 
         if (!appMetaData.isPresent()) {
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
         Set<JemoModule> moduleSet = appList.stream()
@@ -604,24 +692,167 @@ public class JemoPluginManager {
 
         JemoModule module = moduleSet.stream().limit(1).findAny().orElse(null);
         if (module != null) {
-            return process(module, (isBatch ? null : msg), null, null);
+            return processAsync(module, (isBatch ? null : msg));
         } else {
             throw new RuntimeException(String.format("Module: %d - %s could not be found", msg.getPluginId(), msg.getModuleClass()));
         }
     }
 
+    /**
+     * this method will process a request and wait for the response to be written.
+     */
     public void process(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+        try {
+            processAsync(request, response).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * this method will find the module which handles a request and dispatch the request to it without blocking the caller.
+     *
+     * finding the module can wait for its jar to be loaded and the cache policy is module code, so the request is handed to the http
+     * executor before either of them runs and the module then processes the request on that same thread.
+     *
+     * @param request the request to process.
+     * @param response the response to write to.
+     * @return a future which completes once the response has been written, errors raised by the module are sent as a 500 response.
+     * it completes exceptionally with an IOException if an error response could not be sent or the module could not be loaded.
+     */
+    public CompletableFuture<Void> processAsync(final HttpServletRequest request, final HttpServletResponse response) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return dispatch(request, response);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, jemoServer.getHTTP_EXECUTOR()).thenCompose(f -> f);
+    }
+
+    private CompletableFuture<Void> dispatch(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final JemoModule module = resolveModule(request, response);
+        if (module != null) {
+            final CachePolicy cachePolicy = getCachePolicy(module, request);
+            if (cachePolicy != null) {
+                return processCached(module, cachePolicy, request, response);
+            }
+            return processHttp(module, request, response).handle((retval, ex) -> {
+                if (ex != null) {
+                    sendError(module, response, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+                return null;
+            });
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * @return the policy the module wants its response to this request cached with or null if it must not be cached.
+     */
+    private CachePolicy getCachePolicy(final JemoModule m, final HttpServletRequest request) {
+        if (m.getModule() instanceof WebServiceModule
+                && ("GET".equalsIgnoreCase(request.getMethod()) || "HEAD".equalsIgnoreCase(request.getMethod()))) {
+            Object policy = runInContext(m, t -> ((WebServiceModule) t.getModule()).getCachePolicy(request));
+            return policy instanceof CachePolicy ? (CachePolicy) policy : null;
+        }
+        return null;
+    }
+
+    /**
+     * this method will answer a request from the response cache or process it and cache the response. only responses to GET requests
+     * are cached because the response a module writes to a HEAD request may not have a body.
+     *
+     * if the policy coalesces requests and an identical request is already being processed the request waits for that response
+     * instead, it is processed on its own if the response cannot be shared.
+     */
+    private CompletableFuture<Void> processCached(final JemoModule m, final CachePolicy cachePolicy, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String key = JemoResponseCache.key(m, cachePolicy, request);
+        final JemoResponseCache.CachedResponse cached = responseCache.get(key);
+        if (cached != null) {
+            cached.writeTo(request, response);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (!cachePolicy.isCoalesce()) {
+            return processAndCache(m, cachePolicy, key, request, response).handle((fresh, ex) -> null);
+        }
+        final String flightKey = request.getMethod().toUpperCase() + ":" + key;
+        final CompletableFuture<JemoResponseCache.CachedResponse> flight = new CompletableFuture<>();
+        final CompletableFuture<JemoResponseCache.CachedResponse> leader = responseCache.takeOff(flightKey, flight);
+        if (leader == null) {
+            return processAndCache(m, cachePolicy, key, request, response).handle((fresh, ex) -> {
+                responseCache.land(flightKey, flight, fresh, ex);
+                return null;
+            });
+        }
+        //the waiters write their responses on the http executor so a single thread does not write to all of the clients.
+        return leader.handleAsync((shared, ex) -> {
+            if (ex != null) {
+                sendError(m, response, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else if (shared != null) {
+                try {
+                    shared.writeTo(request, response);
+                } catch (IOException writeEx) {
+                    jemoServer.LOG(Level.WARNING, "[%d][%s][%s] the response could not be written: %s", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(), JemoError.toString(writeEx));
+                }
+            } else {
+                return processAndCache(m, cachePolicy, key, request, response).handle((fresh, processEx) -> (Void) null);
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }, jemoServer.getHTTP_EXECUTOR()).thenCompose(f -> f);
+    }
+
+    /**
+     * this method will process a request, write the response and cache it if it can be cached. errors are sent as a 500 response.
+     *
+     * @return a future which completes with the response or null if the module bypassed the cache, it completes exceptionally if the module failed.
+     */
+    private CompletableFuture<JemoResponseCache.CachedResponse> processAndCache(final JemoModule m, final CachePolicy cachePolicy, final String key, final HttpServletRequest request, final HttpServletResponse response) {
+        final JemoResponseCache.CachingResponse captured = new JemoResponseCache.CachingResponse(response);
+        return processHttp(m, request, captured).handle((retval, ex) -> {
+            if (ex != null) {
+                final Throwable error = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                response.resetBuffer();
+                sendError(m, response, error);
+                throw new CompletionException(error);
+            }
+            final JemoResponseCache.CachedResponse fresh = JemoResponseCache.capture(m, cachePolicy, captured, response);
+            if (fresh != null) {
+                if ("GET".equalsIgnoreCase(request.getMethod())) {
+                    responseCache.put(key, fresh);
+                }
+                try {
+                    fresh.writeTo(request, response);
+                } catch (IOException writeEx) {
+                    jemoServer.LOG(Level.WARNING, "[%d][%s][%s] the response could not be written: %s", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(), JemoError.toString(writeEx));
+                }
+            }
+            return fresh;
+        });
+    }
+
+    public JemoResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * this method will find the module which handles a request using the endpoint mappings and the virtual hosts, http requests and
+     * websocket connections are routed the same way.
+     *
+     * @param request the request to route.
+     * @param response the response a 404 is sent to if there is no mapping for the request.
+     * @return the module which handles the request or null if there is none.
+     * @throws IOException if the error response could not be sent or the module could not be loaded.
+     */
+    public JemoModule resolveModule(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
         final String fBasePath = request.getServletPath();
-        String vModulePath = moduleEndpointMap.keySet().parallelStream().filter((k) -> {
-            return fBasePath.toUpperCase().startsWith(k.toUpperCase());
-        }).findAny().orElse(null);
+        String vModulePath = endpointRouter.resolve(fBasePath);
         String vBasePath = fBasePath;
         if (vModulePath == null) {
             //lets look for a virtual host mapping.
             String url = request.getRequestURL().toString();
             url = url.substring(url.indexOf(":") + 1);
-            Pattern p = Pattern.compile("(\\/\\/)([^:]+)(\\:[0-9]+)(\\/.*)");
-            Matcher m = p.matcher(url);
+            Matcher m = VHOST_URL_PATTERN.matcher(url);
             if (m.find()) {
                 url = m.group(1) + m.group(2) + m.group(4);
             }
@@ -640,8 +871,7 @@ public class JemoPluginManager {
                 //if the module is contained in the module map. but there will be complexity in this as well
                 //because if the module is not loaded then we should block until it becomes loaded into the system.
 
-                final Holder<Throwable> error = new Holder<>();
-                loadModules(moduleJar).parallelStream().filter((m) -> {
+                return loadModules(moduleJar).parallelStream().filter((m) -> {
                     if (m.getModule().getBasePath() != null) {
                         if (moduleJar.startsWith("0_")) {
                             return basePath.toUpperCase().startsWith(m.getModule().getBasePath().toUpperCase());
@@ -656,16 +886,7 @@ public class JemoPluginManager {
                     public int compare(JemoModule o1, JemoModule o2) {
                         return new Integer(o1.getModule().getBasePath().length()).compareTo(o2.getModule().getBasePath().length());
                     }
-                }).findFirst().ifPresent((m) -> {
-                    try {
-                        process(m, null, request, response);
-                    } catch (Throwable ex) {
-                        error.value = ex;
-                    }
-                });
-                if (error.value != null) {
-                    response.sendError(500, JemoError.newInstance(error.value).toString());
-                }
+                }).findFirst().orElse(null);
             } else {
                 //lets make this error response a bit nicer and return a better formatted and smarter looking list of supported plugins with an outline
                 //of the endpoints the classes that implement those endpoints a clickable link to the endpoint and a link to view the module documentation
@@ -675,6 +896,19 @@ public class JemoPluginManager {
         } else {
             response.sendError(404, "no module mapping defined for: " + basePath + " supported mappings are: " + moduleEndpointMap.toString());
         }
+        return null;
+    }
+
+    private void sendError(final JemoModule m, final HttpServletResponse response, final Throwable error) {
+        try {
+            if (response.isCommitted()) {
+                jemoServer.LOG(Level.WARNING, "[%d][%s][%s] the request failed after the response was committed: %s", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(), JemoError.toString(error));
+            } else {
+                response.sendError(500, JemoError.newInstance(error).toString());
+            }
+        } catch (IOException | IllegalStateException ex) {
+            jemoServer.LOG(Level.WARNING, "[%d][%s][%s] the error response could not be sent: %s", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(), JemoError.toString(ex));
+        }
     }
 
     private static class ModuleExecutionContext {
@@ -705,140 +939,171 @@ public class JemoPluginManager {
         }
     }
 
-    private static final Map<Long, ModuleExecutionContext> MODULE_CONTEXT_MAP = new ConcurrentHashMap<>();
+    //the context is installed on the thread running the module for the duration of the call and restored afterwards, it is
+    //never looked up by thread id so it is released with the call and work handed to another thread has to carry it explicitly.
+    private static final ThreadLocal<ModuleExecutionContext> MODULE_CONTEXT = new ThreadLocal<>();
+    private static final ModuleExecutionContext NO_CONTEXT = new ModuleExecutionContext();
 
-    public static Module getCurrentModule() {
-        return MODULE_CONTEXT_MAP.getOrDefault(Thread.currentThread().getId(), new ModuleExecutionContext()).getModule();
-    }
+    //timeouts are scheduled rather than waited for so that nothing holds a thread while a module is running.
+    //runs a task on the thread which submits it.
+    private static final Executor CALLER_THREAD = Runnable::run;
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "jemo-module-timeout");
+        t.setDaemon(true);
+        return t;
+    });
 
-    public static ModuleMetaData getCurrentModuleMetaData() {
-        return MODULE_CONTEXT_MAP.getOrDefault(Thread.currentThread().getId(), new ModuleExecutionContext()).getMetadata();
+    private static ModuleExecutionContext currentContext() {
+        ModuleExecutionContext ctx = MODULE_CONTEXT.get();
+        return ctx == null ? NO_CONTEXT : ctx;
     }
 
-    public static AbstractJemo getServerInstance() {
-        return MODULE_CONTEXT_MAP.getOrDefault(Thread.currentThread().getId(), new ModuleExecutionContext(null, null, AbstractJemo.DEFAULT_INSTANCE == null ? Jemo.SERVER_INSTANCE : AbstractJemo.DEFAULT_INSTANCE)).getServer();
+    public static Module getCurrentModule() {
+        return currentContext().getModule();
     }
 
-    public <T extends Object> T runWithModuleContext(Class<T> retval, ManagedFunctionWithException<JemoModule, Object> func) throws Throwable {
-        return retval.cast(runWithModule(loadPluginModules(0).iterator().next(), jemoServer.getWORK_EXECUTOR(), func, 600));
+    public static ModuleMetaData getCurrentModuleMetaData() {
+        return currentContext().getMetadata();
     }
 
-    private Object runWithModule(final JemoModule m, final ExecutorService exec, ManagedFunctionWithException<JemoModule, Object> func, final int timeout) throws Throwable {
-        Object retval = null;
-        try {
-            retval = buildModuleFuture(m, exec, func).get(timeout, TimeUnit.SECONDS);
-        } catch (TimeoutException tmEx) {
-            TIMEOUT_COUNT++;
-            long freeMemory = MEMORY_CHECK();
-            if (freeMemory < MEMORY_THRESHOLD && TIMEOUT_COUNT > 10) {
-                jemoServer.LOG(Level.SEVERE, "Forcing Process Termination because Process Deadlock Detected FreeMem: %d, TimeOutCount: %d", freeMemory, TIMEOUT_COUNT);
-                System.exit(0); //kill the process as this means the system is frozen.
-            } else {
-                jemoServer.LOG(Level.WARNING, "[%d][%s][%s] Possible Worker Deadlock. Worker reset initiatied FREE MEMORY %d MB TIMEOUT %d", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(),
-                        freeMemory / 1024, TIMEOUT_COUNT);
-                if (TIMEOUT_COUNT > 10) {
-                    TIMEOUT_COUNT = 0;
-                }
-            }
-            //timeouts should be re-scheduled.
-            retval = tmEx;
-        }
-
-        if (retval instanceof Throwable) {
-            throw (Throwable) retval;
+    public static AbstractJemo getServerInstance() {
+        AbstractJemo server = currentContext().getServer();
+        if (server == null) {
+            return AbstractJemo.DEFAULT_INSTANCE == null ? Jemo.SERVER_INSTANCE : AbstractJemo.DEFAULT_INSTANCE;
         }
-
-        return retval;
+        return server;
     }
 
-    private Future<Object> buildModuleFuture(final JemoModule m, final ExecutorService exec, ManagedFunctionWithException<JemoModule, Object> func) {
-        return exec.submit(() -> {
+    /**
+     * this method will capture the module context of the calling thread so that the task runs with it on whichever thread executes it.
+     *
+     * @param task the task to run later.
+     * @return a task which runs with the context of the caller.
+     */
+    public static Runnable withCurrentContext(final Runnable task) {
+        final ModuleExecutionContext ctx = MODULE_CONTEXT.get();
+        return () -> {
+            final ModuleExecutionContext previous = MODULE_CONTEXT.get();
+            MODULE_CONTEXT.set(ctx);
             try {
-                MODULE_CONTEXT_MAP.put(Thread.currentThread().getId(), new ModuleExecutionContext(m.getModule(), m.getMetaData(), jemoServer));
-                return func.applyHandleErrors(m);
-            } catch (Throwable ex) {
-                jemoServer.LOG(Level.SEVERE, "[%d][%s][%s] Error running module: %s", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(), JemoError.toString(ex));
-                return ex;
+                task.run();
             } finally {
-                MODULE_CONTEXT_MAP.remove(Thread.currentThread().getId());
+                restoreContext(previous);
             }
-        });
+        };
     }
 
-    private final ConcurrentHashMap<Integer, Long> BatchExecutionMap = new ConcurrentHashMap<>();
-
-    public void clearBatchExecutionMap() {
-        BatchExecutionMap.clear();
-    }
-
-    private static class ModuleInstanceEventInfo {
-        private int numActive = 0;
-        private List<Long> activeSince = new ArrayList<>();
-
-        public int getNumActive() {
-            return numActive;
-        }
-
-        public void setNumActive(int numActive) {
-            this.numActive = numActive;
+    private static void restoreContext(ModuleExecutionContext previous) {
+        if (previous == null) {
+            MODULE_CONTEXT.remove();
+        } else {
+            MODULE_CONTEXT.set(previous);
         }
+    }
 
-        public List<Long> getActiveSince() {
-            return activeSince;
+    /**
+     * this method will run a function as the system module on the calling thread.
+     */
+    public <T extends Object> T runWithModuleContext(Class<T> retval, ManagedFunctionWithException<JemoModule, Object> func) throws Throwable {
+        Object result = runInContext(loadPluginModules(0).iterator().next(), func);
+        if (result instanceof Throwable) {
+            throw (Throwable) result;
         }
+        return retval.cast(result);
+    }
 
-        public void setActiveSince(List<Long> activeSince) {
-            this.activeSince = activeSince;
+    private Object runWithModule(final JemoModule m, final Executor exec, ManagedFunctionWithException<JemoModule, Object> func, final int timeout) throws Throwable {
+        try {
+            return runWithModuleAsync(m, exec, func, timeout).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause();
         }
     }
 
-    private static String buildModuleEventStorageKey(final String instanceId, final String moduleClass) {
-        return "jemo_event_module_" + moduleClass + "_" + instanceId;
+    /**
+     * this method will run a function as a module on an executor without blocking the caller.
+     *
+     * @param m the module to run the function as.
+     * @param exec the executor to run the function on.
+     * @param func the function to run, if it returns a CompletionStage the future completes when the stage does.
+     * @param timeout the time in seconds after which the future completes with a TimeoutException, the function itself keeps running.
+     * @return a future which completes with the result of the function or exceptionally with the error it raised.
+     */
+    CompletableFuture<Object> runWithModuleAsync(final JemoModule m, final Executor exec, ManagedFunctionWithException<JemoModule, Object> func, final int timeout) {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final ScheduledFuture<?> timeoutTask = TIMEOUT_SCHEDULER.schedule(() -> {
+            if (!result.isDone()) {
+                //timeouts should be re-scheduled.
+                result.completeExceptionally(onTimeout(m, timeout));
+            }
+        }, timeout, TimeUnit.SECONDS);
+        buildModuleFuture(m, exec, func).thenCompose(retval -> retval instanceof CompletionStage ? ((CompletionStage<?>) retval).thenApply(r -> (Object) r) : CompletableFuture.completedFuture(retval)).whenComplete((retval, ex) -> {
+            timeoutTask.cancel(false);
+            if (retval instanceof Throwable) {
+                result.completeExceptionally((Throwable) retval);
+            } else if (ex != null) {
+                result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            } else {
+                result.complete(retval);
+            }
+        });
+        return result;
     }
 
-    private String buildModuleEventStorageKey(final String moduleClass) {
-        return buildModuleEventStorageKey(jemoServer.getINSTANCE_ID(), moduleClass);
+    private TimeoutException onTimeout(final JemoModule m, final int timeout) {
+        TIMEOUT_COUNT++;
+        long freeMemory = MEMORY_CHECK();
+        if (freeMemory < MEMORY_THRESHOLD && TIMEOUT_COUNT > 10) {
+            jemoServer.LOG(Level.SEVERE, "Forcing Process Termination because Process Deadlock Detected FreeMem: %d, TimeOutCount: %d", freeMemory, TIMEOUT_COUNT);
+            System.exit(0); //kill the process as this means the system is frozen.
+        } else {
+            jemoServer.LOG(Level.WARNING, "[%d][%s][%s] Possible Worker Deadlock. Worker reset initiatied FREE MEMORY %d MB TIMEOUT %d", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(),
+                    freeMemory / 1024, TIMEOUT_COUNT);
+            if (TIMEOUT_COUNT > 10) {
+                TIMEOUT_COUNT = 0;
+            }
+        }
+        return new TimeoutException(String.format("module %s did not complete within %d seconds", m.getMetaData().getName(), timeout));
     }
 
-    private static String buildModuleEventStoragePath(final long moduleId, final double moduleVersion) {
-        return Jemo.SYSTEM_STORAGE_PATH + "/" + String.valueOf(moduleId) + "_" + String.valueOf(moduleVersion);
+    private CompletableFuture<Object> buildModuleFuture(final JemoModule m, final Executor exec, ManagedFunctionWithException<JemoModule, Object> func) {
+        return CompletableFuture.supplyAsync(() -> runInContext(m, func), exec);
     }
 
-    private static synchronized ModuleInstanceEventInfo getModuleEventRuntimeInfo(final String instanceId, final long moduleId, final double moduleVersion, final String moduleClass) {
-        ModuleInstanceEventInfo runtimeInfo = CloudProvider.getInstance().getRuntime().read(ModuleInstanceEventInfo.class, buildModuleEventStoragePath(moduleId, moduleVersion), buildModuleEventStorageKey(instanceId, moduleClass));
-        if (runtimeInfo == null) {
-            runtimeInfo = new ModuleInstanceEventInfo();
+    /**
+     * this method will run a function on the calling thread with the context of a module installed.
+     *
+     * @return the result of the function or the error it raised.
+     */
+    Object runInContext(final JemoModule m, ManagedFunctionWithException<JemoModule, Object> func) {
+        final ModuleExecutionContext previous = MODULE_CONTEXT.get();
+        MODULE_CONTEXT.set(new ModuleExecutionContext(m.getModule(), m.getMetaData(), jemoServer));
+        try {
+            return func.applyHandleErrors(m);
+        } catch (Throwable ex) {
+            jemoServer.LOG(Level.SEVERE, "[%d][%s][%s] Error running module: %s", m.getMetaData().getId(), String.valueOf(m.getMetaData().getVersion()), m.getMetaData().getName(), JemoError.toString(ex));
+            return ex;
+        } finally {
+            restoreContext(previous);
         }
-        return runtimeInfo;
     }
 
-    private synchronized ModuleInstanceEventInfo getModuleEventRuntimeInfo(final long moduleId, final double moduleVersion, final String moduleClass) {
-        return getModuleEventRuntimeInfo(jemoServer.getINSTANCE_ID(), moduleId, moduleVersion, moduleClass);
+    private final ConcurrentHashMap<Integer, Long> BatchExecutionMap = new ConcurrentHashMap<>();
+
+    public void clearBatchExecutionMap() {
+        BatchExecutionMap.clear();
     }
 
-    public synchronized void writeExecuteModuleEvent(final long moduleId, final double moduleVersion, final String moduleClass) {
-        ModuleInstanceEventInfo eventInfo = getModuleEventRuntimeInfo(moduleId, moduleVersion, moduleClass);
-        eventInfo.setNumActive(eventInfo.getNumActive() + 1);
-        eventInfo.getActiveSince().add(System.currentTimeMillis());
-        //remove any events over 30 minutes old
-        eventInfo.getActiveSince().removeIf(l -> System.currentTimeMillis() - l > TimeUnit.MINUTES.toMillis(30));
-        CloudProvider.getInstance().getRuntime().write(buildModuleEventStoragePath(moduleId, moduleVersion),
-                buildModuleEventStorageKey(moduleClass), eventInfo);
+    /**
+     * records that an event for the module has started on this instance, this only updates local counters which are published
+     * to the rest of the GSM in the background.
+     */
+    public void writeExecuteModuleEvent(final long moduleId, final double moduleVersion, final String moduleClass) {
+        jemoServer.getEventCounters().eventStarted(moduleId, moduleVersion, moduleClass);
     }
 
-    public synchronized void deleteExecuteModuleEvent(final long moduleId, final double moduleVersion, final String moduleClass) {
-        ModuleInstanceEventInfo eventInfo = getModuleEventRuntimeInfo(moduleId, moduleVersion, moduleClass);
-        eventInfo.setNumActive(eventInfo.getNumActive() - 1);
-        eventInfo.getActiveSince().removeIf(l -> System.currentTimeMillis() - l > TimeUnit.MINUTES.toMillis(30));
-		/*long min = eventInfo.getActiveSince().stream().mapToLong(l -> l).min().orElse(0);
-		eventInfo.getActiveSince().removeIf(l -> l == min); //remove the oldest execution*/
-        CloudProvider.getInstance().getRuntime().write(buildModuleEventStoragePath(moduleId, moduleVersion),
-                buildModuleEventStorageKey(moduleClass), eventInfo);
-		/*if(eventInfo.getNumActive() > 0) {
-			
-		} else {
-			CloudProvider.getInstance().getRuntime().remove(buildModuleEventStoragePath(moduleId, moduleVersion), buildModuleEventStorageKey(moduleClass));
-		}*/
+    public void deleteExecuteModuleEvent(final long moduleId, final double moduleVersion, final String moduleClass) {
+        jemoServer.getEventCounters().eventFinished(moduleId, moduleVersion, moduleClass);
     }
 
     public int getNumModuleEventsRunning(final long moduleId, final double moduleVersion, final String moduleClass) {
@@ -846,17 +1111,11 @@ public class JemoPluginManager {
     }
 
     public long getLastLaunchedModuleEvent(final long moduleId, final double moduleVersion, final String moduleClass) {
-        ModuleInstanceEventInfo eventInfo = getModuleEventRuntimeInfo(moduleId, moduleVersion, moduleClass);
-        return eventInfo.getActiveSince().stream().max((a1, a2) -> a1.compareTo(a2)).orElse(0l);
+        return jemoServer.getEventCounters().getLastLaunched(moduleId, moduleVersion, moduleClass);
     }
 
     public long getLastLaunchedModuleEventOnGSM(final long moduleId, final double moduleVersion, final String moduleClass) {
-        return getActiveLocationList().stream()
-                .flatMap(l -> listInstances(l).stream())
-                .map(inst -> getModuleEventRuntimeInfo(inst, moduleId, moduleVersion, moduleClass))
-                .flatMap(info -> info.getActiveSince().stream())
-                .mapToLong(Long::longValue)
-                .max().orElse(0);
+        return jemoServer.getEventCounters().getLastLaunchedOnGSM(moduleId, moduleVersion, moduleClass);
     }
 
     /**
@@ -868,8 +1127,7 @@ public class JemoPluginManager {
      * @return the number of currently active running event processes at this point in time.
      */
     public static int getNumModuleEventsRunning(final String instanceId, final long moduleId, final double moduleVersion, final String moduleClass) {
-        ModuleInstanceEventInfo eventInfo = getModuleEventRuntimeInfo(instanceId, moduleId, moduleVersion, moduleClass);
-        return eventInfo.getNumActive();
+        return getServerInstance().getEventCounters().getActiveOnInstance(instanceId, moduleId, moduleVersion, moduleClass);
     }
 
     public int getNumModuleEventsRunningOnLocation(final long moduleId, final double moduleVersion, final String moduleClass) {
@@ -877,27 +1135,44 @@ public class JemoPluginManager {
     }
 
     public int getNumModuleEventsRunningOnLocation(final String location, final long moduleId, final double moduleVersion, final String moduleClass) {
-        return listInstances(location).stream().mapToInt(inst -> getNumModuleEventsRunning(inst, moduleId, moduleVersion, moduleClass)).sum();
+        return jemoServer.getEventCounters().getActiveOnLocation(location, moduleId, moduleVersion, moduleClass);
     }
 
     public int getNumModuleEventsRunningOnGSM(final long moduleId, final double moduleVersion, final String moduleClass) {
-        return getActiveLocationList().stream()
-                .flatMap(l -> listInstances(l).stream())
-                .mapToInt(inst -> getNumModuleEventsRunning(inst, moduleId, moduleVersion, moduleClass)).sum();
+        return jemoServer.getEventCounters().getActiveOnGSM(moduleId, moduleVersion, moduleClass);
+    }
+
+    /**
+     * this method will run a module for a http request on the calling thread, which is always a thread of the http executor.
+     *
+     * web service modules are called through their asynchronous variant of process so a module which returns a future that is not yet
+     * complete only holds an executor thread while it is actually working, the timeout still applies until the future completes.
+     */
+    private CompletableFuture<Void> processHttp(final JemoModule m, final HttpServletRequest request, final HttpServletResponse response) {
+        //the code will make sure plugin loading has priority execution.
+        final int timeoutInSeconds = m.getMetaData().getId() == 0 ? 300 : 20;
+        final long start = System.currentTimeMillis();
+        return runWithModuleAsync(m, CALLER_THREAD, (t) -> {
+            if (t.getModule() instanceof WebServiceModule) {
+                return ((WebServiceModule) t.getModule()).processAsync(request, response);
+            }
+            t.getModule().process(request, response);
+            return null;
+        }, timeoutInSeconds).whenComplete((retval, ex) -> {
+            final long duration = System.currentTimeMillis() - start;
+            if (ex == null) {
+                recordExecution(m, true, duration);
+            }
+            asList(SYSTEM_INTERVALS).parallelStream().forEach(interval -> interval.httpRequest(duration));
+        }).thenApply(retval -> null);
     }
 
-    private JemoMessage process(final JemoModule m, final JemoMessage msg, final HttpServletRequest request, final HttpServletResponse response) throws Throwable {
-        //we should probably run this in a specific thread
-        //where we will inject a context variable which contains information about the plugin that will be running the code in the plugin.
-        //the call will block until the module execution completes however we will use a future mechansim to get at the value and return it.
+    private CompletableFuture<JemoMessage> processAsync(final JemoModule m, final JemoMessage msg) {
+        //we inject a context variable which contains information about the plugin that will be running the code in the plugin.
         //the key here will be access to the plugin context always so we can make the execution environment smarter.
-        ExecutorService exec = jemoServer.getWORK_EXECUTOR(); //doesn't really make sense to have a lot of pools because now that this is a cached pool implementation there are no longer any limits.
+        //events and batches already hold a thread of the executor which dispatched them so the module runs on that thread,
+        //this keeps them bounded by their executor and http requests have a pool of their own so that a module flooded with events can never starve the http endpoints.
         int timeoutInSeconds = 60 * 30; //30 minutes (events can run longer)
-        boolean isHttp = false;
-        if (request != null) {
-            timeoutInSeconds = 20;
-            isHttp = true;
-        }
         if (msg == null) {
             timeoutInSeconds = (int) TimeUnit.SECONDS.convert(6, TimeUnit.HOURS); //batch tasks can run for up to 6 hours.
         }
@@ -905,62 +1180,21 @@ public class JemoPluginManager {
         if (m.getMetaData().getId() == 0) {
             timeoutInSeconds = 300;
         }
-        long start = System.currentTimeMillis();
-        try {
-            Object retval = runWithModule(m, exec, (t) -> {
-                JemoMessage msgRet = null;
-                if (request == null && response == null) {
-                    if (msg != null) {
-                        //write that we are running to the GSM
-                        try {
-                            //writeExecuteModuleEvent(m);
-                            msg.setCurrentInstance(jemoServer.getINSTANCE_ID());
-                            msg.setCurrentLocation(jemoServer.getLOCATION());
-                            msgRet = wrapWithTimer(m, (JemoModule module) -> module.getModule().process(msg));
-                        } finally {
-                            //write that we have stopped running to the GSM.
-                            //deleteExecuteModuleEvent(m);
-                        }
-                    } else {
-						/*Long lastExec = BatchExecutionMap.get(m.getMetaData().getId());
-						if(lastExec == null || System.currentTimeMillis()-lastExec > TimeUnit.MILLISECONDS.convert(1, TimeUnit.MINUTES)) {
-							BatchExecutionMap.put(m.getMetaData().getId(), System.currentTimeMillis());
-							try {*/
-
-                        wrapWithTimer(m, (JemoModule module) -> module.getModule().processBatch(jemoServer.getLOCATION(), Jemo.IS_CLOUD_LOCATION(jemoServer.getLOCATION())));
-
-							/*}finally {
-								BatchExecutionMap.put(m.getMetaData().getId(), System.currentTimeMillis());
-							}
-						} else {
-							jemoServer.LOG(Level.INFO, "Ignoring execution of batch message because one for this module was run less than a minute ago.");
-						}*/
-                    }
-                } else {
-                    wrapWithTimer(m, (JemoModule module) -> module.getModule().process(request, response));
-                }
-                return msgRet;
-            }, timeoutInSeconds);
-            if (retval instanceof JemoMessage) {
-                return (JemoMessage) retval;
+        final long start = System.currentTimeMillis();
+        return runWithModuleAsync(m, CALLER_THREAD, (t) -> {
+            JemoMessage msgRet = null;
+            if (msg != null) {
+                msg.setCurrentInstance(jemoServer.getINSTANCE_ID());
+                msg.setCurrentLocation(jemoServer.getLOCATION());
+                msgRet = wrapWithTimer(m, (JemoModule module) -> module.getModule().process(msg));
+            } else {
+                wrapWithTimer(m, (JemoModule module) -> module.getModule().processBatch(jemoServer.getLOCATION(), Jemo.IS_CLOUD_LOCATION(jemoServer.getLOCATION())));
             }
-
-            return null;
-        } catch (Throwable ex) {
-			/*if(request == null && response == null && msg != null) {
-				deleteExecuteModuleEvent(m);
-			}*/
-            throw ex;
-        } finally {
-            long end = System.currentTimeMillis();
-            final boolean fIsHttp = isHttp;
-            asList(SYSTEM_INTERVALS).parallelStream().forEach(interval -> {
-                if (fIsHttp)
-                    interval.httpRequest(end - start);
-                else
-                    interval.eventRequest(end - start);
-            });
-        }
+            return msgRet;
+        }, timeoutInSeconds).whenComplete((retval, ex) -> {
+            final long end = System.currentTimeMillis();
+            asList(SYSTEM_INTERVALS).parallelStream().forEach(interval -> interval.eventRequest(end - start));
+        }).thenApply(retval -> retval instanceof JemoMessage ? (JemoMessage) retval : null);
     }
 
     private void wrapWithTimer(JemoModule m, ManagedConsumer<JemoModule> consumer) {
@@ -971,25 +1205,44 @@ public class JemoPluginManager {
     }
 
     private <T> T wrapWithTimer(JemoModule m, ManagedFunction<JemoModule, T> func) {
-        long start = 0;
-        if (!isDefaultModule(m.getMetaData())) {
-            start = System.currentTimeMillis();
-        }
-
+        final long start = System.currentTimeMillis();
         final T result = func.apply(m);
+        recordExecution(m, false, System.currentTimeMillis() - start);
+        return result;
+    }
 
+    private void recordExecution(JemoModule m, boolean isHttp, long duration) {
         if (!isDefaultModule(m.getMetaData())) {
-            final long duration = System.currentTimeMillis() - start;
-            KNOWN_APPLICATIONS.get(m.getMetaData().getPluginJar()).getStats()
-                    .compute(m.getModule().getClass().getName(), (k, v) -> {
-                        if (v == null) {
-                            v = new Accumulator();
-                        }
-                        return v.add(duration);
-                    });
+            final JemoApplicationMetaData app = KNOWN_APPLICATIONS.get(m.getMetaData().getPluginJar());
+            final String moduleClass = m.getModule().getClass().getName();
+            app.getStats().computeIfAbsent(moduleClass, k -> new Accumulator()).add(duration);
+            //http requests are also recorded against the endpoint they were made to.
+            final String endpoint = isHttp ? app.getEndpoints().get(moduleClass) : null;
+            if (endpoint != null) {
+                app.getEndpointStats().computeIfAbsent(endpoint, k -> new Accumulator()).add(duration);
+            }
         }
+    }
 
-        return result;
+    /**
+     * the statistics held in memory only ever cover the executions on this instance, the statistics stored with the metadata
+     * are the merge of every instance in the GSM so they must not be used as a starting point or they would be counted again.
+     *
+     * @param app the application metadata which was loaded or received.
+     * @param current the metadata we already hold for the application, if any.
+     * @return the application metadata carrying only the statistics of this instance.
+     */
+    private static JemoApplicationMetaData withLocalStats(JemoApplicationMetaData app, JemoApplicationMetaData current) {
+        if (current == app) {
+            return app;
+        }
+        app.getStats().clear();
+        app.getEndpointStats().clear();
+        if (current != null) {
+            app.getStats().putAll(current.getStats());
+            app.getEndpointStats().putAll(current.getEndpointStats());
+        }
+        return app;
     }
 
     private boolean isDefaultModule(ModuleMetaData metaData) {
@@ -1049,7 +1302,7 @@ public class JemoPluginManager {
         return getClassList(new ByteArrayInputStream(jarBytes));
     }
 
-    public static class PluginManagerModule implements Module {
+    public static class PluginManagerModule implements WebServiceModule {
 
         Logger log = null;
         int pluginId = 0;
@@ -1621,7 +1874,7 @@ public class JemoPluginManager {
 
         private void updateApplicationRuntimeVariablesOnUpdate(final String jarFileName, final JemoApplicationMetaData app) {
             synchronized (jemoServer.getPluginManager().KNOWN_APPLICATIONS) {
-                jemoServer.getPluginManager().KNOWN_APPLICATIONS.put(app.getId(), app);
+                jemoServer.getPluginManager().KNOWN_APPLICATIONS.put(app.getId(), withLocalStats(app, jemoServer.getPluginManager().KNOWN_APPLICATIONS.get(app.getId())));
             }
             if (jemoServer.getPluginManager().PLUGIN_VALID(jarFileName)) { //only change the registration in the application list if we are authorised to run this application
                 synchronized (jemoServer.getPluginManager().APPLICATION_LIST) {
@@ -1632,6 +1885,7 @@ public class JemoPluginManager {
                 deadEndpointMappings.forEach(k -> jemoServer.getPluginManager().moduleEndpointMap.remove(k));
                 jemoServer.getPluginManager().moduleEndpointMap.putAll(app.getEndpoints().values().stream()
                         .collect(Collectors.toMap(e -> e, e -> app.getId())));
+                jemoServer.getPluginManager().rebuildEndpointRouter();
             }
             jemoServer.getPluginManager().storeModuleList(); //update the module list to reflect the validity of available applications for this instance.
         }
@@ -1648,6 +1902,7 @@ public class JemoPluginManager {
                         .filter(e -> app.getId().equals(e.getValue()))
                         .map(Map.Entry::getKey)
                         .forEach(k -> jemoServer.getPluginManager().moduleEndpointMap.remove(k));
+                jemoServer.getPluginManager().rebuildEndpointRouter();
             }
             jemoServer.getPluginManager().storeModuleList(); //update the module list to reflect the validity of available applications for this instance.
         }
@@ -1763,6 +2018,18 @@ public class JemoPluginManager {
             return "/jemo";
         }
 
+        /**
+         * the documentation pages are rendered from the module jars on every request so they are cached per user, they are dropped
+         * whenever a module is loaded or unloaded.
+         */
+        @Override
+        public CachePolicy getCachePolicy(HttpServletRequest request) {
+            if (request.getRequestURI().startsWith("/jemo/docs")) {
+                return CachePolicy.newInstance().setTtl(TimeUnit.MINUTES, 5).setVaryHeaders("Authorization").setCoalesce(true).build();
+            }
+            return null;
+        }
+
         @Override
         public double getVersion() {
             return 1.0;
@@ -1819,13 +2086,18 @@ public class JemoPluginManager {
         }
 
         private void writeAPIJar(OutputStream out) throws Throwable {
-            Util.createJar(out, Module.class, ModuleInfo.class, WebServiceModule.class, EventModule.class, BatchModule.class, FixedModule.class,
-                    JemoMessage.class, JemoError.class, CloudRuntime.class,
+            Util.createJar(out, Module.class, Module.ModuleInfo.class, ModuleInfo.class, WebServiceModule.class, EventModule.class, BatchModule.class, FixedModule.class,
+                    JemoMessage.class, BroadcastResult.class, BroadcastResult.Target.class, BroadcastResult.Status.class, JemoError.class, CloudRuntime.class,
                     CloudBlob.class, QueueDoesNotExistException.class, CloudLogEvent.class, CloudQueueProcessor.class,
                     SystemDBObject.class, ModuleConfiguration.class, JemoClassLoader.class, CloudProvider.class,
                     SystemDB.class, Util.class, JemoUser.class, JemoGroup.class, JemoAuthentication.class,
                     ManagedFunctionWithException.class, ManagedAcceptor.class, ManagedConsumer.class,
-                    Frequency.class, ModuleLimit.class, ModuleLimit.Builder.class, KeyValue.class);
+                    Frequency.class, ModuleLimit.class, ModuleLimit.Builder.class, RetryPolicy.class, RetryPolicy.Builder.class, KeyValue.class,
+                    WebSocketModule.class, WebSocketHandler.class, WebSocketSession.class, WebSocketSessions.class,
+                    CachePolicy.class, CachePolicy.Builder.class,
+                    //the bindings the api uses to call into the engine are not public so they can only be referenced by name.
+                    Class.forName("org.eclipse.jemo.api.ModuleBinding"), Class.forName("org.eclipse.jemo.api.Module$ModuleInfo$Binding"),
+                    Class.forName("org.eclipse.jemo.internal.model.JemoMessage$ServerBinding"));
         }
 
         @Override
@@ -2033,6 +2305,8 @@ public class JemoPluginManager {
                         m.getModule().stop();
                         return null;
                     }, 10);
+                    JemoWebSocketManager.closeSessions(originalModule.getModule());
+                    responseCache.invalidate(originalModule.getMetaData().getId());
                     originalModule.close(); //shutdown any watchdogs
                 } catch (Throwable ex) {
                     ex.printStackTrace();
@@ -2114,6 +2388,7 @@ public class JemoPluginManager {
      */
     public void loadPlugin(String jarFileName) throws IOException {
         if (PLUGIN_VALID(jarFileName)) {
+            responseCache.invalidate(PLUGIN_ID(jarFileName));
             try {
                 //ok now all that we need to do at this point is load the jar into the JCL and instantiate any modules that
                 //are contained within it. We will also shutdown any existing modules if they have already been associated with the plugin id specified.
@@ -2152,12 +2427,14 @@ public class JemoPluginManager {
                 endpointList.stream().forEach((entry) -> {
                     moduleEndpointMap.remove(entry.getKey());
                 });
+                rebuildEndpointRouter();
 
                 newModuleList.forEach((cls) -> {
                     //each module will have to be instantiated and stored in the plugin cache for this instance.
                     try {
                         Module mod = Module.class.cast(jemoClassLoaderHolder.value.loadClass(cls).newInstance());
                         ModuleMetaData metaData = new ModuleMetaData(pluginId, pluginVersion, mod.getClass().getSimpleName(), jarFileName, getModuleLogger(pluginId, pluginVersion, mod.getClass()));
+                        Module.ModuleInfo.bind(mod.getClass(), new Module.ModuleInfo(metaData.getLog(), metaData.getName(), pluginId, pluginVersion)); //bound before the module is visible to other threads.
                         JemoModule jemoModule = new JemoModule(mod, metaData);
                         //register the module to receive and process messages during the initialisation phase.
                         Set<JemoModule> moduleSet = LIVE_MODULE_MAP.get(jarFileName);
@@ -2184,6 +2461,7 @@ public class JemoPluginManager {
                             appMetadata.getEndpoints().put(cls, endpoint);
                             jemoServer.LOG(Level.INFO, "[%s][%f][%s] will process HTTP/HTTPS/WEBSOCKET requests from the base path: %s", String.valueOf(pluginId), pluginVersion, mod.getClass().getSimpleName(), endpoint);
                             moduleEndpointMap.put(endpoint, jarFileName);
+                            rebuildEndpointRouter();
                         }
                         //does this implement a batch processor there is a way to check.
                         if (jemoModule.implementsBatch()) {
@@ -2247,16 +2525,12 @@ public class JemoPluginManager {
 
     //we need a method that will give us all of the active instances at a specific location.
     public List<String> listInstances(String location) {
-        //we can do this by getting a list of the queue id's and filtering that list based on the location parameter.
-        return CloudProvider.getInstance().getRuntime().listQueueIds(location).stream().map(qId -> qId.substring(qId.lastIndexOf('/') + ("JEMO-" + location + "-").length() + 1)).parallel()
-                .filter(inst -> isInstanceActive(inst))
-                .collect(Collectors.toList());
+        //the cluster membership view already knows which instances are active at each location so we do not need to go to storage.
+        return new ArrayList<>(jemoServer.getClusterMembership().getView().getActiveInstances(location));
     }
 
     protected boolean isInstanceActive(String instanceId) {
-        Long lastPollDate = CloudProvider.getInstance().getRuntime().retrieve(instanceId + ".lastpoll", Long.class);
-        //if this was at least 5 minutes ago then we can keep it in this list.
-        return (lastPollDate != null && System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(5, TimeUnit.MINUTES) < lastPollDate);
+        return jemoServer.getClusterMembership().isInstanceActive(instanceId);
     }
 
     /**
@@ -2327,44 +2601,33 @@ public class JemoPluginManager {
      * discovered through access to the message queue. we can use the .lastpoll file on S3
      * to discover if an instance is active or not.
      * <p>
-     * to constrain resource usage the location list will be stored in a cache for 5 minutes after which
-     * it will naturally expire and will be re-calculated if needed.
+     * the list is read from the locally cached cluster membership view which is refreshed in the background
+     * and updated by the heartbeats other instances send when they join or leave the cluster.
      *
      * @return a set containing the unique list of active locations in this GSM.
      */
-    public synchronized Set<String> getActiveLocationList() {
-        return CloudProvider.getInstance().getRuntime().listQueueIds(null).stream()
-                .filter(q -> !q.toUpperCase().endsWith("WORK-QUEUE"))
-                .map(q -> q.substring(q.toUpperCase().indexOf(QUEUE_NAME_PREFIX)))
-                .filter(q -> isInstanceActive(q.substring(q.length() - 36)))
-                .map(q -> q.substring(QUEUE_NAME_PREFIX.length(), q.length() - 37))
-                .collect(Collectors.toSet());
+    public Set<String> getActiveLocationList() {
+        return new HashSet<>(jemoServer.getClusterMembership().getView().getActiveLocations());
     }
 
-    public synchronized Set<String> getActiveInstanceList() {
-        return CloudProvider.getInstance().getRuntime().listQueueIds(null, false).stream()
-                .map(q -> q.substring(q.toUpperCase().indexOf(QUEUE_NAME_PREFIX)))
-                .map(q -> q.substring(q.length() - 36))
-                .filter(inst -> isInstanceActive(inst))
-                .collect(Collectors.toSet());
+    public Set<String> getActiveInstanceList() {
+        return new HashSet<>(jemoServer.getClusterMembership().getView().getActiveInstances());
     }
 
-    public synchronized Set<String> getInstanceLocations(String... instances) {
-        final List<String> instanceList = asList(instances);
-        return CloudProvider.getInstance().getRuntime().listQueueIds(null, false).stream()
-                .map(q -> q.substring(q.toUpperCase().indexOf(QUEUE_NAME_PREFIX)))
-                .filter(q -> instanceList.contains(q.substring(q.length() - 36)))
-                .map(q -> q.substring(QUEUE_NAME_PREFIX.length(), q.length() - 37))
+    public Set<String> getInstanceLocations(String... instances) {
+        final Map<String, String> instanceLocationMap = jemoServer.getClusterMembership().getView().getInstanceLocationMap();
+        return Arrays.stream(instances)
+                .map(instanceLocationMap::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
     }
 
-    public synchronized Map<String, String> getInstanceLocationMap(String... instances) {
-        final List<String> instanceList = asList(instances);
-        return CloudProvider.getInstance().getRuntime().listQueueIds(null, false).stream()
-                .map(q -> q.substring(q.toUpperCase().indexOf(QUEUE_NAME_PREFIX)))
-                .filter(q -> instanceList.contains(q.substring(q.length() - 36)))
-                .map(q -> new KeyValue<>(q.substring(q.length() - 36), q.substring(QUEUE_NAME_PREFIX.length(), q.length() - 37)))
-                .collect(Collectors.toMap(KeyValue::getKey, KeyValue::getValue));
+    public Map<String, String> getInstanceLocationMap(String... instances) {
+        final Map<String, String> instanceLocationMap = jemoServer.getClusterMembership().getView().getInstanceLocationMap();
+        return Arrays.stream(instances)
+                .distinct()
+                .filter(instanceLocationMap::containsKey)
+                .collect(Collectors.toMap(inst -> inst, instanceLocationMap::get));
     }
 
     /**
@@ -2378,7 +2641,7 @@ public class JemoPluginManager {
      */
     public synchronized void startFixedProcess(final JemoModule module, final String applicationId) {
         final String watchdogId = UUID.randomUUID().toString();
-        final Future<Object> fixedTask = buildModuleFuture(module, jemoServer.getWORK_EXECUTOR(), (mod) -> {
+        final Future<Object> fixedTask = buildModuleFuture(module, jemoServer.getFIXED_EXECUTOR(), (mod) -> {
             //write the file that says that we are active.
             CloudProvider.getInstance().getRuntime().write(Jemo.SYSTEM_STORAGE_PATH, "lastactive-" + mod.getModule().getClass().getName() + "-" + jemoServer.getINSTANCE_ID() + "-" + applicationId, System.currentTimeMillis());
             jemoServer.LOG(Level.INFO, "[%s][%s] - STARTING FIXED PROCESS", applicationId, module.getModule().getClass().getName());
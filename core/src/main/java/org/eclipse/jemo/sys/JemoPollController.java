@@ -0,0 +1,127 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * this class decides how many messages a queue listener should ask for and how long it should wait before it polls again.
+ *
+ * when a poll returns a full batch there is a backlog so the batch size is doubled and the next poll happens straight away, when a
+ * poll returns nothing the wait doubles on every empty poll up to a maximum so idle queues are polled less and less often. no more
+ * work is pulled from the queue while the executor the messages run on is saturated.
+ */
+public class JemoPollController {
+
+	public static final int MIN_BATCH_SIZE = 10; //this is the batch size all of the runtimes used before the batch size was adaptive.
+
+	private static final Random RANDOM = new Random(System.currentTimeMillis());
+
+	private final ExecutorService executor;
+	private final long idleWait;
+	private final long maxIdleWait;
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final long heartbeatInterval;
+	private int batchSize;
+	private int idlePolls = 0;
+	private long lastHeartbeat = 0;
+
+	/**
+	 * @param executor the executor the polled messages will run on.
+	 * @param idleWait the time to wait after the first empty poll in milliseconds.
+	 * @param maxIdleWait the longest time to wait between polls of an idle queue in milliseconds.
+	 * @param maxBatchSize the largest number of messages to ask for in one poll, this must not be more than the runtime can return in one poll
+	 * otherwise a full queue looks like a short read.
+	 * @param heartbeatInterval the minimum time between two heartbeats in milliseconds.
+	 */
+	public JemoPollController(ExecutorService executor, long idleWait, long maxIdleWait, int maxBatchSize, long heartbeatInterval) {
+		this.executor = executor;
+		this.idleWait = Math.max(1, idleWait);
+		this.maxIdleWait = Math.max(this.idleWait, maxIdleWait);
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.minBatchSize = Math.min(MIN_BATCH_SIZE, this.maxBatchSize);
+		this.batchSize = this.minBatchSize;
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	/**
+	 * @return the number of messages to ask for in the next poll or 0 if the executor is saturated and nothing should be polled.
+	 */
+	public synchronized int getBatchSize() {
+		if(executor instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor pool = (ThreadPoolExecutor)executor;
+			//we allow one extra pool worth of messages to wait so that threads never run dry between two polls.
+			int capacity = pool.getMaximumPoolSize() * 2 - pool.getActiveCount() - pool.getQueue().size();
+			if(capacity <= 0) {
+				return 0;
+			}
+			return Math.min(batchSize, capacity);
+		}
+
+		return batchSize;
+	}
+
+	/**
+	 * @return the time to wait when the executor is saturated before checking again.
+	 */
+	public long getSaturatedWait() {
+		return Math.min(idleWait, 100);
+	}
+
+	/**
+	 * records the outcome of a poll and works out how long to wait before the next one.
+	 *
+	 * @param requested the number of messages which were asked for.
+	 * @param received the number of messages the poll returned.
+	 * @return the time to wait before polling again in milliseconds.
+	 */
+	public synchronized long onPoll(int requested, int received) {
+		if(received == 0) {
+			idlePolls++;
+			batchSize = Math.max(minBatchSize, batchSize / 2);
+			return Math.min(maxIdleWait, idleWait << Math.min(idlePolls - 1, 30));
+		}
+
+		idlePolls = 0;
+		if(received >= requested) {
+			batchSize = Math.min(maxBatchSize, batchSize * 2);
+			return 0; //there is a backlog so we should drain it as quickly as we can.
+		}
+
+		return RANDOM.nextInt(15)+1;
+	}
+
+	/**
+	 * @param now the current time.
+	 * @return true if enough time has passed since the last heartbeat that a new one should be written.
+	 */
+	public synchronized boolean isHeartbeatDue(long now) {
+		if(now - lastHeartbeat >= heartbeatInterval) {
+			lastHeartbeat = now;
+			return true;
+		}
+
+		return false;
+	}
+
+	public synchronized int getIdlePolls() {
+		return idlePolls;
+	}
+}
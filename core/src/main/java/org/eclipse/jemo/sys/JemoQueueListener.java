@@ -18,61 +18,101 @@ package org.eclipse.jemo.sys;
 
 import org.eclipse.jemo.AbstractJemo;
 import org.eclipse.jemo.Jemo;
+import org.eclipse.jemo.api.JemoParameter;
 import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.api.RetryPolicy;
 import org.eclipse.jemo.internal.model.*;
 import org.eclipse.jemo.internal.model.JemoError;
 import org.eclipse.jemo.sys.internal.Util;
-import com.fasterxml.jackson.core.JsonProcessingException;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 /**
  *
  * @author christopher stura
  */
 public class JemoQueueListener extends Thread {
-	private static final Random RANDOM = new Random(System.currentTimeMillis());
-	
 	private String queueUrl = null;
 	private long lastPoll = 0;
 	private long lastPollDuration = 0;
 	private volatile boolean interrupted = false;
 	private ScheduledExecutorService resendScheduler = Executors.newScheduledThreadPool(1);
+	private ExecutorService delayedMessageExecutor = Executors.newSingleThreadExecutor();
 	private final AbstractJemo jemoServer;
-	private final List<JemoMessage> DELAYED_MESSAGE_QUEUE = new CopyOnWriteArrayList<>();
-	private ScheduledFuture DELAYED_MESSAGE_PROCESSOR = null;
+	private final JemoPollController pollController;
+	private final Map<String,JemoMessage> PENDING_RETRIES = new ConcurrentHashMap<>();
+	private final DelayQueue<DelayedMessage> DELAYED_MESSAGE_QUEUE = new DelayQueue<>();
+	private Future DELAYED_MESSAGE_PROCESSOR = null;
+	private static final long DELAYED_MESSAGE_RETRY = TimeUnit.SECONDS.toMillis(1); //how long a message held back by the module limits waits before it is checked again.
+
+	/**
+	 * a message which is held back until its module is allowed to run it, messages are ordered by the time at which they should be looked at again.
+	 */
+	private static final class DelayedMessage implements Delayed {
+		private final JemoMessage msg;
+		private final JemoEventAdmission.Gate gate;
+		private final long wakeUpOn;
+
+		private DelayedMessage(JemoMessage msg, JemoEventAdmission.Gate gate, long wakeUpOn) {
+			this.msg = msg;
+			this.gate = gate;
+			this.wakeUpOn = wakeUpOn;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(wakeUpOn - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			return o instanceof DelayedMessage ? Long.compare(wakeUpOn, ((DelayedMessage)o).wakeUpOn) : Long.compare(getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+		}
+	}
 	
 	
 	public JemoQueueListener(ThreadGroup group, String queueUrl, AbstractJemo jemoServer) {
 		super(group, queueUrl);
 		this.queueUrl = queueUrl;
 		this.jemoServer = jemoServer;
+		//an idle queue is never left for longer than the poll wait time so the worst case pickup latency is the same as with a fixed wait.
+		this.pollController = new JemoPollController(jemoServer.getEVENT_EXECUTOR(), jemoServer.getQUEUE_POLL_WAIT_TIME() / 4,
+			Math.min(jemoServer.getQUEUE_POLL_WAIT_TIME(), Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.QUEUE_POLL_MAX_WAIT.label(), String.valueOf(jemoServer.getQUEUE_POLL_WAIT_TIME())))),
+			Math.min(CloudProvider.getInstance().getRuntime().getMaxPollSize(), Integer.parseInt(Util.readParameterFromJvmOrEnv(JemoParameter.QUEUE_POLL_MAX_BATCH.label(), "100"))),
+			TimeUnit.SECONDS.toMillis(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.HEARTBEAT_INTERVAL.label(), "30"))));
 	}
 
 	@Override
 	public synchronized void start() {
 		super.start(); //To change body of generated methods, choose Tools | Templates.
-		DELAYED_MESSAGE_PROCESSOR = resendScheduler.scheduleWithFixedDelay(() -> {
-			if(!DELAYED_MESSAGE_QUEUE.isEmpty()) {
-				List<JemoMessage> msgToSchedule = new ArrayList<>();
-				msgToSchedule.addAll(DELAYED_MESSAGE_QUEUE);
-				Set<String> msgIdList = msgToSchedule.stream().map(msg -> msg.getId()).collect(Collectors.toSet());
-				DELAYED_MESSAGE_QUEUE.removeIf(msg -> msgIdList.contains(msg.getId()));
-				//now reschedule each of the messages
-				msgToSchedule.stream().forEach(msg -> scheduleMessage(msg));
+		DELAYED_MESSAGE_PROCESSOR = delayedMessageExecutor.submit(() -> {
+			//messages only come off the queue once they are due so this thread sleeps until there is something to reschedule.
+			while(!interrupted) {
+				try {
+					DelayedMessage delayedMsg = DELAYED_MESSAGE_QUEUE.take();
+					delayedMsg.gate.waiting(-1);
+					scheduleMessage(delayedMsg.msg);
+				} catch(InterruptedException irrEx) {
+					break;
+				} catch(Throwable ex) {
+					jemoServer.LOG(Level.WARNING, "[%s][%s] error rescheduling a delayed message: %s", getClass().getSimpleName(), queueUrl, JemoError.toString(ex));
+				}
 			}
-		}, 5, 5, TimeUnit.SECONDS);
+		});
 	}
 
 	public String getQueueUrl() {
@@ -110,10 +150,22 @@ public class JemoQueueListener extends Thread {
 	public void interrupt() {
 		jemoServer.LOG("("+getClass().getName()+":"+this.queueUrl+") interrupted. Shutdown sequence initiated",Level.INFO);
 		interrupted = true;
-		DELAYED_MESSAGE_QUEUE.clear();
+		List<DelayedMessage> droppedMessages = new ArrayList<>();
+		DELAYED_MESSAGE_QUEUE.drainTo(droppedMessages);
+		droppedMessages.forEach(delayedMsg -> delayedMsg.gate.waiting(-1));
 		DELAYED_MESSAGE_PROCESSOR.cancel(true);
+		delayedMessageExecutor.shutdownNow();
 		resendScheduler.shutdownNow();
 		try { resendScheduler.awaitTermination(20, TimeUnit.SECONDS); } catch(InterruptedException irrEx) {}
+		//messages waiting to be retried only live in memory so we put them straight back on the queue rather than lose them.
+		PENDING_RETRIES.values().forEach(msg -> {
+			try {
+				CloudProvider.getInstance().getRuntime().sendMessage(queueUrl, Jemo.toJSONString(msg));
+			}catch(Throwable ex) {
+				jemoServer.LOG(Level.WARNING, "[%s][%s] message %s waiting to be retried was lost: %s", getClass().getSimpleName(), queueUrl, msg.getId(), JemoError.toString(ex));
+			}
+		});
+		PENDING_RETRIES.clear();
 		super.interrupt();
 	}
 	
@@ -127,15 +179,23 @@ public class JemoQueueListener extends Thread {
 			lastPoll = start;
 			try {
 				if(queueUrl.equals(jemoServer.getINSTANCE_QUEUE_URL())) {
-					CloudProvider.getInstance().getRuntime().store(jemoServer.getINSTANCE_ID()+".lastpoll", System.currentTimeMillis());
+					//the heartbeat only needs to be written often enough for other instances to see us as active so it is throttled.
+					if(pollController.isHeartbeatDue(start)) {
+						CloudProvider.getInstance().getRuntime().store(jemoServer.getINSTANCE_ID()+".lastpoll", start);
+					}
+					jemoServer.getClusterMembership().heartbeat(jemoServer.getINSTANCE_ID(), jemoServer.getLOCATION(), start); //we always know we are alive without reading it back.
+				}
+				int batchSize = pollController.getBatchSize();
+				if(batchSize == 0) {
+					Thread.sleep(pollController.getSaturatedWait()); //we will not pull more work while the executor cannot keep up.
+					continue;
 				}
 				int messagesProcessed = CloudProvider.getInstance().getRuntime().pollQueue(queueUrl, (msg) -> {
 					scheduleMessage(msg);
-				});
-				if(messagesProcessed == 0) {
-					Thread.sleep(jemoServer.getQUEUE_POLL_WAIT_TIME()); //sleep 20 sec if there was nothing in the queue.
-				} else {
-					Thread.sleep(RANDOM.nextInt(15)+1);
+				}, batchSize);
+				long wait = pollController.onPoll(batchSize, messagesProcessed);
+				if(wait > 0) {
+					Thread.sleep(wait);
 				}
 			}catch(InterruptedException irrEx) {
 			}catch(QueueDoesNotExistException exEx) {
@@ -171,7 +231,7 @@ public class JemoQueueListener extends Thread {
 	public final void scheduleMessage(JemoMessage msg) {
 		if(msg.getPluginId() == 0 || jemoServer.getPluginManager().PLUGIN_VALID(msg.getPluginId())) {
 			if(msg.getPluginId() == 0) {
-				submitMessage(msg);
+				submitMessage(msg, null);
 			} else {
 				//now if we are to submit this we need to check if the execute limits are respected on this instance.
 				JemoApplicationMetaData app = jemoServer.getPluginManager().getApplication(msg.getPluginId(), msg.getPluginVersion());
@@ -184,34 +244,17 @@ public class JemoQueueListener extends Thread {
 				//get the current execution count for this instance
 				ModuleLimit appLimits = app.getLimits().get(msg.getModuleClass());
 				if(appLimits == null || (appLimits.getEventFrequency() == null && appLimits.getMaxActiveEventsPerGSM() <= 0 && appLimits.getMaxActiveEventsPerLocation() <= 0 && appLimits.getMaxActiveEventsPerInstance() <= 0)) {
-					submitMessage(msg); //now limits apply and neither does a defined execution frequency.
+					submitMessage(msg, null); //now limits apply and neither does a defined execution frequency.
 				} else {
-					boolean submit = true;
-					if(appLimits.getEventFrequency() != null) {
-						long lastLaunchedOn = jemoServer.getPluginManager().getLastLaunchedModuleEvent(msg.getPluginId(), msg.getPluginVersion(), msg.getModuleClass());
-						if(lastLaunchedOn != 0 && System.currentTimeMillis() - lastLaunchedOn < appLimits.getEventFrequency().getUnit().toMillis(appLimits.getEventFrequency().getValue())) {
-							queueMessage(msg);
-							submit = false;
-						} else {
-							jemoServer.LOG(Level.INFO,"[%s][%s][Frequency] - The current module frequency means it's ok to launch. The last time this module was launched was %d (ms) ago and is allowed to be launched every %d (ms)", getClass().getSimpleName(), msg.getModuleClass(),
-								lastLaunchedOn == 0 ? 0 : System.currentTimeMillis() - lastLaunchedOn, appLimits.getEventFrequency().getUnit().toMillis(appLimits.getEventFrequency().getValue()));
-						}
-					}
-					if(submit) {
-						int numRunning = jemoServer.getPluginManager().getNumModuleEventsRunning(msg.getPluginId(), msg.getPluginVersion(), msg.getModuleClass()); //the number of events running here.
-						int numRunningLocation = jemoServer.getPluginManager().getNumModuleEventsRunningOnLocation(msg.getPluginId(), msg.getPluginVersion(), msg.getModuleClass()); //the number currently running at this location.
-						int numRunningGSM = jemoServer.getPluginManager().getNumModuleEventsRunningOnGSM(msg.getPluginId(), msg.getPluginVersion(), msg.getModuleClass());  //the number currently running across the GSM.
-						if(appLimits.getMaxActiveEventsPerGSM() != -1 && appLimits.getMaxActiveEventsPerGSM() > numRunningGSM) {
-							submitMessage(msg);
-						} else if(appLimits.getMaxActiveEventsPerLocation() != -1 && appLimits.getMaxActiveEventsPerLocation() > numRunningLocation) {
-							submitMessage(msg);
-						} else if(appLimits.getMaxActiveEventsPerInstance() != -1 && appLimits.getMaxActiveEventsPerInstance() > numRunning) {
-							submitMessage(msg);
-						} else if(appLimits.getMaxActiveEventsPerGSM() == -1 && appLimits.getMaxActiveEventsPerLocation() == -1 && appLimits.getMaxActiveEventsPerInstance() == -1) {
-							submitMessage(msg);
-						} else {
-							queueMessage(msg);
-						}
+					//the admission gate answers from local counters and leases, so no storage is read to decide if the message can run.
+					JemoEventAdmission.Gate gate = jemoServer.getEventAdmission().gate(msg.getPluginId(), msg.getPluginVersion(), msg.getModuleClass(), appLimits);
+					long nextLaunchOn = gate.getNextLaunchTime();
+					if(nextLaunchOn > System.currentTimeMillis()) {
+						queueMessage(msg, gate, nextLaunchOn);
+					} else if(gate.tryAcquire()) {
+						submitMessage(msg, gate);
+					} else {
+						queueMessage(msg, gate, System.currentTimeMillis() + DELAYED_MESSAGE_RETRY);
 					}
 				}
 			}
@@ -221,35 +264,61 @@ public class JemoQueueListener extends Thread {
 		}
 	}
 	
-	private void queueMessage(JemoMessage msg) {
-		DELAYED_MESSAGE_QUEUE.add(msg);
+	private void queueMessage(JemoMessage msg, JemoEventAdmission.Gate gate, long wakeUpOn) {
+		gate.waiting(1);
+		DELAYED_MESSAGE_QUEUE.add(new DelayedMessage(msg, gate, wakeUpOn));
 	}
 
-	private void submitMessage(JemoMessage msg) {
+	private void submitMessage(JemoMessage msg, JemoEventAdmission.Gate gate) {
 		//If there are two versions 1.0 and 2.0 of the same plugin,
 		// then if 'writeExecuteModuleEvent' was called outside of the submitted lamda the following bug would occur:
 		// writeExecuteModuleEvent increases the counter for version 1.0,
 		// then the processMessage method changes the version from 1.0 to 2.0
 		// and then deleteExecuteModuleEvent decreases the counter for version 2.0.
 
-        final String moduleClass = (msg.getModuleClass().equals(Jemo.class.getName()) && msg.getAttributes().containsKey("module_class")) ? (String)msg.getAttributes().get("module_class") : msg.getModuleClass();
-		jemoServer.getEVENT_EXECUTOR().submit(()-> {
-			try {
-                jemoServer.getPluginManager().writeExecuteModuleEvent(msg.getPluginId(), msg.getPluginVersion(), moduleClass);
-				jemoServer.LOG(Level.FINE,"QUEUE [%s] executed %d submitted %d", queueUrl, executed.addAndGet(1), submitted.get());
-				processMessage(msg);
+        final boolean isBatch = msg.getModuleClass().equals(Jemo.class.getName()) && msg.getAttributes().containsKey("module_class");
+        final String moduleClass = isBatch ? (String)msg.getAttributes().get("module_class") : msg.getModuleClass();
+		//the module runs on the thread which picks up the task and the counters and the gate are released when its future completes.
+		final Runnable task = () -> {
+            jemoServer.getPluginManager().writeExecuteModuleEvent(msg.getPluginId(), msg.getPluginVersion(), moduleClass);
+			jemoServer.LOG(Level.FINE,"QUEUE [%s] executed %d submitted %d", queueUrl, executed.addAndGet(1), submitted.get());
+			processMessageAsync(msg).whenComplete((retval, ex) -> {
 				jemoServer.LOG(Level.FINE,"QUEUE [%s] executed %d submitted %d finished %s", queueUrl, executed.decrementAndGet(), submitted.decrementAndGet(), msg.getAttributes().toString());
-			}finally {
 				jemoServer.getPluginManager().deleteExecuteModuleEvent(msg.getPluginId(), msg.getPluginVersion(), moduleClass);
-			}
-		});
+				if(gate != null) {
+					gate.release();
+				}
+			});
+		};
+		if(isBatch) {
+			jemoServer.getBATCH_EXECUTOR().submit(task);
+		} else if(msg.getPluginId() == 0) {
+			//system messages keep the cluster running so they never wait behind the events of a module.
+			jemoServer.getEVENT_EXECUTOR().submit(JemoFairExecutor.SYSTEM_LANE, JemoFairExecutor.SYSTEM_PRIORITY, JemoFairExecutor.DEFAULT_WEIGHT, task);
+		} else {
+			//every module has its own lane so a module flooded with events only delays its own events.
+			ModuleLimit limits = jemoServer.getPluginManager().getModuleLimits(msg.getPluginId(), msg.getPluginVersion(), moduleClass);
+			jemoServer.getEVENT_EXECUTOR().submit(msg.getPluginId() + ":" + moduleClass,
+				limits == null ? JemoFairExecutor.DEFAULT_PRIORITY : limits.getEventPriority(),
+				limits == null ? JemoFairExecutor.DEFAULT_WEIGHT : limits.getEventWeight(), task);
+		}
 		submitted.incrementAndGet();
 	}
 	
 	public final void processMessage(JemoMessage msg) {
+		processMessageAsync(msg).join();
+	}
+
+	/**
+	 * @param msg the message to process.
+	 * @return a future which completes once the message has been processed, failed messages are scheduled for a retry or moved
+	 * to the dead letter queue before it completes so it never completes exceptionally.
+	 */
+	private CompletableFuture<Void> processMessageAsync(JemoMessage msg) {
+		CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
 		try {
 			if(msg.getPluginId() == 0 || jemoServer.getPluginManager().PLUGIN_VALID(msg.getPluginId())) {
-				jemoServer.sys_processMessage(msg);
+				result = jemoServer.sys_processMessageAsync(msg);
 			} else if(!queueUrl.equals(jemoServer.getINSTANCE_QUEUE_URL())) {
 				//we need to re-publish the message but only if the queue url is not related to this instance. (this will also allow processing of messages) which were not originally recieved.
 				//the first step will be to make sure that we are not re-sending messages for modules which nobody is running (otherwise they will bounce back and forth forever)
@@ -266,27 +335,44 @@ public class JemoQueueListener extends Thread {
 				jemoServer.LOG(Level.WARNING, "[QueueListener][%s][%d] Message Discarded %s", queueUrl, msg.getPluginId(), Jemo.toJSONString(msg));
 			}
 		}catch(Throwable ex) {
-			if(!(ex instanceof InterruptedException)) {
-				try {
-					if(msg.getExecutionCount() < 25) {
-						Util.B(null, y -> jemoServer.getPluginManager().runWithModuleContext(Void.class, x -> {
-							if(!(ex instanceof TooMuchWorkException)) {
-								msg.setLastError(JemoError.newInstance(ex));
-							}
-							//it is incorrect to republish messages to the location queue. They should be re-published to the same queue they came from.
-							//if there was an error running this it does not make sense to resend it immediately we should wait 1000 for each time it has failed before re-sending it
-							resendScheduler.schedule(() -> {
-								Util.B(null, a -> jemoServer.getPluginManager().runWithModuleContext(Void.class, z -> {
-									msg.send(queueUrl); //send the message back through the queue
-									return null;
-								}));
-							}, (msg.getExecutionCount()+1)*10, TimeUnit.SECONDS);
-							return null;
-						}));
-					} else {
-						jemoServer.LOG(Level.WARNING, "Discarded message: %s to many errors", Jemo.toJSONString(msg));
-					}
-				}catch(JsonProcessingException republishEx) {} //this is not an important exception to handle because it would will never happen anyway.
+			result = new CompletableFuture<>();
+			result.completeExceptionally(ex);
+		}
+		return result.handle((retval, ex) -> {
+			if(ex != null) {
+				onFailure(msg, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+			}
+			return null;
+		});
+	}
+
+	private void onFailure(JemoMessage msg, Throwable ex) {
+		if(!(ex instanceof InterruptedException)) {
+			final RetryPolicy retryPolicy = jemoServer.getDeadLetterQueue().getRetryPolicy(msg);
+			//an instance which had too much work did not actually run the message so the last error is kept, the delivery still counts
+			//as an attempt though otherwise a module which stays saturated would keep its events bouncing around forever.
+			if(ex instanceof TooMuchWorkException) {
+				msg.setExecutionCount(msg.getExecutionCount()+1);
+			} else {
+				msg.setLastError(JemoError.newInstance(ex));
+			}
+			if(retryPolicy.canRetry(msg.getExecutionCount())) {
+				Util.B(null, y -> jemoServer.getPluginManager().runWithModuleContext(Void.class, x -> {
+					//it is incorrect to republish messages to the location queue. They should be re-published to the same queue they came from.
+					//the delay grows exponentially with each failure and is randomised so that messages which failed together are not retried together.
+					PENDING_RETRIES.put(msg.getId(), msg);
+					resendScheduler.schedule(() -> {
+						if(PENDING_RETRIES.remove(msg.getId()) != null) {
+							Util.B(null, a -> jemoServer.getPluginManager().runWithModuleContext(Void.class, z -> {
+								msg.send(queueUrl); //send the message back through the queue
+								return null;
+							}));
+						}
+					}, retryPolicy.getDelay(Math.max(1, msg.getExecutionCount())), TimeUnit.MILLISECONDS);
+					return null;
+				}));
+			} else {
+				jemoServer.getDeadLetterQueue().add(msg, queueUrl);
 			}
 		}
 	}
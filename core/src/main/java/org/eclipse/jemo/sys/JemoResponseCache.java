@@ -0,0 +1,427 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.api.CachePolicy;
+import org.eclipse.jemo.internal.model.JemoModule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * a bounded in memory cache of the responses of web service modules.
+ *
+ * modules opt in by returning a CachePolicy for a request, the response is then captured, given an ETag and kept until it expires
+ * or is evicted because the cache is full (least recently used first). entries are dropped when the module they belong to is
+ * upgraded or unloaded.
+ *
+ * the cache also keeps track of the responses which are being produced so that identical requests which arrive in the meantime can
+ * wait for them (single flight) instead of running the module again.
+ */
+public class JemoResponseCache {
+
+	/**
+	 * a response which was captured from a module and can be written again.
+	 */
+	static class CachedResponse {
+		private final int pluginId;
+		private final int status;
+		private final String contentType;
+		private final Map<String,List<String>> headers;
+		private final byte[] body;
+		private final String etag;
+		private final long expires;
+
+		CachedResponse(int pluginId, int status, String contentType, Map<String,List<String>> headers, byte[] body, String etag, long expires) {
+			this.pluginId = pluginId;
+			this.status = status;
+			this.contentType = contentType;
+			this.headers = headers;
+			this.body = body;
+			this.etag = etag;
+			this.expires = expires;
+		}
+
+		String getETag() {
+			return etag;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expires;
+		}
+
+		/**
+		 * @return true if the response can be written to clients other than the one which caused it, only successful responses which
+		 * do not set a cookie are shared.
+		 */
+		boolean isShareable() {
+			return status == 200 && headers.keySet().stream().noneMatch(name -> name.equalsIgnoreCase("Set-Cookie"));
+		}
+
+		long size() {
+			return body.length + headers.entrySet().stream().mapToLong(e -> e.getKey().length() + e.getValue().stream().mapToLong(String::length).sum()).sum();
+		}
+
+		/**
+		 * @param ifNoneMatch the value of the If-None-Match header of the request.
+		 * @return true if the client already has this response.
+		 */
+		boolean isNotModified(String ifNoneMatch) {
+			if(ifNoneMatch == null || etag == null) {
+				return false;
+			}
+			for(String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if(tag.equals("*") || tag.equals(etag) || (tag.startsWith("W/") && tag.substring(2).equals(etag))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void writeTo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			headers.forEach((name, values) -> {
+				response.setHeader(name, values.get(0));
+				values.stream().skip(1).forEach(value -> response.addHeader(name, value));
+			});
+			if(etag != null) {
+				response.setHeader("ETag", etag);
+				if(isNotModified(request.getHeader("If-None-Match"))) {
+					response.setStatus(304);
+					return;
+				}
+			}
+			response.setStatus(status);
+			if(contentType != null) {
+				response.setContentType(contentType);
+			}
+			response.setContentLength(body.length);
+			if(!"HEAD".equalsIgnoreCase(request.getMethod())) {
+				response.getOutputStream().write(body);
+			}
+		}
+	}
+
+	/**
+	 * buffers the body a module writes so that it can be cached, the status and headers go straight to the response because nothing is
+	 * committed until the body is written. a response which is sent as an error or redirect bypasses the cache.
+	 */
+	static class CachingResponse extends HttpServletResponseWrapper {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private ServletOutputStream outputStream = null;
+		private PrintWriter writer = null;
+		private boolean bypassed = false;
+
+		CachingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if(writer != null) {
+				throw new IllegalStateException("getWriter has already been called for this response");
+			}
+			if(outputStream == null) {
+				outputStream = new ServletOutputStream() {
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(WriteListener writeListener) {
+						try {
+							writeListener.onWritePossible();
+						}catch(IOException ex) {
+							writeListener.onError(ex);
+						}
+					}
+
+					@Override
+					public void write(int b) {
+						buffer.write(b);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) {
+						buffer.write(b, off, len);
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if(outputStream != null) {
+				throw new IllegalStateException("getOutputStream has already been called for this response");
+			}
+			if(writer == null) {
+				writer = new PrintWriter(new OutputStreamWriter(buffer, getCharacterEncoding()));
+			}
+			return writer;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+		}
+
+		@Override
+		public void setContentLengthLong(long len) {
+		}
+
+		@Override
+		public void flushBuffer() {
+			if(writer != null) {
+				writer.flush();
+			}
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			buffer.reset();
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			buffer.reset();
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			bypassed = true;
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			bypassed = true;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			bypassed = true;
+			super.sendRedirect(location);
+		}
+
+		boolean isBypassed() {
+			return bypassed;
+		}
+
+		byte[] getBody() {
+			flushBuffer();
+			return buffer.toByteArray();
+		}
+	}
+
+	private final long maxSize;
+	private final long maxEntrySize;
+	private final LinkedHashMap<String,CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long size = 0;
+	private final AtomicLong hits = new AtomicLong(0);
+	private final AtomicLong misses = new AtomicLong(0);
+	private final ConcurrentHashMap<String,CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong coalesced = new AtomicLong(0);
+
+	/**
+	 * @param maxSize the maximum number of bytes the cache can hold, 0 disables the cache.
+	 */
+	public JemoResponseCache(long maxSize) {
+		this.maxSize = maxSize;
+		this.maxEntrySize = maxSize / 16; //a few large responses should not be able to flush everything else out of the cache.
+	}
+
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	/**
+	 * @return the key a response is cached under, the values of the vary headers are hashed into the key so credentials are never kept.
+	 */
+	static String key(JemoModule module, CachePolicy policy, HttpServletRequest request) {
+		StringBuilder key = new StringBuilder()
+			.append(module.getMetaData().getId()).append('\n')
+			.append(module.getMetaData().getVersion()).append('\n')
+			.append(module.getModule().getClass().getName()).append('\n')
+			.append(request.getRequestURL()).append('?').append(request.getQueryString());
+		for(String header : policy.getVaryHeaders()) {
+			key.append('\n').append(header.toLowerCase()).append(':').append(request.getHeader(header));
+		}
+		return DigestUtils.sha256Hex(key.toString());
+	}
+
+	/**
+	 * this method will build the cacheable form of a response which has been written by a module.
+	 *
+	 * @return the response or null if the module bypassed the cache.
+	 */
+	static CachedResponse capture(JemoModule module, CachePolicy policy, CachingResponse captured, HttpServletResponse response) {
+		if(captured.isBypassed()) {
+			return null;
+		}
+		final byte[] body = captured.getBody();
+		final Map<String,List<String>> headers = new LinkedHashMap<>();
+		for(String name : response.getHeaderNames()) {
+			if(!name.equalsIgnoreCase("Content-Length") && !name.equalsIgnoreCase("Content-Type") && !name.equalsIgnoreCase("Date") && !name.equalsIgnoreCase("ETag")) {
+				headers.put(name, Collections.unmodifiableList(new ArrayList<>(response.getHeaders(name))));
+			}
+		}
+		String etag = null;
+		if(response.getStatus() == 200) {
+			etag = response.getHeader("ETag");
+			if(etag == null) {
+				etag = "\"" + DigestUtils.md5Hex(body) + "\"";
+			}
+		}
+		return new CachedResponse(module.getMetaData().getId(), response.getStatus(), response.getContentType(), headers, body, etag, System.currentTimeMillis() + policy.getTtl());
+	}
+
+	public synchronized CachedResponse get(String key) {
+		CachedResponse response = entries.get(key);
+		if(response != null && response.isExpired(System.currentTimeMillis())) {
+			remove(key);
+			response = null;
+		}
+		if(response == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return response;
+	}
+
+	/**
+	 * this method will cache a response if it is a successful response which is small enough and does not set a cookie.
+	 *
+	 * @return true if the response was cached.
+	 */
+	public synchronized boolean put(String key, CachedResponse response) {
+		if(!isEnabled() || !response.isShareable() || response.size() > maxEntrySize
+				|| response.isExpired(System.currentTimeMillis())) {
+			return false;
+		}
+		remove(key);
+		entries.put(key, response);
+		size += response.size();
+		for(Iterator<CachedResponse> itr = entries.values().iterator(); size > maxSize && itr.hasNext();) {
+			size -= itr.next().size();
+			itr.remove();
+		}
+		return true;
+	}
+
+	/**
+	 * this method will register a response which is about to be produced.
+	 *
+	 * @param key the key of the request, it must include the method because the response to a HEAD request may not have a body.
+	 * @param flight the future the response will be delivered through.
+	 * @return null if the caller must produce the response and call land when it is done, otherwise the future to wait for.
+	 */
+	public CompletableFuture<CachedResponse> takeOff(String key, CompletableFuture<CachedResponse> flight) {
+		CompletableFuture<CachedResponse> leader = inFlight.putIfAbsent(key, flight);
+		if(leader != null) {
+			coalesced.incrementAndGet();
+		}
+		return leader;
+	}
+
+	/**
+	 * this method will deliver a response to the requests which were waiting for it, new requests will produce their own response.
+	 *
+	 * @param response the response or null if it cannot be shared.
+	 * @param error the error raised while the response was produced.
+	 */
+	public void land(String key, CompletableFuture<CachedResponse> flight, CachedResponse response, Throwable error) {
+		inFlight.remove(key, flight);
+		if(error != null) {
+			flight.completeExceptionally(error);
+		} else {
+			flight.complete(response != null && response.isShareable() ? response : null);
+		}
+	}
+
+	private void remove(String key) {
+		CachedResponse removed = entries.remove(key);
+		if(removed != null) {
+			size -= removed.size();
+		}
+	}
+
+	/**
+	 * this method will drop the responses of a module, it also drops the responses of the system module because those describe the
+	 * modules which are deployed.
+	 *
+	 * @param pluginId the id of the module which was upgraded or unloaded.
+	 */
+	public synchronized void invalidate(int pluginId) {
+		for(Iterator<CachedResponse> itr = entries.values().iterator(); itr.hasNext();) {
+			CachedResponse response = itr.next();
+			if(response.pluginId == pluginId || response.pluginId == 0) {
+				size -= response.size();
+				itr.remove();
+			}
+		}
+	}
+
+	public synchronized int getEntries() {
+		return entries.size();
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of requests which waited for the response of an identical request.
+	 */
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	public int getInFlight() {
+		return inFlight.size();
+	}
+}
@@ -0,0 +1,257 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.api.JemoParameter;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.JemoError;
+import org.eclipse.jemo.sys.internal.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * this class keeps a table of the instances every module can be routed to so that sending a message never has to read storage.
+ *
+ * the table maps each module to the active instances which have published it in their module list, together with the queue of
+ * each instance, and is rebuilt in the background. the load of a candidate is the number of events it is running for the module
+ * according to the event counters, which are also held in memory. a target is picked with the power of two choices: two random
+ * candidates are compared and the least loaded one wins. the load figures of other instances are always a little out of date and
+ * unlike always picking the least loaded instance this does not send every message to the same instance until the figures catch up.
+ *
+ * a table which is older than the staleness bound is not used, routing then falls back to reading the module lists from storage.
+ */
+public class JemoRoutingTable {
+
+	public static final class Candidate {
+		private final String instanceId;
+		private final String location;
+		private final String queueId;
+
+		Candidate(String instanceId, String location, String queueId) {
+			this.instanceId = instanceId;
+			this.location = location;
+			this.queueId = queueId;
+		}
+
+		public String getInstanceId() {
+			return instanceId;
+		}
+
+		public String getLocation() {
+			return location;
+		}
+
+		public String getQueueId() {
+			return queueId;
+		}
+	}
+
+	private static final class Table {
+		private final long createdOn;
+		private final Map<String,List<Candidate>> candidates; //counter key of the module -> instances which run it
+
+		private Table(long createdOn, Map<String,List<Candidate>> candidates) {
+			this.createdOn = createdOn;
+			this.candidates = candidates;
+		}
+	}
+
+	private final AbstractJemo jemoServer;
+	private final long refreshInterval;
+	private final long maxStaleness;
+	private final Map<String,String> QUEUE_IDS = new ConcurrentHashMap<>(); //queue name -> queue id, the name changes with the location of the instance.
+	private volatile Table table = null;
+	private ScheduledFuture<?> refreshTask = null;
+
+	public JemoRoutingTable(AbstractJemo jemoServer) {
+		this.jemoServer = jemoServer;
+		this.refreshInterval = TimeUnit.SECONDS.toMillis(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.ROUTING_TABLE_REFRESH.label(), "10")));
+		this.maxStaleness = Math.max(refreshInterval, TimeUnit.SECONDS.toMillis(Long.parseLong(Util.readParameterFromJvmOrEnv(JemoParameter.ROUTING_TABLE_MAX_STALENESS.label(), "60"))));
+	}
+
+	public synchronized void start() {
+		if(refreshTask == null) {
+			refreshSafely();
+			refreshTask = jemoServer.getSCHEDULER().scheduleWithFixedDelay(() -> refreshSafely(), refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public synchronized void stop() {
+		if(refreshTask != null) {
+			refreshTask.cancel(false);
+			refreshTask = null;
+		}
+	}
+
+	/**
+	 * @return true if the table is recent enough to route messages with.
+	 */
+	public boolean isFresh() {
+		Table currentTable = table;
+		return currentTable != null && System.currentTimeMillis() - currentTable.createdOn <= maxStaleness;
+	}
+
+	/**
+	 * this method will pick the instance a message for a module should be sent to.
+	 *
+	 * @param location the location the instance must be in or null for any location in the GSM.
+	 * @return the queue of the instance or null if no active instance in the location runs the module.
+	 */
+	public String route(final String location, final long moduleId, final double moduleVersion, final String moduleClass) {
+		final Table currentTable = table;
+		if(currentTable == null) {
+			return null;
+		}
+		final JemoClusterMembership.View view = jemoServer.getClusterMembership().getView();
+		final List<Candidate> candidates = currentTable.candidates.getOrDefault(JemoEventCounters.buildCounterKey(moduleId, moduleVersion, moduleClass), Collections.emptyList()).stream()
+			.filter(c -> location == null || c.location.equalsIgnoreCase(location))
+			.filter(c -> view.getActiveInstances().contains(c.instanceId))
+			.collect(Collectors.toList());
+		final Candidate candidate = choose(candidates, c -> jemoServer.getEventCounters().getActiveOnInstance(c.instanceId, moduleId, moduleVersion, moduleClass), ThreadLocalRandom.current());
+		return candidate == null ? null : candidate.queueId;
+	}
+
+	/**
+	 * @param instanceId the id of the instance.
+	 * @return true if the instance published the module in its module list when the table was last built.
+	 */
+	public boolean runsModule(final String instanceId, final long moduleId, final double moduleVersion, final String moduleClass) {
+		final Table currentTable = table;
+		return currentTable != null && currentTable.candidates.getOrDefault(JemoEventCounters.buildCounterKey(moduleId, moduleVersion, moduleClass), Collections.emptyList()).stream()
+			.anyMatch(c -> c.instanceId.equals(instanceId));
+	}
+
+	/**
+	 * @param instanceId the id of the instance.
+	 * @param location the location the instance runs in.
+	 * @return the id of the queue the instance reads or null if the queue does not exist.
+	 */
+	public String getQueueId(final String instanceId, final String location) {
+		final String queueName = buildQueueName(instanceId, location);
+		final String queueId = QUEUE_IDS.get(queueName);
+		if(queueId != null) {
+			return queueId;
+		}
+		//the lookup is a remote call so it is not made inside computeIfAbsent, which would lock the bin of the map while it waits.
+		final String foundQueueId = CloudProvider.getInstance().getRuntime().getQueueId(queueName);
+		if(foundQueueId == null) {
+			return null;
+		}
+		final String existing = QUEUE_IDS.putIfAbsent(queueName, foundQueueId);
+		return existing != null ? existing : foundQueueId;
+	}
+
+	/**
+	 * this method will forget the queue of an instance, it is called when the instance joins or leaves the cluster as its queue may
+	 * have been created again.
+	 *
+	 * @param instanceId the id of the instance.
+	 */
+	public void invalidate(final String instanceId) {
+		if(instanceId != null) {
+			QUEUE_IDS.keySet().removeIf(q -> q.endsWith("-"+instanceId));
+		}
+	}
+
+	private static String buildQueueName(final String instanceId, final String location) {
+		return "JEMO-"+location+"-"+instanceId;
+	}
+
+	/**
+	 * this method will pick the less loaded of two random candidates, ties are broken at random.
+	 *
+	 * @param candidates the candidates to pick from.
+	 * @param load the function which returns the current load of a candidate.
+	 * @param random the source of randomness.
+	 * @return the candidate which was picked or null if there are no candidates.
+	 */
+	static <T> T choose(List<T> candidates, ToIntFunction<T> load, Random random) {
+		if(candidates.isEmpty()) {
+			return null;
+		} else if(candidates.size() == 1) {
+			return candidates.get(0);
+		}
+		int first = random.nextInt(candidates.size());
+		int second = random.nextInt(candidates.size()-1);
+		if(second >= first) {
+			second++;
+		}
+		final T firstCandidate = candidates.get(first);
+		final T secondCandidate = candidates.get(second);
+		final int firstLoad = load.applyAsInt(firstCandidate);
+		final int secondLoad = load.applyAsInt(secondCandidate);
+		if(firstLoad == secondLoad) {
+			return random.nextBoolean() ? firstCandidate : secondCandidate;
+		}
+		return firstLoad < secondLoad ? firstCandidate : secondCandidate;
+	}
+
+	/**
+	 * this method will rebuild the table from the module lists the active instances have published.
+	 */
+	public void refresh() throws InterruptedException, ExecutionException {
+		final JemoClusterMembership.View view = jemoServer.getClusterMembership().getView();
+		final Map<String,List<Candidate>> candidates = new HashMap<>();
+		//these are blocking reads so they run on the work executor of the server rather than on the common fork join pool.
+		final List<Callable<Map.Entry<Candidate,ModuleInfo[]>>> lookups = view.getActiveInstances().stream()
+			.filter(inst -> view.getInstanceLocationMap().get(inst) != null)
+			.map(inst -> (Callable<Map.Entry<Candidate,ModuleInfo[]>>)() -> {
+				final String location = view.getInstanceLocationMap().get(inst);
+				final String queueId = getQueueId(inst, location);
+				return queueId == null ? null : new HashMap.SimpleEntry<>(new Candidate(inst, location, queueId), jemoServer.getPluginManager().getModuleList(inst));
+			})
+			.collect(Collectors.toList());
+		for(Future<Map.Entry<Candidate,ModuleInfo[]>> lookup : jemoServer.getWORK_EXECUTOR().invokeAll(lookups)) {
+			final Map.Entry<Candidate,ModuleInfo[]> e = lookup.get();
+			if(e != null) {
+				for(ModuleInfo module : e.getValue()) {
+					candidates.computeIfAbsent(JemoEventCounters.buildCounterKey(module.getId(), module.getVersion(), module.getImplementation()), k -> new ArrayList<>()).add(e.getKey());
+				}
+			}
+		}
+		//only the queues of the instances in the view at their current location are kept.
+		QUEUE_IDS.keySet().retainAll(view.getInstanceLocationMap().entrySet().stream()
+			.map(e -> buildQueueName(e.getKey(), e.getValue()))
+			.collect(Collectors.toSet()));
+		candidates.replaceAll((key, list) -> Collections.unmodifiableList(list));
+		table = new Table(System.currentTimeMillis(), Collections.unmodifiableMap(candidates));
+	}
+
+	private void refreshSafely() {
+		try {
+			refresh();
+		} catch(Throwable ex) {
+			jemoServer.LOG(Level.WARNING, "[%s] the routing table could not be refreshed: %s", getClass().getSimpleName(), JemoError.toString(ex));
+		}
+	}
+}
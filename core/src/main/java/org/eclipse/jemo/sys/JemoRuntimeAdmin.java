@@ -48,6 +48,8 @@ public class JemoRuntimeAdmin {
     private static final String JEMO_CICD = JEMO_ADMIN + "/cicd";
     private static final String JEMO_CICD_RESULT = JEMO_ADMIN + "/cicd/result";
     private static final String JEMO_ADMIN_AUTH = JEMO_ADMIN + "/auth";
+    private static final String JEMO_DEAD_LETTERS_REPLAY = JEMO_ADMIN + "/deadletters/replay";
+    private static final int DEFAULT_DEAD_LETTERS_REPLAY = 100;
     private static final Pattern PLUGIN_VERSION_PATTERN = Pattern.compile(JEMO_PLUGINS + "/(\\d+)/(.*)");
     private static final Pattern DEPLOYMENT_LOG_TIMESTAMP_PATTERN = Pattern.compile("Finished at: (.*)");
     private static final Pattern DEPLOYMENT_LOG_NAME_VERSION_PATTERN = Pattern.compile("\\{(.*)-([0-9]+\\.[0-9]+)-jar-with-dependencies.jar\\} to environment: (.*) (.*)");
@@ -80,6 +82,9 @@ public class JemoRuntimeAdmin {
                     case JEMO_CICD:
                         deployFromGit(request, response);
                         break;
+                    case JEMO_DEAD_LETTERS_REPLAY:
+                        replayDeadLetters(request, response);
+                        break;
                     default:
                         response.sendError(404, "No functionality is mapped to this endpoint yet" + request.getRequestURI());
                 }
@@ -129,6 +134,21 @@ public class JemoRuntimeAdmin {
         }
     }
 
+    private static void replayDeadLetters(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+        final int maxMessages;
+        try {
+            maxMessages = request.getParameter("max") == null ? DEFAULT_DEAD_LETTERS_REPLAY : Integer.parseInt(request.getParameter("max"));
+        } catch (NumberFormatException ex) {
+            respondWithJson(400, response, "The parameter max must be a number.");
+            return;
+        }
+        if (maxMessages < 1) {
+            respondWithJson(400, response, "The parameter max must be greater than 0.");
+            return;
+        }
+        respondWithJson(200, response, getServerInstance().getDeadLetterQueue().replay(maxMessages));
+    }
+
     private static void getUploadedApps(HttpServletResponse response) throws IOException {
         final List<Plugin> plugins = readAppMetadataFromDB().stream()
                 .map(Plugin::new)
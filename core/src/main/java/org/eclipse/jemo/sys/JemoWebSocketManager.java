@@ -0,0 +1,136 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.api.Module;
+import org.eclipse.jemo.api.WebSocketSession;
+import org.eclipse.jemo.api.WebSocketSessions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * this class keeps track of the websocket connections open to each module on this instance.
+ *
+ * a connection takes a slot from its module before it is upgraded and gives it back when it closes, so the connection limit of a
+ * module also covers the connections which are still being set up.
+ */
+public class JemoWebSocketManager {
+
+	private static final Map<Module,ModuleSessions> MODULE_SESSIONS = new ConcurrentHashMap<>();
+
+	static class ModuleSessions implements WebSocketSessions {
+		private final Map<String,JemoWebSocketSession> sessions = new ConcurrentHashMap<>();
+		private final AtomicInteger connections = new AtomicInteger(0);
+
+		private boolean reserve(int maxConnections) {
+			int current;
+			do {
+				current = connections.get();
+				if(maxConnections >= 0 && current >= maxConnections) {
+					return false;
+				}
+			}while(!connections.compareAndSet(current, current+1));
+			return true;
+		}
+
+		@Override
+		public Collection<WebSocketSession> getSessions() {
+			return Collections.unmodifiableList(new ArrayList<>(sessions.values()));
+		}
+
+		@Override
+		public int size() {
+			return sessions.size();
+		}
+
+		@Override
+		public int broadcastText(String message) {
+			return broadcast(session -> session.sendText(message));
+		}
+
+		@Override
+		public int broadcastBinary(byte[] data) {
+			return broadcast(session -> session.sendBinary(data));
+		}
+
+		private int broadcast(Function<JemoWebSocketSession,CompletableFuture<Void>> send) {
+			int sent = 0;
+			for(JemoWebSocketSession session : sessions.values()) {
+				if(session.isWritable() && !send.apply(session).isCompletedExceptionally()) {
+					sent++;
+				}
+			}
+			return sent;
+		}
+	}
+
+	/**
+	 * @param module the module the connections were made to.
+	 * @return the connections open to the module on this instance.
+	 */
+	public static WebSocketSessions getSessions(Module module) {
+		return MODULE_SESSIONS.computeIfAbsent(module, m -> new ModuleSessions());
+	}
+
+	/**
+	 * this method will take a connection slot from a module before a connection to it is upgraded.
+	 *
+	 * @param module the module the connection is being made to.
+	 * @param maxConnections the maximum number of connections to the module, -1 means there is no limit.
+	 * @return true if the connection can be made, the slot must then be given back with release.
+	 */
+	static boolean reserve(Module module, int maxConnections) {
+		return MODULE_SESSIONS.computeIfAbsent(module, m -> new ModuleSessions()).reserve(maxConnections);
+	}
+
+	static void opened(Module module, JemoWebSocketSession session) {
+		MODULE_SESSIONS.computeIfAbsent(module, m -> new ModuleSessions()).sessions.put(session.getId(), session);
+	}
+
+	/**
+	 * @param module the module the connection was made to.
+	 * @param session the connection which closed or null if the connection was never opened.
+	 */
+	static void release(Module module, JemoWebSocketSession session) {
+		ModuleSessions moduleSessions = MODULE_SESSIONS.get(module);
+		if(moduleSessions != null) {
+			if(session != null) {
+				moduleSessions.sessions.remove(session.getId());
+			}
+			moduleSessions.connections.decrementAndGet();
+		}
+	}
+
+	/**
+	 * this method will close all of the connections to a module, it is called when the module is unloaded.
+	 *
+	 * @param module the module being unloaded.
+	 */
+	public static void closeSessions(Module module) {
+		ModuleSessions moduleSessions = MODULE_SESSIONS.remove(module);
+		if(moduleSessions != null) {
+			moduleSessions.sessions.values().forEach(session -> session.close(1001, "the module is being unloaded"));
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.api.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * the engine side of a websocket connection made to a module.
+ *
+ * every send is queued on the connection straight away and the amount of data which has not been written yet is tracked so that
+ * sends can be refused once the send buffer is full, text messages are counted by their length in characters. a single message larger
+ * than the whole buffer is still accepted when nothing else is queued.
+ */
+public class JemoWebSocketSession implements WebSocketSession {
+
+	/**
+	 * the connection the session writes to, the callback is called with null once a message has been written or with the error
+	 * which stopped it from being written.
+	 */
+	interface Transport {
+		void sendText(String message, Consumer<Throwable> callback);
+
+		void sendBinary(ByteBuffer data, Consumer<Throwable> callback);
+
+		void close(int statusCode, String reason);
+
+		boolean isOpen();
+	}
+
+	private final String id = UUID.randomUUID().toString();
+	private final String requestURI;
+	private final String queryString;
+	private final Function<String,String> headers;
+	private final String remoteAddress;
+	private final long sendBuffer;
+	private final Transport transport;
+	private final AtomicLong bufferedAmount = new AtomicLong(0);
+
+	JemoWebSocketSession(String requestURI, String queryString, Function<String,String> headers, String remoteAddress, long sendBuffer, Transport transport) {
+		this.requestURI = requestURI;
+		this.queryString = queryString;
+		this.headers = headers;
+		this.remoteAddress = remoteAddress;
+		this.sendBuffer = sendBuffer;
+		this.transport = transport;
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public String getRequestURI() {
+		return requestURI;
+	}
+
+	@Override
+	public String getQueryString() {
+		return queryString;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		return headers.apply(name);
+	}
+
+	@Override
+	public String getRemoteAddress() {
+		return remoteAddress;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return transport.isOpen();
+	}
+
+	@Override
+	public boolean isWritable() {
+		return isOpen() && bufferedAmount.get() < sendBuffer;
+	}
+
+	@Override
+	public long getBufferedAmount() {
+		return bufferedAmount.get();
+	}
+
+	@Override
+	public CompletableFuture<Void> sendText(String message) {
+		return send(message.length(), callback -> transport.sendText(message, callback));
+	}
+
+	@Override
+	public CompletableFuture<Void> sendBinary(byte[] data) {
+		return send(data.length, callback -> transport.sendBinary(ByteBuffer.wrap(data), callback));
+	}
+
+	private CompletableFuture<Void> send(final long size, final Consumer<Consumer<Throwable>> writer) {
+		final CompletableFuture<Void> result = new CompletableFuture<>();
+		if(!transport.isOpen()) {
+			result.completeExceptionally(new ClosedChannelException());
+			return result;
+		}
+		final long buffered = bufferedAmount.addAndGet(size);
+		if(buffered > sendBuffer && buffered != size) {
+			bufferedAmount.addAndGet(-size);
+			result.completeExceptionally(new RejectedExecutionException(String.format("the send buffer of websocket session %s is full %d bytes are waiting to be written", id, buffered - size)));
+			return result;
+		}
+		try {
+			writer.accept(error -> {
+				bufferedAmount.addAndGet(-size);
+				if(error == null) {
+					result.complete(null);
+				} else {
+					result.completeExceptionally(error);
+				}
+			});
+		}catch(Throwable ex) {
+			bufferedAmount.addAndGet(-size);
+			result.completeExceptionally(ex);
+		}
+		return result;
+	}
+
+	@Override
+	public void close(int statusCode, String reason) {
+		transport.close(statusCode, reason);
+	}
+}
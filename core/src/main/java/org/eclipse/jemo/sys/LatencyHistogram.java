@@ -0,0 +1,267 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock free histogram of execution times in milliseconds.
+ * <p>
+ * Values are recorded in log-linear buckets in the same way as HdrHistogram: values below 128 are recorded exactly and
+ * larger values are recorded with 6 bits of sub-bucket precision, so every reported percentile is within 1.6% of the
+ * real value. Histograms can be merged, which makes it possible to aggregate the histograms of several instances.
+ * <p>
+ * The buckets of each power of two are only allocated the first time a value of that magnitude is recorded, execution
+ * times usually span a handful of magnitudes so a histogram will hold a few hundred counters rather than all of them.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonPropertyOrder({"count", "p50", "p90", "p99", "p999", "buckets", "max"}) //the exact max must be read back after the buckets.
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; //128
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1; //64
+    private static final int MAX_VALUE_BITS = 40; //about 34 years in milliseconds, anything above will be clamped.
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+    private static final int CHUNK_COUNT = 1 + MAX_VALUE_BITS - SUB_BUCKET_BITS; //the exact values plus one chunk per power of two.
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(CHUNK_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram record(long value) {
+        long v = Math.min(Math.max(value, 0), MAX_VALUE);
+        add(indexOf(v), 1);
+        totalCount.incrementAndGet();
+        long currentMax = max.get();
+        while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+            currentMax = max.get();
+        }
+        return this;
+    }
+
+    /**
+     * adds all of the values recorded in the other histogram to this one.
+     *
+     * @param other the histogram to merge into this one.
+     * @return a reference to this histogram.
+     */
+    public LatencyHistogram merge(LatencyHistogram other) {
+        if (other != null && other != this) {
+            for (int c = 0; c < CHUNK_COUNT; c++) {
+                AtomicLongArray otherChunk = other.chunks.get(c);
+                if (otherChunk != null) {
+                    for (int i = 0; i < otherChunk.length(); i++) {
+                        long count = otherChunk.get(i);
+                        if (count != 0) {
+                            chunk(c).addAndGet(i, count);
+                        }
+                    }
+                }
+            }
+            totalCount.addAndGet(other.totalCount.get());
+            long otherMax = other.max.get();
+            long currentMax = max.get();
+            while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+                currentMax = max.get();
+            }
+        }
+        return this;
+    }
+
+    public void reset() {
+        for (int c = 0; c < CHUNK_COUNT; c++) {
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk != null) {
+                for (int i = 0; i < chunk.length(); i++) {
+                    chunk.set(i, 0);
+                }
+            }
+        }
+        totalCount.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @param percentile the percentile to compute between 0 and 100.
+     * @return the value at or below which the given percentage of the recorded values fall, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil((Math.min(percentile, 100.0) / 100.0) * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += countAt(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @JsonProperty(value = "count")
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    @JsonProperty(value = "max")
+    public long getMax() {
+        return max.get();
+    }
+
+    @JsonProperty(value = "p50")
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    @JsonProperty(value = "p90")
+    public long getP90() {
+        return getValueAtPercentile(90);
+    }
+
+    @JsonProperty(value = "p99")
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    @JsonProperty(value = "p999")
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * only the buckets which have values are serialised so that the stored form of a histogram stays small.
+     */
+    @JsonProperty(value = "buckets")
+    public Map<Integer, Long> getBuckets() {
+        Map<Integer, Long> buckets = new TreeMap<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = countAt(i);
+            if (count != 0) {
+                buckets.put(i, count);
+            }
+        }
+        return buckets;
+    }
+
+    @JsonProperty(value = "buckets")
+    public void setBuckets(Map<Integer, Long> buckets) {
+        reset();
+        if (buckets != null) {
+            buckets.forEach((i, count) -> {
+                if (i != null && count != null && i >= 0 && i < BUCKET_COUNT) {
+                    add(i, count);
+                    totalCount.addAndGet(count);
+                    max.accumulateAndGet(highestEquivalentValue(i), Math::max);
+                }
+            });
+        }
+    }
+
+    @JsonProperty(value = "max")
+    public void setMax(long max) {
+        this.max.set(max); //the exact maximum is more precise than the one derived from the buckets.
+    }
+
+    private void add(int index, long count) {
+        chunk(chunkOf(index)).addAndGet(offsetOf(index), count);
+    }
+
+    private long countAt(int index) {
+        AtomicLongArray chunk = chunks.get(chunkOf(index));
+        return chunk == null ? 0 : chunk.get(offsetOf(index));
+    }
+
+    private AtomicLongArray chunk(int c) {
+        AtomicLongArray chunk = chunks.get(c);
+        if (chunk == null) {
+            chunks.compareAndSet(c, null, new AtomicLongArray(chunkLength(c)));
+            chunk = chunks.get(c);
+        }
+        return chunk;
+    }
+
+    private static int chunkLength(int c) {
+        return c == 0 ? SUB_BUCKET_COUNT : SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static int chunkOf(int index) {
+        return index < SUB_BUCKET_COUNT ? 0 : 1 + (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static int offsetOf(int index) {
+        return index < SUB_BUCKET_COUNT ? index : (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT;
+    }
+
+    /**
+     * @return the number of bucket chunks that have been allocated.
+     */
+    @JsonIgnore
+    int getAllocatedChunks() {
+        int allocated = 0;
+        for (int c = 0; c < CHUNK_COUNT; c++) {
+            if (chunks.get(c) != null) {
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+
+    @JsonIgnore
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (int) ((value >> shift) - SUB_BUCKET_HALF_COUNT);
+    }
+
+    @JsonIgnore
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = ((index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT) + 1;
+        long subBucket = ((index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT) + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getTotalCount() +
+                ", p50=" + getP50() +
+                ", p90=" + getP90() +
+                ", p99=" + getP99() +
+                ", p999=" + getP999() +
+                ", max=" + getMax() +
+                '}';
+    }
+}
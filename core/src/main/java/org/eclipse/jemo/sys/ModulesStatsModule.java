@@ -1,35 +1,146 @@
 package org.eclipse.jemo.sys;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.eclipse.jemo.AbstractJemo;
+import org.eclipse.jemo.Jemo;
 import org.eclipse.jemo.api.BatchModule;
 import org.eclipse.jemo.api.Frequency;
 import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.internal.model.CloudProvider;
 import org.eclipse.jemo.internal.model.JemoApplicationMetaData;
+import org.eclipse.jemo.internal.model.JemoError;
 import org.eclipse.jemo.sys.internal.SystemDB;
+import org.eclipse.jemo.sys.internal.Util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import static org.eclipse.jemo.sys.JemoPluginManager.MODULE_METADATA_TABLE;
 
 /**
  * Runs once per 10 minutes and flushes to the database the performance statistics per running module.
+ * <p>
+ * The statistics held in memory by an instance only cover the executions on that instance, so every instance publishes
+ * them to storage every minute and the batch merges the published statistics of all the active instances before they
+ * are written to the database.
  *
  * @author Yannis Theocharis
  */
 public class ModulesStatsModule implements BatchModule {
 
+    private static final String STORAGE_PATH = Jemo.SYSTEM_STORAGE_PATH + "/module_stats";
+    private static final long PUBLISH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * the statistics of the applications running on a single instance keyed by application id.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class InstanceStats {
+        private Map<String, Map<String, Accumulator>> stats = new HashMap<>();
+        private Map<String, Map<String, Accumulator>> endpointStats = new HashMap<>();
+
+        public Map<String, Map<String, Accumulator>> getStats() {
+            return stats;
+        }
+
+        public void setStats(Map<String, Map<String, Accumulator>> stats) {
+            this.stats = stats;
+        }
+
+        public Map<String, Map<String, Accumulator>> getEndpointStats() {
+            return endpointStats;
+        }
+
+        public void setEndpointStats(Map<String, Map<String, Accumulator>> endpointStats) {
+            this.endpointStats = endpointStats;
+        }
+
+        /**
+         * @param snapshots the statistics published by several instances.
+         * @return new statistics where the accumulators of each application are the merge of the ones of every instance.
+         */
+        public static InstanceStats merge(Collection<InstanceStats> snapshots) {
+            final InstanceStats merged = new InstanceStats();
+            snapshots.stream().filter(Objects::nonNull).forEach(snapshot -> {
+                merge(merged.stats, snapshot.stats);
+                merge(merged.endpointStats, snapshot.endpointStats);
+            });
+            return merged;
+        }
+
+        private static void merge(Map<String, Map<String, Accumulator>> target, Map<String, Map<String, Accumulator>> source) {
+            if (source != null) {
+                source.forEach((appId, appStats) -> appStats.forEach((key, acc) ->
+                        target.computeIfAbsent(appId, k -> new HashMap<>()).computeIfAbsent(key, k -> new Accumulator()).merge(acc)));
+            }
+        }
+    }
+
+    private final AbstractJemo jemoServer;
     private final Map<String, JemoApplicationMetaData> knownApplications;
+    private ScheduledFuture<?> publishTask = null;
 
-    public ModulesStatsModule(Map<String, JemoApplicationMetaData> knownApplications) {
+    public ModulesStatsModule(AbstractJemo jemoServer, Map<String, JemoApplicationMetaData> knownApplications) {
+        this.jemoServer = jemoServer;
         this.knownApplications = knownApplications;
     }
 
+    @Override
+    public void start() {
+        if (publishTask == null) {
+            publishTask = jemoServer.getSCHEDULER().scheduleWithFixedDelay(() -> {
+                try {
+                    publish();
+                } catch (Throwable ex) {
+                    jemoServer.LOG(Level.WARNING, "[%s] the module statistics could not be published: %s", getClass().getSimpleName(), JemoError.toString(ex));
+                }
+            }, PUBLISH_INTERVAL, PUBLISH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (publishTask != null) {
+            publishTask.cancel(false);
+            publishTask = null;
+        }
+    }
+
     @Override
     public void processBatch(String location, boolean isCloudLocation) throws Throwable {
-        final JemoApplicationMetaData[] jemoApplicationMetaDataArray = knownApplications.values().toArray(new JemoApplicationMetaData[0]);
-        if (jemoApplicationMetaDataArray.length > 0) {
-            SystemDB.save(MODULE_METADATA_TABLE, jemoApplicationMetaDataArray);
+        if (knownApplications.isEmpty()) {
+            return;
         }
+
+        //our own statistics are always current, the ones of the other instances are at most one publishing interval old.
+        final InstanceStats local = snapshot();
+        publish(local);
+        final List<InstanceStats> snapshots = new ArrayList<>();
+        snapshots.add(local);
+        jemoServer.getClusterMembership().getView().getActiveInstances().stream()
+                .filter(inst -> !inst.equals(jemoServer.getINSTANCE_ID()))
+                .forEach(inst -> snapshots.add(CloudProvider.getInstance().getRuntime().read(InstanceStats.class, STORAGE_PATH, buildStorageKey(inst))));
+        final InstanceStats merged = InstanceStats.merge(snapshots);
+
+        final List<JemoApplicationMetaData> apps = new ArrayList<>();
+        for (JemoApplicationMetaData app : knownApplications.values().toArray(new JemoApplicationMetaData[0])) {
+            //we save a copy so the accumulators of this instance are not replaced with the ones of the whole GSM.
+            final JemoApplicationMetaData copy = Util.fromJSONString(JemoApplicationMetaData.class, Util.toJSONString(app));
+            copy.getStats().clear();
+            copy.getStats().putAll(merged.getStats().getOrDefault(app.getId(), Collections.emptyMap()));
+            copy.getEndpointStats().clear();
+            copy.getEndpointStats().putAll(merged.getEndpointStats().getOrDefault(app.getId(), Collections.emptyMap()));
+            apps.add(copy);
+        }
+        SystemDB.save(MODULE_METADATA_TABLE, apps.toArray(new JemoApplicationMetaData[0]));
     }
 
     @Override
@@ -39,4 +150,31 @@ public class ModulesStatsModule implements BatchModule {
                 .setBatchFrequency(Frequency.of(TimeUnit.MINUTES, 10))
                 .build();
     }
+
+    private static String buildStorageKey(String instanceId) {
+        return "jemo_module_stats_" + instanceId;
+    }
+
+    private InstanceStats snapshot() {
+        final InstanceStats snapshot = new InstanceStats();
+        knownApplications.values().forEach(app -> {
+            if (!app.getStats().isEmpty()) {
+                snapshot.getStats().put(app.getId(), new HashMap<>(app.getStats()));
+            }
+            if (!app.getEndpointStats().isEmpty()) {
+                snapshot.getEndpointStats().put(app.getId(), new HashMap<>(app.getEndpointStats()));
+            }
+        });
+        return snapshot;
+    }
+
+    private void publish() {
+        publish(snapshot());
+    }
+
+    private void publish(InstanceStats snapshot) {
+        if (!snapshot.getStats().isEmpty() && jemoServer.getINSTANCE_ID() != null) {
+            CloudProvider.getInstance().getRuntime().write(STORAGE_PATH, buildStorageKey(jemoServer.getINSTANCE_ID()), snapshot);
+        }
+    }
 }
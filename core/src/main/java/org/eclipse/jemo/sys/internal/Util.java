@@ -40,6 +40,8 @@ import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.jar.JarEntry;
@@ -428,6 +430,20 @@ public class Util {
         return readParameterFromJvmOrEnv(name, null);
     }
 
+    /**
+     * Creates an executor which starts a new virtual thread for each task when the JVM supports virtual threads (Java 21 or later).
+     * The lookup is done reflectively so that Jemo can still be built and run on Java 8.
+     *
+     * @return the virtual thread executor or null if the JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
     public static String getLoadBalancerUrl(CoreV1Api coreV1Api) throws ApiException {
         long start = System.currentTimeMillis();
         long duration;
@@ -224,7 +224,7 @@ public abstract class HttpServletResponseAdapter implements HttpServletResponse
 
 	@Override
 	public boolean isCommitted() {
-		throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+		return false;
 	}
 
 	@Override
@@ -24,11 +24,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -416,6 +420,41 @@ public class TestCloudRuntime extends JemoBaseTest {
         }
     }
 
+    @Test
+    public void testSendMessages() throws Throwable {
+        for (CloudProvider provider : CloudProvider.values()) {
+            provider.getRuntime().start(jemoServer);
+            testSendMessages(provider.getRuntime());
+        }
+    }
+
+    protected void testSendMessages(CloudRuntime runtime) throws Throwable {
+        final String TEST_QUEUE_NAME = "JEMO-UNITTEST-" + UUID.randomUUID().toString();
+        final String QUEUE_ID = runtime.defineQueue(TEST_QUEUE_NAME);
+        try {
+            //send more messages than fit in a single batch on any of the runtimes.
+            List<String> jsonList = new ArrayList<>();
+            Set<String> idList = new HashSet<>();
+            for (int i = 0; i < 25; i++) {
+                JemoMessage msg = new JemoMessage();
+                msg.setSourceInstance(QUEUE_ID);
+                idList.add(msg.getId());
+                jsonList.add(Util.toJSONString(msg));
+            }
+            List<String> messageIdList = runtime.sendMessages(QUEUE_ID, jsonList);
+            assertEquals(runtime.getClass().getSimpleName(), jsonList.size(), messageIdList.size());
+
+            Set<String> receivedIdList = ConcurrentHashMap.newKeySet();
+            long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (receivedIdList.size() < idList.size() && System.currentTimeMillis() < timeout) {
+                runtime.pollQueue(QUEUE_ID, msg -> receivedIdList.add(msg.getId()), 10);
+            }
+            assertEquals(runtime.getClass().getSimpleName(), idList, receivedIdList);
+        } finally {
+            runtime.deleteQueue(TEST_QUEUE_NAME);
+        }
+    }
+
     @Test
     public void testReadWriteInputStream() throws Throwable {
         for (CloudProvider provider : CloudProvider.values()) {
@@ -0,0 +1,55 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.logging.Logger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestModuleInfo {
+	
+	private static class ModuleV1 implements Module {}
+	private static class ModuleV2 implements Module {}
+	
+	@Test
+	public void test_Unbound() {
+		Module module = new Module() {};
+		assertNull(Module.ModuleInfo.of(module));
+		assertEquals(0, module.getId());
+		assertEquals(1.0, module.getVersion(), 0);
+	}
+	
+	@Test
+	public void test_Bind() {
+		Module.ModuleInfo.bind(ModuleV1.class, new Module.ModuleInfo(Logger.getLogger("v1"), "ModuleV1", 10, 1.5));
+		Module.ModuleInfo.bind(ModuleV2.class, new Module.ModuleInfo(Logger.getLogger("v2"), "ModuleV2", 10, 2.0));
+		Module first = new ModuleV1();
+		Module second = new ModuleV1();
+		assertEquals(10, first.getId());
+		assertEquals(1.5, first.getVersion(), 0);
+		assertSame(Module.ModuleInfo.of(first), Module.ModuleInfo.of(second));
+		assertEquals(2.0, new ModuleV2().getVersion(), 0);
+	}
+	
+	@Test
+	public void test_Construct() {
+		Module module = new Module() {};
+		module.construct(Logger.getLogger("construct"), "Construct", 20, 3.0);
+		assertEquals(20, module.getId());
+		assertEquals(3.0, module.getVersion(), 0);
+	}
+}
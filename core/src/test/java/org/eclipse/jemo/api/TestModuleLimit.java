@@ -56,4 +56,27 @@ public class TestModuleLimit {
 		assertNotNull(ModuleLimit.newInstance().setBatchFrequency(Frequency.of(TimeUnit.DAYS, 1)).build().getBatchFrequency());
 		assertEquals(1,ModuleLimit.newInstance().setBatchFrequency(Frequency.of(TimeUnit.DAYS, 1)).build().getBatchFrequency().getValue());
 	}
+	
+	@Test
+	public void test_EventRetryPolicy() {
+		assertNull(ModuleLimit.newInstance().build().getEventRetryPolicy());
+		assertEquals(3,ModuleLimit.newInstance().setEventRetryPolicy(RetryPolicy.newInstance().setMaxAttempts(3).build()).build().getEventRetryPolicy().getMaxAttempts());
+	}
+	
+	@Test
+	public void test_EventPriorityAndWeight() {
+		assertEquals(0,ModuleLimit.defaultInstance().getEventPriority());
+		assertEquals(1,ModuleLimit.defaultInstance().getEventWeight());
+		assertEquals(5,ModuleLimit.newInstance().setEventPriority(5).build().getEventPriority());
+		assertEquals(1,ModuleLimit.newInstance().setEventWeight(0).build().getEventWeight());
+		assertEquals(3,ModuleLimit.newInstance().setEventWeight(3).build().getEventWeight());
+	}
+	
+	@Test
+	public void test_WebSocketLimits() {
+		assertEquals(-1,ModuleLimit.defaultInstance().getMaxWebSocketConnectionsPerInstance());
+		assertEquals(1024*1024,ModuleLimit.defaultInstance().getWebSocketSendBuffer());
+		assertEquals(100,ModuleLimit.newInstance().setMaxWebSocketConnectionsPerInstance(100).build().getMaxWebSocketConnectionsPerInstance());
+		assertEquals(1,ModuleLimit.newInstance().setWebSocketSendBuffer(0).build().getWebSocketSendBuffer());
+	}
 }
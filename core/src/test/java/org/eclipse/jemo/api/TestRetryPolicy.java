@@ -0,0 +1,60 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestRetryPolicy {
+	
+	@Test
+	public void test_Defaults() {
+		RetryPolicy policy = RetryPolicy.defaultInstance();
+		assertEquals(10,policy.getMaxAttempts());
+		assertEquals(TimeUnit.SECONDS.toMillis(10),policy.getInitialDelay());
+		assertEquals(TimeUnit.MINUTES.toMillis(15),policy.getMaxDelay());
+	}
+	
+	@Test
+	public void test_ExponentialBackoff() {
+		RetryPolicy policy = RetryPolicy.newInstance().setInitialDelay(TimeUnit.SECONDS, 1).setMaxDelay(TimeUnit.SECONDS, 10).setMultiplier(2).setJitter(0).build();
+		assertEquals(1000,policy.getDelay(1));
+		assertEquals(2000,policy.getDelay(2));
+		assertEquals(8000,policy.getDelay(4));
+		assertEquals(10000,policy.getDelay(5));
+		assertEquals(10000,policy.getDelay(1000));
+	}
+	
+	@Test
+	public void test_Jitter() {
+		RetryPolicy policy = RetryPolicy.newInstance().setInitialDelay(TimeUnit.SECONDS, 1).setJitter(0.5).build();
+		assertEquals(1000,policy.getDelay(1, 0));
+		assertEquals(500,policy.getDelay(1, 1));
+		for(int i = 0; i < 100; i++) {
+			long delay = policy.getDelay(1);
+			assertTrue(delay >= 500 && delay <= 1000);
+		}
+	}
+	
+	@Test
+	public void test_MaxAttempts() {
+		RetryPolicy policy = RetryPolicy.newInstance().setMaxAttempts(3).build();
+		assertTrue(policy.canRetry(2));
+		assertFalse(policy.canRetry(3));
+	}
+}
@@ -0,0 +1,110 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestWebServiceModule {
+
+	private static class NoProcessModule implements WebServiceModule {
+		@Override
+		public String getBasePath() {
+			return "/none";
+		}
+	}
+
+	@Test
+	public void testSyncModule() throws Throwable {
+		final AtomicInteger processed = new AtomicInteger();
+		WebServiceModule module = new WebServiceModule() {
+			@Override
+			public String getBasePath() {
+				return "/sync";
+			}
+
+			@Override
+			public void process(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+				processed.incrementAndGet();
+			}
+		};
+		assertTrue(module.processAsync(null, null).isDone());
+		assertEquals(1, processed.get());
+	}
+
+	@Test
+	public void testAsyncModule() throws Throwable {
+		final AtomicInteger processed = new AtomicInteger();
+		WebServiceModule module = new WebServiceModule() {
+			@Override
+			public String getBasePath() {
+				return "/async";
+			}
+
+			@Override
+			public CompletableFuture<Void> processAsync(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+				processed.incrementAndGet();
+				return CompletableFuture.completedFuture(null);
+			}
+		};
+		module.process(null, null);
+		assertEquals(1, processed.get());
+	}
+
+	@Test
+	public void testAsyncModuleFailure() throws Throwable {
+		WebServiceModule module = new WebServiceModule() {
+			@Override
+			public String getBasePath() {
+				return "/async";
+			}
+
+			@Override
+			public CompletableFuture<Void> processAsync(HttpServletRequest request, HttpServletResponse response) throws Throwable {
+				CompletableFuture<Void> result = new CompletableFuture<>();
+				result.completeExceptionally(new IllegalArgumentException("bad request"));
+				return result;
+			}
+		};
+		try {
+			module.process(null, null);
+			fail("the failure of processAsync should be thrown");
+		} catch(IllegalArgumentException ex) {
+			assertEquals("bad request", ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testNoProcessMethod() throws Throwable {
+		try {
+			new NoProcessModule().processAsync(null, null);
+			fail("a module which implements neither method cannot process a request");
+		} catch(UnsupportedOperationException ex) {
+			assertTrue(ex.getMessage().contains(NoProcessModule.class.getName()));
+		}
+		try {
+			new NoProcessModule().process(null, null);
+			fail("a module which implements neither method cannot process a request");
+		} catch(UnsupportedOperationException ex) {
+			assertTrue(ex.getMessage().contains(NoProcessModule.class.getName()));
+		}
+	}
+}
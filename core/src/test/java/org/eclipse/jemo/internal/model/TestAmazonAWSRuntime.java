@@ -0,0 +1,198 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSAsync;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TestAmazonAWSRuntime {
+	
+	private AmazonSQS sqs;
+	private AmazonSQSAsync sqsAsync;
+	private AmazonAWSRuntime runtime;
+	
+	@Before
+	public void setup() {
+		sqs = mock(AmazonSQS.class);
+		sqsAsync = mock(AmazonSQSAsync.class);
+		when(sqs.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenReturn(new DeleteMessageBatchResult());
+		runtime = new AmazonAWSRuntime(sqs, sqsAsync);
+	}
+	
+	private JemoMessage createMessage(int records) {
+		JemoMessage msg = new JemoMessage();
+		msg.setPluginId(10);
+		msg.setModuleClass("org.eclipse.jemo.test.EventModule");
+		List<Map<String,Object>> recordList = new ArrayList<>();
+		for(int i = 0; i < records; i++) {
+			Map<String,Object> record = new HashMap<>();
+			record.put("sequence", i);
+			record.put("description", "this is the description of record number " + i);
+			recordList.add(record);
+		}
+		msg.getAttributes().put("records", recordList);
+		return msg;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void receive(String... bodies) {
+		List<Message> messages = new ArrayList<>();
+		for(int i = 0; i < bodies.length; i++) {
+			messages.add(new Message().withMessageId("m" + i).withReceiptHandle("r" + i).withBody(bodies[i]));
+		}
+		ReceiveMessageResult result = new ReceiveMessageResult().withMessages(messages);
+		when(sqsAsync.receiveMessageAsync(any(ReceiveMessageRequest.class), any(AsyncHandler.class))).thenAnswer(invocation -> {
+			((AsyncHandler<ReceiveMessageRequest,ReceiveMessageResult>)invocation.getArgument(1)).onSuccess(invocation.getArgument(0), result);
+			return CompletableFuture.completedFuture(result);
+		});
+	}
+	
+	/**
+	 * every entry of a batch is reported as sent apart from the ones with the given ids which are reported as failed.
+	 */
+	private void sendBatch(String... failedIds) {
+		Set<String> failed = new HashSet<>(Arrays.asList(failedIds));
+		when(sqs.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+			SendMessageBatchRequest request = invocation.getArgument(0);
+			return new SendMessageBatchResult()
+				.withSuccessful(request.getEntries().stream()
+					.filter(entry -> !failed.contains(entry.getId()))
+					.map(entry -> new SendMessageBatchResultEntry().withId(entry.getId()).withMessageId("batch-" + entry.getId()))
+					.collect(Collectors.toList()))
+				.withFailed(request.getEntries().stream()
+					.filter(entry -> failed.contains(entry.getId()))
+					.map(entry -> new BatchResultErrorEntry().withId(entry.getId()).withSenderFault(false).withCode("InternalError").withMessage("failed"))
+					.collect(Collectors.toList()));
+		});
+	}
+	
+	private List<SendMessageBatchRequest> sentBatches(int count) {
+		ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+		verify(sqs, times(count)).sendMessageBatch(captor.capture());
+		return captor.getAllValues();
+	}
+	
+	private static List<Integer> batchSizes(List<SendMessageBatchRequest> batches) {
+		return batches.stream().map(batch -> batch.getEntries().size()).collect(Collectors.toList());
+	}
+	
+	private static String body(char c, int length) {
+		char[] body = new char[length];
+		Arrays.fill(body, c);
+		return new String(body);
+	}
+	
+	@Test
+	public void testSendBatchEntryLimit() {
+		sendBatch();
+		List<String> messages = IntStream.range(0, 25).mapToObj(i -> "{\"message\":" + i + "}").collect(Collectors.toList());
+		List<String> messageIds = runtime.sendMessages("JEMO-TEST-QUEUE", messages);
+		
+		List<SendMessageBatchRequest> batches = sentBatches(3);
+		assertEquals(Arrays.asList(10, 10, 5), batchSizes(batches));
+		List<String> sentBodies = batches.stream().flatMap(batch -> batch.getEntries().stream()).map(SendMessageBatchRequestEntry::getMessageBody).collect(Collectors.toList());
+		assertEquals(messages, sentBodies);
+		assertEquals(IntStream.range(0, 25).mapToObj(i -> "batch-" + i).collect(Collectors.toList()), messageIds);
+		verify(sqs, never()).sendMessage(anyString(), anyString());
+	}
+	
+	@Test
+	public void testSendBatchByteLimit() {
+		sendBatch();
+		//two of these fit in 256KB but three do not, none of them is large enough to be stored on S3.
+		List<String> messages = Arrays.asList(body('a', 100000), body('b', 100000), body('c', 100000), body('d', 100000), body('e', 100000));
+		List<String> messageIds = runtime.sendMessages("JEMO-TEST-QUEUE", messages);
+		
+		List<SendMessageBatchRequest> batches = sentBatches(3);
+		assertEquals(Arrays.asList(2, 2, 1), batchSizes(batches));
+		for(SendMessageBatchRequest batch : batches) {
+			assertTrue(batch.getEntries().stream().mapToInt(entry -> entry.getMessageBody().length()).sum() <= 262144);
+		}
+		assertEquals(Arrays.asList("batch-0", "batch-1", "batch-2", "batch-3", "batch-4"), messageIds);
+	}
+	
+	@Test
+	public void testSendBatchRetriesFailedEntries() {
+		sendBatch("3", "11");
+		when(sqs.sendMessage(eq("JEMO-TEST-QUEUE"), anyString())).thenAnswer(invocation -> new SendMessageResult().withMessageId("single-" + invocation.getArgument(1)));
+		List<String> messages = IntStream.range(0, 12).mapToObj(i -> "{\"message\":" + i + "}").collect(Collectors.toList());
+		List<String> messageIds = runtime.sendMessages("JEMO-TEST-QUEUE", messages);
+		
+		assertEquals(Arrays.asList(10, 2), batchSizes(sentBatches(2)));
+		verify(sqs).sendMessage("JEMO-TEST-QUEUE", messages.get(3));
+		verify(sqs).sendMessage("JEMO-TEST-QUEUE", messages.get(11));
+		verify(sqs, times(2)).sendMessage(anyString(), anyString());
+		assertEquals("single-" + messages.get(3), messageIds.get(3));
+		assertEquals("single-" + messages.get(11), messageIds.get(11));
+		assertEquals("batch-0", messageIds.get(0));
+		assertEquals("batch-10", messageIds.get(10));
+	}
+	
+	@Test
+	public void testPollCompressed() throws Throwable {
+		JemoMessage large = createMessage(1000);
+		String compressed = ServerMessage.encode(JemoMessageCodec.JSON, MessageCompression.DEFLATE, 16384, large);
+		assertTrue(MessageCompression.isCompressed(compressed));
+		receive(compressed, JemoMessageCodec.JSON.encode(createMessage(1)), JemoMessageCodec.BINARY.encode(createMessage(2)));
+		
+		BlockingQueue<JemoMessage> processed = new LinkedBlockingQueue<>();
+		assertEquals(3, runtime.pollQueue("JEMO-TEST-QUEUE", processed::add, 10));
+		List<Integer> sizes = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			JemoMessage msg = processed.poll(10, TimeUnit.SECONDS);
+			assertNotNull(msg);
+			sizes.add(((List)msg.getAttributes().get("records")).size());
+		}
+		assertTrue(sizes.contains(1000));
+		assertTrue(sizes.contains(1));
+		assertTrue(sizes.contains(2));
+		verify(sqs).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+	}
+}
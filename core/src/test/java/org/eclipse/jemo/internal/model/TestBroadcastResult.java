@@ -0,0 +1,46 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestBroadcastResult {
+
+	@Test
+	public void testStatus() {
+		BroadcastResult result = new BroadcastResult(JemoMessage.LOCATION_ANYWHERE);
+		assertTrue(result.isSuccessful());
+		result.addTarget("instance-1", "AWS", "queue-1").setStatus(BroadcastResult.Status.DELIVERED, null);
+		result.addTarget("instance-2", "AWS", "queue-2").setStatus(BroadcastResult.Status.SKIPPED, null);
+		assertTrue(result.isSuccessful()); //an instance which does not run the module does not need the message.
+
+		BroadcastResult.Target slow = result.addTarget("instance-3", "AZURE", "queue-3");
+		assertEquals(BroadcastResult.Status.FAILED, slow.getStatus()); //a target is failed until we know the message reached it.
+		slow.setStatus(BroadcastResult.Status.TIMED_OUT, "the message was not sent within 10000ms");
+		assertFalse(result.isSuccessful());
+		assertEquals(3, result.getTargets().size());
+		assertEquals(1, result.getTargets(BroadcastResult.Status.TIMED_OUT).size());
+		assertEquals("instance-3", result.getTargets(BroadcastResult.Status.TIMED_OUT).get(0).getInstanceId());
+		assertEquals(JemoMessage.LOCATION_ANYWHERE + " delivered 1 skipped 1 failed 0 timed out 1", result.toString());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testTargetsAreReadOnly() {
+		new BroadcastResult(JemoMessage.LOCATION_LOCALLY).getTargets().clear();
+	}
+}
@@ -0,0 +1,112 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoMessageCodec {
+
+	public static class Payload {
+		public String name = "payload";
+		public long size = 1L << 40;
+		public float ratio = 1.1f;
+	}
+
+	private JemoMessage createMessage() {
+		JemoMessage msg = new JemoMessage();
+		msg.setPluginId(10);
+		msg.setPluginVersion(1.5);
+		msg.setModuleClass("org.eclipse.jemo.test.EventModule");
+		msg.setSourceModuleClass("org.eclipse.jemo.test.EventModule");
+		msg.setSourceInstance("JEMO-AWS-" + UUID.randomUUID().toString());
+		msg.setExecutionCount(2);
+		msg.setLastRunTime(System.currentTimeMillis());
+		msg.json_setLastError(JemoError.newInstance(new RuntimeException("test error")));
+		msg.getAttributes().put("string", "héllo");
+		msg.getAttributes().put("int", 42);
+		msg.getAttributes().put("long", 5L);
+		msg.getAttributes().put("bigLong", 1L << 40);
+		msg.getAttributes().put("negative", -7);
+		msg.getAttributes().put("double", 2.5);
+		msg.getAttributes().put("float", 1.1f);
+		msg.getAttributes().put("boolean", true);
+		msg.getAttributes().put("bigInteger", new BigInteger("123456789012345678901234567890"));
+		msg.getAttributes().put("list", Arrays.asList(1, "x", Arrays.asList(2, 3)));
+		msg.getAttributes().put("array", new String[] {"a", "b"});
+		msg.getAttributes().put("pojo", new Payload());
+		Map<String,Object> map = new HashMap<>();
+		map.put("key", 1);
+		map.put("value", "one");
+		msg.getAttributes().put("map", map);
+		return msg;
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		JemoMessage msg = createMessage();
+		assertTrue(JemoMessageCodec.BINARY.canDecode(JemoMessageCodec.BINARY.encode(msg)));
+		assertFalse(JemoMessageCodec.BINARY.canDecode(JemoMessageCodec.JSON.encode(msg)));
+		assertEquals(msg.getId(), JemoMessageCodec.read(JemoMessageCodec.JSON.encode(msg)).getId());
+		assertEquals(msg.getId(), JemoMessageCodec.read(JemoMessageCodec.BINARY.encode(msg)).getId());
+		assertNull(JemoMessageCodec.read(null));
+		assertNull(JemoMessageCodec.read(""));
+	}
+
+	@Test
+	public void testBinaryMatchesJSON() throws IOException {
+		//a message must look exactly the same to a module whichever codec it was sent with.
+		JemoMessage msg = createMessage();
+		JemoMessage fromJSON = JemoMessageCodec.read(JemoMessageCodec.JSON.encode(msg));
+		JemoMessage fromBinary = JemoMessageCodec.read(JemoMessageCodec.BINARY.encode(msg));
+		assertEquals(JemoMessageCodec.JSON.encode(fromJSON), JemoMessageCodec.JSON.encode(fromBinary));
+		assertEquals("test error", fromBinary.getLastError().getMessage());
+		for(Map.Entry<String,Object> attr : fromJSON.getAttributes().entrySet()) {
+			assertEquals(attr.getKey(), attr.getValue().getClass(), fromBinary.getAttributes().get(attr.getKey()).getClass());
+		}
+		assertEquals(Integer.class, fromBinary.getAttributes().get("long").getClass());
+		assertEquals(Long.class, fromBinary.getAttributes().get("bigLong").getClass());
+	}
+
+	@Test
+	public void testNonUUIDId() throws IOException {
+		JemoMessage msg = new JemoMessage();
+		msg.setId("custom-id");
+		assertEquals("custom-id", JemoMessageCodec.read(JemoMessageCodec.BINARY.encode(msg)).getId());
+		msg.setId(msg.getId().toUpperCase());
+		assertEquals("CUSTOM-ID", JemoMessageCodec.read(JemoMessageCodec.BINARY.encode(msg)).getId());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidPayload() throws IOException {
+		JemoMessageCodec.read(BinaryMessageCodec.PREFIX + "AAAA");
+	}
+
+	@Test
+	public void testForName() {
+		assertSame(JemoMessageCodec.BINARY, JemoMessageCodec.forName("BINARY"));
+		assertSame(JemoMessageCodec.JSON, JemoMessageCodec.forName("json"));
+		assertSame(JemoMessageCodec.JSON, JemoMessageCodec.forName("unknown"));
+		assertSame(JemoMessageCodec.JSON, JemoMessageCodec.CODECS.get(JemoMessageCodec.CODECS.size()-1));
+	}
+}
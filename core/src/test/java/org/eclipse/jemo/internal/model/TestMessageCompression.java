@@ -0,0 +1,86 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.internal.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestMessageCompression {
+
+	private JemoMessage createMessage(int records) {
+		JemoMessage msg = new JemoMessage();
+		msg.setPluginId(10);
+		msg.setModuleClass("org.eclipse.jemo.test.EventModule");
+		List<Map<String,Object>> recordList = new ArrayList<>();
+		for(int i = 0; i < records; i++) {
+			Map<String,Object> record = new HashMap<>();
+			record.put("sequence", i);
+			record.put("description", "this is the description of record number " + i);
+			recordList.add(record);
+		}
+		msg.getAttributes().put("records", recordList);
+		return msg;
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		JemoMessage msg = createMessage(1000);
+		for(MessageCompression compression : MessageCompression.values()) {
+			for(JemoMessageCodec codec : JemoMessageCodec.CODECS) {
+				String payload = compression.write(codec, codec.toBytes(msg));
+				assertTrue(MessageCompression.isCompressed(payload));
+				assertTrue(payload.startsWith(MessageCompression.PREFIX + compression.getName() + ":" + codec.getName() + ":"));
+				assertTrue(payload.length() < codec.encode(msg).length() / 4);
+				assertEquals(JemoMessageCodec.JSON.encode(msg), JemoMessageCodec.JSON.encode(JemoMessageCodec.read(payload)));
+			}
+		}
+	}
+
+	@Test
+	public void testThreshold() throws IOException {
+		JemoMessage small = createMessage(1);
+		JemoMessage large = createMessage(1000);
+		assertEquals(JemoMessageCodec.JSON.encode(small), ServerMessage.encode(JemoMessageCodec.JSON, MessageCompression.DEFLATE, 16384, small));
+		assertTrue(MessageCompression.isCompressed(ServerMessage.encode(JemoMessageCodec.JSON, MessageCompression.DEFLATE, 16384, large)));
+		assertFalse(MessageCompression.isCompressed(ServerMessage.encode(JemoMessageCodec.JSON, null, 16384, large)));
+		assertTrue(MessageCompression.isCompressed(ServerMessage.encode(JemoMessageCodec.BINARY, MessageCompression.GZIP, 0, large)));
+	}
+
+	@Test
+	public void testForName() {
+		assertSame(MessageCompression.DEFLATE, MessageCompression.forName("DEFLATE"));
+		assertSame(MessageCompression.GZIP, MessageCompression.forName("gzip"));
+		assertNull(MessageCompression.forName("none"));
+		assertTrue(JemoMessageCodec.getReadableFormats().contains("deflate"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownAlgorithm() throws IOException {
+		JemoMessageCodec.read(MessageCompression.PREFIX + "zstd:json:AAAA");
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedPayload() throws IOException {
+		String payload = MessageCompression.DEFLATE.write(JemoMessageCodec.JSON, JemoMessageCodec.JSON.toBytes(createMessage(1000)));
+		JemoMessageCodec.read(payload.substring(0, payload.length() / 2));
+	}
+}
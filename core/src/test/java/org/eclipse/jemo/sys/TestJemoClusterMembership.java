@@ -0,0 +1,108 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.JemoBaseTest;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import org.eclipse.jemo.sys.internal.ManagedConsumer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoClusterMembership {
+
+	private static final String LOCATION = "UNITTEST";
+
+	private void runWithMembership(ManagedConsumer<JemoClusterMembership> test) throws Throwable {
+		try {
+			CloudProvider.defineCustomeRuntime(new MemoryRuntime());
+			test.accept(new JemoClusterMembership(new JemoBaseTest.TestJemoServer("UUID_"+UUID.randomUUID().toString(), LOCATION, 8080, "")));
+		} finally {
+			CloudProvider.defineCustomeRuntime(null);
+		}
+	}
+
+	/**
+	 * creates the queue of an instance and records its last poll in the same way a running instance would.
+	 */
+	private static String createInstance(long lastPoll) {
+		String instanceId = UUID.randomUUID().toString();
+		CloudProvider.getInstance().getRuntime().defineQueue("JEMO-" + LOCATION + "-" + instanceId);
+		CloudProvider.getInstance().getRuntime().store(instanceId + ".lastpoll", lastPoll);
+		return instanceId;
+	}
+
+	@Test
+	public void testJoin() throws Throwable {
+		runWithMembership(membership -> {
+			String polling = createInstance(System.currentTimeMillis());
+			JemoClusterMembership.View view = membership.refresh();
+			assertTrue(view.getActiveInstances().contains(polling));
+			assertEquals(LOCATION, view.getInstanceLocationMap().get(polling));
+			assertTrue(view.getActiveInstances(LOCATION).contains(polling));
+
+			//an instance which joins is part of the view straight away without waiting for the next refresh.
+			String joined = UUID.randomUUID().toString();
+			assertFalse(membership.isInstanceActive(joined));
+			membership.heartbeat(joined, LOCATION, System.currentTimeMillis());
+			assertTrue(membership.getView().getActiveInstances().contains(joined));
+			assertTrue(membership.isInstanceActive(joined));
+			assertTrue(membership.refresh().getActiveInstances().contains(joined));
+		});
+	}
+
+	@Test
+	public void testLeave() throws Throwable {
+		runWithMembership(membership -> {
+			String instanceId = createInstance(System.currentTimeMillis());
+			assertTrue(membership.refresh().getActiveInstances().contains(instanceId));
+
+			membership.heartbeat(instanceId, LOCATION, 0);
+			assertFalse(membership.getView().getActiveInstances().contains(instanceId));
+			assertFalse(membership.getView().isKnown(instanceId));
+			//the queue and the last poll of the instance are still in storage but it has told us it left.
+			assertFalse(membership.refresh().getActiveInstances().contains(instanceId));
+
+			//if the instance comes back it is active again.
+			membership.heartbeat(instanceId, LOCATION, System.currentTimeMillis());
+			assertTrue(membership.getView().getActiveInstances().contains(instanceId));
+			assertTrue(membership.refresh().getActiveInstances().contains(instanceId));
+		});
+	}
+
+	@Test
+	public void testExpiry() throws Throwable {
+		runWithMembership(membership -> {
+			long expired = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(6);
+			String stale = createInstance(expired);
+			JemoClusterMembership.View view = membership.refresh();
+			assertTrue(view.isKnown(stale));
+			assertFalse(view.isActive(stale));
+			assertFalse(view.getActiveInstances().contains(stale));
+			assertFalse(membership.isInstanceActive(stale));
+
+			//a heartbeat which is older than the active window is dropped on the next refresh.
+			String silent = UUID.randomUUID().toString();
+			membership.heartbeat(silent, LOCATION, expired);
+			assertFalse(membership.getView().getActiveInstances().contains(silent));
+			assertFalse(membership.refresh().isKnown(silent));
+		});
+	}
+}
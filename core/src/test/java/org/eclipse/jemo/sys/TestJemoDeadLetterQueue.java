@@ -0,0 +1,104 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.JemoBaseTest;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.CloudQueueProcessor;
+import org.eclipse.jemo.internal.model.CloudRuntime;
+import org.eclipse.jemo.internal.model.JemoMessage;
+import org.eclipse.jemo.internal.model.QueueDoesNotExistException;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import org.eclipse.jemo.sys.internal.Util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoDeadLetterQueue {
+	
+	private static final ExecutorService PROCESSOR = Executors.newCachedThreadPool();
+	
+	/**
+	 * like the cloud runtimes this hands the messages it polls to the processor on another thread after the poll has returned.
+	 */
+	private static class AsyncMemoryRuntime extends MemoryRuntime {
+		@Override
+		public int pollQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
+			return super.pollQueue(queueId, msg -> PROCESSOR.submit(() -> {
+				try {
+					Thread.sleep(50);
+				} catch(InterruptedException ex) {}
+				processor.processMessage(msg);
+			}), maxMessages);
+		}
+	}
+	
+	@Test
+	public void testPoll() throws Throwable {
+		final MemoryRuntime runtime = new AsyncMemoryRuntime();
+		try {
+			CloudProvider.defineCustomeRuntime(runtime);
+			final String queueId = runtime.defineQueue("JEMO-UNITTEST" + CloudRuntime.DEAD_LETTER_QUEUE_SUFFIX);
+			final JemoBaseTest.TestJemoServer jemoServer = new JemoBaseTest.TestJemoServer("UUID_"+UUID.randomUUID().toString(), "UNITTEST", 8080, "") {
+				@Override
+				public String getDEAD_LETTER_QUEUE_URL() {
+					return queueId;
+				}
+			};
+			List<String> payloads = new ArrayList<>();
+			for(int i = 0; i < 25; i++) {
+				JemoMessage msg = new JemoMessage();
+				msg.setId("msg" + i);
+				payloads.add(Util.toJSONString(msg));
+			}
+			runtime.sendMessages(queueId, payloads);
+			
+			JemoDeadLetterQueue deadLetterQueue = new JemoDeadLetterQueue(jemoServer);
+			List<JemoMessage> first = deadLetterQueue.poll(12);
+			assertEquals(12, first.size());
+			List<JemoMessage> rest = deadLetterQueue.poll(100);
+			assertEquals(13, rest.size());
+			assertTrue(deadLetterQueue.poll(10).isEmpty());
+			
+			Set<String> ids = new HashSet<>();
+			first.forEach(msg -> ids.add(msg.getId()));
+			rest.forEach(msg -> ids.add(msg.getId()));
+			assertEquals(25, ids.size());
+		} finally {
+			CloudProvider.defineCustomeRuntime(null);
+		}
+	}
+	
+	@Test
+	public void testNotAnInstanceQueue() {
+		MemoryRuntime runtime = new MemoryRuntime();
+		String deadLetterQueue = runtime.defineQueue("JEMO-UNITTEST" + CloudRuntime.DEAD_LETTER_QUEUE_SUFFIX);
+		String workQueue = runtime.defineQueue("JEMO-UNITTEST-WORK-QUEUE");
+		String instanceQueue = runtime.createInstanceQueue("UNITTEST", UUID.randomUUID().toString());
+		assertFalse(runtime.listQueueIds(null, false).contains(deadLetterQueue));
+		assertFalse(runtime.listQueueIds(null, true).contains(deadLetterQueue));
+		assertTrue(runtime.listQueueIds(null, true).contains(workQueue));
+		assertTrue(runtime.listQueueIds(null, false).contains(instanceQueue));
+	}
+}
@@ -0,0 +1,51 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoEndpointRouter {
+
+	@Test
+	public void testEmpty() {
+		assertNull(JemoEndpointRouter.EMPTY.resolve("/jemo"));
+		assertNull(JemoEndpointRouter.build(Collections.emptyList()).resolve("/1/v1.0/test"));
+		assertNull(JemoEndpointRouter.build(Arrays.asList("/jemo")).resolve(null));
+	}
+
+	@Test
+	public void testLongestPrefix() {
+		JemoEndpointRouter router = JemoEndpointRouter.build(Arrays.asList("/jemo","/1/v1.0/test","/1/v1.0/test/sub","/2/v1.0/test"));
+		assertEquals("/jemo",router.resolve("/jemo"));
+		assertEquals("/jemo",router.resolve("/jemo/stats"));
+		assertEquals("/1/v1.0/test",router.resolve("/1/v1.0/test/other"));
+		assertEquals("/1/v1.0/test/sub",router.resolve("/1/v1.0/test/sub/path"));
+		assertEquals("/2/v1.0/test",router.resolve("/2/v1.0/test"));
+		assertNull(router.resolve("/1/v1.0/tes"));
+		assertNull(router.resolve("/3/v1.0/test"));
+	}
+
+	@Test
+	public void testCaseInsensitive() {
+		JemoEndpointRouter router = JemoEndpointRouter.build(Arrays.asList("/1/v1.0/Test"));
+		assertEquals("/1/v1.0/Test",router.resolve("/1/V1.0/TEST/resource"));
+		assertEquals("/1/v1.0/Test",router.resolve("/1/v1.0/test"));
+	}
+}
@@ -0,0 +1,166 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.JemoBaseTest;
+import org.eclipse.jemo.api.Frequency;
+import org.eclipse.jemo.api.ModuleLimit;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import org.eclipse.jemo.sys.internal.ManagedConsumer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoEventAdmission {
+
+	private void runWithServer(ManagedConsumer<JemoBaseTest.TestJemoServer> test) throws Throwable {
+		try {
+			CloudProvider.defineCustomeRuntime(new MemoryRuntime());
+			test.accept(new JemoBaseTest.TestJemoServer("UUID_"+UUID.randomUUID().toString(), "UNITTEST", 8080, ""));
+		} finally {
+			CloudProvider.defineCustomeRuntime(null);
+		}
+	}
+
+	@Test
+	public void testInstanceLimit() throws Throwable {
+		runWithServer(jemoServer -> {
+			JemoEventAdmission.Gate gate = jemoServer.getEventAdmission().gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setMaxActiveEventsPerInstance(2).build());
+			assertTrue(gate.tryAcquire());
+			assertTrue(gate.tryAcquire());
+			assertFalse(gate.tryAcquire());
+			gate.release();
+			assertTrue(gate.tryAcquire());
+			assertEquals(2, gate.getInFlight());
+		});
+	}
+
+	@Test
+	public void testHasCapacity() throws Throwable {
+		runWithServer(jemoServer -> {
+			JemoEventAdmission.Gate gate = jemoServer.getEventAdmission().gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setMaxActiveEventsPerInstance(1).build());
+			assertTrue(gate.hasCapacity());
+			assertEquals(0, gate.getInFlight()); //checking for capacity does not take a permit.
+			assertTrue(gate.tryAcquire());
+			assertFalse(gate.hasCapacity());
+			gate.release();
+			gate.waiting(1);
+			assertFalse(gate.hasCapacity()); //events which are already waiting go first.
+			gate.waiting(-1);
+			assertTrue(gate.hasCapacity());
+		});
+	}
+
+	@Test
+	public void testGSMLease() throws Throwable {
+		runWithServer(jemoServer -> {
+			JemoEventAdmission.Gate gate = jemoServer.getEventAdmission().gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setMaxActiveEventsPerGSM(3).build());
+			assertEquals(3, gate.getGsmLease()); //we are the only instance which needs the module so the whole limit is leased to us.
+			assertTrue(gate.tryAcquire());
+			assertTrue(gate.tryAcquire());
+			assertTrue(gate.tryAcquire());
+			assertFalse(gate.tryAcquire());
+		});
+	}
+
+	@Test
+	public void testFrequency() throws Throwable {
+		runWithServer(jemoServer -> {
+			JemoEventAdmission.Gate gate = jemoServer.getEventAdmission().gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setEventFrequency(Frequency.of(TimeUnit.MINUTES, 1)).build());
+			assertEquals(0, gate.getNextLaunchTime());
+			jemoServer.getEventCounters().eventStarted(10, 1.0, "TestModule");
+			assertTrue(gate.getNextLaunchTime() > System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(50));
+			jemoServer.getEventCounters().eventFinished(10, 1.0, "TestModule");
+			assertEquals(0, jemoServer.getEventCounters().getActiveOnInstance(jemoServer.getINSTANCE_ID(), 10, 1.0, "TestModule"));
+		});
+	}
+
+	@Test
+	public void testIdleGateRemoved() throws Throwable {
+		runWithServer(jemoServer -> {
+			JemoEventAdmission admission = jemoServer.getEventAdmission();
+			JemoEventAdmission.Gate gate = admission.gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setMaxActiveEventsPerInstance(1).build());
+			assertTrue(gate.tryAcquire());
+			Thread.sleep(jemoServer.getEventCounters().getPublishInterval() + 100);
+			admission.renewAll();
+			assertEquals(1, admission.getGateCount()); //an event is still running.
+			
+			gate.release();
+			admission.renewAll();
+			assertEquals(1, admission.getGateCount()); //the gate was used less than a lease interval ago.
+			Thread.sleep(jemoServer.getEventCounters().getPublishInterval() + 100);
+			admission.renewAll();
+			assertEquals(0, admission.getGateCount());
+			
+			JemoEventAdmission.Gate newGate = admission.gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setMaxActiveEventsPerInstance(1).build());
+			assertNotSame(gate, newGate);
+			assertTrue(newGate.tryAcquire());
+			assertEquals(1, admission.getGateCount());
+		});
+	}
+	
+	/**
+	 * makes another instance active in the GSM with an event running for the module and the given lease slot.
+	 */
+	private static void otherInstance(JemoBaseTest.TestJemoServer jemoServer, String instanceId, long leaseSlot) {
+		CloudProvider.getInstance().getRuntime().defineQueue("JEMO-UNITTEST-" + instanceId);
+		CloudProvider.getInstance().getRuntime().store(instanceId + ".lastpoll", System.currentTimeMillis());
+		JemoEventCounters.InstanceSnapshot snapshot = new JemoEventCounters.InstanceSnapshot();
+		snapshot.setInstanceId(instanceId);
+		snapshot.setEpoch(1);
+		snapshot.setSequence(1);
+		snapshot.setLeaseSlot(leaseSlot);
+		snapshot.getCounters().put(JemoEventCounters.buildCounterKey(10, 1.0, "TestModule"), new JemoEventCounters.CounterState(1, 0, System.currentTimeMillis(), 0));
+		jemoServer.getEventCounters().merge(snapshot);
+		jemoServer.getClusterMembership().refresh();
+		jemoServer.getEventCounters().refresh();
+	}
+	
+	@Test
+	public void testLeaseSlotFollowsLeader() throws Throwable {
+		runWithServer(jemoServer -> {
+			//the instance with the lowest id advances the slot and every other instance uses the slot it publishes.
+			otherInstance(jemoServer, "00000000-0000-0000-0000-000000000000", 41);
+			assertEquals(41, jemoServer.getEventCounters().getLeaseSlot());
+			JemoEventAdmission.Gate gate = jemoServer.getEventAdmission().gate(10, 1.0, "TestModule", ModuleLimit.newInstance().setMaxActiveEventsPerGSM(3).build());
+			assertEquals(2, gate.getGsmLease()); //we are second of two instances so on an odd slot the extra permit is ours.
+			gate.tryAcquire();
+			jemoServer.getEventAdmission().renewAll();
+			assertEquals(41, jemoServer.getEventCounters().getLeaseSlot()); //we do not advance the slot of the leader.
+			assertEquals(2, gate.getGsmLease());
+			
+			otherInstance(jemoServer, "00000000-0000-0000-0000-000000000000", 42);
+			jemoServer.getEventAdmission().renewAll();
+			assertEquals(42, jemoServer.getEventCounters().getLeaseSlot());
+			assertEquals(1, gate.getGsmLease());
+		});
+	}
+	
+	@Test
+	public void testLeaseSlotLeader() throws Throwable {
+		runWithServer(jemoServer -> {
+			otherInstance(jemoServer, "ffffffff-ffff-ffff-ffff-ffffffffffff", 41);
+			long slot = jemoServer.getEventCounters().getLeaseSlot();
+			jemoServer.getEventAdmission().renewAll();
+			assertEquals(slot + 1, jemoServer.getEventCounters().getLeaseSlot());
+			assertEquals(slot + 1, jemoServer.getEventCounters().snapshot().getLeaseSlot());
+		});
+	}
+}
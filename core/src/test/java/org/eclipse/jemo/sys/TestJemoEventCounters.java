@@ -0,0 +1,131 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.JemoBaseTest;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import org.eclipse.jemo.sys.internal.ManagedConsumer;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoEventCounters {
+
+	private static final String LOCATION = "UNITTEST";
+	private static final String MODULE = "TestModule";
+
+	private void runWithCounters(ManagedConsumer<JemoEventCounters> test) throws Throwable {
+		try {
+			CloudProvider.defineCustomeRuntime(new MemoryRuntime());
+			test.accept(new JemoEventCounters(new JemoBaseTest.TestJemoServer("UUID_"+UUID.randomUUID().toString(), LOCATION, 8080, "")));
+		} finally {
+			CloudProvider.defineCustomeRuntime(null);
+		}
+	}
+
+	@Test
+	public void testCounts() throws Throwable {
+		runWithCounters(counters -> {
+			counters.eventStarted(10, 1.0, MODULE);
+			counters.eventStarted(10, 1.0, MODULE);
+			counters.eventFinished(10, 1.0, MODULE);
+			assertEquals(1, counters.getActiveOnInstance(null, 10, 1.0, MODULE));
+			assertEquals(1, counters.getActiveOnLocation(LOCATION, 10, 1.0, MODULE));
+			assertEquals(1, counters.getActiveOnGSM(10, 1.0, MODULE));
+			assertEquals(0, counters.getActiveOnGSM(11, 1.0, MODULE));
+			assertTrue(counters.getLastLaunched(10, 1.0, MODULE) > 0);
+		});
+	}
+
+	@Test
+	public void testLastLaunchedEviction() throws Throwable {
+		runWithCounters(counters -> {
+			counters.eventStarted(10, 1.0, MODULE);
+			long launched = counters.getLastLaunched(10, 1.0, MODULE);
+			assertTrue(launched > 0);
+
+			counters.evictLastLaunched(launched + JemoEventCounters.LAST_LAUNCHED_WINDOW - TimeUnit.MINUTES.toMillis(1));
+			assertEquals(launched, counters.getLastLaunched(10, 1.0, MODULE));
+			assertEquals(launched, counters.getLastLaunchedOnGSM(10, 1.0, MODULE));
+
+			counters.evictLastLaunched(launched + JemoEventCounters.LAST_LAUNCHED_WINDOW + TimeUnit.MINUTES.toMillis(1));
+			assertEquals(0, counters.getLastLaunched(10, 1.0, MODULE));
+			assertEquals(0, counters.getLastLaunchedOnGSM(10, 1.0, MODULE));
+			assertEquals(0, counters.snapshot().getCounters().get(JemoEventCounters.buildCounterKey(10, 1.0, MODULE)).getLastLaunched());
+			//only the last launch is forgotten, the event is still running.
+			assertEquals(1, counters.getActiveOnGSM(10, 1.0, MODULE));
+		});
+	}
+
+	@Test
+	public void testIdleCounterRetired() throws Throwable {
+		runWithCounters(counters -> {
+			final String key = JemoEventCounters.buildCounterKey(10, 1.0, MODULE);
+			counters.eventStarted(10, 1.0, MODULE);
+			counters.eventStarted(10, 1.0, MODULE);
+			counters.eventFinished(10, 1.0, MODULE);
+			long launched = counters.getLastLaunched(10, 1.0, MODULE);
+			long evictOn = launched + JemoEventCounters.LAST_LAUNCHED_WINDOW + TimeUnit.MINUTES.toMillis(1);
+
+			//a counter with an event still running is kept.
+			counters.evictLastLaunched(evictOn);
+			assertTrue(counters.snapshot().getCounters().containsKey(key));
+
+			counters.eventFinished(10, 1.0, MODULE);
+			counters.evictLastLaunched(evictOn);
+			assertFalse(counters.snapshot().getCounters().containsKey(key));
+			assertEquals(0, counters.getActiveOnGSM(10, 1.0, MODULE));
+
+			//a counter created again starts from the retired count so the published counts never go backwards.
+			counters.eventStarted(10, 1.0, MODULE);
+			JemoEventCounters.CounterState state = counters.snapshot().getCounters().get(key);
+			assertEquals(3, state.getStarted());
+			assertEquals(2, state.getFinished());
+			assertEquals(1, counters.getActiveOnGSM(10, 1.0, MODULE));
+		});
+	}
+
+	@Test
+	public void testRemoteLastLaunched() throws Throwable {
+		runWithCounters(counters -> {
+			//the other instance must be active for its snapshot to be counted.
+			String instanceId = UUID.randomUUID().toString();
+			CloudProvider.getInstance().getRuntime().defineQueue("JEMO-" + LOCATION + "-" + instanceId);
+			CloudProvider.getInstance().getRuntime().store(instanceId + ".lastpoll", System.currentTimeMillis());
+
+			long recent = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+			long expired = System.currentTimeMillis() - JemoEventCounters.LAST_LAUNCHED_WINDOW - TimeUnit.MINUTES.toMillis(1);
+			JemoEventCounters.InstanceSnapshot snapshot = new JemoEventCounters.InstanceSnapshot();
+			snapshot.setInstanceId(instanceId);
+			snapshot.setEpoch(1);
+			snapshot.setSequence(1);
+			snapshot.getCounters().put(JemoEventCounters.buildCounterKey(10, 1.0, MODULE), new JemoEventCounters.CounterState(1, 1, recent, 0));
+			snapshot.getCounters().put(JemoEventCounters.buildCounterKey(11, 1.0, MODULE), new JemoEventCounters.CounterState(2, 1, expired, 0));
+			counters.merge(snapshot);
+			counters.refresh();
+
+			assertEquals(recent, counters.getLastLaunchedOnGSM(10, 1.0, MODULE));
+			assertEquals(0, counters.getLastLaunchedOnGSM(11, 1.0, MODULE));
+			assertEquals(0, counters.getActiveOnGSM(10, 1.0, MODULE));
+			assertEquals(1, counters.getActiveOnGSM(11, 1.0, MODULE));
+			assertEquals(1, counters.getActiveOnInstance(instanceId, 11, 1.0, MODULE));
+		});
+	}
+}
@@ -0,0 +1,127 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoFairExecutor {
+
+	private Runnable record(List<String> order, String lane, CountDownLatch finished) {
+		return () -> {
+			order.add(lane);
+			finished.countDown();
+		};
+	}
+
+	@Test
+	public void testHotLaneDoesNotStarveOthers() throws InterruptedException {
+		JemoFairExecutor executor = new JemoFairExecutor(1);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(22);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		executor.submit(() -> {
+			try {
+				blocker.await();
+			} catch(InterruptedException irrEx) {}
+		});
+		for(int i = 0; i < 20; i++) {
+			executor.submit("hot", 0, 1, record(order, "hot", finished));
+		}
+		executor.submit("cold", 0, 1, record(order, "cold", finished));
+		executor.submit("cold", 0, 1, record(order, "cold", finished));
+		assertEquals(22, executor.getQueue().size());
+		assertEquals(Integer.valueOf(20), executor.getQueuedTasks().get("hot"));
+		blocker.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		//the cold lane is served alternately with the hot lane even though it submitted its tasks last.
+		assertEquals("cold", order.get(1));
+		assertEquals("cold", order.get(3));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testWeight() throws InterruptedException {
+		JemoFairExecutor executor = new JemoFairExecutor(1);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(60);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		executor.submit(() -> {
+			try {
+				blocker.await();
+			} catch(InterruptedException irrEx) {}
+		});
+		for(int i = 0; i < 30; i++) {
+			executor.submit("heavy", 0, 3, record(order, "heavy", finished));
+			executor.submit("light", 0, 1, record(order, "light", finished));
+		}
+		blocker.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		//while both lanes have work the heavy lane gets three times the share of the light lane.
+		assertEquals(30, order.subList(0, 40).stream().filter("heavy"::equals).count());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testPriority() throws InterruptedException {
+		JemoFairExecutor executor = new JemoFairExecutor(1);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(6);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		executor.submit(() -> {
+			try {
+				blocker.await();
+			} catch(InterruptedException irrEx) {}
+		});
+		for(int i = 0; i < 3; i++) {
+			executor.submit("normal", 0, 1000, record(order, "normal", finished));
+		}
+		executor.submit(() -> {
+			order.add("default");
+			finished.countDown();
+		});
+		executor.submit(JemoFairExecutor.SYSTEM_LANE, JemoFairExecutor.SYSTEM_PRIORITY, 1, record(order, "system", finished));
+		executor.submit("urgent", 1, 1, record(order, "urgent", finished));
+		blocker.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+		assertEquals("system", order.get(0));
+		assertEquals("urgent", order.get(1));
+		assertEquals(0, executor.getQueue().size());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testShutdownNow() throws InterruptedException {
+		JemoFairExecutor executor = new JemoFairExecutor(1);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		executor.submit(() -> {
+			try {
+				blocker.await();
+			} catch(InterruptedException irrEx) {}
+		});
+		for(int i = 0; i < 5; i++) {
+			executor.submit("lane" + (i % 2), 0, 1, () -> {});
+		}
+		assertEquals(5, executor.shutdownNow().size());
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,94 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoPollController {
+
+	@Test
+	public void testIdleBackoff() {
+		JemoPollController controller = new JemoPollController(null, 50, 400, 100, 1000);
+		assertEquals(50, controller.onPoll(10, 0));
+		assertEquals(100, controller.onPoll(10, 0));
+		assertEquals(200, controller.onPoll(10, 0));
+		assertEquals(400, controller.onPoll(10, 0));
+		assertEquals(400, controller.onPoll(10, 0));
+		assertEquals(5, controller.getIdlePolls());
+		long wait = controller.onPoll(10, 3);
+		assertTrue(wait > 0 && wait <= 15);
+		assertEquals(0, controller.getIdlePolls());
+		assertEquals(50, controller.onPoll(10, 0));
+	}
+
+	@Test
+	public void testBacklogGrowsBatch() {
+		JemoPollController controller = new JemoPollController(null, 50, 400, 40, 1000);
+		assertEquals(JemoPollController.MIN_BATCH_SIZE, controller.getBatchSize());
+		assertEquals(0, controller.onPoll(10, 10));
+		assertEquals(20, controller.getBatchSize());
+		assertEquals(0, controller.onPoll(20, 20));
+		assertEquals(0, controller.onPoll(40, 40));
+		assertEquals(40, controller.getBatchSize());
+		controller.onPoll(40, 0);
+		assertEquals(20, controller.getBatchSize());
+	}
+
+	@Test
+	public void testBatchLimitedByRuntime() {
+		//a runtime which returns at most 10 messages must still be seen as having a backlog when it returns 10.
+		JemoPollController controller = new JemoPollController(null, 50, 400, 10, 1000);
+		assertEquals(0, controller.onPoll(controller.getBatchSize(), 10));
+		assertEquals(10, controller.getBatchSize());
+		assertEquals(0, controller.onPoll(controller.getBatchSize(), 10));
+		
+		controller = new JemoPollController(null, 50, 400, 5, 1000);
+		assertEquals(5, controller.getBatchSize());
+		assertEquals(0, controller.onPoll(5, 5));
+		controller.onPoll(5, 0);
+		assertEquals(5, controller.getBatchSize());
+	}
+
+	@Test
+	public void testSaturation() throws Throwable {
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			JemoPollController controller = new JemoPollController(executor, 50, 400, 100, 1000);
+			assertEquals(2, controller.getBatchSize()); //one running and one waiting.
+			executor.submit(() -> { latch.await(); return null; });
+			executor.submit(() -> { latch.await(); return null; });
+			Thread.sleep(100);
+			assertEquals(0, controller.getBatchSize());
+		} finally {
+			latch.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testHeartbeatThrottle() {
+		JemoPollController controller = new JemoPollController(null, 50, 400, 100, 1000);
+		assertTrue(controller.isHeartbeatDue(10000));
+		assertFalse(controller.isHeartbeatDue(10500));
+		assertTrue(controller.isHeartbeatDue(11000));
+	}
+}
@@ -0,0 +1,170 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.api.CachePolicy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoResponseCache {
+
+	private JemoResponseCache.CachedResponse response(int pluginId, int status, int bodySize, long expires) {
+		return response(pluginId, status, new LinkedHashMap<>(), bodySize, expires);
+	}
+
+	private JemoResponseCache.CachedResponse response(int pluginId, int status, Map<String,List<String>> headers, int bodySize, long expires) {
+		return new JemoResponseCache.CachedResponse(pluginId, status, "text/plain", headers, new byte[bodySize], "\"etag\"", expires);
+	}
+
+	private long future() {
+		return System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+	}
+
+	@Test
+	public void testPutAndGet() {
+		JemoResponseCache cache = new JemoResponseCache(16 * 1024);
+		assertNull(cache.get("a"));
+		assertTrue(cache.put("a", response(1, 200, 100, future())));
+		assertNotNull(cache.get("a"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(100, cache.getSize());
+
+		//replacing an entry must not count its size twice.
+		assertTrue(cache.put("a", response(1, 200, 200, future())));
+		assertEquals(1, cache.getEntries());
+		assertEquals(200, cache.getSize());
+	}
+
+	@Test
+	public void testExpiry() {
+		JemoResponseCache cache = new JemoResponseCache(16 * 1024);
+		cache.put("a", response(1, 200, 100, System.currentTimeMillis() - 1));
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getEntries());
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testNotCacheable() {
+		JemoResponseCache cache = new JemoResponseCache(16 * 1024);
+		assertFalse(cache.put("a", response(1, 404, 100, future())));
+		Map<String,List<String>> headers = new LinkedHashMap<>();
+		headers.put("set-cookie", Collections.singletonList("session=1"));
+		assertFalse(cache.put("b", response(1, 200, headers, 100, future())));
+		assertFalse(cache.put("c", response(1, 200, 16 * 1024 / 16 + 1, future())));
+		assertFalse(new JemoResponseCache(0).put("d", response(1, 200, 100, future())));
+		assertFalse(cache.put("e", response(1, 200, 100, System.currentTimeMillis()))); //a ttl of 0 only coalesces requests.
+		assertEquals(0, cache.getEntries());
+	}
+
+	@Test
+	public void testEviction() {
+		JemoResponseCache cache = new JemoResponseCache(16 * 1000);
+		for(int i = 0; i < 16; i++) {
+			assertTrue(cache.put("k" + i, response(1, 200, 1000, future())));
+		}
+		assertNotNull(cache.get("k0")); //k0 is now the most recently used so k1 is the next to go.
+		assertTrue(cache.put("k16", response(1, 200, 1000, future())));
+		assertEquals(16, cache.getEntries());
+		assertNotNull(cache.get("k0"));
+		assertNull(cache.get("k1"));
+		assertTrue(cache.getSize() <= 16 * 1000);
+	}
+
+	@Test
+	public void testInvalidate() {
+		JemoResponseCache cache = new JemoResponseCache(16 * 1024);
+		cache.put("system", response(0, 200, 100, future()));
+		cache.put("one", response(1, 200, 100, future()));
+		cache.put("two", response(2, 200, 100, future()));
+		cache.invalidate(1);
+		assertNull(cache.get("system"));
+		assertNull(cache.get("one"));
+		assertNotNull(cache.get("two"));
+		assertEquals(100, cache.getSize());
+	}
+
+	@Test
+	public void testNotModified() {
+		JemoResponseCache.CachedResponse response = response(1, 200, 100, future());
+		assertFalse(response.isNotModified(null));
+		assertFalse(response.isNotModified("\"other\""));
+		assertTrue(response.isNotModified("\"etag\""));
+		assertTrue(response.isNotModified("\"other\", W/\"etag\""));
+		assertTrue(response.isNotModified("*"));
+	}
+
+	@Test
+	public void testCachePolicy() {
+		CachePolicy policy = CachePolicy.newInstance().setTtl(TimeUnit.SECONDS, 5).setVaryHeaders("Authorization").build();
+		assertEquals(5000, policy.getTtl());
+		assertEquals(Arrays.asList("Authorization"), Arrays.asList(policy.getVaryHeaders()));
+		policy.getVaryHeaders()[0] = "Accept";
+		assertEquals("Authorization", policy.getVaryHeaders()[0]);
+		assertEquals(0, CachePolicy.newInstance().build().getVaryHeaders().length);
+	}
+
+	@Test
+	public void testCoalesce() throws Exception {
+		JemoResponseCache cache = new JemoResponseCache(0);
+		CompletableFuture<JemoResponseCache.CachedResponse> flight = new CompletableFuture<>();
+		assertNull(cache.takeOff("GET:a", flight));
+		CompletableFuture<JemoResponseCache.CachedResponse> waiter = cache.takeOff("GET:a", new CompletableFuture<>());
+		assertSame(flight, waiter);
+		assertNull(cache.takeOff("HEAD:a", new CompletableFuture<>()));
+		assertEquals(1, cache.getCoalesced());
+
+		JemoResponseCache.CachedResponse response = response(1, 200, 100, future());
+		cache.land("GET:a", flight, response, null);
+		assertSame(response, waiter.get());
+		assertNull(cache.takeOff("GET:a", new CompletableFuture<>())); //the next request produces its own response.
+	}
+
+	@Test
+	public void testCoalesceNotShareable() throws Exception {
+		JemoResponseCache cache = new JemoResponseCache(0);
+		Map<String,List<String>> headers = new LinkedHashMap<>();
+		headers.put("Set-Cookie", Collections.singletonList("session=1"));
+		CompletableFuture<JemoResponseCache.CachedResponse> flight = new CompletableFuture<>();
+		cache.takeOff("GET:a", flight);
+		cache.land("GET:a", flight, response(1, 200, headers, 100, future()), null);
+		assertNull(flight.get());
+
+		//an error response is produced again by every request which was waiting for it.
+		CompletableFuture<JemoResponseCache.CachedResponse> notFound = new CompletableFuture<>();
+		cache.takeOff("GET:c", notFound);
+		cache.land("GET:c", notFound, response(1, 404, 100, future()), null);
+		assertNull(notFound.get());
+		assertFalse(response(1, 500, 100, future()).isShareable());
+		assertTrue(response(1, 200, 100, future()).isShareable());
+
+		CompletableFuture<JemoResponseCache.CachedResponse> failed = new CompletableFuture<>();
+		cache.takeOff("GET:b", failed);
+		cache.land("GET:b", failed, null, new IllegalStateException("backend down"));
+		assertTrue(failed.isCompletedExceptionally());
+		assertEquals(0, cache.getInFlight());
+	}
+}
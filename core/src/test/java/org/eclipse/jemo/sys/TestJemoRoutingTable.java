@@ -0,0 +1,129 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.JemoBaseTest;
+import org.eclipse.jemo.internal.model.CloudProvider;
+import org.eclipse.jemo.internal.model.CloudRuntime;
+import org.eclipse.jemo.runtime.MemoryRuntime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoRoutingTable {
+
+	private static final int INSTANCES = 10;
+	private static final int MESSAGES = 10000;
+
+	private interface Picker {
+		int pick(List<Integer> candidates, int[] load, Random random);
+	}
+
+	//this is how messages were routed before the routing table, the instance with the fewest events running wins.
+	private static final Picker LEAST_LOADED = (candidates, load, random) -> candidates.stream().min((c1,c2) -> Integer.compare(load[c1], load[c2])).get();
+	private static final Picker TWO_CHOICES = (candidates, load, random) -> JemoRoutingTable.choose(candidates, c -> load[c], random);
+
+	/**
+	 * this will route messages to instances which never finish them, the load the picker sees is only refreshed every few messages
+	 * like the event counters of the other instances are.
+	 *
+	 * @return the largest amount by which the busiest instance was ahead of the average while the messages were sent.
+	 */
+	private int simulate(Picker picker, int refreshEvery) {
+		final Random random = new Random(42);
+		final List<Integer> candidates = new ArrayList<>();
+		IntStream.range(0, INSTANCES).forEach(candidates::add);
+		final int[] actual = new int[INSTANCES];
+		int[] seen = new int[INSTANCES];
+		int maxGap = 0;
+		for(int i = 0; i < MESSAGES; i++) {
+			if(i % refreshEvery == 0) {
+				seen = actual.clone();
+			}
+			int busiest = ++actual[picker.pick(candidates, seen, random)];
+			maxGap = Math.max(maxGap, busiest - (i + 1) / INSTANCES);
+		}
+		return maxGap;
+	}
+
+	@Test
+	public void testChoose() {
+		final Random random = new Random(42);
+		assertNull(JemoRoutingTable.choose(Collections.<String>emptyList(), c -> 0, random));
+		assertEquals("a", JemoRoutingTable.choose(Arrays.asList("a"), c -> 0, random));
+		for(int i = 0; i < 100; i++) {
+			//the less loaded candidate always wins when there are only two.
+			assertEquals("b", JemoRoutingTable.choose(Arrays.asList("a","b"), c -> c.equals("a") ? 5 : 1, random));
+		}
+		//the most loaded candidate can never be picked because it is always compared to another one.
+		for(int i = 0; i < 1000; i++) {
+			assertFalse("c".equals(JemoRoutingTable.choose(Arrays.asList("a","b","c"), c -> c.equals("c") ? 10 : 0, random)));
+		}
+	}
+
+	@Test
+	public void testDistributionWithCurrentLoad() {
+		int leastLoaded = simulate(LEAST_LOADED, 1);
+		int twoChoices = simulate(TWO_CHOICES, 1);
+		assertTrue(leastLoaded <= 1);
+		//the gap grows with log log of the number of instances and not with the number of messages.
+		assertTrue("the gap was " + twoChoices, twoChoices <= 4);
+	}
+
+	@Test
+	public void testDistributionWithStaleLoad() {
+		int leastLoaded = simulate(LEAST_LOADED, 100);
+		int twoChoices = simulate(TWO_CHOICES, 100);
+		//every message sent between two refreshes goes to the same instance when the least loaded instance is picked.
+		assertTrue("the gap was " + leastLoaded, leastLoaded >= 90);
+		assertTrue("the gap was " + twoChoices + " against " + leastLoaded, twoChoices < leastLoaded / 2);
+	}
+
+	@Test
+	public void testQueueId() throws Throwable {
+		try {
+			CloudProvider.defineCustomeRuntime(new MemoryRuntime());
+			final CloudRuntime runtime = CloudProvider.getInstance().getRuntime();
+			final JemoRoutingTable routingTable = new JemoRoutingTable(new JemoBaseTest.TestJemoServer("UUID_"+UUID.randomUUID().toString(), "UNITTEST", 8080, ""));
+			final String instanceId = UUID.randomUUID().toString();
+			assertNull(routingTable.getQueueId(instanceId, "LOC1"));
+			
+			String queueId = runtime.defineQueue("JEMO-LOC1-" + instanceId);
+			assertEquals(queueId, routingTable.getQueueId(instanceId, "LOC1"));
+			
+			//an instance which moves to another location reads a different queue.
+			runtime.deleteQueue(queueId);
+			String movedQueueId = runtime.defineQueue("JEMO-LOC2-" + instanceId);
+			assertEquals(movedQueueId, routingTable.getQueueId(instanceId, "LOC2"));
+			
+			//a queue which was created again is only looked up again once the instance has been invalidated.
+			runtime.deleteQueue(movedQueueId);
+			String recreatedQueueId = runtime.defineQueue("JEMO-LOC2-" + instanceId);
+			assertEquals(movedQueueId, routingTable.getQueueId(instanceId, "LOC2"));
+			routingTable.invalidate(instanceId);
+			assertEquals(recreatedQueueId, routingTable.getQueueId(instanceId, "LOC2"));
+		} finally {
+			CloudProvider.defineCustomeRuntime(null);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.api.Module;
+import org.eclipse.jemo.api.WebSocketSessions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestJemoWebSocketManager {
+
+	/**
+	 * a connection which only completes writes when the test tells it to.
+	 */
+	private static class TestTransport implements JemoWebSocketSession.Transport {
+		private final List<Consumer<Throwable>> pending = new ArrayList<>();
+		private final List<Object> written = new ArrayList<>();
+		private boolean open = true;
+		private int closeCode = 0;
+
+		@Override
+		public void sendText(String message, Consumer<Throwable> callback) {
+			written.add(message);
+			pending.add(callback);
+		}
+
+		@Override
+		public void sendBinary(ByteBuffer data, Consumer<Throwable> callback) {
+			written.add(data);
+			pending.add(callback);
+		}
+
+		@Override
+		public void close(int statusCode, String reason) {
+			open = false;
+			closeCode = statusCode;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		private void flush() {
+			pending.forEach(callback -> callback.accept(null));
+			pending.clear();
+		}
+	}
+
+	private JemoWebSocketSession createSession(TestTransport transport, long sendBuffer) {
+		return new JemoWebSocketSession("/1/v1.0/ws", null, name -> null, "127.0.0.1", sendBuffer, transport);
+	}
+
+	@Test
+	public void testBackpressure() throws Exception {
+		TestTransport transport = new TestTransport();
+		JemoWebSocketSession session = createSession(transport, 10);
+		CompletableFuture<Void> first = session.sendText("12345");
+		assertTrue(session.isWritable());
+		assertFalse(session.sendText("67890").isCompletedExceptionally());
+		assertEquals(10, session.getBufferedAmount());
+		assertFalse(session.isWritable());
+		//the buffer is full so further sends are refused until the queued messages have been written.
+		CompletableFuture<Void> refused = session.sendBinary(new byte[] {1});
+		try {
+			refused.get();
+			fail("the send buffer is full");
+		} catch(ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof RejectedExecutionException);
+		}
+		assertEquals(2, transport.written.size());
+		assertFalse(first.isDone());
+		transport.flush();
+		assertTrue(first.isDone());
+		assertEquals(0, session.getBufferedAmount());
+		assertTrue(session.isWritable());
+		//a single message larger than the buffer is accepted when nothing is queued.
+		assertFalse(session.sendText("this message is larger than the buffer").isCompletedExceptionally());
+		assertTrue(session.sendText("1").isCompletedExceptionally());
+	}
+
+	@Test
+	public void testFailedWrite() throws Exception {
+		TestTransport transport = new TestTransport();
+		JemoWebSocketSession session = createSession(transport, 10);
+		CompletableFuture<Void> result = session.sendText("12345");
+		transport.pending.get(0).accept(new IllegalStateException("closed"));
+		assertTrue(result.isCompletedExceptionally());
+		assertEquals(0, session.getBufferedAmount());
+		transport.close(1000, null);
+		assertTrue(session.sendText("12345").isCompletedExceptionally());
+		assertFalse(session.isWritable());
+	}
+
+	@Test
+	public void testBroadcast() {
+		Module module = new Module() {};
+		TestTransport fast = new TestTransport();
+		TestTransport slow = new TestTransport();
+		JemoWebSocketSession fastSession = createSession(fast, 10);
+		JemoWebSocketSession slowSession = createSession(slow, 10);
+		JemoWebSocketManager.opened(module, fastSession);
+		JemoWebSocketManager.opened(module, slowSession);
+		WebSocketSessions sessions = JemoWebSocketManager.getSessions(module);
+		assertEquals(2, sessions.size());
+		slowSession.sendText("1234567890");
+		//the slow client is skipped rather than holding up the others.
+		assertEquals(1, sessions.broadcastText("hello"));
+		assertEquals(1, fast.written.size());
+		assertEquals(1, slow.written.size());
+		slow.flush();
+		assertEquals(2, sessions.broadcastBinary(new byte[] {1, 2}));
+		JemoWebSocketManager.closeSessions(module);
+		assertEquals(1001, fast.closeCode);
+		assertEquals(1001, slow.closeCode);
+	}
+
+	@Test
+	public void testConnectionLimit() {
+		Module module = new Module() {};
+		assertTrue(JemoWebSocketManager.reserve(module, 2));
+		assertTrue(JemoWebSocketManager.reserve(module, 2));
+		assertFalse(JemoWebSocketManager.reserve(module, 2));
+		JemoWebSocketSession session = createSession(new TestTransport(), 10);
+		JemoWebSocketManager.opened(module, session);
+		JemoWebSocketManager.release(module, session);
+		assertEquals(0, JemoWebSocketManager.getSessions(module).size());
+		assertTrue(JemoWebSocketManager.reserve(module, 2));
+		assertTrue(JemoWebSocketManager.reserve(module, -1));
+		JemoWebSocketManager.closeSessions(module);
+	}
+}
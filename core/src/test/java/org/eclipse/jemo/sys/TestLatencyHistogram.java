@@ -0,0 +1,102 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.sys.internal.Util;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestLatencyHistogram {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0,histogram.getTotalCount());
+		assertEquals(0,histogram.getP99());
+		assertEquals(0,histogram.getMax());
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		IntStream.rangeClosed(1, 1000).forEach(histogram::record);
+		assertEquals(1000,histogram.getTotalCount());
+		assertEquals(1000,histogram.getMax());
+		assertEquals(500,histogram.getP50(),500*0.016);
+		assertEquals(900,histogram.getP90(),900*0.016);
+		assertEquals(990,histogram.getP99(),990*0.016);
+		assertEquals(999,histogram.getP999(),999*0.016);
+	}
+
+	@Test
+	public void testBucketBoundaries() {
+		for(long value : new long[] {0,1,127,128,129,255,256,1000,65535,1L << 39}) {
+			int index = LatencyHistogram.indexOf(value);
+			assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+			assertTrue(index == 0 || LatencyHistogram.highestEquivalentValue(index-1) < value);
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		LatencyHistogram h1 = new LatencyHistogram();
+		LatencyHistogram h2 = new LatencyHistogram();
+		IntStream.rangeClosed(1, 100).forEach(h1::record);
+		IntStream.rangeClosed(101, 200).forEach(h2::record);
+		h1.merge(h2);
+		assertEquals(200,h1.getTotalCount());
+		assertEquals(200,h1.getMax());
+		assertEquals(100,h1.getP50(),100*0.016);
+	}
+
+	@Test
+	public void testSparse() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0,histogram.getAllocatedChunks());
+		IntStream.rangeClosed(1, 100).forEach(histogram::record);
+		assertEquals(1,histogram.getAllocatedChunks());
+		histogram.record(200);
+		histogram.record(250);
+		histogram.record(5000);
+		assertEquals(3,histogram.getAllocatedChunks());
+		assertEquals(103,histogram.getTotalCount());
+		assertEquals(5000,histogram.getMax());
+		assertEquals(250,histogram.getValueAtPercentile(99),250*0.016);
+		assertEquals(103,histogram.getBuckets().size());
+
+		LatencyHistogram merged = new LatencyHistogram().merge(histogram);
+		assertEquals(3,merged.getAllocatedChunks());
+		assertEquals(histogram.getBuckets(),merged.getBuckets());
+
+		histogram.reset();
+		assertEquals(0,histogram.getTotalCount());
+		assertEquals(0,histogram.getP99());
+		assertTrue(histogram.getBuckets().isEmpty());
+	}
+
+	@Test
+	public void testJSON() throws Throwable {
+		Accumulator acc = new Accumulator();
+		IntStream.rangeClosed(1, 300).forEach(acc::add);
+		Accumulator copy = Util.fromJSONString(Accumulator.class, Util.toJSONString(acc));
+		assertEquals(acc.avg(),copy.avg(),0);
+		assertEquals(acc.histogram().getTotalCount(),copy.histogram().getTotalCount());
+		assertEquals(acc.histogram().getP99(),copy.histogram().getP99());
+		assertEquals(300,copy.histogram().getMax());
+	}
+}
@@ -0,0 +1,71 @@
+/*
+********************************************************************************
+* Copyright (c) 9th November 2018 Cloudreach Limited Europe
+*
+* This program and the accompanying materials are made available under the
+* terms of the Eclipse Public License 2.0 which is available at
+* http://www.eclipse.org/legal/epl-2.0.
+*
+* This Source Code may also be made available under the following Secondary
+* Licenses when the conditions for such availability set forth in the Eclipse
+* Public License, v. 2.0 are satisfied: GNU General Public License, version 2
+* with the GNU Classpath Exception which is
+* available at https://www.gnu.org/software/classpath/license.html.
+*
+* SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+********************************************************************************/
+package org.eclipse.jemo.sys;
+
+import org.eclipse.jemo.sys.internal.Util;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TestModulesStatsModule {
+
+	private static ModulesStatsModule.InstanceStats createStats(String appId, String moduleClass, int from, int to) {
+		Accumulator acc = new Accumulator();
+		IntStream.rangeClosed(from, to).forEach(acc::add);
+		ModulesStatsModule.InstanceStats stats = new ModulesStatsModule.InstanceStats();
+		stats.getStats().computeIfAbsent(appId, k -> new HashMap<>()).put(moduleClass, acc);
+		stats.getEndpointStats().computeIfAbsent(appId, k -> new HashMap<>()).put("/"+moduleClass, acc);
+		return stats;
+	}
+
+	@Test
+	public void testMerge() {
+		ModulesStatsModule.InstanceStats merged = ModulesStatsModule.InstanceStats.merge(Arrays.asList(
+			createStats("1-app-1.0.jar", "ModuleA", 1, 100),
+			createStats("1-app-1.0.jar", "ModuleA", 101, 200),
+			createStats("1-app-1.0.jar", "ModuleB", 1, 10),
+			createStats("2-app-1.0.jar", "ModuleA", 1, 10),
+			null));
+
+		Accumulator moduleA = merged.getStats().get("1-app-1.0.jar").get("ModuleA");
+		assertEquals(200,moduleA.histogram().getTotalCount());
+		assertEquals(100.5,moduleA.avg(),0);
+		assertEquals(200,moduleA.histogram().getMax());
+		assertEquals(100,moduleA.histogram().getP50(),100*0.016);
+		assertEquals(10,merged.getStats().get("1-app-1.0.jar").get("ModuleB").histogram().getTotalCount());
+		assertEquals(10,merged.getStats().get("2-app-1.0.jar").get("ModuleA").histogram().getTotalCount());
+		assertEquals(200,merged.getEndpointStats().get("1-app-1.0.jar").get("/ModuleA").histogram().getTotalCount());
+	}
+
+	@Test
+	public void testMergeDoesNotChangeSnapshots() {
+		ModulesStatsModule.InstanceStats stats = createStats("1-app-1.0.jar", "ModuleA", 1, 100);
+		ModulesStatsModule.InstanceStats.merge(Arrays.asList(stats, stats));
+		assertEquals(100,stats.getStats().get("1-app-1.0.jar").get("ModuleA").histogram().getTotalCount());
+	}
+
+	@Test
+	public void testJSON() throws Throwable {
+		ModulesStatsModule.InstanceStats stats = createStats("1-app-1.0.jar", "ModuleA", 1, 100);
+		ModulesStatsModule.InstanceStats copy = Util.fromJSONString(ModulesStatsModule.InstanceStats.class, Util.toJSONString(stats));
+		Accumulator acc = copy.getStats().get("1-app-1.0.jar").get("ModuleA");
+		assertEquals(100,acc.histogram().getTotalCount());
+		assertEquals(50.5,acc.avg(),0);
+	}
+}
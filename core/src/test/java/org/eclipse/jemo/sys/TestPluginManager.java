@@ -25,6 +25,7 @@ import org.eclipse.jemo.internal.model.CloudProvider;
 import org.eclipse.jemo.internal.model.CloudRuntime;
 import org.eclipse.jemo.internal.model.SystemDBObject;
 import org.eclipse.jemo.internal.model.JemoApplicationMetaData;
+import org.eclipse.jemo.internal.model.JemoModule;
 import org.eclipse.jemo.runtime.MemoryRuntime;
 import org.eclipse.jemo.sys.internal.Util;
 import org.eclipse.jemo.HttpServletRequestAdapter;
@@ -41,7 +42,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javax.servlet.ServletOutputStream;
@@ -511,4 +515,78 @@ public class TestPluginManager extends JemoGSMTest {
 		assertNotNull(contentType.value);
 		assertEquals("text/html",contentType.value);
 	}
+	
+	@Test
+	public void test_moduleContext() throws Throwable {
+		assertNull(JemoPluginManager.getCurrentModuleMetaData());
+		Holder<Runnable> captured = new Holder<>();
+		Holder<Integer> capturedId = new Holder<>();
+		jemoServer.getPluginManager().runWithModuleContext(Void.class, x -> {
+			assertEquals(0, JemoPluginManager.getCurrentModuleMetaData().getId());
+			captured.value = JemoPluginManager.withCurrentContext(() -> capturedId.value = JemoPluginManager.getCurrentModuleMetaData().getId());
+			return null;
+		});
+		//the context is only installed for the duration of the call and has to be carried explicitly to other threads.
+		assertNull(JemoPluginManager.getCurrentModuleMetaData());
+		Thread t = new Thread(captured.value);
+		t.start();
+		t.join();
+		assertEquals(Integer.valueOf(0), capturedId.value);
+	}
+	
+	@Test
+	public void test_runWithModuleAsyncTimeout() throws Throwable {
+		JemoModule systemModule = jemoServer.getPluginManager().loadPluginModules(0).iterator().next();
+		CompletableFuture<Object> result = jemoServer.getPluginManager().runWithModuleAsync(systemModule, jemoServer.getWORK_EXECUTOR(), m -> {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(3));
+			return null;
+		}, 1);
+		try {
+			result.get(10, TimeUnit.SECONDS);
+			fail("the module should have timed out");
+		} catch(ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TimeoutException);
+		}
+		assertEquals("done", jemoServer.getPluginManager().runWithModuleAsync(systemModule, jemoServer.getWORK_EXECUTOR(), m -> "done", 1).get(10, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void test_runWithModuleAsyncStage() throws Throwable {
+		JemoModule systemModule = jemoServer.getPluginManager().loadPluginModules(0).iterator().next();
+		CompletableFuture<String> pending = new CompletableFuture<>();
+		//a function which returns a stage only completes the result when the stage does.
+		CompletableFuture<Object> result = jemoServer.getPluginManager().runWithModuleAsync(systemModule, jemoServer.getWORK_EXECUTOR(), m -> pending, 10);
+		TimeUnit.MILLISECONDS.sleep(200);
+		assertFalse(result.isDone());
+		pending.complete("async");
+		assertEquals("async", result.get(10, TimeUnit.SECONDS));
+		
+		CompletableFuture<String> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("failed"));
+		try {
+			jemoServer.getPluginManager().runWithModuleAsync(systemModule, jemoServer.getWORK_EXECUTOR(), m -> failed, 10).get(10, TimeUnit.SECONDS);
+			fail("the stage failed");
+		} catch(ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		
+		//the timeout applies until the stage completes.
+		try {
+			jemoServer.getPluginManager().runWithModuleAsync(systemModule, jemoServer.getWORK_EXECUTOR(), m -> new CompletableFuture<>(), 1).get(10, TimeUnit.SECONDS);
+			fail("the module should have timed out");
+		} catch(ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof TimeoutException);
+		}
+	}
+	
+	@Test
+	public void test_processAsyncRunsOnCallingThread() throws Throwable {
+		JemoMessage msg = new JemoMessage();
+		msg.setPluginId(0);
+		msg.setModuleClass(JemoPluginManager.PluginManagerModule.class.getName());
+		//events run on the thread which dispatched them so the future is already complete when the call returns.
+		CompletableFuture<JemoMessage> result = jemoServer.getPluginManager().processAsync(msg);
+		assertTrue(result.isDone());
+		assertNull(result.get());
+	}
 }
@@ -877,6 +877,24 @@ public class MicrosoftAzureRuntime implements CloudRuntime {
         }, this);
     }
 
+    /**
+     * event hubs can take a whole batch of events in a single send, storage queues have no batch api so each message is sent on its own.
+     */
+    @Override
+    public List<String> sendMessages(String queueId, List<String> jsonMessages) {
+        if (MSG_MODEL != MESSAGE_MODEL.EVENTHUB) {
+            return CloudRuntime.super.sendMessages(queueId, jsonMessages);
+        }
+        return executeFunction(rt -> {
+            List<EventData> eventList = new ArrayList<>();
+            for (String jsonMessage : jsonMessages) {
+                eventList.add(new EventData(jsonMessage.getBytes("UTF-8")));
+            }
+            getEventHub(queueId).createPartitionSenderSync("0").sendSync(eventList);
+            return jsonMessages.stream().map(m -> UUID.randomUUID().toString()).collect(Collectors.toList());
+        }, this);
+    }
+
     @Override
     public String getQueueId(String queueName) {
         return executeFunction(rt -> {
@@ -924,17 +942,31 @@ public class MicrosoftAzureRuntime implements CloudRuntime {
 
     @Override
     public int pollQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException {
+        return pollQueue(queueId, processor, 32);
+    }
+
+    @Override
+    public int getMaxPollSize() {
+        return 32; //storage queues will return at most 32 messages at a time.
+    }
+
+    @Override
+    public int pollQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
         switch (MSG_MODEL) {
             case EVENTHUB:
                 return pollEventHub(queueId, processor);
             case QUEUE:
-                return pollStorageQueue(queueId, processor);
+                return pollStorageQueue(queueId, processor, maxMessages);
         }
 
         return 0;
     }
 
     public int pollStorageQueue(String queueId, CloudQueueProcessor processor) throws QueueDoesNotExistException {
+        return pollStorageQueue(queueId, processor, 32);
+    }
+
+    public int pollStorageQueue(String queueId, CloudQueueProcessor processor, int maxMessages) throws QueueDoesNotExistException {
         try {
             //we should store a file on blob storage which contains the last time this queue was polled but only if this is an instance
             //queue.
@@ -947,13 +979,14 @@ public class MicrosoftAzureRuntime implements CloudRuntime {
             List<Callable<Object>> msgRunList = new ArrayList<>();
             long startRetrieval = System.currentTimeMillis();
             try {
-                StreamSupport.stream(queue.retrieveMessages(32).spliterator(), true).forEach(cmsg -> {
+                //storage queues will return at most 32 messages at a time.
+                StreamSupport.stream(queue.retrieveMessages(Math.max(1, Math.min(32, maxMessages))).spliterator(), true).forEach(cmsg -> {
                     msgList.add(cmsg);
                     try {
                         queue.deleteMessage(cmsg);
                         try {
                             CloudBlockBlob msgBlob = getMessageContainer().getBlockBlobReference(cmsg.getMessageContentAsString());
-                            JemoMessage msg = Jemo.fromJSONString(JemoMessage.class, msgBlob.downloadText());
+                            JemoMessage msg = JemoMessageCodec.read(msgBlob.downloadText());
                             msgBlob.delete();
                             if (msg.getSourceInstance() != null) {
                                 processor.processMessage(msg);
@@ -1001,7 +1034,7 @@ public class MicrosoftAzureRuntime implements CloudRuntime {
                         numMessages.value += eventList.size();
                         eventList.parallelStream().forEach(e -> {
                             try {
-                                JemoMessage msg = Jemo.fromJSONString(JemoMessage.class, new String(e.getBody(), "UTF-8"));
+                                JemoMessage msg = JemoMessageCodec.read(new String(e.getBody(), "UTF-8"));
                                 if (msg.getSourceInstance() != null) {
                                     processor.processMessage(msg);
                                 }
@@ -1321,11 +1354,11 @@ public class MicrosoftAzureRuntime implements CloudRuntime {
                     }
                     return queueList.parallelStream().filter(qId -> {
                         String qName = qId.substring(qId.lastIndexOf('/') + 1).toUpperCase();
-                        return (includeWorkQueues || !qName.contains("WORK-QUEUE")) && qName.indexOf(("jemo-" + (location == null ? "" : location)).toUpperCase()) == 0;
+                        return (includeWorkQueues || !qName.contains("WORK-QUEUE")) && !qName.endsWith(DEAD_LETTER_QUEUE_SUFFIX) && qName.indexOf(("jemo-" + (location == null ? "" : location)).toUpperCase()) == 0;
                     }).collect(toList());
                 case QUEUE:
                     getQueueStorage().listQueues("jemo-").forEach(q -> {
-                        if ((includeWorkQueues || !q.getName().toUpperCase().contains("WORK-QUEUE")) && q.getName().toUpperCase().indexOf(("jemo-" + (location == null ? "" : location)).toUpperCase()) == 0) {
+                        if ((includeWorkQueues || !q.getName().toUpperCase().contains("WORK-QUEUE")) && !q.getName().toUpperCase().endsWith(DEAD_LETTER_QUEUE_SUFFIX) && q.getName().toUpperCase().indexOf(("jemo-" + (location == null ? "" : location)).toUpperCase()) == 0) {
                             queueList.add(q.getName());
                         }
                     });